@@ -0,0 +1,15 @@
+package org.scoalaonline.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One completion of an autocomplete prefix: the label and the id of the entry with its title.
+ */
+@Data
+@AllArgsConstructor
+public class AutocompleteHit {
+  private String type;
+  private String id;
+  private String text;
+}
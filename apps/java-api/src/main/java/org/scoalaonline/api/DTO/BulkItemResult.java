@@ -0,0 +1,21 @@
+package org.scoalaonline.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of one entry of a bulk request.
+ * The index is the position of the entry in the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResult {
+  public enum Status { CREATED, UPDATED, DELETED, INVALID, NOT_FOUND, FAILED }
+
+  private int index;
+  private String id;
+  private Status status;
+  private String error;
+}
@@ -0,0 +1,14 @@
+package org.scoalaonline.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CurrentUser {
+  private String id;
+  private String username;
+  private List<String> roles;
+}
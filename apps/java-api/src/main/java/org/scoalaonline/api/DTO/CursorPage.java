@@ -0,0 +1,69 @@
+package org.scoalaonline.api.DTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) paginated list.
+ * Entries are ordered by id and the cursor is an opaque encoding of the last id of the page,
+ * so the next page starts right after it without skipping over the previous ones.
+ */
+public class CursorPage<T> {
+  private final List<T> items;
+  private final String nextCursor;
+
+  public CursorPage(List<T> items, String nextCursor) {
+    this.items = Collections.unmodifiableList(new ArrayList<>(items));
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Builds a page from the entries read with a limit of size + 1,
+   * the extra entry only signals that there is a next page.
+   * @param entries - at most size + 1 entries ordered by id
+   * @param size - the size of the page
+   * @param idExtractor - reads the id of an entry
+   * @return the page
+   */
+  public static <T> CursorPage<T> of(List<T> entries, int size, Function<T, String> idExtractor) {
+    if (entries.size() <= size) {
+      return new CursorPage<>(entries, null);
+    }
+    List<T> items = entries.subList(0, size);
+    return new CursorPage<>(items, encode(idExtractor.apply(items.get(size - 1))));
+  }
+
+  /**
+   * Encodes the id of the last entry of a page as a cursor.
+   * @param id - the id of the entry
+   * @return the cursor
+   */
+  public static String encode(String id) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(id.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor to the id the next page starts after.
+   * @param cursor - the cursor received from the client, null for the first page
+   * @return the id or null for the first page
+   * @throws IllegalArgumentException if the cursor is malformed
+   */
+  public static String decode(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+  }
+
+  public List<T> getItems() {
+    return items;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
@@ -0,0 +1,48 @@
+package org.scoalaonline.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.scoalaonline.api.model.GradeAggregate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The count, mean, lowest and highest value of the grades of one student or of one subject,
+ * with the number of grades of every value, derived from their GradeAggregate.
+ * The mean, min and max are null when there are no grades.
+ */
+@Data
+@AllArgsConstructor
+public class GradeStatistics {
+  private long count;
+  private Double mean;
+  private Integer min;
+  private Integer max;
+  private Map<Integer, Long> histogram;
+
+  /**
+   * Derives the statistics from an aggregate, the lowest and highest value being the first and last
+   * values of the histogram with grades.
+   * @param aggregate - the aggregate, null if there are no grades
+   * @return the statistics
+   */
+  public static GradeStatistics of(GradeAggregate aggregate) {
+    List<Long> counts = aggregate != null && aggregate.getHistogram() != null ? aggregate.getHistogram() : List.of();
+    Map<Integer, Long> histogram = new LinkedHashMap<>();
+    Integer min = null;
+    Integer max = null;
+    for (int value = 0; value < counts.size(); value++) {
+      long count = counts.get(value);
+      histogram.put(value, count);
+      if (count > 0) {
+        min = min == null ? value : min;
+        max = value;
+      }
+    }
+    long count = aggregate != null ? aggregate.getCount() : 0;
+    Double mean = count > 0 ? (double) aggregate.getSum() / count : null;
+    return new GradeStatistics(count, mean, min, max, histogram);
+  }
+}
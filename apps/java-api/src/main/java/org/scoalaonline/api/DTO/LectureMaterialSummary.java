@@ -0,0 +1,25 @@
+package org.scoalaonline.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.scoalaonline.api.model.LectureMaterial;
+
+/**
+ * A LectureMaterial entry as sent in the lists: its id, the hash and size in bytes of its document,
+ * the excerpt of its beginning kept on the node and its version, but not the document itself,
+ * which is read from the entry or from its own endpoint.
+ */
+@Data
+@AllArgsConstructor
+public class LectureMaterialSummary {
+  private String id;
+  private String documentHash;
+  private Long documentSize;
+  private String excerpt;
+  private Long version;
+
+  public static LectureMaterialSummary of(LectureMaterial entry) {
+    return new LectureMaterialSummary(entry.getId(), entry.getDocumentHash(), entry.getDocumentSize(),
+      entry.getExcerpt(), entry.getVersion());
+  }
+}
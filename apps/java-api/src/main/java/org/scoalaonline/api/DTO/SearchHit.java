@@ -0,0 +1,17 @@
+package org.scoalaonline.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One entry found by a search: its label, its id, the relevance score given by the full-text index
+ * and the part of its text around the first matching term.
+ */
+@Data
+@AllArgsConstructor
+public class SearchHit {
+  private String type;
+  private String id;
+  private double score;
+  private String snippet;
+}
@@ -0,0 +1,14 @@
+package org.scoalaonline.api.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The state of a chunked upload: its id and the number of bytes received, where the next chunk starts.
+ */
+@Data
+@AllArgsConstructor
+public class UploadStatus {
+  private String id;
+  private long offset;
+}
@@ -1,15 +1,24 @@
 package org.scoalaonline.api;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.neo4j.driver.Driver;
+import org.scoalaonline.api.repository.ClientBookmarks;
+import org.scoalaonline.api.security.BoundedPasswordEncoder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.neo4j.core.DatabaseSelectionProvider;
+import org.springframework.data.neo4j.core.transaction.Neo4jBookmarkManager;
+import org.springframework.data.neo4j.core.transaction.Neo4jTransactionManager;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 @SpringBootApplication
+@EnableScheduling
 @RestController
 public class JavaApiApplication {
 
@@ -21,9 +30,28 @@ public class JavaApiApplication {
     return "Welcome to " + applicationName;
   }
 
+  /**
+   * Creates the PasswordEncoder used for Users. BCrypt runs on a dedicated, bounded pool
+   * so that login and registration peaks cannot starve the request threads.
+   */
   @Bean
-  PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                  @Value("${security.password-hashing.threads:0}") int threads,
+                                  @Value("${security.password-hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${security.password-hashing.retry-after-seconds:1}") long retryAfterSeconds) {
+    return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity, retryAfterSeconds, meterRegistry);
+  }
+
+  /**
+   * Creates the transaction manager of the Neo4j repositories and services. Read-only transactions
+   * are routed to followers and read replicas when the DB URI uses the neo4j:// scheme, every transaction
+   * also waits for the bookmarks sent by the client, so clients always read their own writes.
+   */
+  @Bean
+  Neo4jTransactionManager transactionManager(Driver driver, DatabaseSelectionProvider databaseSelectionProvider,
+                                             ClientBookmarks clientBookmarks) {
+    return new Neo4jTransactionManager(driver, databaseSelectionProvider,
+      Neo4jBookmarkManager.create(clientBookmarks::getRequestBookmarks));
   }
 
 	public static void main(String[] args) {
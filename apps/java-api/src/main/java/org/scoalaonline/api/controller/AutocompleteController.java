@@ -0,0 +1,48 @@
+package org.scoalaonline.api.controller;
+
+import org.scoalaonline.api.DTO.AutocompleteHit;
+import org.scoalaonline.api.service.AutocompleteIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Class for the Autocomplete controller. Contains the following methods:
+ * GET:	"/autocomplete"	retrieves the Lecture and Subject entries with a word of their title starting with the query.
+ */
+@CrossOrigin
+@RestController
+@RequestMapping("/autocomplete")
+public class AutocompleteController {
+  @Autowired
+  AutocompleteIndex autocompleteIndex;
+
+  @Value("${autocomplete.default-size:10}")
+  int defaultSize;
+
+  @Value("${autocomplete.max-size:50}")
+  int maxSize;
+
+  /**
+   * Sends HTTP status Response Entity with the entries completing the query, served from memory.
+   * Sends HTTP status Bad Request if the size is not positive.
+   * Sizes above the configured maximum are lowered to the maximum.
+   * @param query - the prefix typed so far, an empty list is sent if it is blank
+   * @param size - the maximum number of entries, null for the configured default
+   * @return a Response Entity with HTTP Status OK and a list of the completions.
+   */
+  @GetMapping(value = {"", "/"})
+  public ResponseEntity<List<AutocompleteHit>> complete (@RequestParam(value = "q", required = false) String query,
+                                                         @RequestParam(value = "size", required = false) Integer size) {
+    int limit = size == null ? defaultSize : size;
+    if (limit < 1) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Size has to be a positive integer." );
+    }
+    return new ResponseEntity<>(autocompleteIndex.complete(query, Math.min(limit, maxSize)), HttpStatus.OK);
+  }
+}
@@ -0,0 +1,104 @@
+package org.scoalaonline.api.controller;
+
+import org.scoalaonline.api.service.BlobStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sends a blob of the BlobStore as the body of a response, straight from its file.
+ * When the connector supports it, the file is handed to Tomcat, which sends it with sendfile
+ * once the request has been handled. Otherwise it is copied to the response with FileChannel.transferTo.
+ * Either way the content never goes through a buffer the size of the blob.
+ * The ETag is the hash of the content, a single byte range is served as Partial Content
+ * and a request with several ranges is sent the whole blob.
+ */
+public final class BlobDownloads {
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private BlobDownloads() {
+  }
+
+  /**
+   * Sends the blob, or the requested range of it, or Not Modified if the client already has it.
+   * Sends HTTP status Requested Range Not Satisfiable if the range is malformed or out of the blob.
+   * @param blob - the blob
+   * @param contentType - the media type of the blob
+   * @param request - the request, with the Range, If-Range and If-None-Match headers
+   * @param response - the response
+   * @throws IOException if the blob cannot be read or the response cannot be written
+   */
+  public static void send(BlobStore.Blob blob, String contentType, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String etag = "\"" + blob.getHash() + "\"";
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    if (ETags.isNotModified(new ServletWebRequest(request), etag)) {
+      response.setStatus(HttpStatus.NOT_MODIFIED.value());
+      return;
+    }
+
+    long size = blob.getSize();
+    long start = 0;
+    long end = size - 1;
+    String range = request.getHeader(HttpHeaders.RANGE);
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (range != null && (ifRange == null || ifRange.equals(etag))) {
+      List<HttpRange> ranges;
+      try {
+        ranges = HttpRange.parseRanges(range);
+        if (ranges.size() == 1) {
+          start = ranges.get(0).getRangeStart(size);
+          end = ranges.get(0).getRangeEnd(size);
+        }
+      } catch (IllegalArgumentException e) {
+        ranges = List.of();
+      }
+      if (ranges.isEmpty() || start >= size) {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+        response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), "GET: Range not satisfiable.");
+        return;
+      }
+      if (ranges.size() == 1) {
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+      }
+    }
+
+    long length = end - start + 1;
+    response.setContentType(contentType);
+    response.setContentLengthLong(Math.max(length, 0));
+    if (length <= 0) {
+      return;
+    }
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      request.setAttribute(SENDFILE_FILENAME, blob.getPath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, end + 1);
+      return;
+    }
+    try (FileChannel file = FileChannel.open(blob.getPath(), StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      while (position <= end) {
+        long transferred = file.transferTo(position, end + 1 - position, out);
+        if (transferred <= 0) {
+          throw new IOException("Blob " + blob.getHash() + " ended before its size.");
+        }
+        position += transferred;
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.scoalaonline.api.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Serves the conditional variant of the GET, PATCH and DELETE endpoints.
+ * The strong ETag of an entry is its version, the one of a list is the version of the collection.
+ * Both are compared with the If-None-Match header before the entries are read,
+ * so an unchanged entry or list is answered with Not Modified without reading or serializing it.
+ * The If-Match header of a write carries the version the client has read, the write only applies
+ * to the entry at that version and is otherwise answered with Precondition Failed.
+ */
+public final class ETags {
+  private ETags() {
+  }
+
+  /**
+   * Builds the strong ETag of a version.
+   * @param version - the version, null for an entry written before versions existed
+   * @return the quoted version
+   */
+  public static String of(Long version) {
+    return "\"" + (version == null ? 0L : version) + "\"";
+  }
+
+  /**
+   * Checks if the If-None-Match header of the request matches the given ETag.
+   * @param request - the request
+   * @param etag - the current ETag
+   * @return true if the client already has the current representation
+   */
+  public static boolean isNotModified(WebRequest request, String etag) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String value = candidate.trim();
+      if (value.startsWith("W/")) {
+        value = value.substring(2);
+      }
+      if (value.equals("*") || value.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Retrieves the current ETag of an entry if the If-None-Match header of the request matches it.
+   * The version is only read when the request carries the header.
+   * @param request - the request
+   * @param version - reads the version of the entry, empty if there is no entry
+   * @return the current ETag, or empty if the entry has to be sent
+   */
+  public static Optional<String> unchanged(WebRequest request, Supplier<Optional<Long>> version) {
+    if (request.getHeader(HttpHeaders.IF_NONE_MATCH) == null) {
+      return Optional.empty();
+    }
+    return version.get().map(ETags::of).filter(etag -> isNotModified(request, etag));
+  }
+
+  /**
+   * Retrieves the version the client expects an entry at from the If-Match header of a write.
+   * Sends HTTP status Precondition Failed if the header is not "*" or the strong ETag of a version,
+   * a weak ETag never matching for a write.
+   * @param ifMatch - the If-Match header, null if it is missing
+   * @return the version, or null if the header is missing or is "*"
+   */
+  public static Long expectedVersion(String ifMatch) {
+    if (ifMatch == null || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String value = ifMatch.trim();
+    if (value.length() > 2 && value.startsWith("\"") && value.endsWith("\"")) {
+      try {
+        return Long.parseLong(value.substring(1, value.length() - 1));
+      } catch (NumberFormatException e) {
+        // Not one of the ETags sent by the API.
+      }
+    }
+    throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "If-Match does not match the current version." );
+  }
+
+  /**
+   * Builds the Not Modified response for the given ETag.
+   * @param etag - the current ETag
+   * @return a Response Entity with HTTP Status Not Modified, the ETag and no body.
+   */
+  public static <T> ResponseEntity<T> notModified(String etag) {
+    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+  }
+}
@@ -1,50 +1,137 @@
 package org.scoalaonline.api.controller;
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.GradeStatistics;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
+import org.scoalaonline.api.exception.grade.GradeInvalidLinkException;
 import org.scoalaonline.api.exception.grade.GradeInvalidValueException;
 import org.scoalaonline.api.exception.grade.GradeNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.scoalaonline.api.service.GradeService;
+import org.scoalaonline.api.repository.ClientBookmarks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Set;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Class for the Grade controller. Contains the following methods:
- GET:	"/grades"	retrieves all the entries;
- GET:	"/grades/{id}"	retrieves the entry with the provided id;
+ GET:	"/grades"	retrieves all the entries, streamed as NDJSON if requested, or only the given fields, Not Modified if the ETag is current;
+ GET:	"/grades/{id}"	retrieves the entry with the provided id, or only the given fields, Not Modified if the ETag is current;
+ GET:	"/grades/statistics/students/{studentId}"	retrieves the statistics of the grades of a student;
+ GET:	"/grades/statistics/subjects/{subjectId}"	retrieves the statistics of the grades given in a subject;
  POST: "/grades"	creates a new entry;
  PATCH:	"/grades/{id}	edits the entry with the provided id;
  DELETE:	"/grades/{id}	deletes the entry with the provided id;
+ POST:	"/grades/bulk"	creates many entries in batches;
+ PATCH:	"/grades/bulk"	edits many entries in batches;
+ DELETE:	"/grades/bulk"	deletes many entries in batches;
  */
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {Pagination.NEXT_CURSOR_HEADER, ClientBookmarks.BOOKMARKS_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequestMapping("/grades")
 public class GradeController {
   @Autowired
   GradeService gradeService;
 
+  @Autowired
+  Pagination pagination;
+
+  @Autowired
+  ClientBookmarks clientBookmarks;
+
   /**
    * Sends an HTTP Response Entity with all the Grade entries.
+   * Sends only one page, ordered by id, if a cursor or a size is given,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * The ETag is the version of the collection, Not Modified is sent without reading the entries if it is current.
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @param request - the request, with the ETag of the list the client has in If-None-Match
    * @return a Response Entity with HTTP Status OK and a list of the Grade entries.
    */
   @GetMapping(value = {"", "/"})
-  public ResponseEntity<List<Grade>> getAllGrades () {
-    List<Grade> grades = gradeService.getAll();
-    return new ResponseEntity<>(grades, HttpStatus.OK);
+  public ResponseEntity<List<Grade>> getAllGrades (@RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "size", required = false) Integer size,
+                                                   WebRequest request) {
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, gradeService::getPage);
+    }
+    long version = gradeService.getCollectionVersion();
+    String etag = ETags.of(version);
+    if (ETags.isNotModified(request, etag)) {
+      return ETags.notModified(etag);
+    }
+    List<Grade> grades = gradeService.getAll(version);
+    return ResponseEntity.ok().eTag(etag).body(grades);
+  }
+
+  /**
+   * Streams all the Grade entries as newline delimited JSON, one entry per line,
+   * written as they are read from the DB. Selected with Accept: application/x-ndjson.
+   * @return a Response Entity with HTTP Status OK and the streamed Grade entries.
+   */
+  @GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamAllGrades () {
+    Set<Bookmark> bookmarks = clientBookmarks.getRequestBookmarks();
+    StreamingResponseBody body = out -> gradeService.streamAll(bookmarks, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Sends an HTTP Response Entity with only the requested fields of all the Grade entries,
+   * the other fields are neither read from the DB nor sent. The id is always sent.
+   * Sends only one page, ordered by id, if a cursor or a size is given, like the full entries.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param fields - the comma separated names of the fields
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @return a Response Entity with HTTP Status OK and a list of the projected Grade entries.
+   */
+  @GetMapping(value = {"", "/"}, params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<Map<String, Object>>> getAllGradesProjected (@RequestParam("fields") String fields,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                                   @RequestParam(value = "size", required = false) Integer size) {
+    Projection projection;
+    try {
+      projection = gradeService.getProjection(fields);
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, (after, pageSize) -> gradeService.getPage(projection, after, pageSize));
+    }
+    return new ResponseEntity<>(gradeService.getAll(projection), HttpStatus.OK);
   }
 
   /**
    * Sends HTTP Response Entity with a specific Grade entry.
    * Sends HTTP Status Not Found if there is no entry with the provided id.
+   * The ETag is the version of the entry, Not Modified is sent without reading the entry if it is current.
    * @param id the id of the specific Grade.
+   * @param request the request, with the ETag of the entry the client has in If-None-Match.
    * @return the Response Entity with a Status Code and a Body.
    */
   @GetMapping(value = "/{id}")
-  public ResponseEntity<Grade> getGradeById(@PathVariable("id") String id) {
+  public ResponseEntity<Grade> getGradeById(@PathVariable("id") String id, WebRequest request) {
+    Optional<String> unchanged = ETags.unchanged(request, () -> gradeService.getVersion(id));
+    if (unchanged.isPresent()) {
+      return ETags.notModified(unchanged.get());
+    }
     Grade grade;
     try
     {
@@ -53,12 +140,55 @@ public class GradeController {
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Grade not found.", e );
     }
+    return ResponseEntity.ok().eTag(ETags.of(grade.getVersion())).body(grade);
+  }
+
+  /**
+   * Sends HTTP Response Entity with only the requested fields of a specific Grade entry.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param id the id of the specific Grade.
+   * @param fields the comma separated names of the fields.
+   * @return the Response Entity with a Status Code and a body.
+   */
+  @GetMapping(value = "/{id}", params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<String, Object>> getGradeByIdProjected(@PathVariable("id") String id, @RequestParam("fields") String fields) {
+    Map<String, Object> grade;
+    try {
+      grade = gradeService.getOneById(id, gradeService.getProjection(fields));
+    } catch (GradeNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Grade not found.", e );
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
     return new ResponseEntity<>(grade, HttpStatus.OK);
   }
 
+  /**
+   * Sends HTTP Response Entity with the count, mean, lowest and highest value and the histogram
+   * of the grades of a student, read from their aggregate whatever the number of grades.
+   * @param studentId the id of the User the grades are given to.
+   * @return the Response Entity with HTTP Status OK and the statistics, with a count of 0 if there are no grades.
+   */
+  @GetMapping(value = "/statistics/students/{studentId}")
+  public ResponseEntity<GradeStatistics> getStudentStatistics (@PathVariable("studentId") String studentId) {
+    return new ResponseEntity<>(gradeService.getStudentStatistics(studentId), HttpStatus.OK);
+  }
+
+  /**
+   * Sends HTTP Response Entity with the statistics of the grades given in a subject, like the ones of a student.
+   * @param subjectId the id of the Subject.
+   * @return the Response Entity with HTTP Status OK and the statistics, with a count of 0 if there are no grades.
+   */
+  @GetMapping(value = "/statistics/subjects/{subjectId}")
+  public ResponseEntity<GradeStatistics> getSubjectStatistics (@PathVariable("subjectId") String subjectId) {
+    return new ResponseEntity<>(gradeService.getSubjectStatistics(subjectId), HttpStatus.OK);
+  }
+
   /**
    * Sends HTTP Response Entity with the Grade entry that has been created.
-   * Sends HTTP status Bad Request if the Grade to be posted is invalid.
+   * Sends HTTP status Bad Request if the Grade to be posted is invalid
+   * or if there is no student or no subject with the ids it is linked to.
    * @param grade the Grade to be added in the db.
    * @return the Response Entity with a Status Code and a body.
    */
@@ -69,6 +199,8 @@ public class GradeController {
       savedGrade = gradeService.add(grade);
     } catch (GradeInvalidValueException e) {
       throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Grade invalid value.", e );
+    } catch (GradeInvalidLinkException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Grade invalid student or subject.", e );
     }
     return new ResponseEntity<>(savedGrade, HttpStatus.CREATED);
   }
@@ -77,16 +209,20 @@ public class GradeController {
    * Sends HTTP Response Entity with the Grade entry that has been updated.
    * Sends HTTP status Not Found if the Grade cannot be found.
    * Sends HTTP status Bad Request if the Grade to be posted is invalid.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the Grade to be updated.
    * @param grade the Grade to be updated.
+   * @param ifMatch the ETag of the entry the client has read, missing to update it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @PatchMapping( value = "/{id}" )
-  public ResponseEntity<Grade> updateGrade (@PathVariable( "id" ) String id, @RequestBody Grade grade ) {
+  public ResponseEntity<Grade> updateGrade (@PathVariable( "id" ) String id, @RequestBody Grade grade, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     Grade updatedGrade;
     try
     {
-      updatedGrade = gradeService.update( id, grade );
+      updatedGrade = gradeService.update(id, grade, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "PATCH: Grade has been modified.", e );
     } catch ( GradeNotFoundException e )
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "PATCH: Grade not found.", e );
@@ -94,24 +230,76 @@ public class GradeController {
       throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Grade invalid value.", e );
     }
 
-    return new ResponseEntity<>( updatedGrade, HttpStatus.OK );
+    return ResponseEntity.ok().eTag(ETags.of(updatedGrade.getVersion())).body(updatedGrade);
   }
 
   /**
    * Sends HTTP Response Entity with the Grade entry that has been deleted.
    * Sends HTTP status Not Found if there is no entry of the provided id.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the Grade to be deleted
+   * @param ifMatch the ETag of the entry the client has read, missing to delete it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @DeleteMapping( value = "/{id}" )
-  public ResponseEntity<HttpStatus> deleteGrade( @PathVariable( "id" ) String id ) {
+  public ResponseEntity<HttpStatus> deleteGrade( @PathVariable( "id" ) String id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     try
     {
-      gradeService.delete( id );
+      gradeService.delete(id, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "DELETE: Grade has been modified.", e );
     } catch ( GradeNotFoundException e )
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "DELETE: Grade not found.", e );
     }
     return new ResponseEntity<>( HttpStatus.OK );
   }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Grade entry to be created.
+   * Invalid entries are reported in their result and do not prevent the others from being created.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param grades the Grade entries to be added in the db.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PostMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> addGrades (@RequestBody List<Grade> grades) {
+    try {
+      return new ResponseEntity<>(gradeService.addAll(grades), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Grade entry to be updated.
+   * Invalid or missing entries are reported in their result and do not prevent the others from being updated.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param grades the Grade entries to be updated, each with its id.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PatchMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> updateGrades (@RequestBody List<Grade> grades) {
+    try {
+      return new ResponseEntity<>(gradeService.updateAll(grades), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Grade entry to be deleted.
+   * Missing entries are reported in their result.
+   * Sends HTTP status Bad Request if there are more ids than allowed.
+   * @param ids the ids of the Grade entries to be deleted.
+   * @return the Response Entity with a Status Code and the result of every id.
+   */
+  @DeleteMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> deleteGrades (@RequestBody List<String> ids) {
+    try {
+      return new ResponseEntity<>(gradeService.deleteAll(ids), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "DELETE: Too many ids.", e );
+    }
+  }
 }
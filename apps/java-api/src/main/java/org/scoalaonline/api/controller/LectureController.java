@@ -1,57 +1,164 @@
 package org.scoalaonline.api.controller;
 
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
 import org.scoalaonline.api.exception.lecture.LectureInvalidTitleException;
 import org.scoalaonline.api.exception.lecture.LectureNotFoundException;
+import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.scoalaonline.api.service.LectureService;
+import org.scoalaonline.api.repository.ClientBookmarks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Set;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Class for the Lecture controller. Contains the following methods:
- * GET:	"/lectures"	retrieves all the entries;
- * GET:	"/lectures/{id}"	retrieves the entry with the provided id;
+ * GET:	"/lectures"	retrieves all the entries, streamed as NDJSON if requested, or only the given fields, Not Modified if the ETag is current;
+ * GET:	"/lectures/{id}"	retrieves the entry with the provided id, or only the given fields, Not Modified if the ETag is current;
  * POST: "/lectures"	creates a new entry;
  * PATCH:	"/lectures/{id}	edits the entry with the provided id;
- * DELETE:	"/lectures/{id}	deletes the entry with the provided id.
+ * DELETE:	"/lectures/{id}	deletes the entry with the provided id;
+ * POST:	"/lectures/{id}/materials/{materialId}"	adds a lecture material to the entry with the provided id;
+ * DELETE:	"/lectures/{id}/materials/{materialId}"	removes a lecture material from the entry with the provided id;
+ * POST:	"/lectures/bulk"	creates many entries in batches;
+ * PATCH:	"/lectures/bulk"	edits many entries in batches;
+ * DELETE:	"/lectures/bulk"	deletes many entries in batches.
  */
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {Pagination.NEXT_CURSOR_HEADER, ClientBookmarks.BOOKMARKS_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequestMapping("/lectures")
 public class LectureController {
   @Autowired
   LectureService lectureService;
 
+  @Autowired
+  Pagination pagination;
+
+  @Autowired
+  ClientBookmarks clientBookmarks;
+
   /**
    * Sends HTTP status Response Entity with all the Lecture entries.
+   * Sends only one page, ordered by id, if a cursor or a size is given,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * The ETag is the version of the collection, Not Modified is sent without reading the entries if it is current.
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @param request - the request, with the ETag of the list the client has in If-None-Match
    * @return a Response Entity with HTTP Status OK and a list of the Lecture entries.
    */
   @GetMapping(value = {"", "/"})
-  public ResponseEntity<List<Lecture>> getAllLectures () {
-    List<Lecture> lectures = lectureService.getAll();
-    return new ResponseEntity<>(lectures, HttpStatus.OK);
+  public ResponseEntity<List<Lecture>> getAllLectures (@RequestParam(value = "cursor", required = false) String cursor,
+                                                       @RequestParam(value = "size", required = false) Integer size,
+                                                       WebRequest request) {
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, lectureService::getPage);
+    }
+    long version = lectureService.getCollectionVersion();
+    String etag = ETags.of(version);
+    if (ETags.isNotModified(request, etag)) {
+      return ETags.notModified(etag);
+    }
+    List<Lecture> lectures = lectureService.getAll(version);
+    return ResponseEntity.ok().eTag(etag).body(lectures);
+  }
+
+  /**
+   * Streams all the Lecture entries as newline delimited JSON, one entry per line,
+   * written as they are read from the DB. Selected with Accept: application/x-ndjson.
+   * @return a Response Entity with HTTP Status OK and the streamed Lecture entries.
+   */
+  @GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamAllLectures () {
+    Set<Bookmark> bookmarks = clientBookmarks.getRequestBookmarks();
+    StreamingResponseBody body = out -> lectureService.streamAll(bookmarks, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Sends an HTTP Response Entity with only the requested fields of all the Lecture entries,
+   * the other fields are neither read from the DB nor sent. The id is always sent.
+   * Sends only one page, ordered by id, if a cursor or a size is given, like the full entries.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param fields - the comma separated names of the fields
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @return a Response Entity with HTTP Status OK and a list of the projected Lecture entries.
+   */
+  @GetMapping(value = {"", "/"}, params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<Map<String, Object>>> getAllLecturesProjected (@RequestParam("fields") String fields,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                                   @RequestParam(value = "size", required = false) Integer size) {
+    Projection projection;
+    try {
+      projection = lectureService.getProjection(fields);
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, (after, pageSize) -> lectureService.getPage(projection, after, pageSize));
+    }
+    return new ResponseEntity<>(lectureService.getAll(projection), HttpStatus.OK);
   }
 
   /**
    * Sends HTTP Response Entity with a specific Lecture entry.
    * Sends HTTP status not found if there is no entry with the provided id.
+   * The ETag is the version of the entry, Not Modified is sent without reading the entry if it is current.
    * @param id the id of the specific Lecture.
+   * @param request the request, with the ETag of the entry the client has in If-None-Match.
    * @return the Response Entity with a Status Code and a body.
    */
   @GetMapping(value="/{id}")
-  public ResponseEntity<Lecture> getLectureById(@PathVariable("id") String id) {
+  public ResponseEntity<Lecture> getLectureById(@PathVariable("id") String id, WebRequest request) {
+    Optional<String> unchanged = ETags.unchanged(request, () -> lectureService.getVersion(id));
+    if (unchanged.isPresent()) {
+      return ETags.notModified(unchanged.get());
+    }
     Lecture lecture;
     try {
       lecture = lectureService.getOneById(id);
     } catch (LectureNotFoundException e) {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "GET: Lecture not found.", e);
     }
+    return ResponseEntity.ok().eTag(ETags.of(lecture.getVersion())).body(lecture);
+  }
+
+  /**
+   * Sends HTTP Response Entity with only the requested fields of a specific Lecture entry.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param id the id of the specific Lecture.
+   * @param fields the comma separated names of the fields.
+   * @return the Response Entity with a Status Code and a body.
+   */
+  @GetMapping(value = "/{id}", params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<String, Object>> getLectureByIdProjected(@PathVariable("id") String id, @RequestParam("fields") String fields) {
+    Map<String, Object> lecture;
+    try {
+      lecture = lectureService.getOneById(id, lectureService.getProjection(fields));
+    } catch (LectureNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Lecture not found.", e );
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
     return new ResponseEntity<>(lecture, HttpStatus.OK);
   }
 
@@ -76,39 +183,138 @@ public class LectureController {
    * Sends HTTP Response Entity with the Lecture entry that has been updated.
    * Sends HTTP status Not Found if the Lecture cannot be found.
    * Sends HTTP status Bad Request if the Lecture to be posted is invalid.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id - the id of the Lecture to be updated.
    * @param lecture - the Lecture to be updated.
+   * @param ifMatch the ETag of the entry the client has read, missing to update it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @PatchMapping(value = "/{id}")
-  public ResponseEntity<Lecture> updateLecture (@PathVariable ("id") String id, @RequestBody Lecture lecture) {
+  public ResponseEntity<Lecture> updateLecture (@PathVariable ("id") String id, @RequestBody Lecture lecture, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
     Lecture updatedLecture;
     try {
-      updatedLecture = lectureService.update(id, lecture);
+      updatedLecture = lectureService.update(id, lecture, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "PATCH: Lecture has been modified.", e);
     } catch (LectureNotFoundException e) {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "PATCH: Lecture not found.", e);
     } catch (LectureInvalidTitleException e) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "PATCH: Lecture invalid title.", e);
     }
 
-    return new ResponseEntity<>(updatedLecture, HttpStatus.OK);
+    return ResponseEntity.ok().eTag(ETags.of(updatedLecture.getVersion())).body(updatedLecture);
   }
 
   /**
    * Sends HTTP Response Entity with the Lecture entry that has been deleted.
    * Sends HTTP status Not Found if there is no entry of the provided id.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the Lecture to be deleted.
+   * @param ifMatch the ETag of the entry the client has read, missing to delete it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @DeleteMapping(value = "/{id}")
-  public ResponseEntity<HttpStatus> deleteLecture (@PathVariable("id") String id) {
+  public ResponseEntity<HttpStatus> deleteLecture (@PathVariable("id") String id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    try {
+      lectureService.delete(id, ETags.expectedVersion(ifMatch));
+    }
+    catch (VersionMismatchException e) {
+      throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "DELETE: Lecture has been modified.", e);
+    }
+    catch (LectureNotFoundException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "DELETE: Lecture not found.", e);
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  /**
+   * Adds the LectureMaterial entry with the provided id to the materials of a specific Lecture entry.
+   * Sends HTTP status Not Found if there is no Lecture or no LectureMaterial with the provided ids.
+   * @param id the id of the Lecture.
+   * @param materialId the id of the LectureMaterial to be added.
+   * @return the Response Entity with a Status Code.
+   */
+  @PostMapping(value = "/{id}/materials/{materialId}")
+  public ResponseEntity<HttpStatus> addMaterialToLecture (@PathVariable("id") String id, @PathVariable("materialId") String materialId) {
     try {
-      lectureService.delete(id);
+      lectureService.addMaterial(id, materialId);
+    }
+    catch (LectureNotFoundException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "POST: Lecture not found.", e);
+    }
+    catch (LectureMaterialNotFoundException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "POST: Lecture Material not found.", e);
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  /**
+   * Removes the LectureMaterial entry with the provided id from the materials of a specific Lecture entry,
+   * the LectureMaterial entry itself is kept.
+   * Sends HTTP status Not Found if there is no Lecture with the provided id or the LectureMaterial is not one of its materials.
+   * @param id the id of the Lecture.
+   * @param materialId the id of the LectureMaterial to be removed.
+   * @return the Response Entity with a Status Code.
+   */
+  @DeleteMapping(value = "/{id}/materials/{materialId}")
+  public ResponseEntity<HttpStatus> removeMaterialFromLecture (@PathVariable("id") String id, @PathVariable("materialId") String materialId) {
+    try {
+      lectureService.removeMaterial(id, materialId);
     }
     catch (LectureNotFoundException e) {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "DELETE: Lecture not found.", e);
     }
+    catch (LectureMaterialNotFoundException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "DELETE: Lecture Material not found.", e);
+    }
     return new ResponseEntity<>(HttpStatus.OK);
   }
 
+  /**
+   * Sends HTTP Response Entity with the result of every Lecture entry to be created.
+   * Invalid entries are reported in their result and do not prevent the others from being created.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param lectures the Lecture entries to be added in the db.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PostMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> addLectures (@RequestBody List<Lecture> lectures) {
+    try {
+      return new ResponseEntity<>(lectureService.addAll(lectures), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Lecture entry to be updated.
+   * Invalid or missing entries are reported in their result and do not prevent the others from being updated.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param lectures the Lecture entries to be updated, each with its id.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PatchMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> updateLectures (@RequestBody List<Lecture> lectures) {
+    try {
+      return new ResponseEntity<>(lectureService.updateAll(lectures), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Lecture entry to be deleted.
+   * Missing entries are reported in their result.
+   * Sends HTTP status Bad Request if there are more ids than allowed.
+   * @param ids the ids of the Lecture entries to be deleted.
+   * @return the Response Entity with a Status Code and the result of every id.
+   */
+  @DeleteMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> deleteLectures (@RequestBody List<String> ids) {
+    try {
+      return new ResponseEntity<>(lectureService.deleteAll(ids), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "DELETE: Too many ids.", e );
+    }
+  }
 }
@@ -1,50 +1,161 @@
 package org.scoalaonline.api.controller;
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.LectureMaterialSummary;
+import org.scoalaonline.api.DTO.UploadStatus;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialInvalidDocumentException;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.upload.UploadInvalidHashException;
+import org.scoalaonline.api.exception.upload.UploadInvalidOffsetException;
+import org.scoalaonline.api.exception.upload.UploadNotFoundException;
+import org.scoalaonline.api.exception.upload.UploadTooLargeException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.LectureMaterial;
+import org.scoalaonline.api.service.BlobStore;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.scoalaonline.api.service.LectureMaterialService;
+import org.scoalaonline.api.service.UploadStore;
+import org.scoalaonline.api.repository.ClientBookmarks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Set;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
-  GET:	"/lecture-materials"	retrieves all the entries
-  GET:	"/lecture-materials/{id}"	retrieves the entry with the provided id
+  GET:	"/lecture-materials"	retrieves the summaries of all the entries, without their documents, streamed as NDJSON if requested, or only the given fields, Not Modified if the ETag is current
+  GET:	"/lecture-materials/{id}"	retrieves the entry with the provided id without its document, or only the given fields, Not Modified if the ETag is current
+  GET:	"/lecture-materials/{id}/document"	retrieves the document of the entry with the provided id, or a range of it, straight from its file
   POST: "/lecture-materials"	creates a new entry
+  POST:	"/lecture-materials/uploads"	starts a chunked upload of a document
+  GET:	"/lecture-materials/uploads/{uploadId}"	retrieves the offset a chunked upload resumes from
+  PATCH:	"/lecture-materials/uploads/{uploadId}"	appends a chunk to a chunked upload
+  POST:	"/lecture-materials/uploads/{uploadId}/complete"	creates a new entry with the document of a chunked upload
+  DELETE:	"/lecture-materials/uploads/{uploadId}"	cancels a chunked upload
   PATCH:	"/lecture-materials/{id}	edits the entry with the provided id
   DELETE:	"/lecture-materials/{id}	deletes the entry with the provided id
+  POST:	"/lecture-materials/bulk"	creates many entries in batches
+  PATCH:	"/lecture-materials/bulk"	edits many entries in batches
+  DELETE:	"/lecture-materials/bulk"	deletes many entries in batches
  */
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {Pagination.NEXT_CURSOR_HEADER, ClientBookmarks.BOOKMARKS_HEADER, HttpHeaders.ETAG,
+  LectureMaterialController.UPLOAD_OFFSET_HEADER, HttpHeaders.LOCATION})
 @RestController
 @RequestMapping("/lecture-materials")
 public class LectureMaterialController {
+  public static final String UPLOAD_OFFSET_HEADER = "Upload-Offset";
+  private static final String DOCUMENT_CONTENT_TYPE = "text/plain;charset=UTF-8";
+
   @Autowired
   LectureMaterialService lectureMaterialService;
 
+  @Autowired
+  UploadStore uploadStore;
+
+  @Autowired
+  Pagination pagination;
+
+  @Autowired
+  ClientBookmarks clientBookmarks;
+
   /**
-   * Sends an HTTP Response Entity with all the lecture material entries
+   * Sends an HTTP Response Entity with the summaries of all the lecture material entries,
+   * with the hash, size and excerpt of their documents instead of the documents themselves.
+   * Sends only one page, ordered by id, if a cursor or a size is given,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * The ETag is the version of the collection, Not Modified is sent without reading the entries if it is current.
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @param request - the request, with the ETag of the list the client has in If-None-Match
    * @return a Response Entity
-   *         with HTTP Status OK and a list of the lecture material entries
+   *         with HTTP Status OK and a list of the lecture material summaries
    */
   @GetMapping(value = {"", "/"})
-  public ResponseEntity<List<LectureMaterial>> getAllLectureMaterials () {
-    List<LectureMaterial> lectureMaterials = lectureMaterialService.getAll();
-    return new ResponseEntity<>(lectureMaterials, HttpStatus.OK);
+  public ResponseEntity<List<LectureMaterialSummary>> getAllLectureMaterials (@RequestParam(value = "cursor", required = false) String cursor,
+                                                                              @RequestParam(value = "size", required = false) Integer size,
+                                                                              WebRequest request) {
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, lectureMaterialService::getSummaryPage);
+    }
+    long version = lectureMaterialService.getCollectionVersion();
+    String etag = ETags.of(version);
+    if (ETags.isNotModified(request, etag)) {
+      return ETags.notModified(etag);
+    }
+    List<LectureMaterialSummary> lectureMaterials = lectureMaterialService.getSummaries(version);
+    return ResponseEntity.ok().eTag(etag).body(lectureMaterials);
+  }
+
+  /**
+   * Streams all the lecture material entries as newline delimited JSON, one entry per line,
+   * written as they are read from the DB. Selected with Accept: application/x-ndjson.
+   * @return a Response Entity with HTTP Status OK and the streamed lecture material entries.
+   */
+  @GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamAllLectureMaterials () {
+    Set<Bookmark> bookmarks = clientBookmarks.getRequestBookmarks();
+    StreamingResponseBody body = out -> lectureMaterialService.streamAll(bookmarks, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Sends an HTTP Response Entity with only the requested fields of all the Lecture Material entries,
+   * the other fields are neither read from the DB nor sent. The id is always sent.
+   * Sends only one page, ordered by id, if a cursor or a size is given, like the full entries.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param fields - the comma separated names of the fields
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @return a Response Entity with HTTP Status OK and a list of the projected Lecture Material entries.
+   */
+  @GetMapping(value = {"", "/"}, params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<Map<String, Object>>> getAllLectureMaterialsProjected (@RequestParam("fields") String fields,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                                   @RequestParam(value = "size", required = false) Integer size) {
+    Projection projection;
+    try {
+      projection = lectureMaterialService.getProjection(fields);
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, (after, pageSize) -> lectureMaterialService.getPage(projection, after, pageSize));
+    }
+    return new ResponseEntity<>(lectureMaterialService.getAll(projection), HttpStatus.OK);
   }
 
   /**
    * Sends an HTTP Response Entity with a specific lecture material entry and
    * Status OK or HTTP Status Not Found if there is no entry with the provided id
+   * The entry is sent with the hash, size and excerpt of its document, the document itself is sent at "/{id}/document".
+   * The ETag is the version of the entry, Not Modified is sent without reading the entry if it is current.
    * @param id
+   * @param request the request, with the ETag of the entry the client has in If-None-Match.
    * @return the Response Entity with a Status Code and a Body
    */
   @GetMapping(value = "/{id}")
-  public ResponseEntity<LectureMaterial> getLectureMaterialById(@PathVariable("id") String id) {
+  public ResponseEntity<LectureMaterial> getLectureMaterialById(@PathVariable("id") String id, WebRequest request) {
+    Optional<String> unchanged = ETags.unchanged(request, () -> lectureMaterialService.getVersion(id));
+    if (unchanged.isPresent()) {
+      return ETags.notModified(unchanged.get());
+    }
     LectureMaterial lectureMaterial;
     try
     {
@@ -53,6 +164,48 @@ public class LectureMaterialController {
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Lecture Material Not Found", e );
     }
+    return ResponseEntity.ok().eTag(ETags.of(lectureMaterial.getVersion())).body(lectureMaterial);
+  }
+
+  /**
+   * Sends the document of a specific Lecture Material entry as plain text, straight from its file in the BlobStore.
+   * Sends HTTP status Partial Content with only the requested bytes if a single range is requested,
+   * and Not Modified if the client already has the document, its ETag being the hash of the document.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * @param id the id of the specific Lecture Material.
+   * @param request the request, with the Range, If-Range and If-None-Match headers.
+   * @param response the response the document is written to.
+   * @throws IOException if the document cannot be read or sent.
+   */
+  @GetMapping(value = "/{id}/document")
+  public void getLectureMaterialDocument(@PathVariable("id") String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    BlobStore.Blob document;
+    try {
+      document = lectureMaterialService.getDocument(id);
+    } catch (LectureMaterialNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Lecture Material Not Found", e );
+    }
+    BlobDownloads.send(document, DOCUMENT_CONTENT_TYPE, request, response);
+  }
+
+  /**
+   * Sends HTTP Response Entity with only the requested fields of a specific Lecture Material entry.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param id the id of the specific Lecture Material.
+   * @param fields the comma separated names of the fields.
+   * @return the Response Entity with a Status Code and a body.
+   */
+  @GetMapping(value = "/{id}", params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<String, Object>> getLectureMaterialByIdProjected(@PathVariable("id") String id, @RequestParam("fields") String fields) {
+    Map<String, Object> lectureMaterial;
+    try {
+      lectureMaterial = lectureMaterialService.getOneById(id, lectureMaterialService.getProjection(fields));
+    } catch (LectureMaterialNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Lecture Material Not Found", e );
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
     return new ResponseEntity<>(lectureMaterial, HttpStatus.OK);
   }
 
@@ -73,20 +226,132 @@ public class LectureMaterialController {
     return new ResponseEntity<>(savedLectureMaterial, HttpStatus.CREATED);
   }
 
+  /**
+   * Starts a chunked upload of a document, to be sent in several requests instead of a JSON body.
+   * Sends HTTP status Created with the id of the upload, its URI in the Location header
+   * and the offset of its first chunk in the Upload-Offset header.
+   * @return the Response Entity with a Status Code and the state of the upload.
+   */
+  @PostMapping(value = "/uploads")
+  public ResponseEntity<UploadStatus> createUpload() {
+    String uploadId = uploadStore.create();
+    return ResponseEntity.created(URI.create("/lecture-materials/uploads/" + uploadId))
+      .header(UPLOAD_OFFSET_HEADER, "0")
+      .body(new UploadStatus(uploadId, 0));
+  }
+
+  /**
+   * Sends HTTP Response Entity with the number of bytes received by a chunked upload, where it resumes from,
+   * also in the Upload-Offset header.
+   * Sends HTTP status Not Found if there is no upload with the provided id.
+   * @param uploadId the id of the upload.
+   * @return the Response Entity with a Status Code and the state of the upload.
+   */
+  @GetMapping(value = "/uploads/{uploadId}")
+  public ResponseEntity<UploadStatus> getUpload(@PathVariable("uploadId") String uploadId) {
+    long offset;
+    try {
+      offset = uploadStore.getOffset(uploadId);
+    } catch (UploadNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Upload Not Found", e );
+    }
+    return uploadStatus(HttpStatus.OK, uploadId, offset);
+  }
+
+  /**
+   * Appends the body of the request to a chunked upload, streamed to disk as it is received.
+   * The chunk has to start where the upload has ended, the Upload-Offset header of the request.
+   * What has been received is kept if the request fails, the upload then resumes from its new offset.
+   * Sends HTTP Response Entity with the offset of the next chunk.
+   * Sends HTTP status Conflict with the offset of the upload if the chunk does not start at its end
+   * or another chunk is being written.
+   * Sends HTTP status Payload Too Large if the upload would exceed the maximum size, the chunk is then discarded.
+   * Sends HTTP status Not Found if there is no upload with the provided id.
+   * @param uploadId the id of the upload.
+   * @param offset the offset the chunk starts at.
+   * @param body the content of the chunk.
+   * @return the Response Entity with a Status Code and the state of the upload.
+   * @throws IOException if the chunk cannot be received or written.
+   */
+  @PatchMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<UploadStatus> appendUpload(@PathVariable("uploadId") String uploadId,
+                                                   @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+                                                   InputStream body) throws IOException {
+    try {
+      return uploadStatus(HttpStatus.OK, uploadId, uploadStore.append(uploadId, offset, body));
+    } catch (UploadInvalidOffsetException e) {
+      return uploadStatus(HttpStatus.CONFLICT, uploadId, e.getOffset());
+    } catch (UploadTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.PAYLOAD_TOO_LARGE, "PATCH: Upload too large.", e );
+    } catch (UploadNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "PATCH: Upload Not Found", e );
+    }
+  }
+
+  /**
+   * Creates a new LectureMaterial entry with the document received by a chunked upload, which is then removed.
+   * The entry is sent without its document, which is only read from its own endpoint.
+   * Sends HTTP status Bad Request if the document does not have the given hash, the upload is then kept,
+   * or if the document is empty or is not UTF-8 text.
+   * Sends HTTP status Conflict with the offset of the upload if a chunk is being written.
+   * Sends HTTP status Not Found if there is no upload with the provided id.
+   * @param uploadId the id of the upload.
+   * @param sha256 the hex SHA-256 hash of the whole document, missing not to check it.
+   * @return the Response Entity with a Status Code and a body.
+   * @throws IOException if the upload cannot be read or stored.
+   */
+  @PostMapping(value = "/uploads/{uploadId}/complete")
+  public ResponseEntity<LectureMaterial> completeUpload(@PathVariable("uploadId") String uploadId,
+                                                        @RequestParam(value = "sha256", required = false) String sha256) throws IOException {
+    LectureMaterial savedLectureMaterial;
+    try {
+      savedLectureMaterial = lectureMaterialService.addUpload(uploadId, sha256);
+    } catch (UploadInvalidOffsetException e) {
+      throw new ResponseStatusException( HttpStatus.CONFLICT, "POST: Upload is being written.", e );
+    } catch (UploadInvalidHashException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Upload Invalid Hash", e );
+    } catch (LectureMaterialInvalidDocumentException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Lecture Material Invalid Document", e );
+    } catch (UploadNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "POST: Upload Not Found", e );
+    }
+    return new ResponseEntity<>(savedLectureMaterial, HttpStatus.CREATED);
+  }
+
+  /**
+   * Cancels a chunked upload and removes what has been received.
+   * Sends HTTP status Not Found if there is no upload with the provided id.
+   * @param uploadId the id of the upload.
+   * @return a Response Entity with Status OK
+   */
+  @DeleteMapping(value = "/uploads/{uploadId}")
+  public ResponseEntity<HttpStatus> deleteUpload(@PathVariable("uploadId") String uploadId) {
+    try {
+      uploadStore.delete(uploadId);
+    } catch (UploadNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "DELETE: Upload Not Found", e );
+    }
+    return new ResponseEntity<>( HttpStatus.OK );
+  }
+
   /**
    * Sends HTTP status Response Entity with the LectureMaterial entry that has been updated.
    * Sends HTTP status Not Found if the LectureMaterial cannot be found.
    * Sends HTTP status Invalid Value if the LectureMaterial to be posted is invalid.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the LectureMaterial to be updated.
    * @param lectureMaterial the LectureMaterial to be updated.
+   * @param ifMatch the ETag of the entry the client has read, missing to update it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @PatchMapping( value = "/{id}" )
-  public ResponseEntity<LectureMaterial> updateLectureMaterial( @PathVariable( "id" ) String id, @RequestBody LectureMaterial lectureMaterial ) {
+  public ResponseEntity<LectureMaterial> updateLectureMaterial( @PathVariable( "id" ) String id, @RequestBody LectureMaterial lectureMaterial, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     LectureMaterial updatedLectureMaterial;
     try
     {
-      updatedLectureMaterial = lectureMaterialService.update( id, lectureMaterial );
+      updatedLectureMaterial = lectureMaterialService.update(id, lectureMaterial, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "PATCH: Lecture Material has been modified.", e );
     } catch ( LectureMaterialNotFoundException e )
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "PATCH: Lecture Material Not Found", e );
@@ -94,20 +359,24 @@ public class LectureMaterialController {
       throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Lecture Material Invalid Document", e );
     }
 
-    return new ResponseEntity<>( updatedLectureMaterial, HttpStatus.OK );
+    return ResponseEntity.ok().eTag(ETags.of(updatedLectureMaterial.getVersion())).body(updatedLectureMaterial);
   }
 
   /**
    * Deletes a lecture material entry and sends an HTTP Response Entity
    * with the Status OK or Not Found if there is no entry with the provided id
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id
+   * @param ifMatch the ETag of the entry the client has read, missing to delete it at any version.
    * @return a Response Entity with Status OK
    */
   @DeleteMapping( value = "/{id}" )
-  public ResponseEntity<HttpStatus> deleteLectureMaterial( @PathVariable( "id" ) String id ) {
+  public ResponseEntity<HttpStatus> deleteLectureMaterial( @PathVariable( "id" ) String id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     try
     {
-      lectureMaterialService.delete( id );
+      lectureMaterialService.delete(id, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "DELETE: Lecture Material has been modified.", e );
     } catch ( LectureMaterialNotFoundException e )
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "DELETE: Lecture Material Not Found", e );
@@ -115,4 +384,57 @@ public class LectureMaterialController {
     return new ResponseEntity<>( HttpStatus.OK );
   }
 
+  /**
+   * Sends HTTP Response Entity with the result of every Lecture Material entry to be created.
+   * Invalid entries are reported in their result and do not prevent the others from being created.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param lectureMaterials the Lecture Material entries to be added in the db.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PostMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> addLectureMaterials (@RequestBody List<LectureMaterial> lectureMaterials) {
+    try {
+      return new ResponseEntity<>(lectureMaterialService.addAll(lectureMaterials), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Lecture Material entry to be updated.
+   * Invalid or missing entries are reported in their result and do not prevent the others from being updated.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param lectureMaterials the Lecture Material entries to be updated, each with its id.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PatchMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> updateLectureMaterials (@RequestBody List<LectureMaterial> lectureMaterials) {
+    try {
+      return new ResponseEntity<>(lectureMaterialService.updateAll(lectureMaterials), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Lecture Material entry to be deleted.
+   * Missing entries are reported in their result.
+   * Sends HTTP status Bad Request if there are more ids than allowed.
+   * @param ids the ids of the Lecture Material entries to be deleted.
+   * @return the Response Entity with a Status Code and the result of every id.
+   */
+  @DeleteMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> deleteLectureMaterials (@RequestBody List<String> ids) {
+    try {
+      return new ResponseEntity<>(lectureMaterialService.deleteAll(ids), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "DELETE: Too many ids.", e );
+    }
+  }
+
+  private static ResponseEntity<UploadStatus> uploadStatus(HttpStatus status, String uploadId, long offset) {
+    return ResponseEntity.status(status)
+      .header(UPLOAD_OFFSET_HEADER, String.valueOf(offset))
+      .body(new UploadStatus(uploadId, offset));
+  }
 }
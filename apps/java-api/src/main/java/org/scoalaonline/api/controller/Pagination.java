@@ -0,0 +1,70 @@
+package org.scoalaonline.api.controller;
+
+import org.scoalaonline.api.DTO.CursorPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Serves the cursor paginated variant of the list endpoints.
+ * The body stays a plain list of entries, the cursor of the next page
+ * is sent in the X-Next-Cursor header and is missing on the last page.
+ */
+@Component
+public class Pagination {
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  private final int defaultPageSize;
+  private final int maxPageSize;
+
+  public Pagination(@Value("${pagination.default-page-size:100}") int defaultPageSize,
+                    @Value("${pagination.max-page-size:1000}") int maxPageSize) {
+    this.defaultPageSize = defaultPageSize;
+    this.maxPageSize = maxPageSize;
+  }
+
+  /**
+   * Checks if the request asked for a page instead of the whole list.
+   * @param cursor - the cursor request parameter
+   * @param size - the size request parameter
+   * @return true if any of the two parameters is present
+   */
+  public boolean isRequested(String cursor, Integer size) {
+    return cursor != null || size != null;
+  }
+
+  /**
+   * Sends HTTP Response Entity with one page of entries loaded by the given service method.
+   * Sends HTTP status Bad Request if the cursor is malformed or the size is not positive.
+   * Sizes above the configured maximum are lowered to the maximum.
+   * @param cursor - the cursor of the page, null for the first page
+   * @param size - the size of the page, null for the configured default
+   * @param loader - loads the page given the id to start after and the size
+   * @return a Response Entity with HTTP Status OK and the entries of the page.
+   */
+  public <T> ResponseEntity<List<T>> getPage(String cursor, Integer size, BiFunction<String, Integer, CursorPage<T>> loader) {
+    int pageSize = size == null ? defaultPageSize : size;
+    if (pageSize < 1) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Page size has to be a positive integer." );
+    }
+    String after;
+    try {
+      after = CursorPage.decode(cursor);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid cursor.", e );
+    }
+
+    CursorPage<T> page = loader.apply(after, Math.min(pageSize, maxPageSize));
+    HttpHeaders headers = new HttpHeaders();
+    if (page.getNextCursor() != null) {
+      headers.set(NEXT_CURSOR_HEADER, page.getNextCursor());
+    }
+    return new ResponseEntity<>(page.getItems(), headers, HttpStatus.OK);
+  }
+}
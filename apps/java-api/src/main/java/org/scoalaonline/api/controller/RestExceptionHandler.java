@@ -0,0 +1,66 @@
+package org.scoalaonline.api.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.exceptions.ClientException;
+import org.scoalaonline.api.exception.user.PasswordHashingRejectedException;
+import org.scoalaonline.api.repository.ClientBookmarks;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Translates the exceptions shared by several controllers into HTTP responses.
+ */
+@Slf4j
+@RestControllerAdvice
+public class RestExceptionHandler {
+
+  /**
+   * Sends HTTP status Service Unavailable with a Retry-After header
+   * when a password could not be hashed because the hashing pool is saturated.
+   * @param e the rejection
+   * @return the Response Entity with a Status Code and a Retry-After header.
+   */
+  @ExceptionHandler(PasswordHashingRejectedException.class)
+  public ResponseEntity<Void> handlePasswordHashingRejected(PasswordHashingRejectedException e) {
+    log.warn(e.getMessage());
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+      .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+      .build();
+  }
+
+  /**
+   * Sends HTTP status Conflict when an entry read by the request has been written by another one
+   * before it could be saved, the client can read it again and retry.
+   * @param e the failure to save the entry at the version it was read at
+   * @return the Response Entity with a Status Code
+   */
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public ResponseEntity<Void> handleOptimisticLockingFailure(OptimisticLockingFailureException e) {
+    log.warn("Concurrent write: {}", e.getMessage());
+    return ResponseEntity.status(HttpStatus.CONFLICT).build();
+  }
+
+  /**
+   * Sends HTTP status Bad Request when a transaction could not be started
+   * because the bookmarks sent by the client were rejected by the DB.
+   * @param e the failure to start the transaction
+   * @return the Response Entity with a Status Code
+   * @throws TransactionSystemException if the bookmarks were not the cause
+   */
+  @ExceptionHandler(TransactionSystemException.class)
+  public ResponseEntity<Void> handleTransactionSystem(TransactionSystemException e) {
+    Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+    if (cause instanceof ClientException
+      && ((ClientException) cause).code().startsWith("Neo.ClientError.Transaction.InvalidBookmark")) {
+      log.warn("Invalid {} header: {}", ClientBookmarks.BOOKMARKS_HEADER, cause.getMessage());
+      return ResponseEntity.badRequest().build();
+    }
+    throw e;
+  }
+}
@@ -1,41 +1,99 @@
 package org.scoalaonline.api.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.neo4j.driver.Bookmark;
 import org.scoalaonline.api.exception.role.RoleInvalidNameException;
 import org.scoalaonline.api.exception.role.RoleNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Role;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.scoalaonline.api.service.RoleService;
+import org.scoalaonline.api.repository.ClientBookmarks;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Set;
 import java.util.List;
+import java.util.Map;
 
 /**
- GET:	"/roles"	retrieves all the entries
- GET:	"/roles/{id}"	retrieves the entry with the provided id
+ GET:	"/roles"	retrieves all the entries, streamed as NDJSON if requested, or only the given fields
+ GET:	"/roles/{id}"	retrieves the entry with the provided id, or only the given fields
  POST: "/roles"	creates a new entry
  PATCH:	"/roles/{id}	edits the entry with the provided id
  DELETE:	"/roles/{id}	deletes the entry with the provided id
  */
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {Pagination.NEXT_CURSOR_HEADER, ClientBookmarks.BOOKMARKS_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/roles")
 public class RoleController {
   private final RoleService roleService;
+  private final Pagination pagination;
+  private final ClientBookmarks clientBookmarks;
 
   /**
    * Sends HTTP status Response Entity with all the Role entries.
+   * Sends only one page, ordered by id, if a cursor or a size is given,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
    * @return a Response Entity with HTTP Status OK and a list of the Role entries.
    */
   @GetMapping(value = {"", "/"})
-  public ResponseEntity<List<Role>> getAllRoles () {
+  public ResponseEntity<List<Role>> getAllRoles (@RequestParam(value = "cursor", required = false) String cursor,
+                                                 @RequestParam(value = "size", required = false) Integer size) {
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, roleService::getPage);
+    }
     List<Role> roles = roleService.getAll();
     return new ResponseEntity<>(roles, HttpStatus.OK);
   }
 
+  /**
+   * Streams all the Role entries as newline delimited JSON, one entry per line,
+   * written as they are read from the DB. Selected with Accept: application/x-ndjson.
+   * @return a Response Entity with HTTP Status OK and the streamed Role entries.
+   */
+  @GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamAllRoles () {
+    Set<Bookmark> bookmarks = clientBookmarks.getRequestBookmarks();
+    StreamingResponseBody body = out -> roleService.streamAll(bookmarks, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Sends an HTTP Response Entity with only the requested fields of all the Role entries,
+   * the other fields are neither read from the DB nor sent. The id is always sent.
+   * Sends only one page, ordered by id, if a cursor or a size is given, like the full entries.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param fields - the comma separated names of the fields
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @return a Response Entity with HTTP Status OK and a list of the projected Role entries.
+   */
+  @GetMapping(value = {"", "/"}, params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<Map<String, Object>>> getAllRolesProjected (@RequestParam("fields") String fields,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                                   @RequestParam(value = "size", required = false) Integer size) {
+    Projection projection;
+    try {
+      projection = roleService.getProjection(fields);
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, (after, pageSize) -> roleService.getPage(projection, after, pageSize));
+    }
+    return new ResponseEntity<>(roleService.getAll(projection), HttpStatus.OK);
+  }
+
   /**
    * Sends an HTTP Response Entity with a specific Role entry
    * Sends Status OK or Status Not Found if there is no entry with the provided id
@@ -55,6 +113,27 @@ public class RoleController {
     return new ResponseEntity<>(role, HttpStatus.OK);
   }
 
+  /**
+   * Sends HTTP Response Entity with only the requested fields of a specific Role entry.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param id the id of the specific Role.
+   * @param fields the comma separated names of the fields.
+   * @return the Response Entity with a Status Code and a body.
+   */
+  @GetMapping(value = "/{id}", params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<String, Object>> getRoleByIdProjected(@PathVariable("id") String id, @RequestParam("fields") String fields) {
+    Map<String, Object> role;
+    try {
+      role = roleService.getOneById(id, roleService.getProjection(fields));
+    } catch (RoleNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Role Not Found", e );
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    return new ResponseEntity<>(role, HttpStatus.OK);
+  }
+
   /**
    * Sends HTTP status Response Entity with the Role entry that has been created.
    * Sends HTTP status Invalid value if the Role to be posted is invalid.
@@ -76,16 +155,20 @@ public class RoleController {
    * Sends HTTP status Response Entity with the Role entry that has been updated.
    * Sends HTTP status Not Found if the Role cannot be found.
    * Sends HTTP status Invalid Value if the Role to be posted is invalid.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id - the id of the Role to be updated.
    * @param role the Role to be updated.
+   * @param ifMatch the ETag of the entry the client has read, missing to update it at any version.
    * @return the Response Entity with a Status Code and a body.
    */
   @PatchMapping( value = "/{id}" )
-  public ResponseEntity<Role> updateRole( @PathVariable( "id" ) String id, @RequestBody Role role ) {
+  public ResponseEntity<Role> updateRole( @PathVariable( "id" ) String id, @RequestBody Role role, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     Role updatedRole;
     try
     {
-      updatedRole = roleService.update( id, role );
+      updatedRole = roleService.update(id, role, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "PATCH: Role has been modified.", e );
     } catch ( RoleNotFoundException e )
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "PATCH: Role Not Found", e );
@@ -94,20 +177,24 @@ public class RoleController {
       throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Role Invalid Name", e );
     }
 
-    return new ResponseEntity<>( updatedRole, HttpStatus.OK );
+    return ResponseEntity.ok().eTag(ETags.of(updatedRole.getVersion())).body(updatedRole);
   }
 
   /**
    * Deletes a role entry and sends a Response Entity
    * with the Status OK or Not Found if there is no entry with the provided id
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id - the id of the Role to be deleted.
+   * @param ifMatch the ETag of the entry the client has read, missing to delete it at any version.
    * @return a Response Entity with a Status
    */
   @DeleteMapping( value = "/{id}" )
-  public ResponseEntity<HttpStatus> deleteRole( @PathVariable( "id" ) String id ) {
+  public ResponseEntity<HttpStatus> deleteRole( @PathVariable( "id" ) String id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     try
     {
-      roleService.delete( id );
+      roleService.delete(id, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "DELETE: Role has been modified.", e );
     } catch ( RoleNotFoundException e )
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "DELETE: Role Not Found", e );
@@ -0,0 +1,59 @@
+package org.scoalaonline.api.controller;
+
+import org.scoalaonline.api.DTO.SearchHit;
+import org.scoalaonline.api.exception.search.SearchInvalidQueryException;
+import org.scoalaonline.api.repository.ClientBookmarks;
+import org.scoalaonline.api.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Class for the Search controller. Contains the following methods:
+ * GET:	"/search"	retrieves one page of the Lecture, Subject and LectureMaterial entries matching the query, the best match first.
+ */
+@CrossOrigin(exposedHeaders = {Pagination.NEXT_CURSOR_HEADER, ClientBookmarks.BOOKMARKS_HEADER})
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+  @Autowired
+  SearchService searchService;
+
+  @Autowired
+  Pagination pagination;
+
+  /**
+   * Sends HTTP status Response Entity with one page of the entries matching the query,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * Sends HTTP status Bad Request if the query has no terms or the cursor is malformed.
+   * @param query - the words to search for
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @return a Response Entity with HTTP Status OK and a list of the hits.
+   */
+  @GetMapping(value = {"", "/"})
+  public ResponseEntity<List<SearchHit>> search (@RequestParam(value = "q", required = false) String query,
+                                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                                 @RequestParam(value = "size", required = false) Integer size) {
+    return pagination.getPage(cursor, size, (after, pageSize) -> {
+      int offset;
+      try {
+        offset = after == null ? 0 : Integer.parseInt(after);
+      } catch (NumberFormatException e) {
+        throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid cursor.", e );
+      }
+      if (offset < 0) {
+        throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid cursor." );
+      }
+      try {
+        return searchService.search(query, offset, pageSize);
+      } catch (SearchInvalidQueryException e) {
+        throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid query.", e );
+      }
+    });
+  }
+}
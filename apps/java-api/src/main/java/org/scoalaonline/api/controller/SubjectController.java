@@ -1,58 +1,168 @@
 package org.scoalaonline.api.controller;
 
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
+import org.scoalaonline.api.exception.lecture.LectureNotFoundException;
+import org.scoalaonline.api.exception.subject.SubjectInvalidDepthException;
 import org.scoalaonline.api.exception.subject.SubjectInvalidValueException;
 import org.scoalaonline.api.exception.subject.SubjectNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.service.CurriculumTreeReader;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.scoalaonline.api.service.SubjectService;
+import org.scoalaonline.api.repository.ClientBookmarks;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Set;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Class for the Subject controller. Contains the following methods:
- * GET:	"/subjects"	retrieves all the entries;
- * GET:	"/subjects/{id}"	retrieves the entry with the provided id;
+ * GET:	"/subjects"	retrieves all the entries, streamed as NDJSON if requested, or only the given fields, Not Modified if the ETag is current;
+ * GET:	"/subjects/{id}"	retrieves the entry with the provided id, or only the given fields, Not Modified if the ETag is current;
  * POST: "/subjects"	creates a new entry;
  * PATCH:	"/subjects/{id}	edits the entry with the provided id;
- * DELETE:	"/subjects/{id}	deletes the entry with the provided id.
+ * DELETE:	"/subjects/{id}	deletes the entry with the provided id;
+ * GET:	"/subjects/{id}/tree"	retrieves the entry with the provided id with its lectures and their materials;
+ * POST:	"/subjects/{id}/lectures/{lectureId}"	adds a lecture to the entry with the provided id;
+ * DELETE:	"/subjects/{id}/lectures/{lectureId}"	removes a lecture from the entry with the provided id;
+ * POST:	"/subjects/bulk"	creates many entries in batches;
+ * PATCH:	"/subjects/bulk"	edits many entries in batches;
+ * DELETE:	"/subjects/bulk"	deletes many entries in batches.
  */
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {Pagination.NEXT_CURSOR_HEADER, ClientBookmarks.BOOKMARKS_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequestMapping("/subjects")
 public class SubjectController {
   @Autowired
   SubjectService subjectService;
 
+  @Autowired
+  Pagination pagination;
+
+  @Autowired
+  ClientBookmarks clientBookmarks;
+
   /**
    * Sends HTTP status Response Entity with all the Subject entries.
+   * Sends only one page, ordered by id, if a cursor or a size is given,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * The ETag is the version of the collection, Not Modified is sent without reading the entries if it is current.
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @param request - the request, with the ETag of the list the client has in If-None-Match
    * @return a Response Entity with HTTP Status OK and a list of the Subject entries.
    */
   @GetMapping(value = {"", "/"})
-  public ResponseEntity<List<Subject>> getAllSubjects () {
-    List<Subject> subjects = subjectService.getAll();
-    return new ResponseEntity<>(subjects, HttpStatus.OK);
+  public ResponseEntity<List<Subject>> getAllSubjects (@RequestParam(value = "cursor", required = false) String cursor,
+                                                       @RequestParam(value = "size", required = false) Integer size,
+                                                       WebRequest request) {
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, subjectService::getPage);
+    }
+    long version = subjectService.getCollectionVersion();
+    String etag = ETags.of(version);
+    if (ETags.isNotModified(request, etag)) {
+      return ETags.notModified(etag);
+    }
+    List<Subject> subjects = subjectService.getAll(version);
+    return ResponseEntity.ok().eTag(etag).body(subjects);
+  }
+
+  /**
+   * Streams all the Subject entries as newline delimited JSON, one entry per line,
+   * written as they are read from the DB. Selected with Accept: application/x-ndjson.
+   * @return a Response Entity with HTTP Status OK and the streamed Subject entries.
+   */
+  @GetMapping(value = {"", "/"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamAllSubjects () {
+    Set<Bookmark> bookmarks = clientBookmarks.getRequestBookmarks();
+    StreamingResponseBody body = out -> subjectService.streamAll(bookmarks, out);
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Sends an HTTP Response Entity with only the requested fields of all the Subject entries,
+   * the other fields are neither read from the DB nor sent. The id is always sent.
+   * Sends only one page, ordered by id, if a cursor or a size is given, like the full entries.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param fields - the comma separated names of the fields
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @return a Response Entity with HTTP Status OK and a list of the projected Subject entries.
+   */
+  @GetMapping(value = {"", "/"}, params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<Map<String, Object>>> getAllSubjectsProjected (@RequestParam("fields") String fields,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                                   @RequestParam(value = "size", required = false) Integer size) {
+    Projection projection;
+    try {
+      projection = subjectService.getProjection(fields);
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, (after, pageSize) -> subjectService.getPage(projection, after, pageSize));
+    }
+    return new ResponseEntity<>(subjectService.getAll(projection), HttpStatus.OK);
   }
 
   /**
    * Sends HTTP Response Entity with a specific Subject entry.
    * Sends HTTP status Not Found if there is no entry with the provided id.
+   * The ETag is the version of the entry, Not Modified is sent without reading the entry if it is current.
    * @param id the id of the specific Subject.
+   * @param request the request, with the ETag of the entry the client has in If-None-Match.
    * @return the Response Entity with a Status Code and a body.
    */
   @GetMapping(value="/{id}")
-  public ResponseEntity<Subject> getSubjectById(@PathVariable("id") String id) {
+  public ResponseEntity<Subject> getSubjectById(@PathVariable("id") String id, WebRequest request) {
+    Optional<String> unchanged = ETags.unchanged(request, () -> subjectService.getVersion(id));
+    if (unchanged.isPresent()) {
+      return ETags.notModified(unchanged.get());
+    }
     Subject subject;
       try {
         subject=subjectService.getOneById(id);
       } catch (SubjectNotFoundException e) {
         throw new ResponseStatusException(HttpStatus.NOT_FOUND, "GET: Subject Not Found", e);
       }
-      return new ResponseEntity<>(subject, HttpStatus.OK);
+      return ResponseEntity.ok().eTag(ETags.of(subject.getVersion())).body(subject);
+  }
+
+  /**
+   * Sends HTTP Response Entity with only the requested fields of a specific Subject entry.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param id the id of the specific Subject.
+   * @param fields the comma separated names of the fields.
+   * @return the Response Entity with a Status Code and a body.
+   */
+  @GetMapping(value = "/{id}", params = "fields", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<String, Object>> getSubjectByIdProjected(@PathVariable("id") String id, @RequestParam("fields") String fields) {
+    Map<String, Object> subject;
+    try {
+      subject = subjectService.getOneById(id, subjectService.getProjection(fields));
+    } catch (SubjectNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Subject Not Found", e );
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    return new ResponseEntity<>(subject, HttpStatus.OK);
   }
 
   /**
@@ -76,39 +186,157 @@ public class SubjectController {
    * Sends HTTP status Response Entity with the Subject entry that has been updated.
    * Sends HTTP status Not Found if the Subject cannot be found.
    * Sends HTTP status Invalid Value if the Subject to be posted is invalid.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the Subject to be updated.
    * @param subject the Subject to be updated.
+   * @param ifMatch the ETag of the entry the client has read, missing to update it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @PatchMapping(value = "/{id}")
-  public ResponseEntity<Subject> updateSubject (@PathVariable ("id") String id, @RequestBody Subject subject) {
+  public ResponseEntity<Subject> updateSubject (@PathVariable ("id") String id, @RequestBody Subject subject, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
     Subject updatedSubject;
     try {
-      updatedSubject = subjectService.update(id, subject);
+      updatedSubject = subjectService.update(id, subject, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "PATCH: Subject has been modified.", e);
     } catch (SubjectNotFoundException e) {
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "PATCH: Subject Not Found", e);
     } catch (SubjectInvalidValueException e) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "PATCH: Subject Invalid Value", e);
     }
 
-    return new ResponseEntity<>(updatedSubject, HttpStatus.OK);
+    return ResponseEntity.ok().eTag(ETags.of(updatedSubject.getVersion())).body(updatedSubject);
   }
 
   /**
    * Sends HTTP Response Entity with the Subject entry that has been deleted.
    * Sends HTTP status Not Found if there is no entry of the provided id.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the Subject to be deleted.
+   * @param ifMatch the ETag of the entry the client has read, missing to delete it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @DeleteMapping(value = "/{id}")
-  public ResponseEntity<HttpStatus> deleteSubject (@PathVariable("id") String id) {
+  public ResponseEntity<HttpStatus> deleteSubject (@PathVariable("id") String id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
     try {
-      subjectService.delete(id);
+      subjectService.delete(id, ETags.expectedVersion(ifMatch));
     }
+      catch (VersionMismatchException e) {
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "DELETE: Subject has been modified.", e);
+      }
       catch (SubjectNotFoundException e) {
         throw new ResponseStatusException(HttpStatus.NOT_FOUND, "DELETE: Subject Not Found", e);
       }
       return new ResponseEntity<>(HttpStatus.OK);
   }
 
+  /**
+   * Sends HTTP Response Entity with a specific Subject entry, its Lecture entries and their LectureMaterial entries,
+   * read with a single query.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * Sends HTTP status Bad Request if the depth is out of range.
+   * @param id the id of the specific Subject.
+   * @param depth 0 for the Subject alone, 1 with its lectures, 2 (the default) with their materials as well.
+   * @return the Response Entity with a Status Code and the tree of the Subject.
+   */
+  @GetMapping(value = "/{id}/tree")
+  public ResponseEntity<Map<String, Object>> getSubjectTree(@PathVariable("id") String id,
+                                                            @RequestParam(value = "depth", required = false) Integer depth) {
+    Map<String, Object> tree;
+    try {
+      tree = subjectService.getTree(id, depth == null ? CurriculumTreeReader.MAX_DEPTH : depth);
+    } catch (SubjectNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: Subject Not Found", e );
+    } catch (SubjectInvalidDepthException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid depth.", e );
+    }
+    return new ResponseEntity<>(tree, HttpStatus.OK);
+  }
+
+  /**
+   * Adds the Lecture entry with the provided id to the lectures of a specific Subject entry.
+   * Sends HTTP status Not Found if there is no Subject or no Lecture with the provided ids.
+   * @param id the id of the Subject.
+   * @param lectureId the id of the Lecture to be added.
+   * @return the Response Entity with a Status Code.
+   */
+  @PostMapping(value = "/{id}/lectures/{lectureId}")
+  public ResponseEntity<HttpStatus> addLectureToSubject (@PathVariable("id") String id, @PathVariable("lectureId") String lectureId) {
+    try {
+      subjectService.addLecture(id, lectureId);
+    } catch (SubjectNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "POST: Subject Not Found", e );
+    } catch (LectureNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "POST: Lecture Not Found", e );
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  /**
+   * Removes the Lecture entry with the provided id from the lectures of a specific Subject entry,
+   * the Lecture entry itself is kept.
+   * Sends HTTP status Not Found if there is no Subject with the provided id or the Lecture is not one of its lectures.
+   * @param id the id of the Subject.
+   * @param lectureId the id of the Lecture to be removed.
+   * @return the Response Entity with a Status Code.
+   */
+  @DeleteMapping(value = "/{id}/lectures/{lectureId}")
+  public ResponseEntity<HttpStatus> removeLectureFromSubject (@PathVariable("id") String id, @PathVariable("lectureId") String lectureId) {
+    try {
+      subjectService.removeLecture(id, lectureId);
+    } catch (SubjectNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "DELETE: Subject Not Found", e );
+    } catch (LectureNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "DELETE: Lecture Not Found", e );
+    }
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Subject entry to be created.
+   * Invalid entries are reported in their result and do not prevent the others from being created.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param subjects the Subject entries to be added in the db.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PostMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> addSubjects (@RequestBody List<Subject> subjects) {
+    try {
+      return new ResponseEntity<>(subjectService.addAll(subjects), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "POST: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Subject entry to be updated.
+   * Invalid or missing entries are reported in their result and do not prevent the others from being updated.
+   * Sends HTTP status Bad Request if there are more entries than allowed.
+   * @param subjects the Subject entries to be updated, each with its id.
+   * @return the Response Entity with a Status Code and the result of every entry.
+   */
+  @PatchMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> updateSubjects (@RequestBody List<Subject> subjects) {
+    try {
+      return new ResponseEntity<>(subjectService.updateAll(subjects), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Too many entries.", e );
+    }
+  }
+
+  /**
+   * Sends HTTP Response Entity with the result of every Subject entry to be deleted.
+   * Missing entries are reported in their result.
+   * Sends HTTP status Bad Request if there are more ids than allowed.
+   * @param ids the ids of the Subject entries to be deleted.
+   * @return the Response Entity with a Status Code and the result of every id.
+   */
+  @DeleteMapping(value = "/bulk")
+  public ResponseEntity<List<BulkItemResult>> deleteSubjects (@RequestBody List<String> ids) {
+    try {
+      return new ResponseEntity<>(subjectService.deleteAll(ids), HttpStatus.OK);
+    } catch (BulkTooLargeException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "DELETE: Too many ids.", e );
+    }
+  }
 }
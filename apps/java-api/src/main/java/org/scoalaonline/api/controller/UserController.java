@@ -4,18 +4,27 @@ import com.auth0.jwt.interfaces.DecodedJWT;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.DTO.CurrentUser;
 import org.scoalaonline.api.DTO.RegisterForm;
 import org.scoalaonline.api.exception.role.RoleNotFoundException;
 import org.scoalaonline.api.exception.user.*;
-import org.scoalaonline.api.model.Role;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.User;
+import org.scoalaonline.api.security.AuthenticatedUser;
+import org.scoalaonline.api.security.TokenPrincipal;
 import org.scoalaonline.api.service.JWTService;
+import org.scoalaonline.api.service.NodeProjector.Projection;
+import org.scoalaonline.api.service.RoleVersionRegistry;
 import org.scoalaonline.api.service.UserService;
+import org.scoalaonline.api.repository.ClientBookmarks;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -30,8 +39,9 @@ import static org.springframework.http.HttpStatus.FORBIDDEN;
 import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
 
 /**
- GET:	"/users"	retrieves all the entries
- GET:	"/users/{id}"	retrieves the entry with the provided id
+ GET:	"/users"	retrieves all the entries, or only the given fields
+ GET:	"/users/me"	retrieves the id, username and roles of the authenticated user
+ GET:	"/users/{id}"	retrieves the entry with the provided id, or only the given fields
  GET:	"/users/username"	retrieves the entry with the provided username
  GET:	"/users/role/{roleName}"	retrieves all the entries with the provided role
  GET:	"/users/token/refresh"	offers new access token using the refresh token
@@ -40,7 +50,7 @@ import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
  PATCH:	"/users/{id}	edits the entry with the provided id
  DELETE:	"/users/{id}	deletes the entry with the provided id
  */
-@CrossOrigin
+@CrossOrigin(exposedHeaders = {Pagination.NEXT_CURSOR_HEADER, ClientBookmarks.BOOKMARKS_HEADER, HttpHeaders.ETAG})
 @RestController
 @RequiredArgsConstructor
 @Slf4j
@@ -51,17 +61,82 @@ public class UserController {
 
   private final UserService userService;
   private final JWTService jwtService;
+  private final RoleVersionRegistry roleVersionRegistry;
+  private final Pagination pagination;
 
   /**
    * Sends HTTP status Response Entity with all the User entries.
+   * Sends only one page, ordered by id, if a cursor or a size is given,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
    * @return a Response Entity with HTTP Status OK and a list of the User entries.
    */
   @GetMapping(value = {"", "/"})
-  public ResponseEntity<List<User>> getAllUsers () {
+  public ResponseEntity<List<User>> getAllUsers (@RequestParam(value = "cursor", required = false) String cursor,
+                                                 @RequestParam(value = "size", required = false) Integer size) {
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, userService::getPage);
+    }
     List<User> users = userService.getAll();
     return new ResponseEntity<>(users, HttpStatus.OK);
   }
 
+  /**
+   * Sends an HTTP Response Entity with only the requested fields of all the User entries,
+   * the other fields are neither read from the DB nor sent. The id is always sent.
+   * Sends only one page, ordered by id, if a cursor or a size is given, like the full entries.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param fields - the comma separated names of the fields
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
+   * @return a Response Entity with HTTP Status OK and a list of the projected User entries.
+   */
+  @GetMapping(value = {"", "/"}, params = "fields", produces = APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<Map<String, Object>>> getAllUsersProjected (@RequestParam("fields") String fields,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                                   @RequestParam(value = "size", required = false) Integer size) {
+    Projection projection;
+    try {
+      projection = userService.getProjection(fields);
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, (after, pageSize) -> userService.getPage(projection, after, pageSize));
+    }
+    return new ResponseEntity<>(userService.getAll(projection), HttpStatus.OK);
+  }
+
+  /**
+   * Sends HTTP Response Entity with the id, username and roles of the currently authenticated user,
+   * read from the claims of its access token.
+   * Sends HTTP status Not Found if the token has no id claim and there is no entry with its username.
+   * @param authentication - information about the currently authenticated user.
+   * @return the Response Entity with a Status Code and a body.
+   */
+  @GetMapping(value = "/me")
+  public ResponseEntity<CurrentUser> getCurrentUser(Authentication authentication) {
+    String username = authentication.getName().trim();
+    List<String> roles = authentication.getAuthorities().stream()
+      .map(GrantedAuthority::getAuthority)
+      .collect(Collectors.toList());
+
+    String id = null;
+    if (authentication.getPrincipal() instanceof TokenPrincipal) {
+      id = ((TokenPrincipal) authentication.getPrincipal()).getId();
+    }
+    if (id == null) {
+      // Tokens issued before the id claim was added.
+      try {
+        id = userService.loadUserByUsername(username).getId();
+      } catch (UsernameNotFoundException e) {
+        throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: User Not Found", e );
+      }
+    }
+    return new ResponseEntity<>(new CurrentUser(id, username, roles), HttpStatus.OK);
+  }
+
   /**
    * Sends HTTP Response Entity with a specific User entry.
    * Sends HTTP status Not Found if there is no entry with the provided id.
@@ -81,6 +156,27 @@ public class UserController {
     return new ResponseEntity<>(user, HttpStatus.OK);
   }
 
+  /**
+   * Sends HTTP Response Entity with only the requested fields of a specific User entry.
+   * Sends HTTP status Not Found if there is no entry with the provided id.
+   * Sends HTTP status Bad Request if no field is given or a field does not exist.
+   * @param id the id of the specific User.
+   * @param fields the comma separated names of the fields.
+   * @return the Response Entity with a Status Code and a body.
+   */
+  @GetMapping(value = "/{id}", params = "fields", produces = APPLICATION_JSON_VALUE)
+  public ResponseEntity<Map<String, Object>> getUserByIdProjected(@PathVariable("id") String id, @RequestParam("fields") String fields) {
+    Map<String, Object> user;
+    try {
+      user = userService.getOneById(id, userService.getProjection(fields));
+    } catch (UserNotFoundException e) {
+      throw new ResponseStatusException( HttpStatus.NOT_FOUND, "GET: User Not Found", e );
+    } catch (ProjectionInvalidFieldsException e) {
+      throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "GET: Invalid fields.", e );
+    }
+    return new ResponseEntity<>(user, HttpStatus.OK);
+  }
+
   /**
    * Sends HTTP Response Entity with a specific User entry.
    * Sends HTTP status Not Found if there is no entry with the provided username.
@@ -113,10 +209,20 @@ public class UserController {
   /**
    * Sends HTTP status Response Entity with all the User entries
    * who have the Role with the provided roleName.
+   * Sends only one page, ordered by id, if a cursor or a size is given,
+   * with the cursor of the next page in the X-Next-Cursor header.
+   * @param roleName - the name of the Role.
+   * @param cursor - the cursor of the page, missing for the first page
+   * @param size - the size of the page, limited by the configured maximum
    * @return a Response Entity with Status Code OK and a list of the User entries.
    */
   @GetMapping(value = "/role/{roleName}")
-  public ResponseEntity<List<User>> getAllUsersByRole(@PathVariable("roleName") String roleName) {
+  public ResponseEntity<List<User>> getAllUsersByRole(@PathVariable("roleName") String roleName,
+                                                      @RequestParam(value = "cursor", required = false) String cursor,
+                                                      @RequestParam(value = "size", required = false) Integer size) {
+    if (pagination.isRequested(cursor, size)) {
+      return pagination.getPage(cursor, size, (after, pageSize) -> userService.getPageByRole(roleName, after, pageSize));
+    }
     List<User> users = userService.getAllByRole(roleName);
     return new ResponseEntity<>(users, HttpStatus.OK);
   }
@@ -124,6 +230,8 @@ public class UserController {
   /**
    * Offers a new access token for authorization based on the refresh_token
    * extracted from the Authorization field in the header of the request.
+   * The roles stored in the refresh token are reused while their version is current,
+   * otherwise they are read again and a new refresh token is issued as well.
    * Sends Status OK, or Forbidden if the refresh-token is invalid
    * @param request
    * @param response
@@ -141,10 +249,19 @@ public class UserController {
         DecodedJWT decodedJWT = jwtService.decodeJWT(refresh_token);
 
         String username = decodedJWT.getSubject();
-        User user = userService.getOneByUsername(username);
-        List<String> roles = user.getRoles().stream().map(Role::getName).collect(Collectors.toList());
+        String userId = decodedJWT.getClaim(JWTService.USER_ID_CLAIM).asString();
+        List<String> roles = decodedJWT.getClaim(JWTService.ROLES_CLAIM).asList(String.class);
+        Long roleVersion = decodedJWT.getClaim(JWTService.ROLE_VERSION_CLAIM).asLong();
+
+        if (userId == null || roles == null || roleVersion == null || !roleVersionRegistry.isCurrent(username, roleVersion)) {
+          AuthenticatedUser user = userService.loadUserByUsername(username);
+          roles = user.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
+          userId = user.getId();
+          roleVersion = user.getRoleVersion();
+          refresh_token = jwtService.getRefreshToken(username, userId, requestURL, roles, roleVersion);
+        }
 
-        String access_token = jwtService.getAccessToken(username, requestURL, roles);
+        String access_token = jwtService.getAccessToken(username, userId, requestURL, roles, roleVersion);
 
         Map<String, String> tokens = new HashMap<>();
         tokens.put("access_token",access_token);
@@ -229,16 +346,20 @@ public class UserController {
    * Sends HTTP status Response Entity with the User entry that has been updated.
    * Sends HTTP status Not Found if the User cannot be found.
    * Sends HTTP status Invalid Value if the User to be posted is invalid.
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the User to be updated.
    * @param user the User to be updated.
+   * @param ifMatch the ETag of the entry the client has read, missing to update it at any version.
    * @return the Response Entity with a Status Code with a body.
    */
   @PatchMapping( value = "/{id}" )
-  public ResponseEntity<User> updateUser( @PathVariable( "id" ) String id, @RequestBody User user ) {
+  public ResponseEntity<User> updateUser( @PathVariable( "id" ) String id, @RequestBody User user, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     User updatedUser;
     try
     {
-      updatedUser = userService.update( id, user );
+      updatedUser = userService.update(id, user, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "PATCH: User has been modified.", e );
     } catch ( UserNotFoundException e ) {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "PATCH: User Not Found", e );
     } catch ( UserInvalidNameException e) {
@@ -253,20 +374,24 @@ public class UserController {
       throw new ResponseStatusException( HttpStatus.BAD_REQUEST, "PATCH: Role not found", e );
     }
 
-    return new ResponseEntity<>( updatedUser, HttpStatus.OK );
+    return ResponseEntity.ok().eTag(ETags.of(updatedUser.getVersion())).body(updatedUser);
   }
 
   /**
    * Deletes a user entry and sends a Response Entity
    * with the Status OK, or Not Found if there is no entry with the provided id
+   * Sends HTTP status Precondition Failed if the entry is no longer at the version in If-Match.
    * @param id the id of the User to be deleted.
+   * @param ifMatch the ETag of the entry the client has read, missing to delete it at any version.
    * @return a Response Entity with a Status
    */
   @DeleteMapping( value = "/{id}" )
-  public ResponseEntity<HttpStatus> deleteUser( @PathVariable( "id" ) String id ) {
+  public ResponseEntity<HttpStatus> deleteUser( @PathVariable( "id" ) String id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch ) {
     try
     {
-      userService.delete( id );
+      userService.delete(id, ETags.expectedVersion(ifMatch));
+    } catch (VersionMismatchException e) {
+      throw new ResponseStatusException( HttpStatus.PRECONDITION_FAILED, "DELETE: User has been modified.", e );
     } catch ( UserNotFoundException e )
     {
       throw new ResponseStatusException( HttpStatus.NOT_FOUND, "DELETE: User Not Found", e );
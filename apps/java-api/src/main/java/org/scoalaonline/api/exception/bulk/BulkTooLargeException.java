@@ -0,0 +1,10 @@
+package org.scoalaonline.api.exception.bulk;
+
+public class BulkTooLargeException extends Exception{
+  public BulkTooLargeException() {
+  }
+
+  public BulkTooLargeException(String message) {
+    super(message);
+  }
+}
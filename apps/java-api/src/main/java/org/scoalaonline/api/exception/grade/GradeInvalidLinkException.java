@@ -0,0 +1,10 @@
+package org.scoalaonline.api.exception.grade;
+
+public class GradeInvalidLinkException extends Exception{
+  public GradeInvalidLinkException() {
+  }
+
+  public GradeInvalidLinkException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,10 @@
+package org.scoalaonline.api.exception.projection;
+
+public class ProjectionInvalidFieldsException extends Exception{
+  public ProjectionInvalidFieldsException() {
+  }
+
+  public ProjectionInvalidFieldsException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,15 @@
+package org.scoalaonline.api.exception.search;
+
+/**
+ * Exception class for when a search query has no terms.
+ */
+
+public class SearchInvalidQueryException extends Exception {
+
+  public SearchInvalidQueryException() {
+  }
+
+  public SearchInvalidQueryException(String message) {
+    super(message);
+  }
+}
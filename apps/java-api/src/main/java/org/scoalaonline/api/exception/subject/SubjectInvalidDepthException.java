@@ -0,0 +1,15 @@
+package org.scoalaonline.api.exception.subject;
+
+/**
+ * Exception class for when the depth of a Subject tree is out of range.
+ */
+
+public class SubjectInvalidDepthException extends Exception {
+
+  public SubjectInvalidDepthException() {
+  }
+
+  public SubjectInvalidDepthException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,10 @@
+package org.scoalaonline.api.exception.upload;
+
+public class UploadInvalidHashException extends Exception{
+  public UploadInvalidHashException(){
+  }
+
+  public UploadInvalidHashException(String message){
+    super(message);
+  }
+}
@@ -0,0 +1,17 @@
+package org.scoalaonline.api.exception.upload;
+
+/**
+ * Thrown when a chunk is not sent at the end of what has been uploaded, or while another chunk is being written.
+ */
+public class UploadInvalidOffsetException extends Exception{
+  private final long offset;
+
+  public UploadInvalidOffsetException(String message, long offset){
+    super(message);
+    this.offset = offset;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+}
@@ -0,0 +1,10 @@
+package org.scoalaonline.api.exception.upload;
+
+public class UploadNotFoundException extends Exception{
+  public UploadNotFoundException(){
+  }
+
+  public UploadNotFoundException(String message){
+    super(message);
+  }
+}
@@ -0,0 +1,10 @@
+package org.scoalaonline.api.exception.upload;
+
+public class UploadTooLargeException extends Exception{
+  public UploadTooLargeException(){
+  }
+
+  public UploadTooLargeException(String message){
+    super(message);
+  }
+}
@@ -0,0 +1,17 @@
+package org.scoalaonline.api.exception.user;
+
+/**
+ * Thrown when the password hashing pool is saturated and cannot accept more work.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  public PasswordHashingRejectedException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,10 @@
+package org.scoalaonline.api.exception.version;
+
+public class VersionMismatchException extends Exception{
+  public VersionMismatchException() {
+  }
+
+  public VersionMismatchException(String message) {
+    super(message);
+  }
+}
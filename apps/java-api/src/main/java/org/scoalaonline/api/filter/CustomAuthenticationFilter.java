@@ -2,6 +2,8 @@ package org.scoalaonline.api.filter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.exception.user.PasswordHashingRejectedException;
+import org.scoalaonline.api.security.AuthenticatedUser;
 import org.scoalaonline.api.service.JWTService;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationServiceException;
@@ -9,7 +11,6 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import javax.servlet.FilterChain;
@@ -22,7 +23,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static org.springframework.http.HttpStatus.FORBIDDEN;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
 
 /**
@@ -60,11 +63,17 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
     log.info("Username is {}", username);
 
     UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(username,password);
-    return authenticationManager.authenticate(authenticationToken);
+    try {
+      return authenticationManager.authenticate(authenticationToken);
+    } catch (PasswordHashingRejectedException e) {
+      throw new AuthenticationServiceException(e.getMessage(), e);
+    }
   }
 
   /**
    * Creates a response with Status Forbidden and an error message if the authentication is unsuccessful
+   * or with Status Service Unavailable and a Retry-After header if the password could not be checked
+   * because the password hashing pool is saturated
    * @param request
    * @param response
    * @param failed
@@ -74,7 +83,13 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
   @Override
   protected void unsuccessfulAuthentication(HttpServletRequest request, HttpServletResponse response, AuthenticationException failed) throws IOException, ServletException {
     log.info(failed.getLocalizedMessage());
-    response.setStatus(FORBIDDEN.value());
+    if (failed.getCause() instanceof PasswordHashingRejectedException) {
+      PasswordHashingRejectedException rejected = (PasswordHashingRejectedException) failed.getCause();
+      response.setStatus(SERVICE_UNAVAILABLE.value());
+      response.setHeader(RETRY_AFTER, String.valueOf(rejected.getRetryAfterSeconds()));
+    } else {
+      response.setStatus(FORBIDDEN.value());
+    }
 
     Map<String, String> error = new HashMap<>();
     error.put("error_message", failed.getLocalizedMessage());
@@ -95,15 +110,15 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
    */
   @Override
   protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain, Authentication authentication) throws IOException, ServletException {
-    User user = (User)authentication.getPrincipal();
+    AuthenticatedUser user = (AuthenticatedUser)authentication.getPrincipal();
     String username = user.getUsername();
     String requestURL = request.getRequestURL().toString();
     List<String> roles = user.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
 
     Map<String, String> tokens = new HashMap<>();
 
-    tokens.put("access_token",jwtService.getAccessToken(username, requestURL, roles));
-    tokens.put("refresh_token",jwtService.getRefreshToken(username, requestURL));
+    tokens.put("access_token",jwtService.getAccessToken(username, user.getId(), requestURL, roles, user.getRoleVersion()));
+    tokens.put("refresh_token",jwtService.getRefreshToken(username, user.getId(), requestURL, roles, user.getRoleVersion()));
     response.setContentType(APPLICATION_JSON_VALUE);
 
     new ObjectMapper().writeValue(response.getOutputStream(), tokens);
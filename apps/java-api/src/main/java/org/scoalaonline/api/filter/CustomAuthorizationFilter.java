@@ -1,11 +1,9 @@
 package org.scoalaonline.api.filter;
 
-import com.auth0.jwt.interfaces.DecodedJWT;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.scoalaonline.api.service.JWTService;
+import org.scoalaonline.api.security.VerifiedTokenCache;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -14,12 +12,9 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
-import static java.util.Arrays.stream;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 import static org.springframework.http.HttpStatus.FORBIDDEN;
 import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
@@ -29,15 +24,16 @@ import static org.springframework.util.MimeTypeUtils.APPLICATION_JSON_VALUE;
  */
 @Slf4j
 public class CustomAuthorizationFilter extends OncePerRequestFilter {
-  private final JWTService jwtService;
+  private final VerifiedTokenCache verifiedTokenCache;
 
-  public CustomAuthorizationFilter(JWTService jwtService) {
-    this.jwtService = jwtService;
+  public CustomAuthorizationFilter(VerifiedTokenCache verifiedTokenCache) {
+    this.verifiedTokenCache = verifiedTokenCache;
   }
 
   /**
    * Retrieves the access token from the Authorization field in the header of the request
-   * and decodes it in order to get the authenticated user and its authorities (roles)
+   * and decodes it in order to get the authenticated user and its authorities (roles).
+   * Tokens that have already been verified are resolved from the VerifiedTokenCache.
    * Sends Status Forbidden if there was a problem with the authentication process
    * @param request
    * @param response
@@ -55,16 +51,7 @@ public class CustomAuthorizationFilter extends OncePerRequestFilter {
       if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
         try {
           String token = authorizationHeader.substring("Bearer ".length());
-          DecodedJWT decodedJWT = jwtService.decodeJWT(token);
-
-          String username = decodedJWT.getSubject();
-          String[] roles = decodedJWT.getClaim("roles").asArray(String.class);
-          Collection<SimpleGrantedAuthority> authorities = new ArrayList<>();
-          stream(roles).forEach(role -> {
-            authorities.add(new SimpleGrantedAuthority(role));
-          });
-
-          UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(username, null, authorities);
+          UsernamePasswordAuthenticationToken authenticationToken = verifiedTokenCache.getAuthentication(token);
           SecurityContextHolder.getContext().setAuthentication(authenticationToken);
 
           filterChain.doFilter(request, response);
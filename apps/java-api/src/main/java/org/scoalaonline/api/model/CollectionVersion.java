@@ -0,0 +1,49 @@
+package org.scoalaonline.api.model;
+
+import org.springframework.data.neo4j.core.schema.Id;
+import org.springframework.data.neo4j.core.schema.Node;
+import org.springframework.data.neo4j.core.schema.Property;
+
+/**
+ * Represents the 'CollectionVersion' node from the graph database.
+ * It holds the version of all the nodes with one label, increased after every write of any of them.
+ */
+@Node("CollectionVersion")
+public class CollectionVersion {
+
+  @Id
+  private String label;
+
+  @Property("version")
+  private Long version;
+
+  //region Constructor
+  public CollectionVersion() {
+  }
+
+  public CollectionVersion(String label, Long version) {
+    this.label = label;
+    this.version = version;
+  }
+  //endregion
+
+  //region Getters
+  public String getLabel() {
+    return label;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+  //endregion
+
+  //region Setters
+  public void setLabel(String label) {
+    this.label = label;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+  //endregion
+}
@@ -1,5 +1,6 @@
 package org.scoalaonline.api.model;
 
+import org.springframework.data.annotation.Version;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
@@ -10,7 +11,8 @@ import java.util.Objects;
 
 /**
  * Represents the 'Grade' node from the graph database.
- * It contains a value property.
+ * It contains a value property, the ids of the student (a User) and of the Subject the grade is linked to,
+ * if any, and the version of the entry, increased by every write.
  */
 @Node("Grade")
 public class Grade {
@@ -22,7 +24,16 @@ public class Grade {
   @Property("value")
   private int value;
 
-  //@Relationships
+  @Indexed
+  @Property("studentId")
+  private String studentId;
+
+  @Indexed
+  @Property("subjectId")
+  private String subjectId;
+
+  @Version
+  private Long version;
 
   //region Constructor
   public Grade(){
@@ -36,6 +47,13 @@ public class Grade {
     this.id = id;
     this.value = value;
   }
+
+  public Grade(String id, int value, String studentId, String subjectId) {
+    this.id = id;
+    this.value = value;
+    this.studentId = studentId;
+    this.subjectId = subjectId;
+  }
   //endregion
 
   //region Getters
@@ -46,6 +64,18 @@ public class Grade {
   public int getValue() {
     return value;
   }
+
+  public String getStudentId() {
+    return studentId;
+  }
+
+  public String getSubjectId() {
+    return subjectId;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
   //endregion
 
   //region Setters
@@ -56,6 +86,18 @@ public class Grade {
   public void setValue(int value) {
     this.value = value;
   }
+
+  public void setStudentId(String studentId) {
+    this.studentId = studentId;
+  }
+
+  public void setSubjectId(String subjectId) {
+    this.subjectId = subjectId;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
   //endregion
 
 
@@ -64,11 +106,12 @@ public class Grade {
     if (this == o) return true;
     if (!(o instanceof Grade)) return false;
     Grade grade = (Grade) o;
-    return getValue() == grade.getValue() && Objects.equals(getId(), grade.getId());
+    return getValue() == grade.getValue() && Objects.equals(getId(), grade.getId())
+      && Objects.equals(getStudentId(), grade.getStudentId()) && Objects.equals(getSubjectId(), grade.getSubjectId());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(getId(), getValue());
+    return Objects.hash(getId(), getValue(), getStudentId(), getSubjectId());
   }
 }
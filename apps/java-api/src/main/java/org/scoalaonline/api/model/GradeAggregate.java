@@ -0,0 +1,79 @@
+package org.scoalaonline.api.model;
+
+import org.springframework.data.neo4j.core.schema.Id;
+import org.springframework.data.neo4j.core.schema.Node;
+import org.springframework.data.neo4j.core.schema.Property;
+
+import java.util.List;
+
+/**
+ * Represents the 'GradeAggregate' node from the graph database.
+ * It holds the count, the sum and the number of grades of every value of all the grades of one student
+ * ("student:" followed by the id of the User) or of one Subject ("subject:" followed by its id),
+ * changed together with every write of one of these grades.
+ */
+@Node("GradeAggregate")
+public class GradeAggregate {
+  public static final String STUDENT_PREFIX = "student:";
+  public static final String SUBJECT_PREFIX = "subject:";
+
+  @Id
+  private String key;
+
+  @Property("count")
+  private long count;
+
+  @Property("sum")
+  private long sum;
+
+  @Property("histogram")
+  private List<Long> histogram;
+
+  //region Constructor
+  public GradeAggregate() {
+  }
+
+  public GradeAggregate(String key, long count, long sum, List<Long> histogram) {
+    this.key = key;
+    this.count = count;
+    this.sum = sum;
+    this.histogram = histogram;
+  }
+  //endregion
+
+  //region Getters
+  public String getKey() {
+    return key;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  public List<Long> getHistogram() {
+    return histogram;
+  }
+  //endregion
+
+  //region Setters
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  public void setCount(long count) {
+    this.count = count;
+  }
+
+  public void setSum(long sum) {
+    this.sum = sum;
+  }
+
+  public void setHistogram(List<Long> histogram) {
+    this.histogram = histogram;
+  }
+  //endregion
+}
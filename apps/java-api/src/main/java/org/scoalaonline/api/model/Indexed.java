@@ -0,0 +1,17 @@
+package org.scoalaonline.api.model;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a property of a @Node class the nodes with the same label are looked up by, without it being unique.
+ * An index is created for it at startup by the SchemaInitializer.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Indexed {
+}
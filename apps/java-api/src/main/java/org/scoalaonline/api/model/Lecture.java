@@ -1,5 +1,6 @@
 package org.scoalaonline.api.model;
 
+import org.springframework.data.annotation.Version;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
@@ -10,7 +11,7 @@ import java.util.Objects;
 
 /**
  * Represents the Lecture node from the graph database.
- * It contains a title property.
+ * It contains a title property and the version of the entry, increased by every write.
  */
 @Node("Lecture")
 public class Lecture {
@@ -19,9 +20,15 @@ public class Lecture {
   @GeneratedValue(UUIDStringGenerator.class)
   private String id;
 
+  @Searchable
   @Property("title")
   private String title;
-  //TODO: add @Relationships
+
+  @Version
+  private Long version;
+
+  // The materials are related with HAS_MATERIAL and, like the Subject of the lecture,
+  // only read as part of the curriculum tree.
 
   //region Constructors
   public Lecture(){
@@ -46,6 +53,10 @@ public class Lecture {
   public String getTitle() {
     return title;
   }
+
+  public Long getVersion() {
+    return version;
+  }
   //endregion Getters
 
   //region Setters
@@ -56,6 +67,10 @@ public class Lecture {
   public void setTitle(String title) {
     this.title = title;
   }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
   //endregion Setters
 
   //region Equals & Hashcode
@@ -1,6 +1,8 @@
 package org.scoalaonline.api.model;
 
 
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
@@ -10,7 +12,10 @@ import org.springframework.data.neo4j.core.support.UUIDStringGenerator;
 import java.util.Objects;
 /**
  * Represents the 'LectureMaterial' node from the graph database.
- * It contains a document property.
+ * The document is kept in the BlobStore, the node only has its hash, its size in bytes and an excerpt
+ * of its beginning, with the version of the entry, increased by every write.
+ * The text of the document that is searched is kept on the LectureMaterialText node with the same id.
+ * The document itself is only carried by the requests and responses of the API.
  */
 @Node("LectureMaterial")
 public class LectureMaterial {
@@ -18,10 +23,23 @@ public class LectureMaterial {
   @GeneratedValue(UUIDStringGenerator.class)
   private String id;
 
-  @Property("document")
+  @Transient
   private String document;
 
-  //@Relationships
+  @Indexed
+  @Property("documentHash")
+  private String documentHash;
+
+  @Property("documentSize")
+  private Long documentSize;
+
+  @Property("excerpt")
+  private String excerpt;
+
+  @Version
+  private Long version;
+
+  // Related from its lectures with HAS_MATERIAL.
 
   //region Constructors
   public LectureMaterial(){}
@@ -44,12 +62,44 @@ public class LectureMaterial {
   public String getDocument() {
     return document;
   }
+
+  public String getDocumentHash() {
+    return documentHash;
+  }
+
+  public Long getDocumentSize() {
+    return documentSize;
+  }
+
+  public String getExcerpt() {
+    return excerpt;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
   //endregion
 
   //region Setters
   public void setDocument(String document) {
     this.document = document;
   }
+
+  public void setDocumentHash(String documentHash) {
+    this.documentHash = documentHash;
+  }
+
+  public void setDocumentSize(Long documentSize) {
+    this.documentSize = documentSize;
+  }
+
+  public void setExcerpt(String excerpt) {
+    this.excerpt = excerpt;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
   //endregion
 
 
@@ -0,0 +1,52 @@
+package org.scoalaonline.api.model;
+
+import org.springframework.data.neo4j.core.schema.Id;
+import org.springframework.data.neo4j.core.schema.Node;
+import org.springframework.data.neo4j.core.schema.Property;
+
+/**
+ * Represents the 'LectureMaterialText' node from the graph database.
+ * It holds the text of the document of the LectureMaterial entry with the same id, which is what the search finds.
+ * The node is only written together with its entry and only read by the search,
+ * so reading a LectureMaterial entry never reads the text of its document.
+ */
+@Node("LectureMaterialText")
+public class LectureMaterialText {
+
+  @Id
+  private String id;
+
+  @Searchable(type = "LectureMaterial")
+  @Property("text")
+  private String text;
+
+  //region Constructor
+  public LectureMaterialText() {
+  }
+
+  public LectureMaterialText(String id, String text) {
+    this.id = id;
+    this.text = text;
+  }
+  //endregion
+
+  //region Getters
+  public String getId() {
+    return id;
+  }
+
+  public String getText() {
+    return text;
+  }
+  //endregion
+
+  //region Setters
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public void setText(String text) {
+    this.text = text;
+  }
+  //endregion
+}
@@ -2,7 +2,9 @@ package org.scoalaonline.api.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
@@ -11,7 +13,7 @@ import org.springframework.data.neo4j.core.support.UUIDStringGenerator;
 
 /**
  *Represents the Role node from the graph database.
- * It contains a Name property.
+ * It contains a Name property and the version of the entry, increased by every write.
  */
 @Node("Role")
 @Data
@@ -22,6 +24,16 @@ public class Role {
   @GeneratedValue(UUIDStringGenerator.class)
   private String id;
 
+  @Unique
   @Property("name")
   private String name;
+
+  @EqualsAndHashCode.Exclude
+  @Version
+  private Long version;
+
+  public Role(String id, String name) {
+    this.id = id;
+    this.name = name;
+  }
 }
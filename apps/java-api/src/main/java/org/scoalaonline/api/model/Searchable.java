@@ -0,0 +1,27 @@
+package org.scoalaonline.api.model;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the text property of a @Node class that is found by the search, at most one per class.
+ * The marked properties of all classes share one full-text index, created at startup by the SchemaInitializer.
+ * The hits of a property are reported with the primary label of its class as their type, unless another type is given.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Searchable {
+  /**
+   * The type of the hits, the id of a hit being the id of an entry of that type. The primary label of the class if empty.
+   */
+  String type() default "";
+
+  /**
+   * The name of the full-text index.
+   */
+  String INDEX = "searchable_text";
+}
@@ -1,5 +1,6 @@
 package org.scoalaonline.api.model;
 
+import org.springframework.data.annotation.Version;
 import org.springframework.data.neo4j.core.schema.GeneratedValue;
 import org.springframework.data.neo4j.core.schema.Id;
 import org.springframework.data.neo4j.core.schema.Node;
@@ -10,7 +11,7 @@ import java.util.Objects;
 
 /**
  * Represents the Subject node from the graph database.
- * It contains a Value property.
+ * It contains a Value property and the version of the entry, increased by every write.
  */
 @Node("Subject")
 public class Subject {
@@ -18,9 +19,15 @@ public class Subject {
   @GeneratedValue(UUIDStringGenerator.class)
   private String id;
 
+  @Searchable
   @Property("value")
   private String value;
-  //TODO: add @Relationships
+
+  @Version
+  private Long version;
+
+  // The lectures are related with HAS_LECTURE and read as a tree by CurriculumTreeReader,
+  // they are not mapped here so that reading a Subject does not read its whole curriculum.
 
   //region Constructors
   public Subject(){}
@@ -43,6 +50,10 @@ public class Subject {
   public String getValue() {
     return value;
   }
+
+  public Long getVersion() {
+    return version;
+  }
   //endregion
 
   //region Setters
@@ -53,6 +64,10 @@ public class Subject {
   public void setValue(String value) {
     this.value = value;
   }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
   //endregion
 
   //region Equals & Hashcode
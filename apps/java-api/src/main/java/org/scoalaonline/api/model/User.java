@@ -2,7 +2,9 @@ package org.scoalaonline.api.model;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.neo4j.core.schema.*;
 import org.springframework.data.neo4j.core.support.UUIDStringGenerator;
 
@@ -11,7 +13,8 @@ import java.util.List;
 
 /**
  *Represents the User node from the graph database.
- * It contains the following properties: Name, Username, Password and Roles.
+ * It contains the following properties: Name, Username, Password and Roles,
+ * and the version of the entry, increased by every write.
  */
 @Node("User")
 @Data
@@ -25,6 +28,7 @@ public class User {
   @Property("name")
   private String name;
 
+  @Unique
   @Property("username")
   private String username;
 
@@ -34,6 +38,18 @@ public class User {
   @Relationship(type = "HAS_ROLE", direction = Relationship.Direction.OUTGOING)
   private List<Role> roles;
 
+  @EqualsAndHashCode.Exclude
+  @Version
+  private Long version;
+
+  public User(String id, String name, String username, String password, List<Role> roles) {
+    this.id = id;
+    this.name = name;
+    this.username = username;
+    this.password = password;
+    this.roles = roles;
+  }
+
   public List<Role> getRoles() {
     return new ArrayList<>(roles);
   }
@@ -0,0 +1,86 @@
+package org.scoalaonline.api.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Bookmark;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.neo4j.core.transaction.Neo4jBookmarksUpdatedEvent;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Carries the Neo4j bookmarks of a client in the X-Bookmarks header, so a client reading from
+ * a follower or a read replica still sees its own writes, whichever instance of the API serves it.
+ * The bookmarks sent with a request by an authenticated client are waited for by every transaction
+ * of that request, the bookmarks known once a transaction has committed are sent back with the response.
+ * The header of anonymous requests is ignored, so no one can hold requests until the bookmark wait
+ * times out by sending made-up or future bookmarks without logging in.
+ */
+@Component
+@Slf4j
+public class ClientBookmarks {
+  public static final String BOOKMARKS_HEADER = "X-Bookmarks";
+  // Bookmark values accepted from one request, the rest is ignored.
+  private static final int MAX_BOOKMARKS = 16;
+
+  /**
+   * Retrieves the bookmarks sent with the current request.
+   * @return the bookmarks, empty outside of a request, when the client is not authenticated
+   * or when the header is missing
+   */
+  public Set<Bookmark> getRequestBookmarks() {
+    ServletRequestAttributes attributes = currentAttributes();
+    if (attributes == null || !isAuthenticated()) {
+      return Set.of();
+    }
+    String header = attributes.getRequest().getHeader(BOOKMARKS_HEADER);
+    if (header == null) {
+      return Set.of();
+    }
+    Set<String> values = new LinkedHashSet<>();
+    for (String value : header.split(",")) {
+      if (!value.isBlank() && values.size() < MAX_BOOKMARKS) {
+        values.add(value.trim());
+      }
+    }
+    return values.isEmpty() ? Set.of() : Set.of(Bookmark.from(values));
+  }
+
+  /**
+   * Sends the bookmarks known after a commit back with the response of the current request,
+   * replacing the ones of an earlier transaction of the same request.
+   * @param event - the bookmarks known after the commit
+   */
+  @EventListener
+  public void onBookmarksUpdated(Neo4jBookmarksUpdatedEvent event) {
+    ServletRequestAttributes attributes = currentAttributes();
+    HttpServletResponse response = attributes != null ? attributes.getResponse() : null;
+    if (response == null || response.isCommitted()) {
+      return;
+    }
+    Set<String> values = new LinkedHashSet<>();
+    event.getBookmarks().forEach(bookmark -> values.addAll(bookmark.values()));
+    if (!values.isEmpty()) {
+      response.setHeader(BOOKMARKS_HEADER, String.join(",", values));
+    }
+  }
+
+  private static boolean isAuthenticated() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    return authentication != null && authentication.isAuthenticated()
+      && !(authentication instanceof AnonymousAuthenticationToken);
+  }
+
+  private static ServletRequestAttributes currentAttributes() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    return attributes instanceof ServletRequestAttributes ? (ServletRequestAttributes) attributes : null;
+  }
+}
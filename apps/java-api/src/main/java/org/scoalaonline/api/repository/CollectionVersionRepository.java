@@ -0,0 +1,30 @@
+package org.scoalaonline.api.repository;
+
+import org.scoalaonline.api.model.CollectionVersion;
+import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface CollectionVersionRepository extends Neo4jRepository<CollectionVersion, String> {
+  /**
+   * Retrieves the version of all the nodes with the given label.
+   * @param label - the label of the nodes
+   * @return the version, 0 if none of the nodes has been written yet
+   */
+  @Query("OPTIONAL MATCH (n:CollectionVersion {label: $label}) RETURN coalesce(n.version, 0)")
+  long findVersionByLabel(@Param("label") String label);
+
+  /**
+   * Increases the version of all the nodes with the given label.
+   * Has to run in the transaction of the write of the nodes, so a version is committed together with
+   * the nodes it stands for: it is never read together with older nodes, and it is not lost if the
+   * application stops between the write and its increase.
+   * @param label - the label of the nodes
+   * @return the new version
+   */
+  @Transactional
+  @Query("MERGE (n:CollectionVersion {label: $label}) ON CREATE SET n.version = 0 " +
+    "SET n.version = n.version + 1 RETURN n.version")
+  long incrementVersion(@Param("label") String label);
+}
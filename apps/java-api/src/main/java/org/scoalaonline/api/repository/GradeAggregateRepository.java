@@ -0,0 +1,40 @@
+package org.scoalaonline.api.repository;
+
+import org.scoalaonline.api.model.GradeAggregate;
+import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface GradeAggregateRepository extends Neo4jRepository<GradeAggregate, String> {
+  /**
+   * Recomputes the aggregates of the students with the given ids from all their Grade entries.
+   * The aggregate is locked before the grades are read, so a grade written concurrently
+   * is either read or changes the aggregate after it has been recomputed.
+   * @param studentIds - the ids of the students
+   */
+  @Transactional
+  @Query("UNWIND $studentIds AS studentId " +
+    "MERGE (a:GradeAggregate {key: '" + GradeAggregate.STUDENT_PREFIX + "' + studentId}) SET a.count = 0 " +
+    "WITH a, studentId OPTIONAL MATCH (n:Grade {studentId: studentId}) " +
+    "WITH a, collect(n.value) AS values " +
+    "SET a.count = size(values), a.sum = reduce(sum = 0, v IN values | sum + v), " +
+    "a.histogram = [i IN range(0, 13) | size([v IN values WHERE v = i])]")
+  void rebuildStudentAggregates(@Param("studentIds") List<String> studentIds);
+
+  /**
+   * Recomputes the aggregates of the subjects with the given ids from all their Grade entries,
+   * like the ones of the students.
+   * @param subjectIds - the ids of the subjects
+   */
+  @Transactional
+  @Query("UNWIND $subjectIds AS subjectId " +
+    "MERGE (a:GradeAggregate {key: '" + GradeAggregate.SUBJECT_PREFIX + "' + subjectId}) SET a.count = 0 " +
+    "WITH a, subjectId OPTIONAL MATCH (n:Grade {subjectId: subjectId}) " +
+    "WITH a, collect(n.value) AS values " +
+    "SET a.count = size(values), a.sum = reduce(sum = 0, v IN values | sum + v), " +
+    "a.histogram = [i IN range(0, 13) | size([v IN values WHERE v = i])]")
+  void rebuildSubjectAggregates(@Param("subjectIds") List<String> subjectIds);
+}
@@ -1,8 +1,159 @@
 package org.scoalaonline.api.repository;
 
 import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.GradeAggregate;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface GradeRepository extends Neo4jRepository<Grade, String> {
+  /**
+   * Starts changing the GradeAggregate nodes of the student and of the subject of the grade n, as part of the
+   * statement writing it, creating the missing ones. Continues with the SET of the aggregate a, closed by a parenthesis.
+   * The histogram holds the number of grades of every value between 0 and 13.
+   */
+  String CHANGE_AGGREGATES =
+    "FOREACH (key IN [k IN ['" + GradeAggregate.STUDENT_PREFIX + "' + n.studentId, '" + GradeAggregate.SUBJECT_PREFIX + "' + n.subjectId] " +
+    "WHERE k IS NOT NULL] | " +
+    "MERGE (a:GradeAggregate {key: key}) " +
+    "ON CREATE SET a.count = 0, a.sum = 0, a.histogram = [i IN range(0, 13) | 0] ";
+
+  /**
+   * Retrieves the first limit Grade entries ordered by id.
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Grade) WHERE n.id IS NOT NULL RETURN n ORDER BY n.id LIMIT $limit")
+  List<Grade> findFirstPage(@Param("limit") int limit);
+
+  /**
+   * Retrieves at most limit Grade entries ordered by id, starting after the given id.
+   * @param after - the id to start after
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Grade) WHERE n.id > $after RETURN n ORDER BY n.id LIMIT $limit")
+  List<Grade> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+  /**
+   * Creates a Grade entry at version 0 and adds it to the aggregates of its student and of its subject,
+   * in a single statement. Nothing is created if there is no User with the id of the student
+   * or no Subject with the id of the subject.
+   * @param id - the id of the new entry
+   * @param value - the value
+   * @param studentId - the id of the User the grade is given to, null for none
+   * @param subjectId - the id of the Subject the grade is given in, null for none
+   * @return the created entry, or empty if the student or the subject does not exist
+   */
+  @Transactional
+  @Query("OPTIONAL MATCH (student:User {id: $studentId}) OPTIONAL MATCH (subject:Subject {id: $subjectId}) " +
+    "WITH student, subject WHERE ($studentId IS NULL OR student IS NOT NULL) AND ($subjectId IS NULL OR subject IS NOT NULL) " +
+    "CREATE (n:Grade {id: $id, value: $value, studentId: $studentId, subjectId: $subjectId, version: 0}) " +
+    CHANGE_AGGREGATES +
+    "SET a.count = a.count + 1, a.sum = a.sum + n.value, " +
+    "a.histogram = [i IN range(0, 13) | a.histogram[i] + CASE WHEN i = n.value THEN 1 ELSE 0 END]) " +
+    "RETURN n")
+  Optional<Grade> createWithAggregates(@Param("id") String id, @Param("value") int value,
+                                       @Param("studentId") String studentId, @Param("subjectId") String subjectId);
+
+  /**
+   * Sets the value of the Grade entry with the given id, increases its version and moves it
+   * to its new value in the aggregates of its student and of its subject, in a single statement,
+   * provided that it is still at the given version. The entry is locked before its version and its old value are read.
+   * @param id - the id of the entry
+   * @param value - the new value
+   * @param version - the version the entry is expected at, null to update it at any version
+   * @return the updated entry, or empty if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Grade {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "WITH n, n.value AS old " +
+    "SET n.value = $value, n.version = coalesce(n.version, 0) + 1 " +
+    CHANGE_AGGREGATES +
+    "SET a.sum = a.sum - old + n.value, " +
+    "a.histogram = [i IN range(0, 13) | a.histogram[i] + CASE WHEN i = n.value THEN 1 ELSE 0 END - CASE WHEN i = old THEN 1 ELSE 0 END]) " +
+    "RETURN n")
+  Optional<Grade> updateValueById(@Param("id") String id, @Param("value") int value, @Param("version") Long version);
+
+  /**
+   * Retrieves only the version of the Grade entry with the given id.
+   * @param id - the id of the entry
+   * @return the version, 0 for an entry written before versions existed, or empty if there is no entry with that id
+   */
+  @Query("MATCH (n:Grade {id: $id}) RETURN coalesce(n.version, 0)")
+  Optional<Long> findVersionById(@Param("id") String id);
+
+  /**
+   * Deletes the Grade entry with the given id, together with its relationships, and removes it from
+   * the aggregates of its student and of its subject, in a single statement,
+   * provided that it is still at the given version. The entry is locked before it is read,
+   * so a concurrent delete finds it deleted and does not remove it from the aggregates again.
+   * @param id - the id of the entry
+   * @param version - the version the entry is expected at, null to delete it at any version
+   * @return the number of deleted entries, 0 if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Grade {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    CHANGE_AGGREGATES +
+    "SET a.count = a.count - 1, a.sum = a.sum - n.value, " +
+    "a.histogram = [i IN range(0, 13) | a.histogram[i] - CASE WHEN i = n.value THEN 1 ELSE 0 END]) " +
+    "DETACH DELETE n RETURN count(n)")
+  long deleteByIdReturningCount(@Param("id") String id, @Param("version") Long version);
+
+  /**
+   * Retrieves the ids of the students and of the subjects of the Grade entries with the given ids,
+   * as the keys of their aggregates.
+   * @param ids - the ids of the entries
+   * @return the distinct keys of the aggregates
+   */
+  @Query("MATCH (n:Grade) WHERE n.id IN $ids " +
+    "UNWIND ['" + GradeAggregate.STUDENT_PREFIX + "' + n.studentId, '" + GradeAggregate.SUBJECT_PREFIX + "' + n.subjectId] AS key " +
+    "WITH DISTINCT key WHERE key IS NOT NULL RETURN key")
+  List<String> findAggregateKeysByIds(@Param("ids") List<String> ids);
+
+  /**
+   * Retrieves the keys of the aggregates of the subjects of the Grade entries given to the student with the given id.
+   * @param studentId - the id of the student
+   * @return the distinct keys of the aggregates
+   */
+  @Query("MATCH (n:Grade {studentId: $studentId}) WHERE n.subjectId IS NOT NULL " +
+    "RETURN DISTINCT '" + GradeAggregate.SUBJECT_PREFIX + "' + n.subjectId")
+  List<String> findSubjectAggregateKeysByStudentId(@Param("studentId") String studentId);
+
+  /**
+   * Retrieves the keys of the aggregates of the students of the Grade entries given in the subject with the given id.
+   * @param subjectId - the id of the subject
+   * @return the distinct keys of the aggregates
+   */
+  @Query("MATCH (n:Grade {subjectId: $subjectId}) WHERE n.studentId IS NOT NULL " +
+    "RETURN DISTINCT '" + GradeAggregate.STUDENT_PREFIX + "' + n.studentId")
+  List<String> findStudentAggregateKeysBySubjectId(@Param("subjectId") String subjectId);
+
+  /**
+   * Deletes at most the given number of Grade entries given to the student with the given id,
+   * without changing the aggregates.
+   * @param studentId - the id of the student
+   * @param limit - the maximum number of entries to delete
+   * @return the number of deleted entries
+   */
+  @Transactional
+  @Query("MATCH (n:Grade {studentId: $studentId}) WITH n LIMIT $limit DETACH DELETE n RETURN count(n)")
+  long deleteByStudentIdReturningCount(@Param("studentId") String studentId, @Param("limit") int limit);
 
+  /**
+   * Deletes at most the given number of Grade entries given in the subject with the given id,
+   * without changing the aggregates.
+   * @param subjectId - the id of the subject
+   * @param limit - the maximum number of entries to delete
+   * @return the number of deleted entries
+   */
+  @Transactional
+  @Query("MATCH (n:Grade {subjectId: $subjectId}) WITH n LIMIT $limit DETACH DELETE n RETURN count(n)")
+  long deleteBySubjectIdReturningCount(@Param("subjectId") String subjectId, @Param("limit") int limit);
 }
@@ -2,7 +2,106 @@ package org.scoalaonline.api.repository;
 
 import org.scoalaonline.api.model.LectureMaterial;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface LectureMaterialRepository extends Neo4jRepository<LectureMaterial, String> {
+  /**
+   * Retrieves the first limit LectureMaterial entries ordered by id.
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:LectureMaterial) WHERE n.id IS NOT NULL RETURN n ORDER BY n.id LIMIT $limit")
+  List<LectureMaterial> findFirstPage(@Param("limit") int limit);
+
+  /**
+   * Retrieves at most limit LectureMaterial entries ordered by id, starting after the given id.
+   * @param after - the id to start after
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:LectureMaterial) WHERE n.id > $after RETURN n ORDER BY n.id LIMIT $limit")
+  List<LectureMaterial> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+  /**
+   * Sets the stored document of the LectureMaterial entry with the given id and the searched text of that document,
+   * and increases the version of the entry, in a single statement, provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param documentHash - the hash of the new document in the BlobStore
+   * @param documentSize - the size of the new document in bytes
+   * @param excerpt - the beginning of the new document
+   * @param text - the searched text of the new document
+   * @param version - the version the entry is expected at, null to update it at any version
+   * @return the updated entry, or empty if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:LectureMaterial {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "SET n.documentHash = $documentHash, n.documentSize = $documentSize, n.excerpt = $excerpt, " +
+    "n.version = coalesce(n.version, 0) + 1 REMOVE n.document " +
+    "MERGE (text:LectureMaterialText {id: n.id}) SET text.text = $text RETURN n")
+  Optional<LectureMaterial> updateDocumentById(@Param("id") String id, @Param("documentHash") String documentHash,
+                                               @Param("documentSize") Long documentSize, @Param("excerpt") String excerpt,
+                                               @Param("text") String text, @Param("version") Long version);
+
+  /**
+   * Sets the searched text of the document of the LectureMaterial entry with the given id.
+   * @param id - the id of the entry
+   * @param text - the searched text of its document
+   * @return the number of written texts
+   */
+  @Query("MERGE (n:LectureMaterialText {id: $id}) SET n.text = $text RETURN count(n)")
+  long saveText(@Param("id") String id, @Param("text") String text);
+
+  /**
+   * Sets the searched texts of the documents of many LectureMaterial entries, in a single statement.
+   * @param ids - the ids of the entries
+   * @param texts - the texts of the entries, in the order of their ids
+   * @return the number of written texts
+   */
+  @Query("UNWIND range(0, size($ids) - 1) AS i " +
+    "MERGE (n:LectureMaterialText {id: $ids[i]}) SET n.text = $texts[i] RETURN count(n)")
+  long saveTexts(@Param("ids") List<String> ids, @Param("texts") List<String> texts);
+
+  /**
+   * Deletes the searched texts of the documents of the LectureMaterial entries with the given ids.
+   * @param ids - the ids of the entries
+   * @return the number of deleted texts
+   */
+  @Query("MATCH (n:LectureMaterialText) WHERE n.id IN $ids DELETE n RETURN count(n)")
+  long deleteTextsByIds(@Param("ids") Collection<String> ids);
+
+  /**
+   * Retrieves only the hash of the stored document of the LectureMaterial entry with the given id.
+   * @param id - the id of the entry
+   * @return the hash, or empty if there is no entry with that id or its document has not been stored yet
+   */
+  @Query("MATCH (n:LectureMaterial {id: $id}) WHERE n.documentHash IS NOT NULL RETURN n.documentHash")
+  Optional<String> findDocumentHashById(@Param("id") String id);
+
+  /**
+   * Retrieves only the version of the LectureMaterial entry with the given id.
+   * @param id - the id of the entry
+   * @return the version, 0 for an entry written before versions existed, or empty if there is no entry with that id
+   */
+  @Query("MATCH (n:LectureMaterial {id: $id}) RETURN coalesce(n.version, 0)")
+  Optional<Long> findVersionById(@Param("id") String id);
 
+  /**
+   * Deletes the LectureMaterial entry with the given id, together with its relationships and the searched text
+   * of its document, in a single statement, provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param version - the version the entry is expected at, null to delete it at any version
+   * @return the number of deleted entries, 0 if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:LectureMaterial {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "OPTIONAL MATCH (text:LectureMaterialText {id: n.id}) DETACH DELETE n, text RETURN count(n)")
+  long deleteByIdReturningCount(@Param("id") String id, @Param("version") Long version);
 }
@@ -2,6 +2,84 @@ package org.scoalaonline.api.repository;
 
 import org.scoalaonline.api.model.Lecture;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface LectureRepository extends Neo4jRepository<Lecture, String> {
+  /**
+   * Retrieves the first limit Lecture entries ordered by id.
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Lecture) WHERE n.id IS NOT NULL RETURN n ORDER BY n.id LIMIT $limit")
+  List<Lecture> findFirstPage(@Param("limit") int limit);
+
+  /**
+   * Retrieves at most limit Lecture entries ordered by id, starting after the given id.
+   * @param after - the id to start after
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Lecture) WHERE n.id > $after RETURN n ORDER BY n.id LIMIT $limit")
+  List<Lecture> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+  /**
+   * Sets the title of the Lecture entry with the given id and increases its version, in a single statement,
+   * provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param title - the new title
+   * @param version - the version the entry is expected at, null to update it at any version
+   * @return the updated entry, or empty if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Lecture {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "SET n.title = $title, n.version = coalesce(n.version, 0) + 1 RETURN n")
+  Optional<Lecture> updateTitleById(@Param("id") String id, @Param("title") String title, @Param("version") Long version);
+
+  /**
+   * Retrieves only the version of the Lecture entry with the given id.
+   * @param id - the id of the entry
+   * @return the version, 0 for an entry written before versions existed, or empty if there is no entry with that id
+   */
+  @Query("MATCH (n:Lecture {id: $id}) RETURN coalesce(n.version, 0)")
+  Optional<Long> findVersionById(@Param("id") String id);
+
+  /**
+   * Deletes the Lecture entry with the given id, together with its relationships, in a single statement,
+   * provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param version - the version the entry is expected at, null to delete it at any version
+   * @return the number of deleted entries, 0 if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Lecture {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "DETACH DELETE n RETURN count(n)")
+  long deleteByIdReturningCount(@Param("id") String id, @Param("version") Long version);
+
+  /**
+   * Relates the LectureMaterial entry with the given id to the Lecture entry with the given id, unless it already is.
+   * @param id - the id of the Lecture entry
+   * @param materialId - the id of the LectureMaterial entry
+   * @return 1 if both entries exist, 0 otherwise
+   */
+  @Transactional
+  @Query("MATCH (n:Lecture {id: $id}) MATCH (material:LectureMaterial {id: $materialId}) " +
+    "MERGE (n)-[:HAS_MATERIAL]->(material) RETURN count(*)")
+  long addMaterialById(@Param("id") String id, @Param("materialId") String materialId);
+
+  /**
+   * Removes the relationship between the Lecture entry with the given id and the LectureMaterial entry with the given id.
+   * @param id - the id of the Lecture entry
+   * @param materialId - the id of the LectureMaterial entry
+   * @return the number of removed relationships, 0 if the entries are not related
+   */
+  @Transactional
+  @Query("MATCH (:Lecture {id: $id})-[r:HAS_MATERIAL]->(:LectureMaterial {id: $materialId}) DELETE r RETURN count(r)")
+  long removeMaterialById(@Param("id") String id, @Param("materialId") String materialId);
 }
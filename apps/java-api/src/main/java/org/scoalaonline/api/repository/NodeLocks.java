@@ -0,0 +1,19 @@
+package org.scoalaonline.api.repository;
+
+/**
+ * Cypher fragments for the statements which read a node before writing it.
+ * Neo4j reads committed data without locking it, so a condition on the version of a node, or a value read
+ * to be subtracted from an aggregate, may be read before a concurrent statement writing the node commits.
+ * The statements take the write lock of the node first and only read it once the lock is held,
+ * when every write before theirs has been committed.
+ */
+public final class NodeLocks {
+  /**
+   * Takes the write lock of the node n, held until the end of the transaction, without changing it,
+   * then looks the node up again, so a node deleted by the statement it waited for is no longer matched.
+   */
+  public static final String LOCK_N = "SET n._lock = true REMOVE n._lock WITH id(n) AS locked MATCH (n) WHERE id(n) = locked WITH n ";
+
+  private NodeLocks() {
+  }
+}
@@ -2,9 +2,57 @@ package org.scoalaonline.api.repository;
 
 import org.scoalaonline.api.model.Role;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface RoleRepository extends Neo4jRepository<Role, String> {
   Optional<Role> findByName(String name);
+
+  /**
+   * Retrieves the first limit Role entries ordered by id.
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Role) WHERE n.id IS NOT NULL RETURN n ORDER BY n.id LIMIT $limit")
+  List<Role> findFirstPage(@Param("limit") int limit);
+
+  /**
+   * Retrieves at most limit Role entries ordered by id, starting after the given id.
+   * @param after - the id to start after
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Role) WHERE n.id > $after RETURN n ORDER BY n.id LIMIT $limit")
+  List<Role> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+  /**
+   * Sets the name of the Role entry with the given id and increases its version, in a single statement,
+   * provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param name - the new name
+   * @param version - the version the entry is expected at, null to update it at any version
+   * @return the updated entry, or empty if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Role {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "SET n.name = $name, n.version = coalesce(n.version, 0) + 1 RETURN n")
+  Optional<Role> updateNameById(@Param("id") String id, @Param("name") String name, @Param("version") Long version);
+
+  /**
+   * Deletes the Role entry with the given id, together with its relationships, in a single statement,
+   * provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param version - the version the entry is expected at, null to delete it at any version
+   * @return the number of deleted entries, 0 if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Role {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "DETACH DELETE n RETURN count(n)")
+  long deleteByIdReturningCount(@Param("id") String id, @Param("version") Long version);
 }
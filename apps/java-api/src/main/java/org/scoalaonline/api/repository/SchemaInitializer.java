@@ -0,0 +1,362 @@
+package org.scoalaonline.api.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.summary.ResultSummary;
+import org.scoalaonline.api.model.Indexed;
+import org.scoalaonline.api.model.Searchable;
+import org.scoalaonline.api.model.Unique;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+import org.springframework.data.neo4j.core.mapping.Neo4jPersistentEntity;
+import org.springframework.data.neo4j.core.mapping.Neo4jPersistentProperty;
+import org.springframework.data.neo4j.core.schema.Node;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Creates the uniqueness constraints the repositories rely on once the beans are created,
+ * before the web server is started, so no request is served before the schema is online.
+ * Every @Node class gets one for its @Id property and one for each property marked with @Unique,
+ * each constraint also providing the index used by the lookups on that property.
+ * Properties marked with @Indexed get an index without a constraint,
+ * the ones marked with @Searchable share one full-text index.
+ * Existing constraints and indexes are left untouched and the initializer waits until all indexes are online.
+ * Nodes written before their class had a @Version property are then given version 0, in batches,
+ * so the optimistic locking of the repositories can match them.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SchemaInitializer implements SmartInitializingSingleton {
+  private final Neo4jMappingContext mappingContext;
+  private final Neo4jClient neo4jClient;
+
+  @Value("${neo4j.schema.bootstrap:true}")
+  private boolean enabled;
+
+  @Value("${neo4j.schema.await-indexes-seconds:300}")
+  private long awaitIndexesSeconds;
+
+  @Value("${neo4j.schema.version-batch-size:10000}")
+  private int versionBatchSize;
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    initialize();
+  }
+
+  /**
+   * Creates the missing constraints and indexes and waits for the indexes.
+   * Failures are logged and never prevent the application from running.
+   */
+  public void initialize() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      List<UniqueConstraint> constraints = getRequiredConstraints();
+      log.info("Ensuring {} uniqueness constraints...", constraints.size());
+
+      List<String> created = new ArrayList<>();
+      for (UniqueConstraint constraint : constraints) {
+        if (create(constraint.getName(), constraint.toCypher())) {
+          created.add(constraint.getName());
+        }
+      }
+      for (PropertyIndex index : getRequiredIndexes()) {
+        if (create(index.getName(), index.toCypher())) {
+          created.add(index.getName());
+        }
+      }
+      Optional<FullTextIndex> fullTextIndex = getFullTextIndex();
+      if (fullTextIndex.isPresent()) {
+        dropIfChanged(fullTextIndex.get());
+        if (create(Searchable.INDEX, fullTextIndex.get().toCypher())) {
+          created.add(Searchable.INDEX);
+        }
+      }
+
+      neo4jClient.query("CALL db.awaitIndexes($timeout)")
+        .bind(awaitIndexesSeconds).to("timeout")
+        .run();
+      log.info("Schema is online, created constraints and indexes: {}.", created.isEmpty() ? "none" : String.join(", ", created));
+
+      getVersionProperties().forEach(this::initializeVersions);
+    } catch (DataAccessResourceFailureException e) {
+      log.error("Could not reach the database to initialize the schema: {}", e.getMessage());
+    } catch (RuntimeException e) {
+      log.error("Could not initialize the schema: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Lists the uniqueness constraints required by the @Node classes of the mapping context.
+   * @return the constraints ordered by name
+   */
+  List<UniqueConstraint> getRequiredConstraints() {
+    List<UniqueConstraint> constraints = new ArrayList<>();
+    for (Neo4jPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+      if (!entity.isAnnotationPresent(Node.class)) {
+        continue;
+      }
+      String label = entity.getPrimaryLabel();
+      entity.getIdDescription().getOptionalGraphPropertyName()
+        .ifPresent(property -> constraints.add(new UniqueConstraint(label, property)));
+      for (Neo4jPersistentProperty property : entity) {
+        if (property.isAnnotationPresent(Unique.class) && !property.isIdProperty()) {
+          constraints.add(new UniqueConstraint(label, property.getPropertyName()));
+        }
+      }
+    }
+    constraints.sort(Comparator.comparing(UniqueConstraint::getName));
+    return constraints;
+  }
+
+  /**
+   * Lists the indexes required by the properties marked with @Indexed of the @Node classes of the mapping context.
+   * @return the indexes ordered by name
+   */
+  List<PropertyIndex> getRequiredIndexes() {
+    List<PropertyIndex> indexes = new ArrayList<>();
+    for (Neo4jPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+      if (!entity.isAnnotationPresent(Node.class)) {
+        continue;
+      }
+      for (Neo4jPersistentProperty property : entity) {
+        if (property.isAnnotationPresent(Indexed.class)) {
+          indexes.add(new PropertyIndex(entity.getPrimaryLabel(), property.getPropertyName()));
+        }
+      }
+    }
+    indexes.sort(Comparator.comparing(PropertyIndex::getName));
+    return indexes;
+  }
+
+  /**
+   * Builds the full-text index of the properties marked with @Searchable of the @Node classes of the mapping context.
+   * @return the index, or empty if no property is marked
+   */
+  Optional<FullTextIndex> getFullTextIndex() {
+    Set<String> labels = new TreeSet<>();
+    Set<String> properties = new TreeSet<>();
+    for (Neo4jPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+      if (!entity.isAnnotationPresent(Node.class)) {
+        continue;
+      }
+      for (Neo4jPersistentProperty property : entity) {
+        if (property.isAnnotationPresent(Searchable.class)) {
+          labels.add(entity.getPrimaryLabel());
+          properties.add(property.getPropertyName());
+        }
+      }
+    }
+    return labels.isEmpty() ? Optional.empty() : Optional.of(new FullTextIndex(List.copyOf(labels), List.copyOf(properties)));
+  }
+
+  /**
+   * Lists the @Version properties of the @Node classes of the mapping context.
+   * @return the name of the version property by label, ordered by label
+   */
+  Map<String, String> getVersionProperties() {
+    Map<String, String> properties = new TreeMap<>();
+    for (Neo4jPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+      if (entity.isAnnotationPresent(Node.class) && entity.hasVersionProperty()) {
+        properties.put(entity.getPrimaryLabel(), entity.getRequiredVersionProperty().getPropertyName());
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Sets the version of the nodes with the given label that have none to 0,
+   * one transaction per batch of the configured size.
+   * @param label - the label of the nodes
+   * @param property - the name of the version property
+   */
+  private void initializeVersions(String label, String property) {
+    long total = 0;
+    long count;
+    do {
+      count = neo4jClient.query("MATCH (n:`" + label + "`) WHERE n.`" + property + "` IS NULL " +
+          "WITH n LIMIT $limit SET n.`" + property + "` = 0 RETURN count(n)")
+        .bind(versionBatchSize).to("limit")
+        .fetchAs(Long.class).one().orElse(0L);
+      total += count;
+    } while (count == versionBatchSize);
+    if (total > 0) {
+      log.info("Initialized the version of {} {} nodes.", total, label);
+    }
+  }
+
+  /**
+   * Creates the constraint or index unless an equivalent one already exists.
+   * @param name - the name of the constraint or index
+   * @param cypher - the statement creating it
+   * @return true if the constraint or index has been created
+   */
+  private boolean create(String name, String cypher) {
+    try {
+      ResultSummary summary = neo4jClient.query(cypher).run();
+      return summary.counters().constraintsAdded() + summary.counters().indexesAdded() > 0;
+    } catch (DataAccessResourceFailureException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      // Most likely existing duplicate values, the other constraints can still be created.
+      log.error("Could not create {}: {}", name, e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Drops the existing full-text index if it covers other labels or properties than the required one,
+   * so that it is created again with the required ones.
+   */
+  private void dropIfChanged(FullTextIndex index) {
+    Optional<Map<String, Object>> existing = neo4jClient.query("SHOW INDEXES YIELD name, labelsOrTypes, properties " +
+        "WHERE name = $name RETURN labelsOrTypes, properties")
+      .bind(Searchable.INDEX).to("name")
+      .fetch().one();
+    if (existing.isEmpty()) {
+      return;
+    }
+    Set<Object> labels = new TreeSet<>((Collection<?>) existing.get().get("labelsOrTypes"));
+    Set<Object> properties = new TreeSet<>((Collection<?>) existing.get().get("properties"));
+    if (!labels.equals(new TreeSet<>(index.getLabels())) || !properties.equals(new TreeSet<>(index.getProperties()))) {
+      log.info("Dropping {} to index {} of {}...", Searchable.INDEX, index.getProperties(), index.getLabels());
+      neo4jClient.query("DROP INDEX " + Searchable.INDEX).run();
+    }
+  }
+
+  /**
+   * A uniqueness constraint on one property of the nodes with a label.
+   */
+  static final class UniqueConstraint {
+    private final String label;
+    private final String property;
+
+    UniqueConstraint(String label, String property) {
+      this.label = label;
+      this.property = property;
+    }
+
+    String getLabel() {
+      return label;
+    }
+
+    String getProperty() {
+      return property;
+    }
+
+    String getName() {
+      return (label + "_" + property + "_unique").toLowerCase();
+    }
+
+    String toCypher() {
+      return "CREATE CONSTRAINT " + getName() + " IF NOT EXISTS " +
+        "ON (n:`" + label + "`) ASSERT n.`" + property + "` IS UNIQUE";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof UniqueConstraint)) return false;
+      UniqueConstraint that = (UniqueConstraint) o;
+      return label.equals(that.label) && property.equals(that.property);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(label, property);
+    }
+
+    @Override
+    public String toString() {
+      return getName();
+    }
+  }
+
+  /**
+   * An index on one property of the nodes with a label.
+   */
+  static final class PropertyIndex {
+    private final String label;
+    private final String property;
+
+    PropertyIndex(String label, String property) {
+      this.label = label;
+      this.property = property;
+    }
+
+    String getName() {
+      return (label + "_" + property + "_index").toLowerCase();
+    }
+
+    String toCypher() {
+      return "CREATE INDEX " + getName() + " IF NOT EXISTS " +
+        "FOR (n:`" + label + "`) ON (n.`" + property + "`)";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof PropertyIndex)) return false;
+      PropertyIndex that = (PropertyIndex) o;
+      return label.equals(that.label) && property.equals(that.property);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(label, property);
+    }
+
+    @Override
+    public String toString() {
+      return getName();
+    }
+  }
+
+  /**
+   * The full-text index on some properties of the nodes with some labels.
+   */
+  static final class FullTextIndex {
+    private final List<String> labels;
+    private final List<String> properties;
+
+    FullTextIndex(List<String> labels, List<String> properties) {
+      this.labels = labels;
+      this.properties = properties;
+    }
+
+    List<String> getLabels() {
+      return labels;
+    }
+
+    List<String> getProperties() {
+      return properties;
+    }
+
+    String toCypher() {
+      StringJoiner labelList = new StringJoiner("|");
+      labels.forEach(label -> labelList.add("`" + label + "`"));
+      StringJoiner propertyList = new StringJoiner(", ");
+      properties.forEach(property -> propertyList.add("n.`" + property + "`"));
+      return "CREATE FULLTEXT INDEX " + Searchable.INDEX + " IF NOT EXISTS " +
+        "FOR (n:" + labelList + ") ON EACH [" + propertyList + "]";
+    }
+  }
+}
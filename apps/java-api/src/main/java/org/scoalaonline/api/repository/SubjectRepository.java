@@ -3,7 +3,93 @@ package org.scoalaonline.api.repository;
 import org.scoalaonline.api.model.LectureMaterial;
 import org.scoalaonline.api.model.Subject;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
+import org.springframework.data.neo4j.repository.query.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface SubjectRepository extends Neo4jRepository<Subject, String> {
+  /**
+   * Retrieves the first limit Subject entries ordered by id.
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Subject) WHERE n.id IS NOT NULL RETURN n ORDER BY n.id LIMIT $limit")
+  List<Subject> findFirstPage(@Param("limit") int limit);
+
+  /**
+   * Retrieves at most limit Subject entries ordered by id, starting after the given id.
+   * @param after - the id to start after
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:Subject) WHERE n.id > $after RETURN n ORDER BY n.id LIMIT $limit")
+  List<Subject> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+  /**
+   * Sets the value of the Subject entry with the given id and increases its version, in a single statement,
+   * provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param value - the new value
+   * @param version - the version the entry is expected at, null to update it at any version
+   * @return the updated entry, or empty if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Subject {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "SET n.value = $value, n.version = coalesce(n.version, 0) + 1 RETURN n")
+  Optional<Subject> updateValueById(@Param("id") String id, @Param("value") String value, @Param("version") Long version);
+
+  /**
+   * Retrieves only the version of the Subject entry with the given id.
+   * @param id - the id of the entry
+   * @return the version, 0 for an entry written before versions existed, or empty if there is no entry with that id
+   */
+  @Query("MATCH (n:Subject {id: $id}) RETURN coalesce(n.version, 0)")
+  Optional<Long> findVersionById(@Param("id") String id);
+
+  /**
+   * Deletes the Subject entry with the given id, together with its relationships, in a single statement,
+   * provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param version - the version the entry is expected at, null to delete it at any version
+   * @return the number of deleted entries, 0 if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:Subject {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "DETACH DELETE n RETURN count(n)")
+  long deleteByIdReturningCount(@Param("id") String id, @Param("version") Long version);
+
+  /**
+   * Relates the Lecture entry with the given id to the Subject entry with the given id, unless it already is.
+   * @param id - the id of the Subject entry
+   * @param lectureId - the id of the Lecture entry
+   * @return 1 if both entries exist, 0 otherwise
+   */
+  @Transactional
+  @Query("MATCH (n:Subject {id: $id}) MATCH (lecture:Lecture {id: $lectureId}) " +
+    "MERGE (n)-[:HAS_LECTURE]->(lecture) RETURN count(*)")
+  long addLectureById(@Param("id") String id, @Param("lectureId") String lectureId);
+
+  /**
+   * Removes the relationship between the Subject entry with the given id and the Lecture entry with the given id.
+   * @param id - the id of the Subject entry
+   * @param lectureId - the id of the Lecture entry
+   * @return the number of removed relationships, 0 if the entries are not related
+   */
+  @Transactional
+  @Query("MATCH (:Subject {id: $id})-[r:HAS_LECTURE]->(:Lecture {id: $lectureId}) DELETE r RETURN count(r)")
+  long removeLectureById(@Param("id") String id, @Param("lectureId") String lectureId);
 
+  /**
+   * Retrieves which of the given ids are ids of Subject entries.
+   * @param ids - the ids to look up
+   * @return the ids of the existing entries
+   */
+  @Query("MATCH (n:Subject) WHERE n.id IN $ids RETURN n.id")
+  List<String> findExistingIds(@Param("ids") Collection<String> ids);
 }
@@ -5,7 +5,9 @@ import org.scoalaonline.api.model.User;
 import org.springframework.data.neo4j.repository.Neo4jRepository;
 import org.springframework.data.neo4j.repository.query.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,4 +16,154 @@ public interface UserRepository extends Neo4jRepository<User, String> {
   Optional<User> findByUsername(String username);
   @Query("MATCH (a:User)-[r:HAS_ROLE]->(b:Role) WHERE b.name=$roleName return a")
   List<User> findAllByRolesContaining(@Param("roleName") String roleName);
+
+  /**
+   * Retrieves the first limit User entries ordered by id, together with their roles.
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:User) WHERE n.id IS NOT NULL " +
+    "WITH n ORDER BY n.id LIMIT $limit " +
+    "OPTIONAL MATCH (n)-[r:HAS_ROLE]->(role:Role) " +
+    "RETURN n, collect(r), collect(role) ORDER BY n.id")
+  List<User> findFirstPage(@Param("limit") int limit);
+
+  /**
+   * Retrieves at most limit User entries ordered by id, starting after the given id,
+   * together with their roles.
+   * @param after - the id to start after
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:User) WHERE n.id > $after " +
+    "WITH n ORDER BY n.id LIMIT $limit " +
+    "OPTIONAL MATCH (n)-[r:HAS_ROLE]->(role:Role) " +
+    "RETURN n, collect(r), collect(role) ORDER BY n.id")
+  List<User> findPageAfter(@Param("after") String after, @Param("limit") int limit);
+
+  /**
+   * Retrieves the first limit User entries who have the Role given by roleName,
+   * ordered by id, together with their roles.
+   * @param roleName - name of the Role entry
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:User)-[:HAS_ROLE]->(:Role {name: $roleName}) WHERE n.id IS NOT NULL " +
+    "WITH n ORDER BY n.id LIMIT $limit " +
+    "OPTIONAL MATCH (n)-[r:HAS_ROLE]->(role:Role) " +
+    "RETURN n, collect(r), collect(role) ORDER BY n.id")
+  List<User> findFirstPageByRole(@Param("roleName") String roleName, @Param("limit") int limit);
+
+  /**
+   * Retrieves at most limit User entries who have the Role given by roleName,
+   * ordered by id, starting after the given id, together with their roles.
+   * @param roleName - name of the Role entry
+   * @param after - the id to start after
+   * @param limit - the maximum number of entries
+   * @return the entries
+   */
+  @Query("MATCH (n:User)-[:HAS_ROLE]->(:Role {name: $roleName}) WHERE n.id > $after " +
+    "WITH n ORDER BY n.id LIMIT $limit " +
+    "OPTIONAL MATCH (n)-[r:HAS_ROLE]->(role:Role) " +
+    "RETURN n, collect(r), collect(role) ORDER BY n.id")
+  List<User> findPageByRoleAfter(@Param("roleName") String roleName, @Param("after") String after, @Param("limit") int limit);
+
+  /**
+   * Retrieves only the version of the User entry with the given id.
+   * @param id - the id of the entry
+   * @return the version, 0 for an entry written before versions existed, or empty if there is no entry with that id
+   */
+  @Query("MATCH (n:User {id: $id}) RETURN coalesce(n.version, 0)")
+  Optional<Long> findVersionById(@Param("id") String id);
+
+  /**
+   * Sets the name and password of the User entry with the given id, replaces its roles
+   * and increases its version, in a single statement.
+   * Nothing is changed if a non empty username is given and it differs from the stored one,
+   * if the entry is no longer at the given version or if one of the roles does not exist.
+   * @param id - the id of the entry
+   * @param username - the username sent by the client, may be null or empty
+   * @param name - the new name
+   * @param password - the new, already encoded, password
+   * @param roleIds - the distinct ids of the new roles
+   * @param version - the version the entry is expected at, null to update it at any version
+   * @return the updated entry with its roles, or empty if there is no entry with that id, username and version
+   * or one of the roles does not exist
+   */
+  @Transactional
+  @Query("MATCH (n:User {id: $id}) " +
+    NodeLocks.LOCK_N +
+    "WHERE ($username IS NULL OR $username = '' OR n.username = $username) " +
+    "AND ($version IS NULL OR coalesce(n.version, 0) = $version) " +
+    "OPTIONAL MATCH (role:Role) WHERE role.id IN $roleIds " +
+    "WITH n, collect(role) AS roles WHERE size(roles) = size($roleIds) " +
+    "SET n.name = $name, n.password = $password, n.version = coalesce(n.version, 0) + 1 " +
+    "WITH n, roles OPTIONAL MATCH (n)-[old:HAS_ROLE]->() DELETE old " +
+    "WITH DISTINCT n, roles UNWIND roles AS role " +
+    "CREATE (n)-[r:HAS_ROLE]->(role) " +
+    "RETURN n, collect(r), collect(role)")
+  Optional<User> updateById(@Param("id") String id, @Param("username") String username, @Param("name") String name,
+                            @Param("password") String password, @Param("roleIds") List<String> roleIds,
+                            @Param("version") Long version);
+
+  /**
+   * Deletes the User entry with the given id, together with its relationships, in a single statement,
+   * provided that it is still at the given version.
+   * @param id - the id of the entry
+   * @param version - the version the entry is expected at, null to delete it at any version
+   * @return the username of the deleted entry, or empty if there is no entry with that id at that version
+   */
+  @Transactional
+  @Query("MATCH (n:User {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "WITH n, n.username AS username DETACH DELETE n RETURN username")
+  Optional<String> deleteByIdReturningUsername(@Param("id") String id, @Param("version") Long version);
+
+  /**
+   * Creates a User entry with the given username, unless one already exists, and gives it the roles
+   * with the given ids, in a single statement.
+   * Relies on the uniqueness constraint on the username to serialize concurrent registrations.
+   * The relationships are written by the statement, so the shared Role entries are neither saved nor versioned.
+   * @param id - the id of the new entry
+   * @param name - the name
+   * @param username - the username
+   * @param password - the already encoded password
+   * @param roleIds - the distinct ids of the roles
+   * @return the created entry with its roles, or empty if the username is used or one of the roles does not exist
+   */
+  @Transactional
+  @Query("MATCH (role:Role) WHERE role.id IN $roleIds " +
+    "WITH collect(role) AS roles WHERE size(roles) = size($roleIds) " +
+    "MERGE (n:User {username: $username}) " +
+    "ON CREATE SET n.id = $id, n.name = $name, n.password = $password, n.version = 0 " +
+    "WITH n, roles WHERE n.id = $id " +
+    "UNWIND roles AS role CREATE (n)-[r:HAS_ROLE]->(role) " +
+    "RETURN n, collect(r), collect(role)")
+  Optional<User> createWithRoles(@Param("id") String id, @Param("name") String name, @Param("username") String username,
+                                 @Param("password") String password, @Param("roleIds") List<String> roleIds);
+
+  /**
+   * Gives the User entry with the given id the role with the given id and increases its version,
+   * in a single statement, provided that it is still at the given version.
+   * The relationship is written by the statement, so the shared Role entry is neither saved nor versioned.
+   * @param id - the id of the entry
+   * @param roleId - the id of the role
+   * @param version - the version the entry is expected at, null to update it at any version
+   * @return 1 if the role was given, 0 if there is no entry with that id at that version or no role with that id
+   */
+  @Transactional
+  @Query("MATCH (n:User {id: $id}) " + NodeLocks.LOCK_N +
+    "WHERE $version IS NULL OR coalesce(n.version, 0) = $version " +
+    "MATCH (role:Role {id: $roleId}) " +
+    "MERGE (n)-[:HAS_ROLE]->(role) " +
+    "SET n.version = coalesce(n.version, 0) + 1 RETURN count(n)")
+  long addRoleById(@Param("id") String id, @Param("roleId") String roleId, @Param("version") Long version);
+
+  /**
+   * Retrieves which of the given ids are ids of User entries.
+   * @param ids - the ids to look up
+   * @return the ids of the existing entries
+   */
+  @Query("MATCH (n:User) WHERE n.id IN $ids RETURN n.id")
+  List<String> findExistingIds(@Param("ids") Collection<String> ids);
 }
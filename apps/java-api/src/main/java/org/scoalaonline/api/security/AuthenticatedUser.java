@@ -0,0 +1,29 @@
+package org.scoalaonline.api.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Spring Security UserDetails that also carries the id of the User entry it was built from
+ * and the version of its roles at the time they were read.
+ */
+public class AuthenticatedUser extends User {
+  private final String id;
+  private final long roleVersion;
+
+  public AuthenticatedUser(String id, String username, String password, Collection<? extends GrantedAuthority> authorities, long roleVersion) {
+    super(username, password, authorities);
+    this.id = id;
+    this.roleVersion = roleVersion;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public long getRoleVersion() {
+    return roleVersion;
+  }
+}
@@ -0,0 +1,103 @@
+package org.scoalaonline.api.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.exception.user.PasswordHashingRejectedException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the hashing and matching of the delegate PasswordEncoder on a dedicated, fixed size pool
+ * with a bounded queue, so expensive hashes (BCrypt) cannot occupy every request thread.
+ * When the queue is full the work is rejected right away with a PasswordHashingRejectedException.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+  private final PasswordEncoder delegate;
+  private final ThreadPoolExecutor executor;
+  private final long retryAfterSeconds;
+  private final Timer encodeTimer;
+  private final Timer matchesTimer;
+  private final Counter rejectedCounter;
+
+  public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long retryAfterSeconds, MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.retryAfterSeconds = retryAfterSeconds;
+
+    int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, queue,
+      new CustomizableThreadFactory("password-hashing-"), new ThreadPoolExecutor.AbortPolicy());
+
+    this.encodeTimer = Timer.builder("password.hashing").tag("operation", "encode").register(meterRegistry);
+    this.matchesTimer = Timer.builder("password.hashing").tag("operation", "matches").register(meterRegistry);
+    this.rejectedCounter = Counter.builder("password.hashing.rejected").register(meterRegistry);
+    Gauge.builder("password.hashing.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+    Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+
+    log.info("Password hashing pool started with {} threads and a queue of {}.", poolSize, queueCapacity);
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return submit(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return submit(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return delegate.upgradeEncoding(encodedPassword);
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  /**
+   * Runs the task on the pool and waits for its result.
+   * @param task the hashing work
+   * @return the result of the task
+   * @throws PasswordHashingRejectedException if the queue of the pool is full
+   */
+  private <T> T submit(Callable<T> task) {
+    Future<T> future;
+    try {
+      future = executor.submit(task);
+    } catch (RejectedExecutionException e) {
+      rejectedCounter.increment();
+      log.warn("Password hashing pool is saturated, rejecting the request.");
+      throw new PasswordHashingRejectedException("Password hashing is temporarily unavailable.", retryAfterSeconds);
+    }
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for password hashing.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Password hashing failed.", e.getCause());
+    }
+  }
+}
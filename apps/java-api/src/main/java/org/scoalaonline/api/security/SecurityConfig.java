@@ -14,7 +14,7 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -27,18 +27,19 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @RequiredArgsConstructor
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
   private final UserDetailsService userDetailsService;
-  private final BCryptPasswordEncoder bCryptPasswordEncoder;
+  private final PasswordEncoder passwordEncoder;
   private final JWTService jwtService;
+  private final VerifiedTokenCache verifiedTokenCache;
 
   /**
-   * Sets a BCryptPasswordEncoder for encoding UserDetails password
+   * Sets the bounded BCrypt PasswordEncoder for encoding UserDetails password
    * 
    * @param auth
    * @throws Exception
    */
   @Override
   protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-    auth.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+    auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
   }
 
   /**
@@ -62,17 +63,22 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     http.authorizeRequests().antMatchers(HttpMethod.GET, "/").permitAll();
 
-    http.authorizeRequests().antMatchers(HttpMethod.GET, "/users/**").hasAnyAuthority("ROLE_ADMIN");
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/actuator/**").hasAnyAuthority("ROLE_ADMIN");
+
+    // The specific user routes come first, the first matching rule wins.
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/users/me").authenticated();
     http.authorizeRequests().antMatchers(HttpMethod.GET, "/users/role/**").hasAnyAuthority("ROLE_ADMIN");
-    // Custom authorization implemented in UserController.
-    http.authorizeRequests().antMatchers(HttpMethod.GET, "/users/username/**").permitAll();
+    // Authenticated users only, the rest of the check is implemented in UserController.
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/users/username/**").authenticated();
     http.authorizeRequests().antMatchers(HttpMethod.POST, "/users/register/**").permitAll();
     http.authorizeRequests().antMatchers(HttpMethod.GET, "/users/{id}/**")
         .access("@userSecurity.hasUserId(authentication,#id) or hasAnyAuthority(\"ROLE_ADMIN\")");
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/users/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.POST, "/users/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.PATCH, "/users/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.DELETE, "/users/**").hasAnyAuthority("ROLE_ADMIN");
 
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/lecture-materials/uploads/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.GET, "/lecture-materials/**").permitAll();
     http.authorizeRequests().antMatchers(HttpMethod.POST, "/lecture-materials/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.PATCH, "/lecture-materials/**").hasAnyAuthority("ROLE_ADMIN");
@@ -88,18 +94,27 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     http.authorizeRequests().antMatchers(HttpMethod.PATCH, "/subjects/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.DELETE, "/subjects/**").hasAnyAuthority("ROLE_ADMIN");
 
-    http.authorizeRequests().antMatchers(HttpMethod.GET, "/grades/**").permitAll();
+    // Grades are only read by the student they are given to, or by an admin.
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/grades/statistics/students/{studentId}/**")
+        .access("@userSecurity.hasUserId(authentication,#studentId) or hasAnyAuthority(\"ROLE_ADMIN\")");
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/grades/statistics/subjects/**").authenticated();
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/grades/{id}/**")
+        .access("hasAnyAuthority(\"ROLE_ADMIN\") or @userSecurity.hasGradeId(authentication,#id)");
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/grades/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.POST, "/grades/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.PATCH, "/grades/**").hasAnyAuthority("ROLE_ADMIN");
     http.authorizeRequests().antMatchers(HttpMethod.DELETE, "/grades/**").hasAnyAuthority("ROLE_ADMIN");
 
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/search/**").permitAll();
+    http.authorizeRequests().antMatchers(HttpMethod.GET, "/autocomplete/**").permitAll();
+
     http.authorizeRequests().antMatchers("/**").denyAll();
 
     http.authorizeRequests().anyRequest().authenticated();
 
     http.addFilter(customAuthenticationFilter);
 
-    http.addFilterBefore(new CustomAuthorizationFilter(jwtService), UsernamePasswordAuthenticationFilter.class);
+    http.addFilterBefore(new CustomAuthorizationFilter(verifiedTokenCache), UsernamePasswordAuthenticationFilter.class);
   }
 
   /**
@@ -0,0 +1,48 @@
+package org.scoalaonline.api.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Principal of a request authenticated with an access token,
+ * built only from the claims of the token: the username and the id of the User entry.
+ * The id is null for tokens issued before it was added as a claim.
+ */
+public class TokenPrincipal implements AuthenticatedPrincipal, Serializable {
+  private final String id;
+  private final String username;
+
+  public TokenPrincipal(String id, String username) {
+    this.id = id;
+    this.username = username;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public String getName() {
+    return username;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TokenPrincipal that = (TokenPrincipal) o;
+    return Objects.equals(id, that.id) && Objects.equals(username, that.username);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, username);
+  }
+
+  @Override
+  public String toString() {
+    return username;
+  }
+}
@@ -1,7 +1,8 @@
 package org.scoalaonline.api.security;
 
 import lombok.RequiredArgsConstructor;
-import org.scoalaonline.api.model.User;
+import org.scoalaonline.api.exception.grade.GradeNotFoundException;
+import org.scoalaonline.api.service.GradeService;
 import org.scoalaonline.api.service.UserService;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
@@ -13,20 +14,44 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class UserSecurity {
   private final UserService userService;
+  private final GradeService gradeService;
 
   /**
    * Checks if the user with the specified id is the same as the currently authenticated user
+   * The id of the authenticated user is read from the claims of its access token,
+   * tokens without the claim fall back to the cached UserDetails
    * @param authentication information about the currently authenticated user.
    * @param id - the id of the specific user
    * @return true or false based of the check
    */
   public boolean hasUserId(Authentication authentication, String id) {
+    if (authentication.getPrincipal() instanceof TokenPrincipal) {
+      String userId = ((TokenPrincipal) authentication.getPrincipal()).getId();
+      if (userId != null) {
+        return userId.equals(id);
+      }
+    }
     try {
-      User user = userService.getOneById(id);
-      return (authentication.getName().trim().equals(user.getUsername().trim()));
+      AuthenticatedUser user = userService.loadUserByUsername(authentication.getName().trim());
+      return user.getId().equals(id);
     } catch (Exception exception) {
       return false;
     }
 
   }
+
+  /**
+   * Checks if the grade with the specified id is given to the currently authenticated user
+   * @param authentication information about the currently authenticated user.
+   * @param id - the id of the specific grade
+   * @return true or false based of the check, false if there is no grade with that id or it is given to no student
+   */
+  public boolean hasGradeId(Authentication authentication, String id) {
+    try {
+      String studentId = gradeService.getOneById(id).getStudentId();
+      return studentId != null && hasUserId(authentication, studentId);
+    } catch (GradeNotFoundException exception) {
+      return false;
+    }
+  }
 }
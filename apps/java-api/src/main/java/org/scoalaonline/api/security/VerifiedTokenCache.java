@@ -0,0 +1,136 @@
+package org.scoalaonline.api.security;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.scoalaonline.api.service.JWTService;
+import org.scoalaonline.api.service.RoleRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.stream;
+
+/**
+ * Keeps the Authentication built from an already verified access token,
+ * so the HMAC signature and the claims are only checked once per token.
+ * Entries are keyed by a SHA-256 digest of the token and expire together with the token.
+ */
+@Component
+public class VerifiedTokenCache {
+  private static final String CACHE_NAME = "verifiedTokens";
+
+  private final JWTService jwtService;
+  private final RoleRegistry roleRegistry;
+  private final Cache<String, VerifiedToken> cache;
+
+  public VerifiedTokenCache(JWTService jwtService,
+                            RoleRegistry roleRegistry,
+                            MeterRegistry meterRegistry,
+                            @Value("${security.token-cache.maximum-size:10000}") long maximumSize) {
+    this.jwtService = jwtService;
+    this.roleRegistry = roleRegistry;
+    this.cache = Caffeine.newBuilder()
+      .maximumSize(maximumSize)
+      .expireAfter(new TokenExpiry())
+      .recordStats()
+      .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+  }
+
+  /**
+   * Retrieves the Authentication of the given access token, verifying and decoding
+   * the token only if it has not been seen before or its cache entry has been evicted.
+   * @param token the encoded access token
+   * @return the Authentication of the user the token was issued for, with a TokenPrincipal
+   * @throws com.auth0.jwt.exceptions.JWTVerificationException if the token is invalid or expired
+   */
+  public UsernamePasswordAuthenticationToken getAuthentication(String token) {
+    return cache.get(digest(token), key -> verify(token)).getAuthentication();
+  }
+
+  private VerifiedToken verify(String token) {
+    DecodedJWT decodedJWT = jwtService.decodeJWT(token);
+
+    String username = decodedJWT.getSubject();
+    String userId = decodedJWT.getClaim(JWTService.USER_ID_CLAIM).asString();
+    String[] roles = decodedJWT.getClaim(JWTService.ROLES_CLAIM).asArray(String.class);
+    Collection<SimpleGrantedAuthority> authorities = new ArrayList<>();
+    if (roles != null) {
+      stream(roles).forEach(role -> authorities.add(roleRegistry.getAuthority(role)));
+    }
+
+    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(new TokenPrincipal(userId, username), null, authorities);
+    return new VerifiedToken(authentication, decodedJWT.getExpiresAt());
+  }
+
+  private static String digest(String token) {
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available.", e);
+    }
+  }
+
+  /**
+   * A verified token's Authentication together with the moment the token expires.
+   */
+  private static final class VerifiedToken {
+    private final UsernamePasswordAuthenticationToken authentication;
+    private final Date expiresAt;
+
+    private VerifiedToken(UsernamePasswordAuthenticationToken authentication, Date expiresAt) {
+      this.authentication = authentication;
+      this.expiresAt = expiresAt;
+    }
+
+    private UsernamePasswordAuthenticationToken getAuthentication() {
+      return authentication;
+    }
+
+    private Date getExpiresAt() {
+      return expiresAt;
+    }
+  }
+
+  /**
+   * Evicts each entry when the token it was built from expires.
+   * Tokens without an expiration date are kept for at most one day.
+   */
+  private static final class TokenExpiry implements Expiry<String, VerifiedToken> {
+    private static final long MAXIMUM_LIFETIME = TimeUnit.DAYS.toNanos(1);
+
+    @Override
+    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+      if (value.getExpiresAt() == null) {
+        return MAXIMUM_LIFETIME;
+      }
+      long remainingMillis = value.getExpiresAt().getTime() - System.currentTimeMillis();
+      return Math.max(0, Math.min(TimeUnit.MILLISECONDS.toNanos(remainingMillis), MAXIMUM_LIFETIME));
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+
+    @Override
+    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
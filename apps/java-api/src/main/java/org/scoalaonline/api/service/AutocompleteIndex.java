@@ -0,0 +1,238 @@
+package org.scoalaonline.api.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.DTO.AutocompleteHit;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.repository.LectureRepository;
+import org.scoalaonline.api.repository.SubjectRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Completes prefixes of the Lecture titles and Subject values from memory, without querying the DB.
+ * Every word of a title starts one key of a sorted map, made of the normalized title from that word on,
+ * so a prefix matches any word of a title and its completions are read in order from the first key
+ * at or after the prefix, in logarithmic time whatever the number of entries.
+ * The index is built once the application has started and kept up to date by the writes of the services.
+ * The writes of the other instances arrive as invalidations of the "lectures" and "subjects" caches,
+ * the entries they concern are then read again from the DB.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AutocompleteIndex {
+  public static final String LECTURE = "Lecture";
+  public static final String SUBJECT = "Subject";
+
+  private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final char SEPARATOR = '\u0000';
+
+  private final LectureRepository lectureRepository;
+  private final SubjectRepository subjectRepository;
+
+  // Sorted by the normalized text, then the type and the id, so equal titles are all kept.
+  private final ConcurrentSkipListMap<String, AutocompleteHit> entries = new ConcurrentSkipListMap<>();
+  // The keys of every entry, by type and id, to remove them when the entry changes.
+  private final Map<String, List<String>> keysByEntry = new ConcurrentHashMap<>();
+
+  /**
+   * Indexes all the Lecture and Subject entries once the application has started.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void build() {
+    reloadAll(LECTURE);
+    reloadAll(SUBJECT);
+    log.info("Indexed {} titles for autocomplete.", keysByEntry.size());
+  }
+
+  /**
+   * Retrieves the entries with a word of their title starting with the given prefix,
+   * ignoring case and diacritics, in the order of their text from the matching word on.
+   * @param prefix - the prefix, its words being matched as typed
+   * @param limit - the maximum number of entries
+   * @return the entries, empty for a blank prefix
+   */
+  public List<AutocompleteHit> complete(String prefix, int limit) {
+    String key = normalize(prefix);
+    if (key.isEmpty() || limit < 1) {
+      return List.of();
+    }
+    Map<String, AutocompleteHit> hits = new LinkedHashMap<>();
+    for (Map.Entry<String, AutocompleteHit> entry : entries.tailMap(key).entrySet()) {
+      if (!entry.getKey().startsWith(key) || hits.size() == limit) {
+        break;
+      }
+      AutocompleteHit hit = entry.getValue();
+      hits.putIfAbsent(entryKey(hit.getType(), hit.getId()), hit);
+    }
+    return new ArrayList<>(hits.values());
+  }
+
+  /**
+   * Indexes the title of an entry, replacing its previous title.
+   * @param type - the label of the entry
+   * @param id - the id of the entry
+   * @param text - the title, null to remove the entry
+   */
+  public synchronized void put(String type, String id, String text) {
+    remove(type, id);
+    if (text == null) {
+      return;
+    }
+    AutocompleteHit hit = new AutocompleteHit(type, id, text);
+    String suffix = type + SEPARATOR + id;
+    List<String> keys = new ArrayList<>();
+    for (String word : getWordSuffixes(normalize(text))) {
+      String key = word + SEPARATOR + suffix;
+      entries.put(key, hit);
+      keys.add(key);
+    }
+    keysByEntry.put(entryKey(type, id), keys);
+  }
+
+  /**
+   * Removes an entry from the index, nothing changes if it is not indexed.
+   * @param type - the label of the entry
+   * @param id - the id of the entry
+   */
+  public synchronized void remove(String type, String id) {
+    List<String> keys = keysByEntry.remove(entryKey(type, id));
+    if (keys != null) {
+      keys.forEach(entries::remove);
+    }
+  }
+
+  /**
+   * Reads the entries with the given ids again from the DB, removing the ones that no longer exist.
+   * @param type - the label of the entries
+   * @param ids - the ids of the entries
+   */
+  public void reload(String type, Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return;
+    }
+    Set<String> missing = new HashSet<>(ids);
+    if (LECTURE.equals(type)) {
+      lectureRepository.findAllById(ids).forEach(lecture -> {
+        put(LECTURE, lecture.getId(), lecture.getTitle());
+        missing.remove(lecture.getId());
+      });
+    } else {
+      subjectRepository.findAllById(ids).forEach(subject -> {
+        put(SUBJECT, subject.getId(), subject.getValue());
+        missing.remove(subject.getId());
+      });
+    }
+    missing.forEach(id -> remove(type, id));
+  }
+
+  /**
+   * Reads the entries created, updated or deleted by a bulk request again from the DB.
+   * @param type - the label of the entries
+   * @param results - the results of the bulk request
+   */
+  public void reloadWritten(String type, List<BulkItemResult> results) {
+    List<String> ids = new ArrayList<>();
+    for (BulkItemResult result : results) {
+      if (result.getId() != null && (result.getStatus() == BulkItemResult.Status.CREATED
+        || result.getStatus() == BulkItemResult.Status.UPDATED || result.getStatus() == BulkItemResult.Status.DELETED)) {
+        ids.add(result.getId());
+      }
+    }
+    reload(type, ids);
+  }
+
+  /**
+   * Reads all the entries of the given type again from the DB.
+   * @param type - the label of the entries
+   */
+  public void reloadAll(String type) {
+    Map<String, String> texts = LECTURE.equals(type)
+      ? toTexts(lectureRepository.findAll(), Lecture::getId, Lecture::getTitle)
+      : toTexts(subjectRepository.findAll(), Subject::getId, Subject::getValue);
+    for (String entry : keysByEntry.keySet()) {
+      String[] parts = entry.split(String.valueOf(SEPARATOR), 2);
+      if (parts[0].equals(type) && !texts.containsKey(parts[1])) {
+        remove(type, parts[1]);
+      }
+    }
+    texts.forEach((id, text) -> put(type, id, text));
+  }
+
+  /**
+   * Applies the writes of another instance, received as invalidations of the caches of the entries.
+   * @param event - the invalidation
+   */
+  @EventListener
+  public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+    if (event.concerns("lectures")) {
+      apply(LECTURE, event.getKey());
+    }
+    if (event.concerns("subjects")) {
+      apply(SUBJECT, event.getKey());
+    }
+  }
+
+  private void apply(String type, String id) {
+    if (id == null) {
+      reloadAll(type);
+    } else {
+      reload(type, List.of(id));
+    }
+  }
+
+  /**
+   * Lowers the case of a text, removes its diacritics and collapses its whitespace.
+   */
+  static String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+    return WHITESPACE.matcher(stripped.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+  }
+
+  /**
+   * Lists the normalized text from every word on, the whole text first.
+   */
+  static List<String> getWordSuffixes(String normalized) {
+    List<String> suffixes = new ArrayList<>();
+    if (normalized.isEmpty()) {
+      return suffixes;
+    }
+    suffixes.add(normalized);
+    for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+      suffixes.add(normalized.substring(i + 1));
+    }
+    return suffixes;
+  }
+
+  private static String entryKey(String type, String id) {
+    return type + SEPARATOR + id;
+  }
+
+  private static <T> Map<String, String> toTexts(List<T> entries, Function<T, String> id, Function<T, String> text) {
+    Map<String, String> texts = new LinkedHashMap<>();
+    entries.forEach(entry -> texts.put(id.apply(entry), text.apply(entry)));
+    return texts;
+  }
+}
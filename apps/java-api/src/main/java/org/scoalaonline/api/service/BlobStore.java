@@ -0,0 +1,277 @@
+package org.scoalaonline.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Content addressed store of immutable blobs in a local directory, shared by the instances of the API
+ * when it is on a shared volume. Every blob is a file named after the SHA-256 hash of its content,
+ * in a subdirectory named after the first two characters of the hash, so equal contents are stored once.
+ * Contents are written to a temporary file while they are hashed, then moved to their name atomically,
+ * so a blob is either missing or complete. Blobs are never modified and are not removed with their entries,
+ * the ones no longer referenced are removed by a sweep once they have not been committed for a grace period.
+ */
+@Component
+@Slf4j
+public class BlobStore {
+  private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+  // Bytes copied from the input per transfer.
+  private static final long TRANSFER_SIZE = 1 << 20;
+  // Names of the subdirectories of the blobs.
+  private static final Pattern PREFIX = Pattern.compile("[0-9a-f]{2}");
+  // Blobs looked up per batch by a sweep.
+  private static final int SWEEP_BATCH_SIZE = 1000;
+
+  private final Path root;
+  private final Path temporary;
+
+  public BlobStore(@Value("${blob-store.path:data/blobs}") String path) throws IOException {
+    this.root = Paths.get(path).toAbsolutePath();
+    this.temporary = root.resolve("tmp");
+    Files.createDirectories(temporary);
+    log.info("Storing blobs in {}.", root);
+  }
+
+  /**
+   * Stores the UTF-8 encoding of a text.
+   * @param text - the text
+   * @return the stored blob
+   */
+  public Blob put(String text) {
+    try {
+      return put(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Stores the content read from an input stream, hashed as it is written, without buffering it in memory.
+   * @param in - the input stream, read to its end and left open
+   * @return the stored blob
+   * @throws IOException if the input stream cannot be read or the blob cannot be written
+   */
+  public Blob put(InputStream in) throws IOException {
+    MessageDigest digest = newDigest();
+    Path file = Files.createTempFile(temporary, "blob-", ".tmp");
+    try {
+      long size;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        size = transfer(new DigestInputStream(in, digest), channel, 0, Long.MAX_VALUE);
+        channel.force(true);
+      }
+      return commit(file, toHex(digest.digest()), size);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Retrieves the blob with the given hash.
+   * @param hash - the hash of the content
+   * @return the blob, or empty if it is not stored
+   */
+  public Optional<Blob> find(String hash) {
+    Path file = path(hash);
+    try {
+      return Optional.of(new Blob(hash, Files.size(file), file));
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Removes the blobs which are no longer referenced and have not been committed for longer than the grace period,
+   * in batches, and the temporary files left for as long by writes which did not finish.
+   * Committing a content which is already stored commits its blob again, so a blob is kept while a new reference
+   * to it is written, provided that the reference is written within the grace period.
+   * @param grace - the time a blob is kept after it has last been committed
+   * @param referenced - retrieves which of the given hashes are still referenced
+   * @return the number of removed blobs
+   * @throws IOException if the store cannot be listed
+   */
+  public long removeUnreferenced(Duration grace, Function<List<String>, Set<String>> referenced) throws IOException {
+    long before = System.currentTimeMillis() - grace.toMillis();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(temporary)) {
+      for (Path file : files) {
+        if (isOlder(file, before)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+    long removed = 0;
+    List<Path> batch = new ArrayList<>();
+    try (DirectoryStream<Path> directories = Files.newDirectoryStream(root,
+      directory -> PREFIX.matcher(directory.getFileName().toString()).matches())) {
+      for (Path directory : directories) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+          for (Path file : files) {
+            if (HASH.matcher(file.getFileName().toString()).matches() && isOlder(file, before)) {
+              batch.add(file);
+            }
+            if (batch.size() == SWEEP_BATCH_SIZE) {
+              removed += removeUnreferenced(batch, before, referenced);
+              batch.clear();
+            }
+          }
+        }
+      }
+    }
+    return removed + removeUnreferenced(batch, before, referenced);
+  }
+
+  /**
+   * Retrieves the directory of the store, files to be committed have to be written on its volume.
+   */
+  Path getRoot() {
+    return root;
+  }
+
+  /**
+   * Moves a complete file of the store's volume to the name of its hash, unless the same content is already stored,
+   * in which case the file is left where it is.
+   */
+  Blob commit(Path file, String hash, long size) throws IOException {
+    Path target = path(hash);
+    // The modification time of a blob is when it was last committed, the sweep keeps it for the grace period after.
+    FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+    try {
+      Files.setLastModifiedTime(target, now);
+    } catch (NoSuchFileException e) {
+      Files.setLastModifiedTime(file, now);
+      Files.createDirectories(target.getParent());
+      try {
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (FileAlreadyExistsException alreadyStored) {
+        // Stored by a concurrent writer in the meantime.
+      }
+    }
+    return new Blob(hash, size, target);
+  }
+
+  /**
+   * Removes the blobs of a batch which are not referenced, unless they have been committed again since they were listed.
+   */
+  private static long removeUnreferenced(List<Path> files, long before, Function<List<String>, Set<String>> referenced)
+    throws IOException {
+    if (files.isEmpty()) {
+      return 0;
+    }
+    Set<String> kept = referenced.apply(files.stream()
+      .map(file -> file.getFileName().toString())
+      .collect(Collectors.toList()));
+    long removed = 0;
+    for (Path file : files) {
+      if (!kept.contains(file.getFileName().toString()) && isOlder(file, before) && Files.deleteIfExists(file)) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  private static boolean isOlder(Path file, long before) throws IOException {
+    try {
+      return Files.getLastModifiedTime(file).toMillis() < before;
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+
+  private Path path(String hash) {
+    if (hash == null || !HASH.matcher(hash).matches()) {
+      throw new IllegalArgumentException("Invalid blob hash " + hash + ".");
+    }
+    return root.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  /**
+   * Copies at most the given number of bytes from an input stream to a file channel, from the given position,
+   * through a buffer of bounded size.
+   * @return the number of bytes copied, less than the maximum only if the input stream has ended
+   */
+  static long transfer(InputStream in, FileChannel channel, long position, long maximum) throws IOException {
+    ReadableByteChannel source = Channels.newChannel(in);
+    long copied = 0;
+    while (copied < maximum) {
+      long transferred = channel.transferFrom(source, position + copied, Math.min(TRANSFER_SIZE, maximum - copied));
+      if (transferred <= 0) {
+        break;
+      }
+      copied += transferred;
+    }
+    return copied;
+  }
+
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * A stored blob: the hash of its content, its size in bytes and its file.
+   */
+  public static final class Blob {
+    private final String hash;
+    private final long size;
+    private final Path path;
+
+    Blob(String hash, long size, Path path) {
+      this.hash = hash;
+      this.size = size;
+      this.path = path;
+    }
+
+    public String getHash() {
+      return hash;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+package org.scoalaonline.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.BulkItemResult.Status;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes many entries of one @Node class with UNWIND based Cypher,
+ * one statement and transaction per batch of the configured size.
+ * The transactions are run by the transaction manager, so they wait for the bookmarks of the client
+ * and the bookmarks of their commits are sent back to it, like the ones of the other writes.
+ * Every batch which has written an entry increases the version of the collection of its label in its own transaction.
+ * Every entry is validated first and gets its own result, invalid entries are skipped
+ * and a failing batch only fails its own entries.
+ */
+@Component
+@Slf4j
+public class BulkWriter {
+  private final Neo4jClient neo4jClient;
+  private final Neo4jMappingContext mappingContext;
+  private final CollectionVersionRepository collectionVersionRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final int batchSize;
+  private final int maxItems;
+
+  public BulkWriter(Neo4jClient neo4jClient,
+                    Neo4jMappingContext mappingContext,
+                    CollectionVersionRepository collectionVersionRepository,
+                    PlatformTransactionManager transactionManager,
+                    @Value("${bulk.batch-size:1000}") int batchSize,
+                    @Value("${bulk.max-items:100000}") int maxItems) {
+    this.neo4jClient = neo4jClient;
+    this.mappingContext = mappingContext;
+    this.collectionVersionRepository = collectionVersionRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.batchSize = batchSize;
+    this.maxItems = maxItems;
+  }
+
+  /**
+   * Validates an entry of a bulk request.
+   * The message of the thrown exception is sent back as the error of the entry.
+   */
+  @FunctionalInterface
+  public interface Validator<T> {
+    void validate(T entry) throws Exception;
+  }
+
+  /**
+   * Creates a node for every valid entry, with a newly generated id and version 0.
+   * @param type - the @Node class of the entries
+   * @param entries - the entries to create
+   * @param validator - validates each entry
+   * @param properties - the properties to store for an entry, without the id
+   * @return the result of every entry, in the order of the request
+   * @throws BulkTooLargeException if there are more entries than allowed
+   */
+  public <T> List<BulkItemResult> create(Class<T> type, List<T> entries, Validator<T> validator,
+                                         Function<T, Map<String, Object>> properties) throws BulkTooLargeException {
+    return create(type, entries, validator, properties, written -> {});
+  }
+
+  /**
+   * Creates a node for every valid entry, with a newly generated id and version 0,
+   * and writes the nodes related to the entries of every batch in the transaction of that batch.
+   * @param type - the @Node class of the entries
+   * @param entries - the entries to create
+   * @param validator - validates each entry
+   * @param properties - the properties to store for an entry, without the id
+   * @param related - writes the nodes related to the created entries of a batch, given by their ids
+   * @return the result of every entry, in the order of the request
+   * @throws BulkTooLargeException if there are more entries than allowed
+   */
+  public <T> List<BulkItemResult> create(Class<T> type, List<T> entries, Validator<T> validator,
+                                         Function<T, Map<String, Object>> properties,
+                                         Consumer<Map<String, T>> related) throws BulkTooLargeException {
+    checkSize(entries);
+    BulkItemResult[] results = new BulkItemResult[entries.size()];
+    List<Map<String, Object>> rows = new ArrayList<>();
+    List<Integer> indexes = new ArrayList<>();
+    for (int i = 0; i < entries.size(); i++) {
+      String error = validate(validator, entries.get(i));
+      if (error != null) {
+        results[i] = new BulkItemResult(i, null, Status.INVALID, error);
+        continue;
+      }
+      Map<String, Object> row = new HashMap<>(properties.apply(entries.get(i)));
+      String id = UUID.randomUUID().toString();
+      row.put("id", id);
+      row.put("version", 0L);
+      rows.add(row);
+      indexes.add(i);
+      results[i] = new BulkItemResult(i, id, Status.CREATED, null);
+    }
+
+    String cypher = "UNWIND $rows AS row CREATE (n:`" + label(type) + "`) SET n = row";
+    forEachBatch(label(type), rows, indexes, results, batch -> {
+      neo4jClient.query(cypher).bind(batch).to("rows").run();
+      return null;
+    }, written -> related.accept(select(entries, results, written)));
+    return List.of(results);
+  }
+
+  /**
+   * Sets the properties of the node with the id of every valid entry and increases its version.
+   * @param type - the @Node class of the entries
+   * @param entries - the entries to update
+   * @param idExtractor - reads the id of an entry
+   * @param validator - validates each entry
+   * @param properties - the properties to set for an entry, without the id
+   * @return the result of every entry, in the order of the request
+   * @throws BulkTooLargeException if there are more entries than allowed
+   */
+  public <T> List<BulkItemResult> update(Class<T> type, List<T> entries, Function<T, String> idExtractor,
+                                         Validator<T> validator, Function<T, Map<String, Object>> properties) throws BulkTooLargeException {
+    return update(type, entries, idExtractor, validator, properties, written -> {});
+  }
+
+  /**
+   * Sets the properties of the node with the id of every valid entry and increases its version,
+   * and writes the nodes related to the entries of every batch in the transaction of that batch.
+   * @param type - the @Node class of the entries
+   * @param entries - the entries to update
+   * @param idExtractor - reads the id of an entry
+   * @param validator - validates each entry
+   * @param properties - the properties to set for an entry, without the id
+   * @param related - writes the nodes related to the updated entries of a batch, given by their ids
+   * @return the result of every entry, in the order of the request
+   * @throws BulkTooLargeException if there are more entries than allowed
+   */
+  public <T> List<BulkItemResult> update(Class<T> type, List<T> entries, Function<T, String> idExtractor,
+                                         Validator<T> validator, Function<T, Map<String, Object>> properties,
+                                         Consumer<Map<String, T>> related) throws BulkTooLargeException {
+    checkSize(entries);
+    BulkItemResult[] results = new BulkItemResult[entries.size()];
+    List<Map<String, Object>> rows = new ArrayList<>();
+    List<Integer> indexes = new ArrayList<>();
+    for (int i = 0; i < entries.size(); i++) {
+      String id = entries.get(i) == null ? null : idExtractor.apply(entries.get(i));
+      if (id == null) {
+        results[i] = new BulkItemResult(i, null, Status.NOT_FOUND, "Entry has no id.");
+        continue;
+      }
+      String error = validate(validator, entries.get(i));
+      if (error != null) {
+        results[i] = new BulkItemResult(i, id, Status.INVALID, error);
+        continue;
+      }
+      Map<String, Object> row = new HashMap<>();
+      row.put("id", id);
+      row.put("properties", properties.apply(entries.get(i)));
+      rows.add(row);
+      indexes.add(i);
+      results[i] = new BulkItemResult(i, id, Status.UPDATED, null);
+    }
+
+    String cypher = "UNWIND $rows AS row MATCH (n:`" + label(type) + "` {id: row.id}) SET n += row.properties, n.version = coalesce(n.version, 0) + 1 RETURN row.id AS id";
+    forEachBatch(label(type), rows, indexes, results, batch ->
+      neo4jClient.query(cypher).bind(batch).to("rows").fetchAs(String.class).all(),
+      written -> related.accept(select(entries, results, written)));
+    return List.of(results);
+  }
+
+  /**
+   * Deletes the nodes with the given ids, together with their relationships.
+   * @param type - the @Node class of the nodes
+   * @param ids - the ids of the nodes
+   * @return the result of every id, in the order of the request
+   * @throws BulkTooLargeException if there are more ids than allowed
+   */
+  public List<BulkItemResult> delete(Class<?> type, List<String> ids) throws BulkTooLargeException {
+    return delete(type, ids, deleted -> {});
+  }
+
+  /**
+   * Deletes the nodes with the given ids, together with their relationships,
+   * and deletes the nodes related to the nodes of every batch in the transaction of that batch.
+   * @param type - the @Node class of the nodes
+   * @param ids - the ids of the nodes
+   * @param related - deletes the nodes related to the deleted nodes of a batch, given by their ids
+   * @return the result of every id, in the order of the request
+   * @throws BulkTooLargeException if there are more ids than allowed
+   */
+  public List<BulkItemResult> delete(Class<?> type, List<String> ids, Consumer<Set<String>> related) throws BulkTooLargeException {
+    checkSize(ids);
+    BulkItemResult[] results = new BulkItemResult[ids.size()];
+    List<String> rows = new ArrayList<>();
+    List<Integer> indexes = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i++) {
+      results[i] = new BulkItemResult(i, ids.get(i), Status.DELETED, null);
+      rows.add(ids.get(i));
+      indexes.add(i);
+    }
+
+    String cypher = "UNWIND $ids AS id WITH DISTINCT id MATCH (n:`" + label(type) + "` {id: id}) DETACH DELETE n RETURN id";
+    forEachBatch(label(type), rows, indexes, results, batch ->
+      neo4jClient.query(cypher).bind(batch).to("ids").fetchAs(String.class).all(), related);
+    return List.of(results);
+  }
+
+  private void checkSize(List<?> entries) throws BulkTooLargeException {
+    if (entries.size() > maxItems) {
+      throw new BulkTooLargeException("A bulk request can contain at most " + maxItems + " entries.");
+    }
+  }
+
+  private String label(Class<?> type) {
+    return mappingContext.getRequiredPersistentEntity(type).getPrimaryLabel();
+  }
+
+  /**
+   * Maps the ids of the written entries to the entries, by the results of the request.
+   */
+  private static <T> Map<String, T> select(List<T> entries, BulkItemResult[] results, Set<String> written) {
+    Map<String, T> selected = new HashMap<>();
+    for (BulkItemResult result : results) {
+      if (result.getId() != null && written.contains(result.getId())) {
+        selected.put(result.getId(), entries.get(result.getIndex()));
+      }
+    }
+    return selected;
+  }
+
+  private static <T> String validate(Validator<T> validator, T entry) {
+    if (entry == null) {
+      return "Entry can't be null.";
+    }
+    try {
+      validator.validate(entry);
+      return null;
+    } catch (Exception e) {
+      return e.getMessage();
+    }
+  }
+
+  /**
+   * Runs the statement once per batch of rows, each batch in its own transaction,
+   * followed in the same transaction by the writes of the related nodes of the entries written by the batch
+   * and by the increase of the version of the collection, unless the batch has written nothing.
+   * When the statement returns the ids it has matched, the entries of the batch
+   * with other ids are marked as not found. When a batch fails, its entries are marked as failed.
+   */
+  private <R> void forEachBatch(String label, List<R> rows, List<Integer> indexes, BulkItemResult[] results,
+                                Function<List<R>, Collection<String>> statement, Consumer<Set<String>> related) {
+    for (int from = 0; from < rows.size(); from += batchSize) {
+      int to = Math.min(from + batchSize, rows.size());
+      List<R> batch = rows.subList(from, to);
+      Set<String> batchIds = new HashSet<>();
+      for (int i = from; i < to; i++) {
+        batchIds.add(results[indexes.get(i)].getId());
+      }
+      try {
+        Collection<String> matched = transactionTemplate.execute(status -> {
+          Collection<String> ids = statement.apply(batch);
+          Set<String> written = ids == null ? batchIds : new HashSet<>(ids);
+          related.accept(written);
+          if (!written.isEmpty()) {
+            collectionVersionRepository.incrementVersion(label);
+          }
+          return ids;
+        });
+        if (matched != null) {
+          Set<String> matchedIds = new HashSet<>(matched);
+          for (int i = from; i < to; i++) {
+            BulkItemResult result = results[indexes.get(i)];
+            if (!matchedIds.contains(result.getId())) {
+              result.setStatus(Status.NOT_FOUND);
+              result.setError("Entry not found.");
+            }
+          }
+        }
+      } catch (RuntimeException e) {
+        log.error("Bulk batch of {} entries failed: {}", batch.size(), e.getMessage());
+        for (int i = from; i < to; i++) {
+          BulkItemResult result = results[indexes.get(i)];
+          result.setStatus(Status.FAILED);
+          result.setError(e.getMessage());
+        }
+      }
+    }
+  }
+}
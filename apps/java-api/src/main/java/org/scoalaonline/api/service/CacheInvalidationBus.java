@@ -0,0 +1,16 @@
+package org.scoalaonline.api.service;
+
+/**
+ * Tells the other instances of the API which cached entries have been changed by a write of this instance.
+ * Publishing never waits for the other instances, they receive the invalidations
+ * as RemoteInvalidationEvents within a bounded delay.
+ */
+public interface CacheInvalidationBus {
+  /**
+   * Queues the invalidation of an entry of a cache for the other instances.
+   * The entry is expected to be already invalidated on this instance.
+   * @param cache - name of the cache
+   * @param key - key of the entry, null for every entry of the cache
+   */
+  void publish(String cache, String key);
+}
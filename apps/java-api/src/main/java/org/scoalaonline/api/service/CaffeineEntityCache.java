@@ -0,0 +1,121 @@
+package org.scoalaonline.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * EntityCache backed by Caffeine, bounded in size (W-TinyLFU eviction) and with entries
+ * expiring a fixed time after they were loaded. The hit ratio, evictions and the other cache metrics
+ * are published as "&lt;name&gt;" for the entries by id and "&lt;name&gt;.all" for the list of all entries.
+ * Invalidations are also published on the CacheInvalidationBus, under the name of the cache.
+ * The list of all entries is kept with the version of the collection it was loaded at, and replaced
+ * by the first request made at a newer version.
+ * @param <T> the @Node class of the entries
+ */
+@Slf4j
+public class CaffeineEntityCache<T> implements EntityCache<T> {
+  private static final String ALL_KEY = "all";
+
+  private final String name;
+  private final Cache<String, T> byId;
+  private final Cache<String, VersionedList<T>> all;
+  private final CacheInvalidationBus invalidationBus;
+
+  public CaffeineEntityCache(String name, long maximumSize, Duration ttl, MeterRegistry meterRegistry,
+                             CacheInvalidationBus invalidationBus) {
+    this.name = name;
+    this.invalidationBus = invalidationBus;
+    this.byId = Caffeine.newBuilder()
+      .maximumSize(maximumSize)
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .build();
+    this.all = Caffeine.newBuilder()
+      .maximumSize(maximumSize > 0 ? 1 : 0)
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .build();
+    monitor(meterRegistry, byId, name);
+    monitor(meterRegistry, all, name + ".all");
+  }
+
+  @Override
+  public Optional<T> getById(String id, Function<String, Optional<T>> loader) {
+    return Optional.ofNullable(byId.get(id, key -> loader.apply(key).orElse(null)));
+  }
+
+  @Override
+  public List<T> getAll(long version, Supplier<List<T>> loader) {
+    VersionedList<T> cached = all.getIfPresent(ALL_KEY);
+    if (cached != null && cached.version >= version) {
+      return cached.entries;
+    }
+    // Replaces the entry in place, a new key would have to win the admission of the size bound first.
+    return all.asMap().compute(ALL_KEY, (key, current) ->
+      current != null && current.version >= version ? current : new VersionedList<>(version, List.copyOf(loader.get()))
+    ).entries;
+  }
+
+  @Override
+  public void invalidate(String id) {
+    log.info("Invalidating cached {} entry {}...", name, id);
+    evict(id);
+    invalidationBus.publish(name, id);
+  }
+
+  @Override
+  public void invalidateAll() {
+    log.info("Invalidating all cached {} entries...", name);
+    evict(null);
+    invalidationBus.publish(name, null);
+  }
+
+  /**
+   * Evicts the entries invalidated by another instance.
+   * @param event - the invalidation
+   */
+  @EventListener
+  public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+    if (event.concerns(name)) {
+      evict(event.getKey());
+    }
+  }
+
+  private void evict(String id) {
+    if (id != null) {
+      byId.invalidate(id);
+    } else {
+      byId.invalidateAll();
+    }
+    all.invalidateAll();
+  }
+
+  private static final class VersionedList<T> {
+    private final long version;
+    private final List<T> entries;
+
+    VersionedList(long version, List<T> entries) {
+      this.version = version;
+      this.entries = entries;
+    }
+  }
+
+  private static void monitor(MeterRegistry meterRegistry, Cache<?, ?> cache, String cacheName) {
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, cacheName);
+    Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+      .tag("cache", cacheName)
+      .description("The ratio of cache requests which were hits")
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,65 @@
+package org.scoalaonline.api.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reads the curriculum of a Subject, its Lecture entries related with HAS_LECTURE and their LectureMaterial
+ * entries related with HAS_MATERIAL, as one nested map from a single query.
+ * Every level is a pattern comprehension with a map projection, collected per parent, so the tree is
+ * neither read with one query per node nor as the cross product of the lectures and their materials.
+ * The levels below the requested depth are not part of the query.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CurriculumTreeReader {
+  /**
+   * The depth of a Subject with its lectures and their materials.
+   */
+  public static final int MAX_DEPTH = 2;
+
+  private static final String[] LEVELS = {
+    "s {.id, .value, .version%s}",
+    ", lectures: [(s)-[:HAS_LECTURE]->(l:Lecture) | l {.id, .title, .version%s}]",
+    ", materials: [(l)-[:HAS_MATERIAL]->(m:LectureMaterial) | m {.id, .documentHash, .documentSize, .excerpt, .version}]"
+  };
+
+  private final Neo4jClient neo4jClient;
+
+  /**
+   * Retrieves the tree of the Subject with the given id, down to the given depth:
+   * 0 for the Subject alone, 1 with its lectures and 2 with their materials as well.
+   * The lectures and materials are in no particular order.
+   * @param id - the id of the Subject
+   * @param depth - the depth, between 0 and MAX_DEPTH
+   * @return the tree, or empty if there is no Subject with that id
+   */
+  @SuppressWarnings("unchecked")
+  public Optional<Map<String, Object>> findSubjectTree(String id, int depth) {
+    log.info("Fetching the tree of Subject {} down to depth {}...", id, depth);
+    return neo4jClient.query("MATCH (s:Subject {id: $id}) RETURN " + projection(depth) + " AS tree")
+      .bind(id).to("id")
+      .fetch().one()
+      .map(row -> (Map<String, Object>) row.get("tree"));
+  }
+
+  /**
+   * Builds the nested map projection of a Subject down to the given depth.
+   */
+  static String projection(int depth) {
+    if (depth < 0 || depth > MAX_DEPTH) {
+      throw new IllegalArgumentException("Depth must be between 0 and " + MAX_DEPTH + ".");
+    }
+    String expression = "";
+    for (int level = depth; level >= 0; level--) {
+      expression = level == MAX_DEPTH ? LEVELS[level] : String.format(LEVELS[level], expression);
+    }
+    return expression;
+  }
+}
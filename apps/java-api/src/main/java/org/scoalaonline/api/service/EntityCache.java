@@ -0,0 +1,42 @@
+package org.scoalaonline.api.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps entries of one @Node class in memory, by id and as the list of all entries,
+ * in front of the read paths of a service. The write paths of the service invalidate it.
+ * @param <T> the @Node class of the entries
+ */
+public interface EntityCache<T> {
+  /**
+   * Retrieves the entry with the given id, loading it with the provided loader if it is not cached.
+   * Missing entries are not cached.
+   * @param id - id of the entry
+   * @param loader - loads the entry from the DB
+   * @return the entry, or empty if there is no entry with that id
+   */
+  Optional<T> getById(String id, Function<String, Optional<T>> loader);
+
+  /**
+   * Retrieves the list of all entries, loading it with the provided loader if it is not cached
+   * or if it was cached at an older version of the collection.
+   * @param version - the version of the collection read before calling, the list is at least as recent
+   * @param loader - loads all the entries from the DB
+   * @return the unmodifiable list of all entries
+   */
+  List<T> getAll(long version, Supplier<List<T>> loader);
+
+  /**
+   * Removes the entry with the given id and the list of all entries.
+   * @param id - id of the entry
+   */
+  void invalidate(String id);
+
+  /**
+   * Removes every entry.
+   */
+  void invalidateAll();
+}
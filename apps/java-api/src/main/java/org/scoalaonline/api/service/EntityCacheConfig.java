@@ -0,0 +1,54 @@
+package org.scoalaonline.api.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.model.LectureMaterial;
+import org.scoalaonline.api.model.Subject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Creates the EntityCache of the publicly readable entries.
+ * A maximum size of 0 disables caching.
+ */
+@Configuration
+public class EntityCacheConfig {
+  private final MeterRegistry meterRegistry;
+  private final CacheInvalidationBus invalidationBus;
+  private final long maximumSize;
+  private final Duration ttl;
+
+  public EntityCacheConfig(MeterRegistry meterRegistry,
+                           CacheInvalidationBus invalidationBus,
+                           @Value("${entity-cache.maximum-size:10000}") long maximumSize,
+                           @Value("${entity-cache.ttl-seconds:60}") long ttlSeconds) {
+    this.meterRegistry = meterRegistry;
+    this.invalidationBus = invalidationBus;
+    this.maximumSize = maximumSize;
+    this.ttl = Duration.ofSeconds(ttlSeconds);
+  }
+
+  @Bean
+  EntityCache<Grade> gradeCache() {
+    return new CaffeineEntityCache<>("grades", maximumSize, ttl, meterRegistry, invalidationBus);
+  }
+
+  @Bean
+  EntityCache<Lecture> lectureCache() {
+    return new CaffeineEntityCache<>("lectures", maximumSize, ttl, meterRegistry, invalidationBus);
+  }
+
+  @Bean
+  EntityCache<LectureMaterial> lectureMaterialCache() {
+    return new CaffeineEntityCache<>("lectureMaterials", maximumSize, ttl, meterRegistry, invalidationBus);
+  }
+
+  @Bean
+  EntityCache<Subject> subjectCache() {
+    return new CaffeineEntityCache<>("subjects", maximumSize, ttl, meterRegistry, invalidationBus);
+  }
+}
@@ -1,94 +1,469 @@
 package org.scoalaonline.api.service;
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.DTO.GradeStatistics;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
+import org.scoalaonline.api.exception.grade.GradeInvalidLinkException;
 import org.scoalaonline.api.exception.grade.GradeInvalidValueException;
 import org.scoalaonline.api.exception.grade.GradeNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.GradeAggregate;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
+import org.scoalaonline.api.repository.GradeAggregateRepository;
 import org.scoalaonline.api.repository.GradeRepository;
+import org.scoalaonline.api.repository.SubjectRepository;
+import org.scoalaonline.api.repository.UserRepository;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 /**
  * Contains the Grade related logic needed for the API
  */
 @Service
 public class GradeService implements ServiceInterface<Grade> {
+  private static final String COLLECTION = "Grade";
+
   @Autowired
   GradeRepository gradeRepository;
 
+  @Autowired
+  NodeStreamer nodeStreamer;
+
+  @Autowired
+  BulkWriter bulkWriter;
+
+  @Autowired
+  NodeProjector nodeProjector;
+
+  @Autowired
+  EntityCache<Grade> gradeCache;
+
+  @Autowired
+  CollectionVersionRepository collectionVersionRepository;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  @Autowired
+  GradeAggregateRepository gradeAggregateRepository;
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  SubjectRepository subjectRepository;
+
+  @Value("${bulk.batch-size:1000}")
+  int batchSize;
+
   /**
    * Retrieves a list of all Grade entries found in the DB
+   * The list is served from the EntityCache while it is cached
    * @return the list of Grade entries
    */
   @Override
   public List<Grade> getAll() {
-    return gradeRepository.findAll();
+    return getAll(getCollectionVersion());
+  }
+
+  /**
+   * Retrieves a list of all Grade entries, at least as recent as the given version of the collection.
+   * The list is served from the EntityCache while it is cached at that version or a newer one
+   * @param version - the version of the collection, read with getCollectionVersion before
+   * @return the list of Grade entries
+   */
+  public List<Grade> getAll(long version) {
+    return gradeCache.getAll(version, gradeRepository::findAll);
+  }
+
+  /**
+   * Retrieves the version of the Grade collection, increased in the transaction of every write of any Grade entry
+   * @return the version of the collection
+   */
+  public long getCollectionVersion() {
+    return collectionVersionRepository.findVersionByLabel(COLLECTION);
+  }
+
+  /**
+   * Retrieves only the version of the Grade entry with the given id from the DB
+   * @param id - id of the Grade entry
+   * @return the version of the entry, or empty if there is no entry with that id
+   */
+  @Transactional(readOnly = true)
+  public Optional<Long> getVersion(String id) {
+    return gradeRepository.findVersionById(id);
+  }
+
+  /**
+   * Retrieves one page of Grade entries ordered by id from the DB
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of Grade entries
+   */
+  @Transactional(readOnly = true)
+  @Override
+  public CursorPage<Grade> getPage(String after, int size) {
+    List<Grade> entries = after == null ? gradeRepository.findFirstPage(size + 1) : gradeRepository.findPageAfter(after, size + 1);
+    return CursorPage.of(entries, size, Grade::getId);
+  }
+
+  /**
+   * Writes all Grade entries found in the DB to the output stream as newline delimited JSON,
+   * as they are read, without collecting them in a list
+   * @param bookmarks - the bookmarks of the client, read on the thread of the request
+   * @param out - the output stream
+   * @throws IOException if the output stream cannot be written
+   */
+  public void streamAll(Set<Bookmark> bookmarks, OutputStream out) throws IOException {
+    nodeStreamer.streamAll(Grade.class, bookmarks, out);
   }
 
   /**
    * Retrieves one Grade entry with the given id from the DB
    * or throws an error if no entry with that id is found.
+   * The entry is served from the EntityCache while it is cached
    * @param id - id of the Grade entry
    * @return the Grade entry
    * @throws GradeNotFoundException
    */
   @Override
   public Grade getOneById(String id) throws GradeNotFoundException {
-    return gradeRepository.findById(id).orElseThrow(
+    return gradeCache.getById(id, gradeRepository::findById).orElseThrow(
+      () -> new GradeNotFoundException("Method getOneById: Grade not found.")
+    );
+  }
+
+  /**
+   * Builds the projection of the given fields of the Grade entries
+   * @param fields - the comma separated names of the fields
+   * @return the projection
+   * @throws ProjectionInvalidFieldsException if no field is given or a field does not exist
+   */
+  public Projection getProjection(String fields) throws ProjectionInvalidFieldsException {
+    return nodeProjector.of(Grade.class, fields);
+  }
+
+  /**
+   * Retrieves only the projected fields of all Grade entries found in the DB,
+   * the other fields are not read
+   * @param projection - the projection of the fields
+   * @return the list of projected Grade entries
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> getAll(Projection projection) {
+    return nodeProjector.findAll(projection);
+  }
+
+  /**
+   * Retrieves only the projected fields of one page of Grade entries ordered by id from the DB
+   * @param projection - the projection of the fields
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of projected Grade entries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<Map<String, Object>> getPage(Projection projection, String after, int size) {
+    return nodeProjector.getPage(projection, after, size);
+  }
+
+  /**
+   * Retrieves only the projected fields of the Grade entry with the given id from the DB
+   * or throws an error if no entry with that id is found.
+   * @param id - id of the Grade entry
+   * @param projection - the projection of the fields
+   * @return the projected Grade entry
+   * @throws GradeNotFoundException
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Object> getOneById(String id, Projection projection) throws GradeNotFoundException {
+    return nodeProjector.findById(projection, id).orElseThrow(
       () -> new GradeNotFoundException("Method getOneById: Grade not found.")
     );
   }
 
   /**
-   * Adds a Grade entry in the DB based on the received object.
+   * Retrieves the statistics of the grades of the student with the given id, from the aggregate
+   * kept up to date by every write of a grade, whatever the number of grades
+   * @param studentId - the id of the User the grades are given to
+   * @return the statistics, with a count of 0 if the student has no grades
+   */
+  @Transactional(readOnly = true)
+  public GradeStatistics getStudentStatistics(String studentId) {
+    return GradeStatistics.of(gradeAggregateRepository.findById(GradeAggregate.STUDENT_PREFIX + studentId).orElse(null));
+  }
+
+  /**
+   * Retrieves the statistics of the grades given in the Subject with the given id, like the ones of a student
+   * @param subjectId - the id of the Subject
+   * @return the statistics, with a count of 0 if the subject has no grades
+   */
+  @Transactional(readOnly = true)
+  public GradeStatistics getSubjectStatistics(String subjectId) {
+    return GradeStatistics.of(gradeAggregateRepository.findById(GradeAggregate.SUBJECT_PREFIX + subjectId).orElse(null));
+  }
+
+  /**
+   * Adds a Grade entry in the DB based on the received object, linked to the given student and subject if any.
+   * The aggregates of the student and of the subject are changed by the same statement.
    * @param entry
    * @throws GradeInvalidValueException
+   * @throws GradeInvalidLinkException if there is no User with the id of the student or no Subject with the id of the subject
    * @return the Grade object that has been saved in the DB
    */
   @Override
-  public Grade add(Grade entry) throws GradeInvalidValueException {
-    Grade gradeToSave = new Grade();
-    if(entry.getValue() >= 0 && entry.getValue() <= 13) {
-      gradeToSave.setValue(entry.getValue());
-    } else
+  public Grade add(Grade entry) throws GradeInvalidValueException, GradeInvalidLinkException {
+    if(entry.getValue() < 0 || entry.getValue() > 13)
       throw new GradeInvalidValueException("Method add: Value field has to be an integer between 0 and 13.");
 
-    return gradeRepository.save(gradeToSave);
+    Grade saved = transactionTemplate.execute(status -> {
+      Optional<Grade> created = gradeRepository.createWithAggregates(UUID.randomUUID().toString(), entry.getValue(),
+        entry.getStudentId(), entry.getSubjectId());
+      created.ifPresent(grade -> collectionVersionRepository.incrementVersion(COLLECTION));
+      return created;
+    }).orElseThrow(
+      () -> new GradeInvalidLinkException("Method add: Student or Subject not found.")
+    );
+    gradeCache.invalidate(saved.getId());
+    return saved;
   }
   /**
    * Updates the Grade entry with the given id based on the received object.
    * Throws an exception if no entry with that id was found or if the edited value is invalid.
+   * The value is set with a single statement, the entry is only looked up again when the value is invalid.
    * @param id - the id of the entry to update
    * @param entry
+   * @param version - the version the entry is expected at, null to update it at any version
    * @return the Grade object saved in the DB
    * @throws GradeNotFoundException
    * @throws GradeInvalidValueException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public Grade update(String id, Grade entry) throws GradeInvalidValueException, GradeNotFoundException {
-    Grade gradeToUpdate = gradeRepository.findById(id).orElseThrow(
-      () -> new GradeNotFoundException("Method update: Grade not found.")
-    );
-    if(entry.getValue() >= 0 && entry.getValue() <= 13) {
-      gradeToUpdate.setValue(entry.getValue());
-    } else {
+  public Grade update(String id, Grade entry, Long version) throws GradeInvalidValueException, GradeNotFoundException, VersionMismatchException {
+    if(entry.getValue() < 0 || entry.getValue() > 13) {
+      if(!gradeRepository.existsById(id))
+        throw new GradeNotFoundException("Method update: Grade not found.");
       throw new GradeInvalidValueException("Method update: Value field has to be an integer between 0 and 13.");
     }
-    return gradeRepository.save(gradeToUpdate);
+    Optional<Grade> updated = transactionTemplate.execute(status -> {
+      Optional<Grade> written = gradeRepository.updateValueById(id, entry.getValue(), version);
+      written.ifPresent(grade -> collectionVersionRepository.incrementVersion(COLLECTION));
+      return written;
+    });
+    if (updated.isEmpty()) {
+      if (version == null || !gradeRepository.existsById(id)) {
+        throw new GradeNotFoundException("Method update: Grade not found.");
+      }
+      throw new VersionMismatchException("Method update: Grade has been modified.");
+    }
+    gradeCache.invalidate(id);
+    return updated.get();
   }
 
   /**
    * Deletes the Grade entry with the given id or throws an exception if no
    * entry with that id can be found
    * @param id
+   * @param version - the version the entry is expected at, null to delete it at any version
    * @throws GradeNotFoundException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public void delete(String id) throws GradeNotFoundException {
-    if(gradeRepository.findById(id).isPresent())
-      gradeRepository.deleteById(id);
-    else
+  public void delete(String id, Long version) throws GradeNotFoundException, VersionMismatchException {
+    long deleted = transactionTemplate.execute(status -> {
+      long count = gradeRepository.deleteByIdReturningCount(id, version);
+      if (count > 0) {
+        collectionVersionRepository.incrementVersion(COLLECTION);
+      }
+      return count;
+    });
+    if (deleted == 0) {
+      if (version != null && gradeRepository.existsById(id)) {
+        throw new VersionMismatchException("Method delete: Grade has been modified.");
+      }
       throw new GradeNotFoundException("Method delete: Grade not found.");
+    }
+    gradeCache.invalidate(id);
+  }
+
+  /**
+   * Adds a Grade entry in the DB for every valid entry of the list, in batches.
+   * The aggregates of the students and subjects of the entries are recomputed afterwards.
+   * @param entries - the entries to add
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> addAll(List<Grade> entries) throws BulkTooLargeException {
+    Set<String> students = findExisting(entries, Grade::getStudentId, userRepository::findExistingIds);
+    Set<String> subjects = findExisting(entries, Grade::getSubjectId, subjectRepository::findExistingIds);
+    List<BulkItemResult> results = bulkWriter.create(Grade.class, entries, entry -> {
+      validate(entry, "addAll");
+      validateLinks(entry, students, subjects, "addAll");
+    }, this::toCreateProperties);
+    List<String> keys = new ArrayList<>();
+    students.forEach(id -> keys.add(GradeAggregate.STUDENT_PREFIX + id));
+    subjects.forEach(id -> keys.add(GradeAggregate.SUBJECT_PREFIX + id));
+    rebuildAggregates(keys);
+    gradeCache.invalidateAll();
+    return results;
+  }
+
+  /**
+   * Updates the Grade entries with the ids of the valid entries of the list, in batches.
+   * Only the values are updated, the aggregates of the students and subjects of the entries are recomputed afterwards.
+   * @param entries - the entries to update, each with its id
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> updateAll(List<Grade> entries) throws BulkTooLargeException {
+    List<String> ids = new ArrayList<>();
+    entries.stream().filter(entry -> entry != null && entry.getId() != null).forEach(entry -> ids.add(entry.getId()));
+    List<String> keys = ids.isEmpty() ? List.of() : gradeRepository.findAggregateKeysByIds(ids);
+    List<BulkItemResult> results = bulkWriter.update(Grade.class, entries, Grade::getId, entry -> validate(entry, "updateAll"), this::toProperties);
+    rebuildAggregates(keys);
+    gradeCache.invalidateAll();
+    return results;
+  }
+
+  /**
+   * Deletes the Grade entries with the given ids, in batches.
+   * The aggregates of the students and subjects of the entries are recomputed afterwards.
+   * @param ids - the ids of the entries to delete
+   * @return the result of every id, in the order of the list
+   * @throws BulkTooLargeException if the list has more ids than allowed
+   */
+  public List<BulkItemResult> deleteAll(List<String> ids) throws BulkTooLargeException {
+    List<String> keys = ids.isEmpty() ? List.of() : gradeRepository.findAggregateKeysByIds(ids);
+    List<BulkItemResult> results = bulkWriter.delete(Grade.class, ids);
+    rebuildAggregates(keys);
+    gradeCache.invalidateAll();
+    return results;
+  }
+
+  /**
+   * Deletes the Grade entries given to the student with the given id, in batches, once the student has been deleted.
+   * The aggregates of the subjects of the entries are recomputed afterwards and the aggregate of the student is removed.
+   * @param studentId - the id of the deleted User
+   */
+  public void deleteByStudentId(String studentId) {
+    List<String> keys = gradeRepository.findSubjectAggregateKeysByStudentId(studentId);
+    deleteLinked(GradeAggregate.STUDENT_PREFIX + studentId, keys,
+      () -> gradeRepository.deleteByStudentIdReturningCount(studentId, batchSize));
+  }
+
+  /**
+   * Deletes the Grade entries given in the subject with the given id, in batches, once the subject has been deleted.
+   * The aggregates of the students of the entries are recomputed afterwards and the aggregate of the subject is removed.
+   * @param subjectId - the id of the deleted Subject
+   */
+  public void deleteBySubjectId(String subjectId) {
+    List<String> keys = gradeRepository.findStudentAggregateKeysBySubjectId(subjectId);
+    deleteLinked(GradeAggregate.SUBJECT_PREFIX + subjectId, keys,
+      () -> gradeRepository.deleteBySubjectIdReturningCount(subjectId, batchSize));
+  }
+
+  private void deleteLinked(String key, List<String> keys, LongSupplier deleteBatch) {
+    long deleted = 0;
+    long count;
+    do {
+      // Every batch increases the version of the collection in its own transaction.
+      count = transactionTemplate.execute(status -> {
+        long batch = deleteBatch.getAsLong();
+        if (batch > 0) {
+          collectionVersionRepository.incrementVersion(COLLECTION);
+        }
+        return batch;
+      });
+      deleted += count;
+    } while (count == batchSize);
+    rebuildAggregates(keys);
+    gradeAggregateRepository.deleteById(key);
+    if (deleted > 0) {
+      gradeCache.invalidateAll();
+    }
+  }
+
+  private void validate(Grade entry, String method) throws GradeInvalidValueException {
+    if (entry.getValue() < 0 || entry.getValue() > 13) {
+      throw new GradeInvalidValueException("Method " + method + ": Value field has to be an integer between 0 and 13.");
+    }
+  }
+
+  private void validateLinks(Grade entry, Set<String> students, Set<String> subjects, String method) throws GradeInvalidLinkException {
+    if (entry.getStudentId() != null && !students.contains(entry.getStudentId())) {
+      throw new GradeInvalidLinkException("Method " + method + ": Student not found.");
+    }
+    if (entry.getSubjectId() != null && !subjects.contains(entry.getSubjectId())) {
+      throw new GradeInvalidLinkException("Method " + method + ": Subject not found.");
+    }
+  }
+
+  /**
+   * Looks up which of the students or subjects the entries are linked to exist, with one query.
+   */
+  private Set<String> findExisting(List<Grade> entries, Function<Grade, String> link,
+                                   Function<Collection<String>, List<String>> finder) {
+    Set<String> ids = new HashSet<>();
+    for (Grade entry : entries) {
+      if (entry != null && link.apply(entry) != null) {
+        ids.add(link.apply(entry));
+      }
+    }
+    return ids.isEmpty() ? Set.of() : new HashSet<>(finder.apply(ids));
+  }
+
+  /**
+   * Recomputes the aggregates with the given keys from the grades, after a bulk write.
+   */
+  private void rebuildAggregates(Collection<String> keys) {
+    List<String> studentIds = new ArrayList<>();
+    List<String> subjectIds = new ArrayList<>();
+    for (String key : keys) {
+      if (key.startsWith(GradeAggregate.STUDENT_PREFIX)) {
+        studentIds.add(key.substring(GradeAggregate.STUDENT_PREFIX.length()));
+      } else if (key.startsWith(GradeAggregate.SUBJECT_PREFIX)) {
+        subjectIds.add(key.substring(GradeAggregate.SUBJECT_PREFIX.length()));
+      }
+    }
+    if (!studentIds.isEmpty()) {
+      gradeAggregateRepository.rebuildStudentAggregates(studentIds);
+    }
+    if (!subjectIds.isEmpty()) {
+      gradeAggregateRepository.rebuildSubjectAggregates(subjectIds);
+    }
+  }
+
+  private Map<String, Object> toProperties(Grade entry) {
+    return Map.of("value", entry.getValue());
+  }
+
+  private Map<String, Object> toCreateProperties(Grade entry) {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("value", entry.getValue());
+    properties.put("studentId", entry.getStudentId());
+    properties.put("subjectId", entry.getSubjectId());
+    return properties;
   }
 }
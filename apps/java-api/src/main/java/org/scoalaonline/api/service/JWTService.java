@@ -18,37 +18,54 @@ import java.util.List;
 @RequiredArgsConstructor
 @Slf4j
 public class JWTService {
+  public static final String ROLES_CLAIM = "roles";
+  public static final String ROLE_VERSION_CLAIM = "role_version";
+  public static final String USER_ID_CLAIM = "user_id";
+
   private Algorithm algorithm = Algorithm.HMAC256("secret".getBytes());
   private Date accessTimer =  new Date(System.currentTimeMillis() + 24 * 60 * 60 * 1000);
   private Date refreshTimer =  new Date(System.currentTimeMillis() + 24 * 60 * 60 * 1000);
 
   /**
-   * Generates an access token based on the username, requestURL and the list of roles, using the algorithm
+   * Generates an access token based on the username, the id of the User entry, requestURL,
+   * the list of roles and the version of the roles, using the algorithm
    * @param username the username of the User entry
+   * @param userId the id of the User entry
    * @param requestURL the URL of the request
    * @param roles the list of roles given to the User entry
+   * @param roleVersion the version of the roles, see RoleVersionRegistry
    * @return the access token
    */
-  public String getAccessToken(String username, String requestURL, List<String> roles) {
+  public String getAccessToken(String username, String userId, String requestURL, List<String> roles, long roleVersion) {
     return JWT.create()
       .withSubject(username)
+      .withClaim(USER_ID_CLAIM, userId)
       .withExpiresAt(accessTimer)
       .withIssuer(requestURL)
-      .withClaim("roles", roles)
+      .withClaim(ROLES_CLAIM, roles)
+      .withClaim(ROLE_VERSION_CLAIM, roleVersion)
       .sign(algorithm);
   }
 
   /**
-   * Generates an refresh token based on the username and the requestURL, using the algorithm
+   * Generates an refresh token based on the username, the id of the User entry, the requestURL,
+   * the list of roles and the version of the roles, using the algorithm.
+   * The roles are reused on refresh as long as their version is still current.
    * @param username the username of the User entry
+   * @param userId the id of the User entry
    * @param requestURL the URL of the request
+   * @param roles the list of roles given to the User entry
+   * @param roleVersion the version of the roles, see RoleVersionRegistry
    * @return the refresh token
    */
-  public String getRefreshToken(String username, String requestURL) {
+  public String getRefreshToken(String username, String userId, String requestURL, List<String> roles, long roleVersion) {
     return JWT.create()
       .withSubject(username)
+      .withClaim(USER_ID_CLAIM, userId)
       .withExpiresAt(accessTimer)
       .withIssuer(requestURL)
+      .withClaim(ROLES_CLAIM, roles)
+      .withClaim(ROLE_VERSION_CLAIM, roleVersion)
       .sign(algorithm);
   }
 
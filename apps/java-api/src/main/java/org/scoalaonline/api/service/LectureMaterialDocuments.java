@@ -0,0 +1,266 @@
+package org.scoalaonline.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialInvalidDocumentException;
+import org.scoalaonline.api.model.LectureMaterial;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the documents of the LectureMaterial entries in the BlobStore, out of their nodes.
+ * A node only has the hash of its document, its size in bytes and an excerpt of its beginning.
+ * The text of the document, up to the configured length, is what the full-text index searches,
+ * it is kept on a LectureMaterialText node which is never read with the entry.
+ * The documents still kept on the nodes written before are moved to the BlobStore once the application has started,
+ * and the documents without a searched text get one.
+ * The documents no longer referenced by an entry, such as the previous documents of updated and deleted entries,
+ * are removed from the BlobStore on the configured interval, once they are older than the grace period.
+ */
+@Component
+@Slf4j
+public class LectureMaterialDocuments {
+  // Nodes moved per transaction by the migration.
+  private static final int MIGRATION_BATCH_SIZE = 100;
+  // Characters decoded at once when a stored document is described.
+  private static final int DECODE_BUFFER_SIZE = 8192;
+
+  private final BlobStore blobStore;
+  private final Neo4jClient neo4jClient;
+  private final int excerptLength;
+  private final int textLength;
+  private final Duration grace;
+
+  public LectureMaterialDocuments(BlobStore blobStore,
+                                  Neo4jClient neo4jClient,
+                                  @Value("${lecture-material.excerpt-length:500}") int excerptLength,
+                                  @Value("${lecture-material.search-text-length:1000000}") int textLength,
+                                  @Value("${blob-store.grace-hours:24}") long graceHours) {
+    this.blobStore = blobStore;
+    this.neo4jClient = neo4jClient;
+    this.excerptLength = excerptLength;
+    this.textLength = Math.max(textLength, excerptLength);
+    this.grace = Duration.ofHours(graceHours);
+  }
+
+  /**
+   * Stores the document of an entry and sets its hash, size and excerpt on the entry.
+   * @param entry - the entry, with its document
+   */
+  public void store(LectureMaterial entry) {
+    BlobStore.Blob blob = blobStore.put(entry.getDocument());
+    entry.setDocumentHash(blob.getHash());
+    entry.setDocumentSize(blob.getSize());
+    entry.setExcerpt(excerpt(entry.getDocument()));
+  }
+
+  /**
+   * Reads the searched text of a document file, checking that the whole document is UTF-8 text.
+   * The document is decoded as it is read, only its searched text is kept in memory.
+   * @param file - the document file
+   * @return the searched text of the document
+   * @throws LectureMaterialInvalidDocumentException if the document is empty or is not UTF-8 text
+   * @throws IOException if the file cannot be read
+   */
+  public String read(Path file) throws LectureMaterialInvalidDocumentException, IOException {
+    if (Files.size(file) == 0) {
+      throw new LectureMaterialInvalidDocumentException("Method read: Document field can't be null.");
+    }
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+    StringBuilder beginning = new StringBuilder();
+    try (Reader reader = new InputStreamReader(Files.newInputStream(file), decoder)) {
+      char[] buffer = new char[DECODE_BUFFER_SIZE];
+      for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+        // One character more than the text, to know whether its last one is half a surrogate pair.
+        beginning.append(buffer, 0, Math.max(0, Math.min(read, textLength + 1 - beginning.length())));
+      }
+    } catch (CharacterCodingException e) {
+      throw new LectureMaterialInvalidDocumentException("Method read: Document is not UTF-8 text.");
+    }
+    return text(beginning.toString());
+  }
+
+  /**
+   * Builds an entry for a stored document, with its hash, size and excerpt, but without the document itself.
+   * @param blob - the stored document
+   * @param text - the searched text of the document, read with read
+   * @return the entry, without an id
+   */
+  public LectureMaterial describe(BlobStore.Blob blob, String text) {
+    LectureMaterial entry = new LectureMaterial();
+    entry.setDocumentHash(blob.getHash());
+    entry.setDocumentSize(blob.getSize());
+    entry.setExcerpt(excerpt(text));
+    return entry;
+  }
+
+  /**
+   * Retrieves the stored document with the given hash.
+   * @param hash - the hash of the document
+   * @return the blob of the document
+   * @throws IllegalStateException if the document is missing from the BlobStore
+   */
+  public BlobStore.Blob find(String hash) {
+    return blobStore.find(hash).orElseThrow(() -> new IllegalStateException("Missing blob " + hash + "."));
+  }
+
+  /**
+   * Cuts the searched text of a document, its beginning up to the configured length, the whole of most documents.
+   * @param document - the document
+   * @return the searched text
+   */
+  public String text(String document) {
+    return beginning(document, textLength);
+  }
+
+  /**
+   * Cuts the excerpt of a document.
+   */
+  String excerpt(String document) {
+    return beginning(document, excerptLength);
+  }
+
+  /**
+   * Cuts the beginning of a text without a split surrogate pair at the end.
+   */
+  private static String beginning(String text, int length) {
+    if (text.length() <= length) {
+      return text;
+    }
+    int end = Character.isHighSurrogate(text.charAt(length - 1)) ? length - 1 : length;
+    return text.substring(0, end);
+  }
+
+  /**
+   * Moves the documents still kept on the nodes to the BlobStore, then writes the searched text
+   * of the stored documents that have none, in batches.
+   * Failures are logged, the remaining documents are moved on the next start.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrate() {
+    moveDocuments();
+    writeMissingTexts();
+  }
+
+  /**
+   * Removes the stored documents which no LectureMaterial entry references and which have not been stored
+   * for longer than the grace period. Every instance sweeps the BlobStore, the removals are idempotent.
+   */
+  @Scheduled(initialDelayString = "${blob-store.sweep-interval:PT1H}", fixedDelayString = "${blob-store.sweep-interval:PT1H}")
+  public void removeUnreferenced() {
+    try {
+      long removed = blobStore.removeUnreferenced(grace, this::findReferenced);
+      if (removed > 0) {
+        log.info("Removed {} unreferenced Lecture Material documents from the blob store.", removed);
+      }
+    } catch (IOException | RuntimeException e) {
+      log.error("Could not remove the unreferenced Lecture Material documents from the blob store: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Retrieves which of the given document hashes are referenced by a LectureMaterial entry.
+   */
+  private Set<String> findReferenced(List<String> hashes) {
+    return new HashSet<>(neo4jClient.query("MATCH (n:LectureMaterial) WHERE n.documentHash IN $hashes " +
+        "RETURN DISTINCT n.documentHash")
+      .bind(hashes).to("hashes")
+      .fetchAs(String.class)
+      .all());
+  }
+
+  /**
+   * Moves the documents still kept on the nodes to the BlobStore, with their searched text, in batches.
+   * A node is only changed if its document has not been written in the meantime.
+   */
+  private void moveDocuments() {
+    long moved = 0;
+    try {
+      List<Map<String, Object>> batch;
+      do {
+        batch = List.copyOf(neo4jClient.query("MATCH (n:LectureMaterial) WHERE n.document IS NOT NULL " +
+            "RETURN n.id AS id, n.document AS document LIMIT $limit")
+          .bind(MIGRATION_BATCH_SIZE).to("limit")
+          .fetch().all());
+        for (Map<String, Object> node : batch) {
+          LectureMaterial entry = new LectureMaterial((String) node.get("id"), (String) node.get("document"));
+          store(entry);
+          neo4jClient.query("MATCH (n:LectureMaterial {id: $id}) WHERE n.document = $document " +
+              "SET n.documentHash = $documentHash, n.documentSize = $documentSize, n.excerpt = $excerpt " +
+              "REMOVE n.document MERGE (text:LectureMaterialText {id: n.id}) SET text.text = $text")
+            .bind(entry.getId()).to("id")
+            .bind(entry.getDocument()).to("document")
+            .bind(entry.getDocumentHash()).to("documentHash")
+            .bind(entry.getDocumentSize()).to("documentSize")
+            .bind(entry.getExcerpt()).to("excerpt")
+            .bind(text(entry.getDocument())).to("text")
+            .run();
+          moved++;
+        }
+      } while (batch.size() == MIGRATION_BATCH_SIZE);
+    } catch (RuntimeException e) {
+      log.error("Could not move the Lecture Material documents to the blob store: {}", e.getMessage());
+    }
+    if (moved > 0) {
+      log.info("Moved {} Lecture Material documents to the blob store.", moved);
+    }
+  }
+
+  /**
+   * Writes the searched text of the stored documents that have none, in batches ordered by id.
+   * A document that cannot be read is logged and skipped.
+   */
+  private void writeMissingTexts() {
+    long written = 0;
+    try {
+      String after = "";
+      List<Map<String, Object>> batch;
+      do {
+        batch = List.copyOf(neo4jClient.query("MATCH (n:LectureMaterial) WHERE n.id > $after AND n.documentHash IS NOT NULL " +
+            "AND NOT EXISTS { MATCH (text:LectureMaterialText {id: n.id}) } " +
+            "RETURN n.id AS id, n.documentHash AS documentHash ORDER BY n.id LIMIT $limit")
+          .bind(after).to("after")
+          .bind(MIGRATION_BATCH_SIZE).to("limit")
+          .fetch().all());
+        for (Map<String, Object> node : batch) {
+          after = (String) node.get("id");
+          try {
+            String text = read(find((String) node.get("documentHash")).getPath());
+            neo4jClient.query("MERGE (n:LectureMaterialText {id: $id}) SET n.text = $text")
+              .bind(after).to("id")
+              .bind(text).to("text")
+              .run();
+            written++;
+          } catch (LectureMaterialInvalidDocumentException | IOException | IllegalStateException e) {
+            log.warn("Could not read the document of Lecture Material {}: {}", after, e.getMessage());
+          }
+        }
+      } while (batch.size() == MIGRATION_BATCH_SIZE);
+    } catch (RuntimeException e) {
+      log.error("Could not write the searched texts of the Lecture Material documents: {}", e.getMessage());
+    }
+    if (written > 0) {
+      log.info("Wrote the searched text of {} Lecture Material documents.", written);
+    }
+  }
+}
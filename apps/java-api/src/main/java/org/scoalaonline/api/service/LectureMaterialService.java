@@ -1,47 +1,240 @@
 package org.scoalaonline.api.service;
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.DTO.LectureMaterialSummary;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialInvalidDocumentException;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.upload.UploadInvalidHashException;
+import org.scoalaonline.api.exception.upload.UploadInvalidOffsetException;
+import org.scoalaonline.api.exception.upload.UploadNotFoundException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.LectureMaterial;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
 import org.scoalaonline.api.repository.LectureMaterialRepository;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Set;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 /**
  * Contains the Lecture Material related logic needed for the API
+ * The documents are kept in the BlobStore through LectureMaterialDocuments, the nodes only have their hash.
+ * Only single entries are read with their documents, lists are read from the nodes alone.
  */
 @Service
 public class LectureMaterialService implements ServiceInterface<LectureMaterial>{
+  private static final String COLLECTION = "LectureMaterial";
+
   @Autowired
   LectureMaterialRepository lectureMaterialRepository;
 
+  @Autowired
+  NodeStreamer nodeStreamer;
+
+  @Autowired
+  BulkWriter bulkWriter;
+
+  @Autowired
+  NodeProjector nodeProjector;
+
+  @Autowired
+  EntityCache<LectureMaterial> lectureMaterialCache;
+
+  @Autowired
+  CollectionVersionRepository collectionVersionRepository;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  @Autowired
+  LectureMaterialDocuments lectureMaterialDocuments;
+
+  @Autowired
+  UploadStore uploadStore;
+
   /**
-   * Retrieves a list of all Lecture Material entries found in the DB
+   * Retrieves a list of all Lecture Material entries found in the DB, without their documents
+   * The list is served from the EntityCache while it is cached
    * @return the list of Lecture Material entries
    */
   @Override
   public List<LectureMaterial> getAll() {
-    return lectureMaterialRepository.findAll();
+    return getAll(getCollectionVersion());
+  }
+
+  /**
+   * Retrieves a list of all Lecture Material entries, at least as recent as the given version of the collection,
+   * without their documents, which are not read from the BlobStore.
+   * The list is served from the EntityCache while it is cached at that version or a newer one
+   * @param version - the version of the collection, read with getCollectionVersion before
+   * @return the list of Lecture Material entries
+   */
+  public List<LectureMaterial> getAll(long version) {
+    return lectureMaterialCache.getAll(version, lectureMaterialRepository::findAll);
+  }
+
+  /**
+   * Retrieves the summaries of all Lecture Material entries, at least as recent as the given version of the collection
+   * @param version - the version of the collection, read with getCollectionVersion before
+   * @return the list of Lecture Material summaries
+   */
+  public List<LectureMaterialSummary> getSummaries(long version) {
+    return getAll(version).stream().map(LectureMaterialSummary::of).collect(Collectors.toList());
+  }
+
+  /**
+   * Retrieves the version of the Lecture Material collection, increased in the transaction of every write of any Lecture Material entry
+   * @return the version of the collection
+   */
+  public long getCollectionVersion() {
+    return collectionVersionRepository.findVersionByLabel(COLLECTION);
+  }
+
+  /**
+   * Retrieves only the version of the Lecture Material entry with the given id from the DB
+   * @param id - id of the Lecture Material entry
+   * @return the version of the entry, or empty if there is no entry with that id
+   */
+  @Transactional(readOnly = true)
+  public Optional<Long> getVersion(String id) {
+    return lectureMaterialRepository.findVersionById(id);
+  }
+
+  /**
+   * Retrieves one page of Lecture Material entries ordered by id from the DB, without their documents
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of Lecture Material entries
+   */
+  @Transactional(readOnly = true)
+  @Override
+  public CursorPage<LectureMaterial> getPage(String after, int size) {
+    List<LectureMaterial> entries = after == null ? lectureMaterialRepository.findFirstPage(size + 1) : lectureMaterialRepository.findPageAfter(after, size + 1);
+    return CursorPage.of(entries, size, LectureMaterial::getId);
+  }
+
+  /**
+   * Retrieves the summaries of one page of Lecture Material entries ordered by id from the DB
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of Lecture Material summaries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<LectureMaterialSummary> getSummaryPage(String after, int size) {
+    CursorPage<LectureMaterial> page = getPage(after, size);
+    return new CursorPage<>(page.getItems().stream().map(LectureMaterialSummary::of).collect(Collectors.toList()),
+      page.getNextCursor());
+  }
+
+  /**
+   * Writes all Lecture Material entries found in the DB to the output stream as newline delimited JSON,
+   * as they are read, without collecting them in a list
+   * @param bookmarks - the bookmarks of the client, read on the thread of the request
+   * @param out - the output stream
+   * @throws IOException if the output stream cannot be written
+   */
+  public void streamAll(Set<Bookmark> bookmarks, OutputStream out) throws IOException {
+    nodeStreamer.streamAll(LectureMaterial.class, bookmarks, out);
   }
 
   /**
    * Retrieves one Lecture Material entry with the given id from the DB
    * or throws an error if no entry with that id is found.
+   * The entry is served from the EntityCache while it is cached
+   * Its document is not read, it is retrieved with getDocument, so only the small entry is kept in memory and cached.
    * @param id - id of the Lecture Material entry
-   * @return the Lecture Material entry
+   * @return the Lecture Material entry, without its document
    * @throws LectureMaterialNotFoundException
    */
   @Override
   public LectureMaterial getOneById(String id) throws LectureMaterialNotFoundException {
-    return lectureMaterialRepository.findById(id).orElseThrow(
+    return lectureMaterialCache.getById(id, lectureMaterialRepository::findById).orElseThrow(
+      () -> new LectureMaterialNotFoundException("Method getOneById: Lecture Material not found")
+    );
+  }
+
+  /**
+   * Retrieves the stored document of the Lecture Material entry with the given id,
+   * without reading it, to be sent straight from its file
+   * @param id - id of the Lecture Material entry
+   * @return the blob of the document
+   * @throws LectureMaterialNotFoundException
+   */
+  @Transactional(readOnly = true)
+  public BlobStore.Blob getDocument(String id) throws LectureMaterialNotFoundException {
+    String hash = lectureMaterialRepository.findDocumentHashById(id).orElseThrow(
+      () -> new LectureMaterialNotFoundException("Method getDocument: Lecture Material not found")
+    );
+    return lectureMaterialDocuments.find(hash);
+  }
+
+  /**
+   * Builds the projection of the given fields of the Lecture Material entries
+   * @param fields - the comma separated names of the fields
+   * @return the projection
+   * @throws ProjectionInvalidFieldsException if no field is given or a field does not exist
+   */
+  public Projection getProjection(String fields) throws ProjectionInvalidFieldsException {
+    return nodeProjector.of(LectureMaterial.class, fields);
+  }
+
+  /**
+   * Retrieves only the projected fields of all Lecture Material entries found in the DB,
+   * the other fields are not read
+   * @param projection - the projection of the fields
+   * @return the list of projected Lecture Material entries
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> getAll(Projection projection) {
+    return nodeProjector.findAll(projection);
+  }
+
+  /**
+   * Retrieves only the projected fields of one page of Lecture Material entries ordered by id from the DB
+   * @param projection - the projection of the fields
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of projected Lecture Material entries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<Map<String, Object>> getPage(Projection projection, String after, int size) {
+    return nodeProjector.getPage(projection, after, size);
+  }
+
+  /**
+   * Retrieves only the projected fields of the Lecture Material entry with the given id from the DB
+   * or throws an error if no entry with that id is found.
+   * @param id - id of the Lecture Material entry
+   * @param projection - the projection of the fields
+   * @return the projected Lecture Material entry
+   * @throws LectureMaterialNotFoundException
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Object> getOneById(String id, Projection projection) throws LectureMaterialNotFoundException {
+    return nodeProjector.findById(projection, id).orElseThrow(
       () -> new LectureMaterialNotFoundException("Method getOneById: Lecture Material not found")
     );
   }
 
   /**
-   * Adds a Lecture Material entry in the DB based on the received object.
+   * Adds a Lecture Material entry in the DB based on the received object,
+   * together with the searched text of its document, in one transaction.
    * @param entry
    * @throws LectureMaterialInvalidDocumentException
    * @return the Lecture Material object that has been saved in the DB
@@ -54,7 +247,43 @@ public class LectureMaterialService implements ServiceInterface<LectureMaterial>
     else
       throw new LectureMaterialInvalidDocumentException("Method add: Document field can't be null.");
 
-    return lectureMaterialRepository.save(lectureMaterialToSave);
+    lectureMaterialDocuments.store(lectureMaterialToSave);
+    LectureMaterial saved = transactionTemplate.execute(status -> {
+      LectureMaterial created = lectureMaterialRepository.save(lectureMaterialToSave);
+      lectureMaterialRepository.saveText(created.getId(), lectureMaterialDocuments.text(lectureMaterialToSave.getDocument()));
+      collectionVersionRepository.incrementVersion(COLLECTION);
+      return created;
+    });
+    saved.setDocument(lectureMaterialToSave.getDocument());
+    lectureMaterialCache.invalidate(saved.getId());
+    return saved;
+  }
+
+  /**
+   * Adds a Lecture Material entry in the DB with the document received by a chunked upload,
+   * together with the searched text of that document, in one transaction.
+   * The document is stored without being read in memory, only its searched text is. The entry is returned without its document.
+   * @param uploadId - the id of the upload
+   * @param hash - the SHA-256 hash of the document the client has sent, null not to check it
+   * @return the Lecture Material object that has been saved in the DB
+   * @throws UploadNotFoundException if there is no upload with that id
+   * @throws UploadInvalidOffsetException if a chunk of the upload is being written
+   * @throws UploadInvalidHashException if the document received does not have the given hash
+   * @throws LectureMaterialInvalidDocumentException if the document is empty or is not UTF-8 text, it is then not stored
+   * @throws IOException if the upload cannot be read or stored
+   */
+  public LectureMaterial addUpload(String uploadId, String hash) throws UploadNotFoundException, UploadInvalidOffsetException,
+    UploadInvalidHashException, LectureMaterialInvalidDocumentException, IOException {
+    AtomicReference<String> text = new AtomicReference<>();
+    BlobStore.Blob document = uploadStore.complete(uploadId, hash, file -> text.set(lectureMaterialDocuments.read(file)));
+    LectureMaterial saved = transactionTemplate.execute(status -> {
+      LectureMaterial created = lectureMaterialRepository.save(lectureMaterialDocuments.describe(document, text.get()));
+      lectureMaterialRepository.saveText(created.getId(), text.get());
+      collectionVersionRepository.incrementVersion(COLLECTION);
+      return created;
+    });
+    lectureMaterialCache.invalidate(saved.getId());
+    return saved;
   }
 
   /**
@@ -62,34 +291,131 @@ public class LectureMaterialService implements ServiceInterface<LectureMaterial>
    * Throws an exception if no entry with that id was found.
    * @param id - the id of the entry to update
    * @param entry
+   * @param version - the version the entry is expected at, null to update it at any version
    * @return the Lecture Material object saved in the DB
    * @throws LectureMaterialNotFoundException
    * @throws LectureMaterialInvalidDocumentException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public LectureMaterial update(String id, LectureMaterial entry) throws LectureMaterialNotFoundException, LectureMaterialInvalidDocumentException {
-    LectureMaterial lectureMaterialToUpdate = lectureMaterialRepository.findById(id).orElseThrow(
-      () -> new LectureMaterialNotFoundException("Method update: Lecture Material not found")
-    );
-    if(entry.getDocument() != null && !entry.getDocument().equals("")) {
-      lectureMaterialToUpdate.setDocument(entry.getDocument());
-    } else {
+  public LectureMaterial update(String id, LectureMaterial entry, Long version) throws LectureMaterialNotFoundException, LectureMaterialInvalidDocumentException, VersionMismatchException {
+    if (entry.getDocument() == null || entry.getDocument().equals("")) {
+      if (!lectureMaterialRepository.existsById(id)) {
+        throw new LectureMaterialNotFoundException("Method update: Lecture Material not found");
+      }
       throw new LectureMaterialInvalidDocumentException("Method update: Document Field Can't Be Null");
     }
-    return lectureMaterialRepository.save(lectureMaterialToUpdate);
+    LectureMaterial stored = new LectureMaterial(id, entry.getDocument());
+    lectureMaterialDocuments.store(stored);
+    Optional<LectureMaterial> updated = transactionTemplate.execute(status -> {
+      Optional<LectureMaterial> written = lectureMaterialRepository.updateDocumentById(id, stored.getDocumentHash(),
+        stored.getDocumentSize(), stored.getExcerpt(), lectureMaterialDocuments.text(entry.getDocument()), version);
+      written.ifPresent(lectureMaterial -> collectionVersionRepository.incrementVersion(COLLECTION));
+      return written;
+    });
+    if (updated.isEmpty()) {
+      if (version == null || !lectureMaterialRepository.existsById(id)) {
+        throw new LectureMaterialNotFoundException("Method update: Lecture Material not found");
+      }
+      throw new VersionMismatchException("Method update: Lecture Material has been modified.");
+    }
+    lectureMaterialCache.invalidate(id);
+    updated.get().setDocument(entry.getDocument());
+    return updated.get();
   }
 
   /**
-   * Deletes the Lecture Material entry with the given id or throws an exception if no
+   * Deletes the Lecture Material entry with the given id, with the searched text of its document, or throws an exception if no
    * entry with that id can be found
    * @param id
+   * @param version - the version the entry is expected at, null to delete it at any version
    * @throws LectureMaterialNotFoundException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public void delete(String id) throws LectureMaterialNotFoundException {
-    if(lectureMaterialRepository.findById(id).isPresent())
-      lectureMaterialRepository.deleteById(id);
-    else
+  public void delete(String id, Long version) throws LectureMaterialNotFoundException, VersionMismatchException {
+    long deleted = transactionTemplate.execute(status -> {
+      long count = lectureMaterialRepository.deleteByIdReturningCount(id, version);
+      if (count > 0) {
+        collectionVersionRepository.incrementVersion(COLLECTION);
+      }
+      return count;
+    });
+    if (deleted == 0) {
+      if (version != null && lectureMaterialRepository.existsById(id)) {
+        throw new VersionMismatchException("Method delete: Lecture Material has been modified.");
+      }
       throw new LectureMaterialNotFoundException("Method delete: Lecture Material Not Found");
+    }
+    lectureMaterialCache.invalidate(id);
+  }
+
+  /**
+   * Adds a Lecture Material entry in the DB for every valid entry of the list, in batches,
+   * each batch with the searched texts of its documents.
+   * @param entries - the entries to add
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> addAll(List<LectureMaterial> entries) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.create(LectureMaterial.class, entries, entry -> validate(entry, "addAll"), this::toProperties,
+      this::saveTexts);
+    lectureMaterialCache.invalidateAll();
+    return results;
+  }
+
+  /**
+   * Updates the Lecture Material entries with the ids of the valid entries of the list, in batches,
+   * each batch with the searched texts of its documents.
+   * @param entries - the entries to update, each with its id
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> updateAll(List<LectureMaterial> entries) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.update(LectureMaterial.class, entries, LectureMaterial::getId, entry -> validate(entry, "updateAll"), this::toProperties,
+      this::saveTexts);
+    lectureMaterialCache.invalidateAll();
+    return results;
+  }
+
+  /**
+   * Deletes the Lecture Material entries with the given ids, in batches,
+   * each batch with the searched texts of its documents.
+   * @param ids - the ids of the entries to delete
+   * @return the result of every id, in the order of the list
+   * @throws BulkTooLargeException if the list has more ids than allowed
+   */
+  public List<BulkItemResult> deleteAll(List<String> ids) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.delete(LectureMaterial.class, ids, lectureMaterialRepository::deleteTextsByIds);
+    lectureMaterialCache.invalidateAll();
+    return results;
+  }
+
+  private void validate(LectureMaterial entry, String method) throws LectureMaterialInvalidDocumentException {
+    if (entry.getDocument() == null || entry.getDocument().equals("")) {
+      throw new LectureMaterialInvalidDocumentException("Method " + method + ": Document field can't be null.");
+    }
+  }
+
+  private void saveTexts(Map<String, LectureMaterial> written) {
+    List<String> ids = new ArrayList<>();
+    List<String> texts = new ArrayList<>();
+    written.forEach((id, entry) -> {
+      ids.add(id);
+      texts.add(lectureMaterialDocuments.text(entry.getDocument()));
+    });
+    lectureMaterialRepository.saveTexts(ids, texts);
+  }
+
+  private Map<String, Object> toProperties(LectureMaterial entry) {
+    LectureMaterial stored = new LectureMaterial(entry.getId(), entry.getDocument());
+    lectureMaterialDocuments.store(stored);
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("documentHash", stored.getDocumentHash());
+    properties.put("documentSize", stored.getDocumentSize());
+    properties.put("excerpt", stored.getExcerpt());
+    // Removes the document still kept on a node written before the documents were stored apart.
+    properties.put("document", null);
+    return properties;
   }
 }
@@ -1,43 +1,183 @@
 package org.scoalaonline.api.service;
 
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
 import org.scoalaonline.api.exception.lecture.LectureInvalidTitleException;
 import org.scoalaonline.api.exception.lecture.LectureNotFoundException;
+import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
 import org.scoalaonline.api.repository.LectureRepository;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Set;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Contains the Lecture related logic needed for the API.
  */
 @Service
 public class LectureService implements ServiceInterface<Lecture> {
+  private static final String COLLECTION = "Lecture";
 
   @Autowired
   LectureRepository lectureRepository;
 
+  @Autowired
+  NodeStreamer nodeStreamer;
+
+  @Autowired
+  BulkWriter bulkWriter;
+
+  @Autowired
+  NodeProjector nodeProjector;
+
+  @Autowired
+  EntityCache<Lecture> lectureCache;
+
+  @Autowired
+  AutocompleteIndex autocompleteIndex;
+
+  @Autowired
+  CollectionVersionRepository collectionVersionRepository;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
   /**
    * Retrieves a list of all Lecture entries found in the DB.
+   * The list is served from the EntityCache while it is cached.
    * @return the list of Lecture entries.
    */
   @Override
   public List<Lecture> getAll() {
-    return lectureRepository.findAll();
+    return getAll(getCollectionVersion());
+  }
+
+  /**
+   * Retrieves a list of all Lecture entries, at least as recent as the given version of the collection.
+   * The list is served from the EntityCache while it is cached at that version or a newer one
+   * @param version - the version of the collection, read with getCollectionVersion before
+   * @return the list of Lecture entries
+   */
+  public List<Lecture> getAll(long version) {
+    return lectureCache.getAll(version, lectureRepository::findAll);
+  }
+
+  /**
+   * Retrieves the version of the Lecture collection, increased after every write of any Lecture entry
+   * @return the version of the collection
+   */
+  public long getCollectionVersion() {
+    return collectionVersionRepository.findVersionByLabel(COLLECTION);
+  }
+
+  /**
+   * Retrieves only the version of the Lecture entry with the given id from the DB
+   * @param id - id of the Lecture entry
+   * @return the version of the entry, or empty if there is no entry with that id
+   */
+  @Transactional(readOnly = true)
+  public Optional<Long> getVersion(String id) {
+    return lectureRepository.findVersionById(id);
+  }
+
+  /**
+   * Retrieves one page of Lecture entries ordered by id from the DB
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of Lecture entries
+   */
+  @Transactional(readOnly = true)
+  @Override
+  public CursorPage<Lecture> getPage(String after, int size) {
+    List<Lecture> entries = after == null ? lectureRepository.findFirstPage(size + 1) : lectureRepository.findPageAfter(after, size + 1);
+    return CursorPage.of(entries, size, Lecture::getId);
+  }
+
+  /**
+   * Writes all Lecture entries found in the DB to the output stream as newline delimited JSON,
+   * as they are read, without collecting them in a list
+   * @param bookmarks - the bookmarks of the client, read on the thread of the request
+   * @param out - the output stream
+   * @throws IOException if the output stream cannot be written
+   */
+  public void streamAll(Set<Bookmark> bookmarks, OutputStream out) throws IOException {
+    nodeStreamer.streamAll(Lecture.class, bookmarks, out);
   }
 
   /**
    * Retrieves one Lecture entry with the given id from the DB.
    * Throws an exception if no entry with that id is found.
+   * The entry is served from the EntityCache while it is cached.
    * @param id - the id of the Lecture entry.
    * @return the Lecture entry.
    * @throws LectureNotFoundException when the Lecture entry has not been found.
    */
   @Override
   public Lecture getOneById(String id) throws LectureNotFoundException {
-    return lectureRepository.findById(id).orElseThrow(
+    return lectureCache.getById(id, lectureRepository::findById).orElseThrow(
+      () -> new LectureNotFoundException("Method getOneById: Lecture not found.")
+    );
+  }
+
+  /**
+   * Builds the projection of the given fields of the Lecture entries
+   * @param fields - the comma separated names of the fields
+   * @return the projection
+   * @throws ProjectionInvalidFieldsException if no field is given or a field does not exist
+   */
+  public Projection getProjection(String fields) throws ProjectionInvalidFieldsException {
+    return nodeProjector.of(Lecture.class, fields);
+  }
+
+  /**
+   * Retrieves only the projected fields of all Lecture entries found in the DB,
+   * the other fields are not read
+   * @param projection - the projection of the fields
+   * @return the list of projected Lecture entries
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> getAll(Projection projection) {
+    return nodeProjector.findAll(projection);
+  }
+
+  /**
+   * Retrieves only the projected fields of one page of Lecture entries ordered by id from the DB
+   * @param projection - the projection of the fields
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of projected Lecture entries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<Map<String, Object>> getPage(Projection projection, String after, int size) {
+    return nodeProjector.getPage(projection, after, size);
+  }
+
+  /**
+   * Retrieves only the projected fields of the Lecture entry with the given id from the DB
+   * or throws an error if no entry with that id is found.
+   * @param id - id of the Lecture entry
+   * @param projection - the projection of the fields
+   * @return the projected Lecture entry
+   * @throws LectureNotFoundException
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Object> getOneById(String id, Projection projection) throws LectureNotFoundException {
+    return nodeProjector.findById(projection, id).orElseThrow(
       () -> new LectureNotFoundException("Method getOneById: Lecture not found.")
     );
   }
@@ -57,7 +197,14 @@ public class LectureService implements ServiceInterface<Lecture> {
     else
       throw new LectureInvalidTitleException("Method add: Title field can't be invalid.");
 
-    return lectureRepository.save(lecture);
+    Lecture saved = transactionTemplate.execute(status -> {
+      Lecture created = lectureRepository.save(lecture);
+      collectionVersionRepository.incrementVersion(COLLECTION);
+      return created;
+    });
+    lectureCache.invalidate(saved.getId());
+    autocompleteIndex.put(AutocompleteIndex.LECTURE, saved.getId(), saved.getTitle());
+    return saved;
   }
 
   /**
@@ -66,36 +213,143 @@ public class LectureService implements ServiceInterface<Lecture> {
    * Throws an exception if the title is invalid.
    * @param id - the id of the entry to be updated.
    * @param entry - the Lecture entry to be updated.
+   * @param version - the version the entry is expected at, null to update it at any version
    * @return the updated Lecture saved in the db.
    * @throws LectureNotFoundException when the Lecture entry has not been found.
    * @throws LectureInvalidTitleException when the title attribute is invalid.
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public Lecture update(String id, Lecture entry) throws LectureNotFoundException, LectureInvalidTitleException {
-    Lecture lectureToUpdate = lectureRepository.findById(id).orElseThrow(
-      () -> new LectureNotFoundException("Method update: Lecture not found.")
-    );
-    if (entry.getTitle() != null && !entry.getTitle().equals("")) {
-      lectureToUpdate.setTitle(entry.getTitle());
-    } else {
+  public Lecture update(String id, Lecture entry, Long version) throws LectureNotFoundException, LectureInvalidTitleException, VersionMismatchException {
+    if (entry.getTitle() == null || entry.getTitle().equals("")) {
+      if (!lectureRepository.existsById(id)) {
+        throw new LectureNotFoundException("Method update: Lecture not found.");
+      }
       throw new LectureInvalidTitleException("Method update: Title field can't be invalid.");
     }
-
-    return lectureRepository.save(lectureToUpdate);
+    Optional<Lecture> updated = transactionTemplate.execute(status -> {
+      Optional<Lecture> written = lectureRepository.updateTitleById(id, entry.getTitle(), version);
+      written.ifPresent(lecture -> collectionVersionRepository.incrementVersion(COLLECTION));
+      return written;
+    });
+    if (updated.isEmpty()) {
+      if (version == null || !lectureRepository.existsById(id)) {
+        throw new LectureNotFoundException("Method update: Lecture not found.");
+      }
+      throw new VersionMismatchException("Method update: Lecture has been modified.");
+    }
+    lectureCache.invalidate(id);
+    autocompleteIndex.put(AutocompleteIndex.LECTURE, id, updated.get().getTitle());
+    return updated.get();
   }
 
   /**
    * Deletes the Lecture entry with the given id from the db.
    * Throws an exception if no entry with that id can be found.
    * @param id - the id of the entry to be deleted.
+   * @param version - the version the entry is expected at, null to delete it at any version
    * @throws LectureNotFoundException when the Lecture entry has not been found.
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public void delete(String id) throws LectureNotFoundException {
-    if (lectureRepository.findById(id).isPresent()) {
-      lectureRepository.deleteById(id);
-    } else {
+  public void delete(String id, Long version) throws LectureNotFoundException, VersionMismatchException {
+    long deleted = transactionTemplate.execute(status -> {
+      long count = lectureRepository.deleteByIdReturningCount(id, version);
+      if (count > 0) {
+        collectionVersionRepository.incrementVersion(COLLECTION);
+      }
+      return count;
+    });
+    if (deleted == 0) {
+      if (version != null && lectureRepository.existsById(id)) {
+        throw new VersionMismatchException("Method delete: Lecture has been modified.");
+      }
       throw new LectureNotFoundException("Method delete: Lecture not found.");
     }
+    lectureCache.invalidate(id);
+    autocompleteIndex.remove(AutocompleteIndex.LECTURE, id);
+  }
+
+  /**
+   * Relates the LectureMaterial entry with the given id to the Lecture entry with the given id.
+   * Nothing changes if they are already related.
+   * @param id - id of the Lecture entry
+   * @param materialId - id of the LectureMaterial entry
+   * @throws LectureNotFoundException when the Lecture entry has not been found.
+   * @throws LectureMaterialNotFoundException when the LectureMaterial entry has not been found.
+   */
+  public void addMaterial(String id, String materialId) throws LectureNotFoundException, LectureMaterialNotFoundException {
+    if (lectureRepository.addMaterialById(id, materialId) == 0) {
+      if (!lectureRepository.existsById(id)) {
+        throw new LectureNotFoundException("Method addMaterial: Lecture not found.");
+      }
+      throw new LectureMaterialNotFoundException("Method addMaterial: Lecture Material not found.");
+    }
+  }
+
+  /**
+   * Removes the relationship between the Lecture entry with the given id and the LectureMaterial entry with the given id.
+   * The LectureMaterial entry itself is kept.
+   * @param id - id of the Lecture entry
+   * @param materialId - id of the LectureMaterial entry
+   * @throws LectureNotFoundException when the Lecture entry has not been found.
+   * @throws LectureMaterialNotFoundException when the LectureMaterial entry is not one of the Lecture.
+   */
+  public void removeMaterial(String id, String materialId) throws LectureNotFoundException, LectureMaterialNotFoundException {
+    if (lectureRepository.removeMaterialById(id, materialId) == 0) {
+      if (!lectureRepository.existsById(id)) {
+        throw new LectureNotFoundException("Method removeMaterial: Lecture not found.");
+      }
+      throw new LectureMaterialNotFoundException("Method removeMaterial: Lecture Material not found in Lecture.");
+    }
+  }
+
+  /**
+   * Adds a Lecture entry in the DB for every valid entry of the list, in batches.
+   * @param entries - the entries to add
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> addAll(List<Lecture> entries) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.create(Lecture.class, entries, entry -> validate(entry, "addAll"), this::toProperties);
+    lectureCache.invalidateAll();
+    autocompleteIndex.reloadWritten(AutocompleteIndex.LECTURE, results);
+    return results;
+  }
+
+  /**
+   * Updates the Lecture entries with the ids of the valid entries of the list, in batches.
+   * @param entries - the entries to update, each with its id
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> updateAll(List<Lecture> entries) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.update(Lecture.class, entries, Lecture::getId, entry -> validate(entry, "updateAll"), this::toProperties);
+    lectureCache.invalidateAll();
+    autocompleteIndex.reloadWritten(AutocompleteIndex.LECTURE, results);
+    return results;
+  }
+
+  /**
+   * Deletes the Lecture entries with the given ids, in batches.
+   * @param ids - the ids of the entries to delete
+   * @return the result of every id, in the order of the list
+   * @throws BulkTooLargeException if the list has more ids than allowed
+   */
+  public List<BulkItemResult> deleteAll(List<String> ids) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.delete(Lecture.class, ids);
+    lectureCache.invalidateAll();
+    autocompleteIndex.reloadWritten(AutocompleteIndex.LECTURE, results);
+    return results;
+  }
+
+  private void validate(Lecture entry, String method) throws LectureInvalidTitleException {
+    if (entry.getTitle() == null || entry.getTitle().equals("")) {
+      throw new LectureInvalidTitleException("Method " + method + ": Title field can't be invalid.");
+    }
+  }
+
+  private Map<String, Object> toProperties(Lecture entry) {
+    return Map.of("title", entry.getTitle());
   }
 }
@@ -0,0 +1,17 @@
+package org.scoalaonline.api.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * CacheInvalidationBus of an API running as a single instance, there is nobody to tell.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.bus", havingValue = "local")
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+
+  @Override
+  public void publish(String cache, String key) {
+    // The caches of this instance have already been invalidated.
+  }
+}
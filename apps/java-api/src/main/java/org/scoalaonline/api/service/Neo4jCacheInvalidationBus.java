@@ -0,0 +1,203 @@
+package org.scoalaonline.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheInvalidationBus exchanging the invalidations through a change log kept in the DB.
+ * Published invalidations are queued and written by a background thread, one batch per poll interval,
+ * as CacheInvalidation nodes sharing the next number of a sequence. The same thread reads the batches
+ * written by the other instances since the last poll, so peers evict within about two poll intervals.
+ * Batches are removed once they are older than the retention. An instance that has missed batches,
+ * because it could not reach the DB for longer than that, invalidates every cache.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.bus", havingValue = "neo4j", matchIfMissing = true)
+@Slf4j
+public class Neo4jCacheInvalidationBus implements CacheInvalidationBus {
+  private static final String WRITE_BATCH =
+    "MERGE (log:CacheInvalidationLog {id: 'log'}) ON CREATE SET log.seq = 0 " +
+    "SET log.seq = log.seq + 1 " +
+    "WITH log UNWIND $events AS event " +
+    "CREATE (:CacheInvalidation {seq: log.seq, cache: event.cache, key: event.key, origin: $origin, at: timestamp()})";
+  private static final String READ_BATCHES =
+    "MATCH (log:CacheInvalidationLog {id: 'log'}) " +
+    "OPTIONAL MATCH (e:CacheInvalidation) WHERE e.seq > $after " +
+    "WITH log, e ORDER BY e.seq " +
+    "RETURN log.seq AS last, collect(e {.seq, .cache, .key, .origin}) AS events";
+
+  private final Neo4jClient neo4jClient;
+  private final ApplicationEventPublisher eventPublisher;
+  private final long pollIntervalMillis;
+  private final long retentionMillis;
+  private final String origin = UUID.randomUUID().toString();
+  private final Queue<Map<String, Object>> pending = new ConcurrentLinkedQueue<>();
+  private final ScheduledExecutorService scheduler =
+    Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("cache-invalidation-"));
+
+  // Only accessed by the scheduler thread, -1 until the change log has been reached.
+  private long lastSeq = -1;
+  private long lastPrune;
+
+  public Neo4jCacheInvalidationBus(Neo4jClient neo4jClient,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${cache.invalidation.poll-interval-ms:1000}") long pollIntervalMillis,
+                                   @Value("${cache.invalidation.retention-seconds:600}") long retentionSeconds) {
+    this.neo4jClient = neo4jClient;
+    this.eventPublisher = eventPublisher;
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.retentionMillis = TimeUnit.SECONDS.toMillis(retentionSeconds);
+  }
+
+  @Override
+  public void publish(String cache, String key) {
+    Map<String, Object> event = new HashMap<>();
+    event.put("cache", cache);
+    event.put("key", key);
+    pending.add(event);
+  }
+
+  /**
+   * Starts exchanging invalidations once the application has started.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::exchange, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops polling and writes the invalidations still queued.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    scheduler.shutdown();
+    scheduler.awaitTermination(pollIntervalMillis, TimeUnit.MILLISECONDS);
+    try {
+      write();
+    } catch (RuntimeException e) {
+      log.error("Could not write the last cache invalidations: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the queued invalidations, then reads and dispatches the ones of the other instances.
+   * Failures are logged, the invalidations are exchanged again on the next run.
+   */
+  public void exchange() {
+    try {
+      if (lastSeq < 0) {
+        lastSeq = initialize();
+      }
+      write();
+      read();
+      prune();
+    } catch (RuntimeException e) {
+      log.error("Could not exchange cache invalidations: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Creates the schema of the change log and retrieves its current sequence number,
+   * the invalidations written before this instance started are not of interest.
+   */
+  private long initialize() {
+    neo4jClient.query("CREATE CONSTRAINT cacheinvalidationlog_id_unique IF NOT EXISTS " +
+      "ON (n:CacheInvalidationLog) ASSERT n.id IS UNIQUE").run();
+    neo4jClient.query("CREATE INDEX cacheinvalidation_seq IF NOT EXISTS " +
+      "FOR (n:CacheInvalidation) ON (n.seq)").run();
+    long seq = neo4jClient.query("MERGE (log:CacheInvalidationLog {id: 'log'}) ON CREATE SET log.seq = 0 RETURN log.seq")
+      .fetchAs(Long.class).one().orElse(0L);
+    log.info("Exchanging cache invalidations from sequence {} as {}.", seq, origin);
+    return seq;
+  }
+
+  private void write() {
+    List<Map<String, Object>> events = new ArrayList<>();
+    for (Map<String, Object> event = pending.poll(); event != null; event = pending.poll()) {
+      events.add(event);
+    }
+    if (events.isEmpty()) {
+      return;
+    }
+    try {
+      neo4jClient.query(WRITE_BATCH).bind(events).to("events").bind(origin).to("origin").run();
+    } catch (RuntimeException e) {
+      pending.addAll(events);
+      throw e;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void read() {
+    Map<String, Object> result = neo4jClient.query(READ_BATCHES).bind(lastSeq).to("after").fetch().one().orElse(null);
+    if (result == null) {
+      return;
+    }
+    long last = ((Number) result.get("last")).longValue();
+    List<Map<String, Object>> events = (List<Map<String, Object>>) result.get("events");
+
+    // Every batch has the next number of the sequence, a missing number is a batch that has been pruned.
+    long seen = lastSeq;
+    boolean missed = false;
+    List<RemoteInvalidationEvent> received = new ArrayList<>();
+    for (Map<String, Object> event : events) {
+      long seq = ((Number) event.get("seq")).longValue();
+      if (seq > seen + 1) {
+        missed = true;
+      }
+      seen = seq;
+      if (!origin.equals(event.get("origin"))) {
+        received.add(new RemoteInvalidationEvent((String) event.get("cache"), (String) event.get("key")));
+      }
+    }
+    if (last > seen) {
+      missed = true;
+    }
+    lastSeq = Math.max(last, seen);
+
+    if (missed) {
+      log.warn("Missed cache invalidations, invalidating every cache...");
+      dispatch(RemoteInvalidationEvent.everything());
+    } else {
+      received.forEach(this::dispatch);
+    }
+  }
+
+  private void dispatch(RemoteInvalidationEvent event) {
+    try {
+      eventPublisher.publishEvent(event);
+    } catch (RuntimeException e) {
+      log.error("Could not apply the invalidation of {} {}: {}", event.getCache(), event.getKey(), e.getMessage());
+    }
+  }
+
+  private void prune() {
+    long now = System.currentTimeMillis();
+    if (now - lastPrune < retentionMillis / 2) {
+      return;
+    }
+    neo4jClient.query("MATCH (e:CacheInvalidation) WHERE e.at < timestamp() - $retention DETACH DELETE e")
+      .bind(retentionMillis).to("retention")
+      .run();
+    lastPrune = now;
+  }
+}
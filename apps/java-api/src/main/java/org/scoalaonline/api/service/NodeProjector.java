@@ -0,0 +1,182 @@
+package org.scoalaonline.api.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.data.neo4j.core.mapping.GraphPropertyDescription;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+import org.springframework.data.neo4j.core.mapping.Neo4jPersistentEntity;
+import org.springframework.data.neo4j.core.mapping.RelationshipDescription;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads only the requested fields of the nodes of a @Node class, with a Cypher map projection
+ * built from the mapping metadata of the class. Properties and relationships that were not requested
+ * are neither read from the store nor sent back. The id is always part of the projection.
+ * Related nodes are projected with all their properties.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NodeProjector {
+  private final Neo4jClient neo4jClient;
+  private final Neo4jMappingContext mappingContext;
+
+  /**
+   * Builds the projection of the given comma separated fields of a @Node class.
+   * @param type - the @Node class
+   * @param fields - the comma separated names of the fields, as they are serialized
+   * @return the projection
+   * @throws ProjectionInvalidFieldsException if no field is given or a field does not exist
+   */
+  public Projection of(Class<?> type, String fields) throws ProjectionInvalidFieldsException {
+    Neo4jPersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(type);
+    Set<String> requested = new LinkedHashSet<>();
+    if (fields != null) {
+      for (String field : fields.split(",")) {
+        if (!field.isBlank()) {
+          requested.add(field.trim());
+        }
+      }
+    }
+    if (requested.isEmpty()) {
+      throw new ProjectionInvalidFieldsException("Fields can't be empty.");
+    }
+
+    Map<String, String> properties = new HashMap<>();
+    String idProperty = null;
+    for (GraphPropertyDescription property : entity.getGraphProperties()) {
+      properties.put(property.getFieldName(), property.getPropertyName());
+      if (property.isIdProperty()) {
+        idProperty = property.getPropertyName();
+      }
+    }
+    Map<String, RelationshipDescription> relationships = new HashMap<>();
+    for (RelationshipDescription relationship : entity.getRelationships()) {
+      relationships.put(relationship.getFieldName(), relationship);
+    }
+
+    String idField = entity.getRequiredIdProperty().getFieldName();
+    requested.remove(idField);
+    List<String> fieldNames = new ArrayList<>();
+    fieldNames.add(idField);
+    fieldNames.addAll(requested);
+    List<String> entries = new ArrayList<>();
+    entries.add(quote(idField) + ": n." + quote(idProperty));
+    for (String field : requested) {
+      if (properties.containsKey(field)) {
+        entries.add(quote(field) + ": n." + quote(properties.get(field)));
+      } else if (relationships.containsKey(field)) {
+        RelationshipDescription relationship = relationships.get(field);
+        String pattern = relationship.isOutgoing()
+          ? "(n)-[:" + quote(relationship.getType()) + "]->(t:" + quote(relationship.getTarget().getPrimaryLabel()) + ")"
+          : "(n)<-[:" + quote(relationship.getType()) + "]-(t:" + quote(relationship.getTarget().getPrimaryLabel()) + ")";
+        entries.add(quote(field) + ": [" + pattern + " | t {.*}]");
+      } else {
+        throw new ProjectionInvalidFieldsException("Unknown field " + field + ".");
+      }
+    }
+    return new Projection(entity.getPrimaryLabel(), idField, idProperty, fieldNames, "n {" + String.join(", ", entries) + "}");
+  }
+
+  /**
+   * Retrieves the projection of every node.
+   * @param projection - the projection
+   * @return the projected nodes
+   */
+  public List<Map<String, Object>> findAll(Projection projection) {
+    log.info("Fetching projected {} nodes...", projection.label);
+    return fetch(projection, "MATCH (n:" + quote(projection.label) + ") RETURN " + projection.expression + " AS n", Map.of());
+  }
+
+  /**
+   * Retrieves the projection of one page of nodes ordered by id.
+   * @param projection - the projection
+   * @param after - the id of the last node of the previous page, null for the first page
+   * @param size - the maximum number of nodes
+   * @return the page of projected nodes
+   */
+  public CursorPage<Map<String, Object>> getPage(Projection projection, String after, int size) {
+    log.info("Fetching a page of projected {} nodes...", projection.label);
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("after", after);
+    parameters.put("limit", size + 1);
+    String id = "n." + quote(projection.idProperty);
+    // The first page and the next ones have a condition of their own, so both seek the index on the id.
+    List<Map<String, Object>> nodes = fetch(projection, "MATCH (n:" + quote(projection.label) + ") " +
+      "WHERE " + id + (after == null ? " IS NOT NULL " : " > $after ") +
+      "WITH n ORDER BY " + id + " LIMIT $limit " +
+      "RETURN " + projection.expression + " AS n ORDER BY n." + quote(projection.idField), parameters);
+    return CursorPage.of(nodes, size, node -> (String) node.get(projection.idField));
+  }
+
+  /**
+   * Retrieves the projection of the node with the given id.
+   * @param projection - the projection
+   * @param id - the id of the node
+   * @return the projected node, or empty if there is no node with that id
+   */
+  public Optional<Map<String, Object>> findById(Projection projection, String id) {
+    log.info("Fetching projected {} node with id {}...", projection.label, id);
+    List<Map<String, Object>> nodes = fetch(projection, "MATCH (n:" + quote(projection.label) + ") " +
+      "WHERE n." + quote(projection.idProperty) + " = $id RETURN " + projection.expression + " AS n", Map.of("id", id));
+    return nodes.stream().findFirst();
+  }
+
+  /**
+   * Runs the query and keeps the fields of every projected node in the order they were requested.
+   */
+  @SuppressWarnings("unchecked")
+  private List<Map<String, Object>> fetch(Projection projection, String cypher, Map<String, Object> parameters) {
+    Collection<Map<String, Object>> nodes = neo4jClient.query(cypher)
+      .bindAll(parameters)
+      .fetchAs((Class<Map<String, Object>>) (Class<?>) Map.class)
+      .mappedBy((typeSystem, record) -> {
+        Map<String, Object> values = record.get("n").asMap();
+        Map<String, Object> node = new LinkedHashMap<>();
+        projection.fieldNames.forEach(field -> node.put(field, values.get(field)));
+        return node;
+      })
+      .all();
+    return new ArrayList<>(nodes);
+  }
+
+  private static String quote(String name) {
+    return "`" + name.replace("`", "``") + "`";
+  }
+
+  /**
+   * The Cypher map projection of some of the fields of a @Node class.
+   */
+  public static final class Projection {
+    private final String label;
+    private final String idField;
+    private final String idProperty;
+    private final List<String> fieldNames;
+    private final String expression;
+
+    Projection(String label, String idField, String idProperty, List<String> fieldNames, String expression) {
+      this.label = label;
+      this.idField = idField;
+      this.idProperty = idProperty;
+      this.fieldNames = fieldNames;
+      this.expression = expression;
+    }
+
+    String getExpression() {
+      return expression;
+    }
+  }
+}
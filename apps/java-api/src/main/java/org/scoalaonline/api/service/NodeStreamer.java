@@ -0,0 +1,88 @@
+package org.scoalaonline.api.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Bookmark;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.springframework.data.neo4j.core.DatabaseSelection;
+import org.springframework.data.neo4j.core.DatabaseSelectionProvider;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * Writes every node of a given @Node class as newline delimited JSON (one object per line),
+ * straight from the result cursor of the driver. Records are pulled in batches as the output
+ * is written, so neither the whole result nor a list of entities is ever held in memory.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NodeStreamer {
+  // Records pulled from the server per batch, the output is flushed after each batch.
+  private static final int FETCH_SIZE = 500;
+
+  private final Driver driver;
+  private final DatabaseSelectionProvider databaseSelectionProvider;
+  private final ObjectMapper objectMapper;
+  private final Neo4jMappingContext mappingContext;
+
+  /**
+   * Writes the properties of every node with the given label to the output stream, one JSON object per line.
+   * The query runs in an auto-commit read session and is not retried,
+   * since part of the result may already have been sent.
+   * The session waits for the bookmarks of the client, so it reads the client's own writes
+   * even when it is routed to a follower or a read replica.
+   * @param type - the @Node class of the nodes
+   * @param bookmarks - the bookmarks of the client, read on the thread of the request
+   * @param out - the output stream, left open
+   * @return the number of nodes written
+   * @throws IOException if the output stream cannot be written
+   */
+  public long streamAll(Class<?> type, Set<Bookmark> bookmarks, OutputStream out) throws IOException {
+    String label = mappingContext.getRequiredPersistentEntity(type).getPrimaryLabel();
+    log.info("Streaming all {} nodes...", label);
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // Lines are separated by the newline written after each object only.
+    generator.setRootValueSeparator(null);
+
+    long written = 0;
+    try (Session session = driver.session(sessionConfig(bookmarks))) {
+      Result result = session.run("MATCH (n:`" + label + "`) RETURN n {.*} AS n");
+      while (result.hasNext()) {
+        Record record = result.next();
+        generator.writeObject(record.get("n").asMap());
+        generator.writeRaw('\n');
+        if (++written % FETCH_SIZE == 0) {
+          generator.flush();
+        }
+      }
+    }
+    generator.flush();
+    log.info("Streamed {} {} nodes.", written, label);
+    return written;
+  }
+
+  private SessionConfig sessionConfig(Set<Bookmark> bookmarks) {
+    SessionConfig.Builder builder = SessionConfig.builder()
+      .withDefaultAccessMode(AccessMode.READ)
+      .withBookmarks(bookmarks)
+      .withFetchSize(FETCH_SIZE);
+    DatabaseSelection databaseSelection = databaseSelectionProvider.getDatabaseSelection();
+    if (!DatabaseSelection.undecided().equals(databaseSelection)) {
+      builder.withDatabase(databaseSelection.getValue());
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,44 @@
+package org.scoalaonline.api.service;
+
+/**
+ * Published on this instance for every invalidation received from another instance of the API.
+ * The caches listening for it only evict their own entries and never publish it again.
+ */
+public final class RemoteInvalidationEvent {
+  private final String cache;
+  private final String key;
+
+  public RemoteInvalidationEvent(String cache, String key) {
+    this.cache = cache;
+    this.key = key;
+  }
+
+  /**
+   * Creates the event invalidating every entry of every cache,
+   * sent when some invalidations could not be received.
+   * @return the event
+   */
+  public static RemoteInvalidationEvent everything() {
+    return new RemoteInvalidationEvent(null, null);
+  }
+
+  /**
+   * Checks if the event invalidates entries of the given cache.
+   * @param name - name of the cache
+   * @return true if the event is about that cache or about every cache
+   */
+  public boolean concerns(String name) {
+    return cache == null || cache.equals(name);
+  }
+
+  public String getCache() {
+    return cache;
+  }
+
+  /**
+   * @return the key of the invalidated entry, null for every entry of the cache
+   */
+  public String getKey() {
+    return key;
+  }
+}
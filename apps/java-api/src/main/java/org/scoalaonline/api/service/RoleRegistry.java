@@ -0,0 +1,163 @@
+package org.scoalaonline.api.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.model.Role;
+import org.scoalaonline.api.repository.RoleRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps every Role entry in memory, so the roles of a user can be resolved without reaching the DB.
+ * The roles are loaded once the application has started and reloaded as a whole by the Role write paths,
+ * readers always see either the old or the new set of roles, never a mix of both.
+ * The other instances reload theirs once the CacheInvalidationBus tells them about the write.
+ * A role missing from the registry is not found, lookups never reload the roles themselves,
+ * so unknown names or ids sent by clients do not reach the DB.
+ * The same Role and SimpleGrantedAuthority instances are handed out to every user.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RoleRegistry {
+  private static final String CACHE_NAME = "roles";
+
+  private final RoleRepository roleRepository;
+  private final CacheInvalidationBus invalidationBus;
+
+  private volatile Snapshot snapshot;
+
+  /**
+   * Loads the roles once the application has started.
+   * Failures are logged, the roles are then loaded on first use.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void initialize() {
+    try {
+      refresh();
+    } catch (RuntimeException e) {
+      log.error("Could not load the roles: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Reloads all Role entries from the DB and replaces the known roles with them.
+   */
+  public synchronized void refresh() {
+    List<Role> roles = roleRepository.findAll();
+    snapshot = new Snapshot(roles);
+    log.info("Loaded {} roles.", roles.size());
+  }
+
+  /**
+   * Reloads the roles after a Role write, here and on the other instances.
+   */
+  public void reload() {
+    refresh();
+    invalidationBus.publish(CACHE_NAME, null);
+  }
+
+  /**
+   * Reloads the roles changed by another instance.
+   * @param event - the invalidation
+   */
+  @EventListener
+  public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+    if (event.concerns(CACHE_NAME)) {
+      refresh();
+    }
+  }
+
+  /**
+   * Retrieves the Role with the given id.
+   * @param id - id of the Role entry
+   * @return the shared Role instance, or empty if there is no role with that id
+   */
+  public Optional<Role> findById(String id) {
+    return Optional.ofNullable(getSnapshot().byId.get(id));
+  }
+
+  /**
+   * Retrieves the Role with the given name.
+   * @param name - name of the Role entry
+   * @return the shared Role instance, or empty if there is no role with that name
+   */
+  public Optional<Role> findByName(String name) {
+    return Optional.ofNullable(getSnapshot().byName.get(name));
+  }
+
+  /**
+   * Retrieves the Roles with the given ids, in the same order.
+   * @param ids - ids of the Role entries
+   * @return the shared Role instances, or empty if any of the ids has no role
+   */
+  public Optional<List<Role>> findAllById(Collection<String> ids) {
+    return getSnapshot().findAllById(ids);
+  }
+
+  /**
+   * Retrieves the authority granted by the role with the given name, without ever reaching the DB.
+   * Names of unknown roles, or any name before the roles are loaded, get an authority of their own.
+   * @param name - name of the Role entry
+   * @return the shared authority of the role
+   */
+  public SimpleGrantedAuthority getAuthority(String name) {
+    Snapshot current = snapshot;
+    SimpleGrantedAuthority authority = current != null ? current.authorities.get(name) : null;
+    return authority != null ? authority : new SimpleGrantedAuthority(name);
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      // The roles could not be loaded at startup, the first lookup loads them once.
+      synchronized (this) {
+        if (snapshot == null) {
+          refresh();
+        }
+        current = snapshot;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * The roles known at one point in time, never changed once built.
+   */
+  private static final class Snapshot {
+    private final Map<String, Role> byId = new HashMap<>();
+    private final Map<String, Role> byName = new HashMap<>();
+    private final Map<String, SimpleGrantedAuthority> authorities = new HashMap<>();
+
+    Snapshot(List<Role> roles) {
+      for (Role role : roles) {
+        byId.put(role.getId(), role);
+        if (role.getName() != null) {
+          byName.put(role.getName(), role);
+          authorities.put(role.getName(), new SimpleGrantedAuthority(role.getName()));
+        }
+      }
+    }
+
+    Optional<List<Role>> findAllById(Collection<String> ids) {
+      List<Role> roles = new ArrayList<>(ids.size());
+      for (String id : ids) {
+        Role role = byId.get(id);
+        if (role == null) {
+          return Optional.empty();
+        }
+        roles.add(role);
+      }
+      return Optional.of(roles);
+    }
+  }
+}
@@ -2,13 +2,24 @@ package org.scoalaonline.api.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.CursorPage;
 import org.scoalaonline.api.exception.role.RoleInvalidNameException;
 import org.scoalaonline.api.exception.role.RoleNotFoundException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
 import org.scoalaonline.api.model.Role;
 import org.scoalaonline.api.repository.RoleRepository;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Set;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Contains the Role related logic needed for the API
@@ -18,17 +29,48 @@ import java.util.List;
 @RequiredArgsConstructor
 public class RoleService implements ServiceInterface<Role>{
   private final RoleRepository roleRepository;
+  private final UserDetailsCache userDetailsCache;
+  private final RoleVersionRegistry roleVersionRegistry;
+  private final RoleRegistry roleRegistry;
+  private final NodeStreamer nodeStreamer;
+  private final NodeProjector nodeProjector;
 
   /**
    * Retrieves a list of all Role entries found in the DB
    * @return the list of Role entries
    */
+  @Transactional(readOnly = true)
   @Override
   public List<Role> getAll() {
     log.info("Fetching all roles...");
     return roleRepository.findAll();
   }
 
+  /**
+   * Retrieves one page of Role entries ordered by id from the DB
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of Role entries
+   */
+  @Transactional(readOnly = true)
+  @Override
+  public CursorPage<Role> getPage(String after, int size) {
+    log.info("Fetching a page of roles...");
+    List<Role> entries = after == null ? roleRepository.findFirstPage(size + 1) : roleRepository.findPageAfter(after, size + 1);
+    return CursorPage.of(entries, size, Role::getId);
+  }
+
+  /**
+   * Writes all Role entries found in the DB to the output stream as newline delimited JSON,
+   * as they are read, without collecting them in a list
+   * @param bookmarks - the bookmarks of the client, read on the thread of the request
+   * @param out - the output stream
+   * @throws IOException if the output stream cannot be written
+   */
+  public void streamAll(Set<Bookmark> bookmarks, OutputStream out) throws IOException {
+    nodeStreamer.streamAll(Role.class, bookmarks, out);
+  }
+
   /**
    * Retrieves one Role entry with the given id from the DB
    * or throws an error if no entry with that id is found.
@@ -36,6 +78,7 @@ public class RoleService implements ServiceInterface<Role>{
    * @return the Role entry
    * @throws RoleNotFoundException
    */
+  @Transactional(readOnly = true)
   @Override
   public Role getOneById(String id) throws RoleNotFoundException {
     log.info("Fetching role with id {}...", id);
@@ -47,6 +90,57 @@ public class RoleService implements ServiceInterface<Role>{
     );
   }
 
+  /**
+   * Builds the projection of the given fields of the Role entries
+   * @param fields - the comma separated names of the fields
+   * @return the projection
+   * @throws ProjectionInvalidFieldsException if no field is given or a field does not exist
+   */
+  public Projection getProjection(String fields) throws ProjectionInvalidFieldsException {
+    return nodeProjector.of(Role.class, fields);
+  }
+
+  /**
+   * Retrieves only the projected fields of all Role entries found in the DB,
+   * the other fields are not read
+   * @param projection - the projection of the fields
+   * @return the list of projected Role entries
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> getAll(Projection projection) {
+    return nodeProjector.findAll(projection);
+  }
+
+  /**
+   * Retrieves only the projected fields of one page of Role entries ordered by id from the DB
+   * @param projection - the projection of the fields
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of projected Role entries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<Map<String, Object>> getPage(Projection projection, String after, int size) {
+    return nodeProjector.getPage(projection, after, size);
+  }
+
+  /**
+   * Retrieves only the projected fields of the Role entry with the given id from the DB
+   * or throws an error if no entry with that id is found.
+   * @param id - id of the Role entry
+   * @param projection - the projection of the fields
+   * @return the projected Role entry
+   * @throws RoleNotFoundException
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Object> getOneById(String id, Projection projection) throws RoleNotFoundException {
+    return nodeProjector.findById(projection, id).orElseThrow(
+      () -> {
+        log.error("Role not found.");
+        return new RoleNotFoundException("Method getOneById: Role not found.");
+      }
+    );
+  }
+
   /**
    * Adds a Role entry in the DB based on the received object.
    * @param entry - the Role entry.
@@ -65,7 +159,9 @@ public class RoleService implements ServiceInterface<Role>{
       throw new RoleInvalidNameException("Method add: Name field can't be null.");
     }
 
-    return roleRepository.save(roleToSave);
+    Role savedRole = roleRepository.save(roleToSave);
+    roleRegistry.reload();
+    return savedRole;
   }
 
   /**
@@ -73,41 +169,59 @@ public class RoleService implements ServiceInterface<Role>{
    * Throws an exception if no entry with that id was found.
    * @param id - the id of the entry to update
    * @param entry - the Role entry.
+   * @param version - the version the entry is expected at, null to update it at any version
    * @return the Role object saved in the DB
    * @throws RoleNotFoundException
    * @throws RoleInvalidNameException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public Role update(String id, Role entry) throws RoleNotFoundException, RoleInvalidNameException {
-    Role roleToUpdate = roleRepository.findById(id).orElseThrow(
-      () -> {
+  public Role update(String id, Role entry, Long version) throws RoleNotFoundException, RoleInvalidNameException, VersionMismatchException {
+    if(entry.getName() == null || entry.getName().equals("")) {
+      if(!roleRepository.existsById(id)) {
         log.error("Role not found.");
-        return new RoleNotFoundException("Method update: Role not found.");
+        throw new RoleNotFoundException("Method update: Role not found.");
       }
-    );
-
-    log.info("Updating role {}...", roleToUpdate.getName());
-    if(entry.getName() != null && !entry.getName().equals("")) {
-      roleToUpdate.setName(entry.getName());
-    } else {
       log.error("Name field can't be null.");
       throw new RoleInvalidNameException("Method update: Name field can't be null.");
     }
 
-    return roleRepository.save(roleToUpdate);
+    log.info("Updating role with id {}...", id);
+    Optional<Role> updated = roleRepository.updateNameById(id, entry.getName(), version);
+    if (updated.isEmpty()) {
+      if (version == null || !roleRepository.existsById(id)) {
+        log.error("Role not found.");
+        throw new RoleNotFoundException("Method update: Role not found.");
+      }
+      log.error("Role has been modified.");
+      throw new VersionMismatchException("Method update: Role has been modified.");
+    }
+    // The authorities of every user holding this role have changed.
+    roleRegistry.reload();
+    userDetailsCache.invalidateAll();
+    roleVersionRegistry.bumpAll();
+    return updated.get();
   }
 
   /**
    * Deletes the Role entry with the given id or throws an exception if no
    * entry with that id can be found
    * @param id - id of the Role entry
+   * @param version - the version the entry is expected at, null to delete it at any version
    * @throws RoleNotFoundException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public void delete(String id) throws RoleNotFoundException {
-    if(roleRepository.findById(id).isPresent()) {
-      log.info("Deleting role with id {}...", id);
-      roleRepository.deleteById(id);
+  public void delete(String id, Long version) throws RoleNotFoundException, VersionMismatchException {
+    log.info("Deleting role with id {}...", id);
+    if(roleRepository.deleteByIdReturningCount(id, version) > 0) {
+      roleRegistry.reload();
+      userDetailsCache.invalidateAll();
+      roleVersionRegistry.bumpAll();
+    }
+    else if (version != null && roleRepository.existsById(id)) {
+      log.error("Role has been modified.");
+      throw new VersionMismatchException("Method delete: Role has been modified.");
     }
     else {
       log.error("Role not found in the database.");
@@ -0,0 +1,104 @@
+package org.scoalaonline.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a version of the roles of every user, embedded in the issued tokens,
+ * so a refresh token can be exchanged without reading the roles from the DB
+ * as long as they have not changed since the token was issued.
+ * Versions are drawn from a sequence seeded with the start time, so a version
+ * issued before a restart is never mistaken for a current one.
+ * Changes are sent to the other instances through the CacheInvalidationBus, which then drop their versions.
+ * The number of versions kept is bounded, a dropped version only makes the tokens carrying it read the roles again.
+ */
+@Component
+@Slf4j
+public class RoleVersionRegistry {
+  private static final String CACHE_NAME = "roleVersions";
+
+  private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() << 20);
+  private final Cache<String, Long> versions;
+  private final CacheInvalidationBus invalidationBus;
+
+  public RoleVersionRegistry(CacheInvalidationBus invalidationBus,
+                             @Value("${security.role-versions.maximum-size:10000}") long maximumSize) {
+    this.invalidationBus = invalidationBus;
+    this.versions = Caffeine.newBuilder()
+      .maximumSize(maximumSize)
+      .build();
+  }
+
+  /**
+   * Retrieves the current role version of the user, assigning one if the user has none yet.
+   * Must be read before the roles themselves, so a concurrent change always bumps it afterwards.
+   * @param username - username of the User entry
+   * @return the current role version
+   */
+  public long currentVersion(String username) {
+    return versions.get(username, key -> sequence.incrementAndGet());
+  }
+
+  /**
+   * Checks if the given role version is still the current one of the user.
+   * @param username - username of the User entry
+   * @param version - the role version found in a token
+   * @return true if the roles have not changed since the version was issued
+   */
+  public boolean isCurrent(String username, long version) {
+    Long current = versions.getIfPresent(username);
+    return current != null && current == version;
+  }
+
+  /**
+   * Drops the role version of a username which turned out not to belong to any user.
+   * @param username - the username
+   */
+  public void forget(String username) {
+    versions.invalidate(username);
+  }
+
+  /**
+   * Marks the roles of the user as changed.
+   * @param username - username of the User entry
+   */
+  public void bump(String username) {
+    if (username != null) {
+      log.info("Bumping role version of user {}...", username);
+      versions.put(username, sequence.incrementAndGet());
+      invalidationBus.publish(CACHE_NAME, username);
+    }
+  }
+
+  /**
+   * Marks the roles of every user as changed.
+   */
+  public void bumpAll() {
+    log.info("Bumping role version of all users...");
+    versions.invalidateAll();
+    invalidationBus.publish(CACHE_NAME, null);
+  }
+
+  /**
+   * Drops the role versions changed by another instance,
+   * the tokens carrying them are no longer current here either.
+   * @param event - the invalidation
+   */
+  @EventListener
+  public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+    if (!event.concerns(CACHE_NAME)) {
+      return;
+    }
+    if (event.getKey() != null) {
+      versions.invalidate(event.getKey());
+    } else {
+      versions.invalidateAll();
+    }
+  }
+}
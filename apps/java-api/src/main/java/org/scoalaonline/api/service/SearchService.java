@@ -0,0 +1,173 @@
+package org.scoalaonline.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.DTO.SearchHit;
+import org.scoalaonline.api.exception.search.SearchInvalidQueryException;
+import org.scoalaonline.api.model.Searchable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+import org.springframework.data.neo4j.core.mapping.Neo4jPersistentEntity;
+import org.springframework.data.neo4j.core.mapping.Neo4jPersistentProperty;
+import org.springframework.data.neo4j.core.schema.Node;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Searches the properties marked with @Searchable through their full-text index.
+ * The hits are ranked by the score of the index and paginated by offset, the index
+ * only reads the postings of the query terms, so a page costs the same whatever the number of entries.
+ * The snippet is cut from the text by the query, so the whole text of a long document is never sent.
+ */
+@Service
+@Slf4j
+public class SearchService {
+  private static final String SEARCH =
+    "CALL db.index.fulltext.queryNodes($index, $query) YIELD node, score " +
+    "WITH node, score SKIP $skip LIMIT $limit " +
+    "WITH node, score, [label IN labels(node) WHERE label IN keys($properties)][0] AS type " +
+    "WITH node, score, type, coalesce(node[$properties[type]], '') AS text " +
+    "WITH node, score, type, text, " +
+    "[term IN $terms WHERE toLower(text) CONTAINS term | size(split(toLower(text), term)[0])] AS positions " +
+    "WITH node, score, type, text, reduce(first = size(text), position IN positions | " +
+    "CASE WHEN position < first THEN position ELSE first END) AS first " +
+    "WITH node, score, type, text, CASE WHEN first > $context THEN first - $context ELSE 0 END AS start " +
+    "RETURN type, node.id AS id, score, substring(text, start, $length) AS snippet, start, size(text) AS size";
+  // Lucene query syntax characters, matched literally when escaped.
+  private static final String SPECIAL_CHARACTERS = "\\+-!():^[]\"{}~*?|&/";
+
+  private final Neo4jClient neo4jClient;
+  private final Map<String, String> properties;
+  private final Map<String, String> types;
+  private final int snippetLength;
+
+  public SearchService(Neo4jClient neo4jClient,
+                       Neo4jMappingContext mappingContext,
+                       @Value("${search.snippet-length:200}") int snippetLength) {
+    this.neo4jClient = neo4jClient;
+    this.properties = getSearchableProperties(mappingContext);
+    this.types = getSearchableTypes(mappingContext);
+    this.snippetLength = snippetLength;
+  }
+
+  /**
+   * Retrieves one page of the entries matching any term of the query, the best match first.
+   * The terms are the whitespace separated words of the query, matched literally and case insensitively.
+   * @param query - the query
+   * @param offset - the number of hits of the previous pages
+   * @param size - the size of the page
+   * @return the page, with the offset of the next page as its cursor
+   * @throws SearchInvalidQueryException if the query has no terms
+   */
+  public CursorPage<SearchHit> search(String query, int offset, int size) throws SearchInvalidQueryException {
+    List<String> terms = getTerms(query);
+    if (terms.isEmpty()) {
+      throw new SearchInvalidQueryException("The query has no terms.");
+    }
+    log.info("Searching for {} from hit {}...", terms, offset);
+    List<String> escaped = new ArrayList<>();
+    terms.forEach(term -> escaped.add(escape(term)));
+    List<SearchHit> hits = new ArrayList<>(neo4jClient.query(SEARCH)
+      .bind(Searchable.INDEX).to("index")
+      .bind(String.join(" ", escaped)).to("query")
+      .bind(terms).to("terms")
+      .bind(properties).to("properties")
+      .bind(offset).to("skip")
+      .bind(size + 1).to("limit")
+      .bind(snippetLength / 4).to("context")
+      .bind(snippetLength).to("length")
+      .fetchAs(SearchHit.class)
+      .mappedBy((typeSystem, record) -> {
+        String snippet = record.get("snippet").asString();
+        long start = record.get("start").asLong();
+        if (start > 0) {
+          snippet = "..." + snippet;
+        }
+        if (start + snippetLength < record.get("size").asLong()) {
+          snippet = snippet + "...";
+        }
+        String label = record.get("type").asString();
+        return new SearchHit(types.getOrDefault(label, label), record.get("id").asString(),
+          record.get("score").asDouble(), snippet);
+      })
+      .all());
+    if (hits.size() <= size) {
+      return new CursorPage<>(hits, null);
+    }
+    return new CursorPage<>(hits.subList(0, size), CursorPage.encode(String.valueOf(offset + size)));
+  }
+
+  /**
+   * Splits a query into its distinct lower case terms.
+   */
+  static List<String> getTerms(String query) {
+    Set<String> terms = new LinkedHashSet<>();
+    if (query != null) {
+      for (String term : query.trim().split("\\s+")) {
+        if (!term.isEmpty()) {
+          terms.add(term.toLowerCase(Locale.ROOT));
+        }
+      }
+    }
+    return new ArrayList<>(terms);
+  }
+
+  /**
+   * Escapes the Lucene query syntax of a term, so it is matched literally.
+   */
+  static String escape(String term) {
+    StringBuilder escaped = new StringBuilder(term.length());
+    for (char c : term.toCharArray()) {
+      if (SPECIAL_CHARACTERS.indexOf(c) >= 0) {
+        escaped.append('\\');
+      }
+      escaped.append(c);
+    }
+    return escaped.toString();
+  }
+
+  /**
+   * Maps the primary label of every @Node class with a @Searchable property to the name of that property.
+   */
+  static Map<String, String> getSearchableProperties(Neo4jMappingContext mappingContext) {
+    Map<String, String> properties = new TreeMap<>();
+    for (Neo4jPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+      if (!entity.isAnnotationPresent(Node.class)) {
+        continue;
+      }
+      for (Neo4jPersistentProperty property : entity) {
+        if (property.isAnnotationPresent(Searchable.class)) {
+          properties.put(entity.getPrimaryLabel(), property.getPropertyName());
+        }
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Maps the primary label of every @Node class with a @Searchable property to the type of the hits of that property.
+   */
+  static Map<String, String> getSearchableTypes(Neo4jMappingContext mappingContext) {
+    Map<String, String> types = new TreeMap<>();
+    for (Neo4jPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+      if (!entity.isAnnotationPresent(Node.class)) {
+        continue;
+      }
+      for (Neo4jPersistentProperty property : entity) {
+        Searchable searchable = property.findAnnotation(Searchable.class);
+        if (searchable != null) {
+          types.put(entity.getPrimaryLabel(), searchable.type().isEmpty() ? entity.getPrimaryLabel() : searchable.type());
+        }
+      }
+    }
+    return types;
+  }
+}
@@ -1,5 +1,7 @@
 package org.scoalaonline.api.service;
 
+import org.scoalaonline.api.DTO.CursorPage;
+
 import java.util.List;
 import java.util.Optional;
 
@@ -10,6 +12,15 @@ public interface ServiceInterface<T> {
    */
   List<T> getAll();
 
+  /**
+   * Retrieves one page of entries ordered by id from the DB,
+   * starting right after the entry with the given id.
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of entries
+   */
+  CursorPage<T> getPage( String after, int size );
+
   /**
    * Retrieves one entry with the given id from the DB
    * or throws an error if no entry with that id is found.
@@ -28,17 +39,20 @@ public interface ServiceInterface<T> {
 
   /**
    * Updates the entry with the given id based on the received object.
-   * Throws an exception if no entry with that id was found.
+   * Throws an exception if no entry with that id was found
+   * or if it is no longer at the expected version.
    * @param id - the id of the entry to update
    * @param entry
+   * @param version - the version the entry is expected at, null to update it at any version
    * @return the object saved in the DB
    */
-  T update( String id, T object) throws Exception;
+  T update( String id, T object, Long version ) throws Exception;
 
   /**
    * Deletes the entry with the given id or throws an exception if no
-   * entry with that id can be found
+   * entry with that id can be found or if it is no longer at the expected version
    * @param id
+   * @param version - the version the entry is expected at, null to delete it at any version
    */
-  void delete( String id ) throws Exception;
+  void delete( String id, Long version ) throws Exception;
 }
@@ -1,43 +1,190 @@
 package org.scoalaonline.api.service;
 
 
+import org.neo4j.driver.Bookmark;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
+import org.scoalaonline.api.exception.lecture.LectureNotFoundException;
+import org.scoalaonline.api.exception.subject.SubjectInvalidDepthException;
 import org.scoalaonline.api.exception.subject.SubjectInvalidValueException;
 import org.scoalaonline.api.exception.subject.SubjectNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
 import org.scoalaonline.api.repository.SubjectRepository;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Set;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Contains the Subject related logic needed for the API.
  */
 @Service
 public class SubjectService implements ServiceInterface<Subject> {
+  private static final String COLLECTION = "Subject";
 
   @Autowired
   SubjectRepository subjectRepository;
 
+  @Autowired
+  NodeStreamer nodeStreamer;
+
+  @Autowired
+  BulkWriter bulkWriter;
+
+  @Autowired
+  NodeProjector nodeProjector;
+
+  @Autowired
+  EntityCache<Subject> subjectCache;
+
+  @Autowired
+  AutocompleteIndex autocompleteIndex;
+
+  @Autowired
+  CollectionVersionRepository collectionVersionRepository;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  @Autowired
+  CurriculumTreeReader curriculumTreeReader;
+
+  @Autowired
+  GradeService gradeService;
+
   /**
    * Retrieves a list of all Subject entries found in the DB.
+   * The list is served from the EntityCache while it is cached.
    * @return the list of Subject entries.
    */
   @Override
   public List<Subject> getAll() {
-    return subjectRepository.findAll();
+    return getAll(getCollectionVersion());
+  }
+
+  /**
+   * Retrieves a list of all Subject entries, at least as recent as the given version of the collection.
+   * The list is served from the EntityCache while it is cached at that version or a newer one
+   * @param version - the version of the collection, read with getCollectionVersion before
+   * @return the list of Subject entries
+   */
+  public List<Subject> getAll(long version) {
+    return subjectCache.getAll(version, subjectRepository::findAll);
+  }
+
+  /**
+   * Retrieves the version of the Subject collection, increased in the transaction of every write of any Subject entry
+   * @return the version of the collection
+   */
+  public long getCollectionVersion() {
+    return collectionVersionRepository.findVersionByLabel(COLLECTION);
+  }
+
+  /**
+   * Retrieves only the version of the Subject entry with the given id from the DB
+   * @param id - id of the Subject entry
+   * @return the version of the entry, or empty if there is no entry with that id
+   */
+  @Transactional(readOnly = true)
+  public Optional<Long> getVersion(String id) {
+    return subjectRepository.findVersionById(id);
+  }
+
+  /**
+   * Retrieves one page of Subject entries ordered by id from the DB
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of Subject entries
+   */
+  @Transactional(readOnly = true)
+  @Override
+  public CursorPage<Subject> getPage(String after, int size) {
+    List<Subject> entries = after == null ? subjectRepository.findFirstPage(size + 1) : subjectRepository.findPageAfter(after, size + 1);
+    return CursorPage.of(entries, size, Subject::getId);
+  }
+
+  /**
+   * Writes all Subject entries found in the DB to the output stream as newline delimited JSON,
+   * as they are read, without collecting them in a list
+   * @param bookmarks - the bookmarks of the client, read on the thread of the request
+   * @param out - the output stream
+   * @throws IOException if the output stream cannot be written
+   */
+  public void streamAll(Set<Bookmark> bookmarks, OutputStream out) throws IOException {
+    nodeStreamer.streamAll(Subject.class, bookmarks, out);
   }
 
   /**
    * Retrieves one Subject entry with the given id from the DB.
    * Throws an exception if no entry with that id is found.
+   * The entry is served from the EntityCache while it is cached.
    * @param id - id of the Subject entry.
    * @return the Subject entry.
    * @throws SubjectNotFoundException when the Subject entry has not been found.
    */
   @Override
   public Subject getOneById(String id) throws SubjectNotFoundException {
-    return subjectRepository.findById(id).orElseThrow(
+    return subjectCache.getById(id, subjectRepository::findById).orElseThrow(
+      () -> new SubjectNotFoundException("Method getOneById: Subject not found")
+    );
+  }
+
+  /**
+   * Builds the projection of the given fields of the Subject entries
+   * @param fields - the comma separated names of the fields
+   * @return the projection
+   * @throws ProjectionInvalidFieldsException if no field is given or a field does not exist
+   */
+  public Projection getProjection(String fields) throws ProjectionInvalidFieldsException {
+    return nodeProjector.of(Subject.class, fields);
+  }
+
+  /**
+   * Retrieves only the projected fields of all Subject entries found in the DB,
+   * the other fields are not read
+   * @param projection - the projection of the fields
+   * @return the list of projected Subject entries
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> getAll(Projection projection) {
+    return nodeProjector.findAll(projection);
+  }
+
+  /**
+   * Retrieves only the projected fields of one page of Subject entries ordered by id from the DB
+   * @param projection - the projection of the fields
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of projected Subject entries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<Map<String, Object>> getPage(Projection projection, String after, int size) {
+    return nodeProjector.getPage(projection, after, size);
+  }
+
+  /**
+   * Retrieves only the projected fields of the Subject entry with the given id from the DB
+   * or throws an error if no entry with that id is found.
+   * @param id - id of the Subject entry
+   * @param projection - the projection of the fields
+   * @return the projected Subject entry
+   * @throws SubjectNotFoundException
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Object> getOneById(String id, Projection projection) throws SubjectNotFoundException {
+    return nodeProjector.findById(projection, id).orElseThrow(
       () -> new SubjectNotFoundException("Method getOneById: Subject not found")
     );
   }
@@ -57,7 +204,14 @@ public class SubjectService implements ServiceInterface<Subject> {
     else
       throw new SubjectInvalidValueException("Method add: Value field can't be invalid");
 
-    return subjectRepository.save(subject);
+    Subject saved = transactionTemplate.execute(status -> {
+      Subject created = subjectRepository.save(subject);
+      collectionVersionRepository.incrementVersion(COLLECTION);
+      return created;
+    });
+    subjectCache.invalidate(saved.getId());
+    autocompleteIndex.put(AutocompleteIndex.SUBJECT, saved.getId(), saved.getValue());
+    return saved;
   }
 
   /**
@@ -66,36 +220,169 @@ public class SubjectService implements ServiceInterface<Subject> {
    * Throws an exception if the Value is invalid.
    * @param id the id of the entry to be updated.
    * @param entry the Subject entry to be updated.
+   * @param version - the version the entry is expected at, null to update it at any version
    * @return the updated Subject saved in the db.
    * @throws SubjectNotFoundException when the Subject entry has not been found.
    * @throws SubjectInvalidValueException when the Value entry is invalid.
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public Subject update(String id, Subject entry) throws SubjectNotFoundException, SubjectInvalidValueException {
-    Subject subjectToUpdate = subjectRepository.findById(id).orElseThrow(
-      () -> new SubjectNotFoundException("Method update: Subject not found")
-    );
-    if (entry.getValue() != null && !entry.getValue().equals("")) {
-      subjectToUpdate.setValue(entry.getValue());
-    } else {
+  public Subject update(String id, Subject entry, Long version) throws SubjectNotFoundException, SubjectInvalidValueException, VersionMismatchException {
+    if (entry.getValue() == null || entry.getValue().equals("")) {
+      if (!subjectRepository.existsById(id)) {
+        throw new SubjectNotFoundException("Method update: Subject not found");
+      }
       throw new SubjectInvalidValueException("Method update: Value field can't be invalid");
     }
-
-    return subjectRepository.save(subjectToUpdate);
+    Optional<Subject> updated = transactionTemplate.execute(status -> {
+      Optional<Subject> written = subjectRepository.updateValueById(id, entry.getValue(), version);
+      written.ifPresent(subject -> collectionVersionRepository.incrementVersion(COLLECTION));
+      return written;
+    });
+    if (updated.isEmpty()) {
+      if (version == null || !subjectRepository.existsById(id)) {
+        throw new SubjectNotFoundException("Method update: Subject not found");
+      }
+      throw new VersionMismatchException("Method update: Subject has been modified.");
+    }
+    subjectCache.invalidate(id);
+    autocompleteIndex.put(AutocompleteIndex.SUBJECT, id, updated.get().getValue());
+    return updated.get();
   }
 
   /**
-   * Deletes the Subject entry with the given id from the db.
+   * Deletes the Subject entry with the given id from the db, then the Grade entries given in it.
    * Throws an exception if no entry with that id can be found.
    * @param id the id of the entry to be deleted.
+   * @param version - the version the entry is expected at, null to delete it at any version
    * @throws SubjectNotFoundException when the Subject entry has not been found.
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public void delete(String id) throws SubjectNotFoundException {
-    if (subjectRepository.findById(id).isPresent()) {
-      subjectRepository.deleteById(id);
-    } else {
+  public void delete(String id, Long version) throws SubjectNotFoundException, VersionMismatchException {
+    long deleted = transactionTemplate.execute(status -> {
+      long count = subjectRepository.deleteByIdReturningCount(id, version);
+      if (count > 0) {
+        collectionVersionRepository.incrementVersion(COLLECTION);
+      }
+      return count;
+    });
+    if (deleted == 0) {
+      if (version != null && subjectRepository.existsById(id)) {
+        throw new VersionMismatchException("Method delete: Subject has been modified.");
+      }
       throw new SubjectNotFoundException("Method delete: Subject not Found");
     }
+    subjectCache.invalidate(id);
+    autocompleteIndex.remove(AutocompleteIndex.SUBJECT, id);
+    gradeService.deleteBySubjectId(id);
+  }
+
+  /**
+   * Retrieves the Subject entry with the given id from the DB together with its Lecture entries
+   * and their LectureMaterial entries, down to the given depth, in a single query.
+   * Throws an exception if no entry with that id is found or if the depth is out of range.
+   * @param id - id of the Subject entry
+   * @param depth - 0 for the Subject alone, 1 with its lectures, 2 with their materials as well
+   * @return the tree of the Subject entry
+   * @throws SubjectNotFoundException when the Subject entry has not been found.
+   * @throws SubjectInvalidDepthException when the depth is out of range.
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Object> getTree(String id, int depth) throws SubjectNotFoundException, SubjectInvalidDepthException {
+    if (depth < 0 || depth > CurriculumTreeReader.MAX_DEPTH) {
+      throw new SubjectInvalidDepthException("Method getTree: Depth must be between 0 and " + CurriculumTreeReader.MAX_DEPTH);
+    }
+    return curriculumTreeReader.findSubjectTree(id, depth).orElseThrow(
+      () -> new SubjectNotFoundException("Method getTree: Subject not found")
+    );
+  }
+
+  /**
+   * Relates the Lecture entry with the given id to the Subject entry with the given id.
+   * Nothing changes if they are already related.
+   * @param id - id of the Subject entry
+   * @param lectureId - id of the Lecture entry
+   * @throws SubjectNotFoundException when the Subject entry has not been found.
+   * @throws LectureNotFoundException when the Lecture entry has not been found.
+   */
+  public void addLecture(String id, String lectureId) throws SubjectNotFoundException, LectureNotFoundException {
+    if (subjectRepository.addLectureById(id, lectureId) == 0) {
+      if (!subjectRepository.existsById(id)) {
+        throw new SubjectNotFoundException("Method addLecture: Subject not found");
+      }
+      throw new LectureNotFoundException("Method addLecture: Lecture not found");
+    }
+  }
+
+  /**
+   * Removes the relationship between the Subject entry with the given id and the Lecture entry with the given id.
+   * The Lecture entry itself is kept.
+   * @param id - id of the Subject entry
+   * @param lectureId - id of the Lecture entry
+   * @throws SubjectNotFoundException when the Subject entry has not been found.
+   * @throws LectureNotFoundException when the Lecture entry is not one of the Subject.
+   */
+  public void removeLecture(String id, String lectureId) throws SubjectNotFoundException, LectureNotFoundException {
+    if (subjectRepository.removeLectureById(id, lectureId) == 0) {
+      if (!subjectRepository.existsById(id)) {
+        throw new SubjectNotFoundException("Method removeLecture: Subject not found");
+      }
+      throw new LectureNotFoundException("Method removeLecture: Lecture not found in Subject");
+    }
+  }
+
+  /**
+   * Adds a Subject entry in the DB for every valid entry of the list, in batches.
+   * @param entries - the entries to add
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> addAll(List<Subject> entries) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.create(Subject.class, entries, entry -> validate(entry, "addAll"), this::toProperties);
+    subjectCache.invalidateAll();
+    autocompleteIndex.reloadWritten(AutocompleteIndex.SUBJECT, results);
+    return results;
+  }
+
+  /**
+   * Updates the Subject entries with the ids of the valid entries of the list, in batches.
+   * @param entries - the entries to update, each with its id
+   * @return the result of every entry, in the order of the list
+   * @throws BulkTooLargeException if the list has more entries than allowed
+   */
+  public List<BulkItemResult> updateAll(List<Subject> entries) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.update(Subject.class, entries, Subject::getId, entry -> validate(entry, "updateAll"), this::toProperties);
+    subjectCache.invalidateAll();
+    autocompleteIndex.reloadWritten(AutocompleteIndex.SUBJECT, results);
+    return results;
+  }
+
+  /**
+   * Deletes the Subject entries with the given ids, in batches, then the Grade entries given in the deleted ones.
+   * @param ids - the ids of the entries to delete
+   * @return the result of every id, in the order of the list
+   * @throws BulkTooLargeException if the list has more ids than allowed
+   */
+  public List<BulkItemResult> deleteAll(List<String> ids) throws BulkTooLargeException {
+    List<BulkItemResult> results = bulkWriter.delete(Subject.class, ids);
+    subjectCache.invalidateAll();
+    autocompleteIndex.reloadWritten(AutocompleteIndex.SUBJECT, results);
+    for (BulkItemResult result : results) {
+      if (result.getStatus() == BulkItemResult.Status.DELETED) {
+        gradeService.deleteBySubjectId(result.getId());
+      }
+    }
+    return results;
+  }
+
+  private void validate(Subject entry, String method) throws SubjectInvalidValueException {
+    if (entry.getValue() == null || entry.getValue().equals("")) {
+      throw new SubjectInvalidValueException("Method " + method + ": Value field can't be invalid");
+    }
+  }
+
+  private Map<String, Object> toProperties(Subject entry) {
+    return Map.of("value", entry.getValue());
   }
 }
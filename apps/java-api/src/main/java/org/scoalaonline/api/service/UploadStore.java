@@ -0,0 +1,300 @@
+package org.scoalaonline.api.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.exception.upload.UploadInvalidHashException;
+import org.scoalaonline.api.exception.upload.UploadInvalidOffsetException;
+import org.scoalaonline.api.exception.upload.UploadNotFoundException;
+import org.scoalaonline.api.exception.upload.UploadTooLargeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives contents in chunks, so that they can be uploaded in several requests and resumed after a failure.
+ * Every upload is a file in the "uploads" directory of the BlobStore, every chunk is streamed to its end
+ * and hashed as it is written, without buffering it in memory, so memory does not grow with the size of the content.
+ * The hash of the content received so far is kept between the chunks, it is computed again from the file
+ * when the upload has been continued by another instance or after a restart.
+ * A completed upload is checked, then becomes a blob of the BlobStore. Uploads left unfinished expire.
+ */
+@Component
+@Slf4j
+public class UploadStore {
+  private static final String SUFFIX = ".part";
+
+  private final BlobStore blobStore;
+  private final Path directory;
+  private final long maxSize;
+  private final long expiryMillis;
+
+  // The hash of every upload in progress on this instance, by id.
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+  public UploadStore(BlobStore blobStore,
+                     @Value("${upload.max-size-bytes:1073741824}") long maxSize,
+                     @Value("${upload.expiry-hours:24}") long expiryHours) throws IOException {
+    this.blobStore = blobStore;
+    this.directory = blobStore.getRoot().resolve("uploads");
+    this.maxSize = maxSize;
+    this.expiryMillis = TimeUnit.HOURS.toMillis(expiryHours);
+    Files.createDirectories(directory);
+  }
+
+  /**
+   * Starts an empty upload, after removing the expired ones.
+   * @return the id of the upload
+   */
+  public String create() {
+    removeExpired();
+    String id = UUID.randomUUID().toString();
+    try {
+      Files.createFile(directory.resolve(id + SUFFIX));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not start upload " + id + ".", e);
+    }
+    return id;
+  }
+
+  /**
+   * Retrieves the number of bytes received by an upload, where its next chunk has to start.
+   * @param id - the id of the upload
+   * @return the offset of the next chunk
+   * @throws UploadNotFoundException if there is no upload with that id
+   */
+  public long getOffset(String id) throws UploadNotFoundException {
+    Path file = file(id);
+    try {
+      return Files.size(file);
+    } catch (IOException e) {
+      throw new UploadNotFoundException("Method getOffset: Upload not found");
+    }
+  }
+
+  /**
+   * Writes a chunk at the end of an upload, as it is read from the input stream.
+   * What has been written is kept if the input stream fails, the upload is resumed from the new offset.
+   * @param id - the id of the upload
+   * @param offset - the offset the chunk starts at, which has to be the number of bytes received so far
+   * @param in - the content of the chunk, read to its end and left open
+   * @return the offset of the next chunk
+   * @throws UploadNotFoundException if there is no upload with that id
+   * @throws UploadInvalidOffsetException if the offset is not the end of the upload or another chunk is being written
+   * @throws UploadTooLargeException if the upload would exceed the maximum size, the chunk is then discarded
+   * @throws IOException if the input stream cannot be read or the file cannot be written
+   */
+  public long append(String id, long offset, InputStream in)
+    throws UploadNotFoundException, UploadInvalidOffsetException, UploadTooLargeException, IOException {
+    Session session = open(id);
+    synchronized (session) {
+      try (FileChannel channel = FileChannel.open(session.file, StandardOpenOption.WRITE)) {
+        FileLock lock = tryLock(channel);
+        if (lock == null) {
+          throw new UploadInvalidOffsetException("Method append: Upload is being written.", channel.size());
+        }
+        try {
+          long size = channel.size();
+          if (offset != size) {
+            throw new UploadInvalidOffsetException("Method append: Chunk does not start at the end of the upload.", size);
+          }
+          session.sync(size);
+          long written;
+          try {
+            written = BlobStore.transfer(new DigestInputStream(in, session.digest), channel, size, maxSize - size + 1);
+          } finally {
+            channel.force(false);
+          }
+          if (size + written > maxSize) {
+            channel.truncate(size);
+            session.reset();
+            throw new UploadTooLargeException("Method append: Upload exceeds " + maxSize + " bytes.");
+          }
+          session.offset = size + written;
+          return session.offset;
+        } catch (IOException | RuntimeException e) {
+          // Bytes may have been hashed without being written.
+          session.reset();
+          throw e;
+        } finally {
+          lock.release();
+        }
+      } catch (NoSuchFileException e) {
+        sessions.remove(id);
+        throw new UploadNotFoundException("Method append: Upload not found");
+      }
+    }
+  }
+
+  /**
+   * Completes an upload: its content is checked, then becomes a blob and the upload is removed.
+   * @param id - the id of the upload
+   * @param hash - the SHA-256 hash of the content the client has sent, null not to check it
+   * @param check - reads the content before it is stored, throws if it cannot be stored
+   * @return the stored blob
+   * @throws UploadNotFoundException if there is no upload with that id
+   * @throws UploadInvalidOffsetException if a chunk of the upload is being written
+   * @throws UploadInvalidHashException if the content received does not have the given hash, the upload is kept
+   * @throws E if the check rejects the content, nothing is stored and the upload is kept
+   * @throws IOException if the upload cannot be read or stored
+   */
+  public <E extends Exception> BlobStore.Blob complete(String id, String hash, Check<E> check)
+    throws UploadNotFoundException, UploadInvalidOffsetException, UploadInvalidHashException, E, IOException {
+    Session session = open(id);
+    synchronized (session) {
+      try (FileChannel channel = FileChannel.open(session.file, StandardOpenOption.WRITE)) {
+        FileLock lock = tryLock(channel);
+        if (lock == null) {
+          throw new UploadInvalidOffsetException("Method complete: Upload is being written.", channel.size());
+        }
+        try {
+          session.sync(channel.size());
+          String received = BlobStore.toHex(session.copyDigest().digest());
+          if (hash != null && !hash.equalsIgnoreCase(received)) {
+            throw new UploadInvalidHashException("Method complete: Upload does not have hash " + hash + ".");
+          }
+          check.check(session.file);
+          BlobStore.Blob blob = blobStore.commit(session.file, received, session.offset);
+          Files.deleteIfExists(session.file);
+          sessions.remove(id);
+          return blob;
+        } finally {
+          if (lock.isValid()) {
+            lock.release();
+          }
+        }
+      } catch (NoSuchFileException e) {
+        sessions.remove(id);
+        throw new UploadNotFoundException("Method complete: Upload not found");
+      }
+    }
+  }
+
+  /**
+   * Cancels an upload and removes what has been received.
+   * @param id - the id of the upload
+   * @throws UploadNotFoundException if there is no upload with that id
+   */
+  public void delete(String id) throws UploadNotFoundException {
+    Path file = file(id);
+    sessions.remove(id);
+    try {
+      if (!Files.deleteIfExists(file)) {
+        throw new UploadNotFoundException("Method delete: Upload not found");
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not delete upload " + id + ".", e);
+    }
+  }
+
+  /**
+   * Removes the uploads which have not received a chunk for longer than the expiry.
+   */
+  void removeExpired() {
+    long expired = System.currentTimeMillis() - expiryMillis;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : files) {
+        if (Files.getLastModifiedTime(file).toMillis() < expired && Files.deleteIfExists(file)) {
+          String name = file.getFileName().toString();
+          sessions.remove(name.substring(0, name.length() - SUFFIX.length()));
+          log.info("Removed expired upload {}.", name);
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Could not remove the expired uploads: {}", e.getMessage());
+    }
+  }
+
+  private Session open(String id) throws UploadNotFoundException {
+    Path file = file(id);
+    if (!Files.exists(file)) {
+      sessions.remove(id);
+      throw new UploadNotFoundException("Upload not found");
+    }
+    return sessions.computeIfAbsent(id, key -> new Session(file));
+  }
+
+  private Path file(String id) throws UploadNotFoundException {
+    try {
+      return directory.resolve(UUID.fromString(id) + SUFFIX);
+    } catch (IllegalArgumentException e) {
+      throw new UploadNotFoundException("Upload not found");
+    }
+  }
+
+  /**
+   * Locks the file against the other instances, null if it is locked by another request.
+   */
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the content of a completed upload before it becomes a blob.
+   * @param <E> - the exception thrown if the content cannot be stored
+   */
+  @FunctionalInterface
+  public interface Check<E extends Exception> {
+    void check(Path file) throws E, IOException;
+  }
+
+  /**
+   * The hash of the content of an upload, up to its offset.
+   */
+  private static final class Session {
+    private final Path file;
+    private MessageDigest digest;
+    private long offset = -1;
+
+    private Session(Path file) {
+      this.file = file;
+    }
+
+    /**
+     * Hashes the file again if the hash does not cover its whole content.
+     */
+    private void sync(long size) throws IOException {
+      if (digest != null && offset == size) {
+        return;
+      }
+      digest = BlobStore.newDigest();
+      try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+      offset = size;
+    }
+
+    private MessageDigest copyDigest() {
+      try {
+        return (MessageDigest) digest.clone();
+      } catch (CloneNotSupportedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private void reset() {
+      digest = null;
+      offset = -1;
+    }
+  }
+}
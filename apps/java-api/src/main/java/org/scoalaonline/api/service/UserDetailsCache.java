@@ -0,0 +1,127 @@
+package org.scoalaonline.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keeps the security relevant data of recently authenticated users (id, password hash and authorities),
+ * so logins and token refreshes of the same user do not reach the DB every time.
+ * Entries expire after a fixed time and are invalidated by the User and Role write paths,
+ * on this instance and, through the CacheInvalidationBus, on the other ones.
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+  private static final String CACHE_NAME = "userDetails";
+
+  private final Cache<String, CachedUser> cache;
+  private final CacheInvalidationBus invalidationBus;
+
+  public UserDetailsCache(MeterRegistry meterRegistry,
+                          CacheInvalidationBus invalidationBus,
+                          @Value("${security.user-cache.ttl-seconds:300}") long ttlSeconds,
+                          @Value("${security.user-cache.maximum-size:10000}") long maximumSize) {
+    this.invalidationBus = invalidationBus;
+    this.cache = Caffeine.newBuilder()
+      .maximumSize(maximumSize)
+      .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+      .recordStats()
+      .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+  }
+
+  /**
+   * Retrieves the cached user with the given username,
+   * loading it with the provided loader if it is not cached.
+   * @param username - username of the User entry
+   * @param loader - loads the user from the DB, may throw to signal that the user does not exist
+   * @return the cached user
+   */
+  public CachedUser get(String username, Function<String, CachedUser> loader) {
+    return cache.get(username, loader);
+  }
+
+  /**
+   * Removes the user with the given username from the cache.
+   * @param username - username of the User entry
+   */
+  public void invalidate(String username) {
+    if (username != null) {
+      log.info("Invalidating cached user {}...", username);
+      cache.invalidate(username);
+      invalidationBus.publish(CACHE_NAME, username);
+    }
+  }
+
+  /**
+   * Removes all the users from the cache.
+   */
+  public void invalidateAll() {
+    log.info("Invalidating all cached users...");
+    cache.invalidateAll();
+    invalidationBus.publish(CACHE_NAME, null);
+  }
+
+  /**
+   * Evicts the users invalidated by another instance.
+   * @param event - the invalidation
+   */
+  @EventListener
+  public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+    if (!event.concerns(CACHE_NAME)) {
+      return;
+    }
+    if (event.getKey() != null) {
+      cache.invalidate(event.getKey());
+    } else {
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * The data needed to authenticate a User entry.
+   */
+  public static final class CachedUser {
+    private final String id;
+    private final String username;
+    private final String password;
+    private final List<GrantedAuthority> authorities;
+
+    public CachedUser(String id, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+      this.id = id;
+      this.username = username;
+      this.password = password;
+      this.authorities = Collections.unmodifiableList(new ArrayList<>(authorities));
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public String getPassword() {
+      return password;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+      return authorities;
+    }
+  }
+}
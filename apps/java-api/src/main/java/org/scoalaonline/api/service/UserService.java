@@ -2,24 +2,33 @@ package org.scoalaonline.api.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.scoalaonline.api.DTO.CursorPage;
 import org.scoalaonline.api.DTO.RegisterForm;
 import org.scoalaonline.api.exception.role.RoleNotFoundException;
 import org.scoalaonline.api.exception.user.*;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
 import org.scoalaonline.api.model.Role;
 import org.scoalaonline.api.model.User;
-import org.scoalaonline.api.repository.RoleRepository;
 import org.scoalaonline.api.repository.UserRepository;
-import org.springframework.context.annotation.Configuration;
+import org.scoalaonline.api.security.AuthenticatedUser;
+import org.scoalaonline.api.service.UserDetailsCache.CachedUser;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Contains the User related logic needed for the API
@@ -31,18 +40,46 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
   private static final String DEFAULT_ROLE = "ROLE_STUDENT";
 
   private final UserRepository userRepository;
-  private final RoleRepository roleRepository;
+  private final RoleRegistry roleRegistry;
   private final PasswordEncoder passwordEncoder;
+  private final UserDetailsCache userDetailsCache;
+  private final RoleVersionRegistry roleVersionRegistry;
+  private final NodeProjector nodeProjector;
+  private final GradeService gradeService;
 
   /**
    * Retrieves User entry with the given username
    * Creates Spring Security UserDetails based on the User entry
+   * The id, password and authorities are served from the UserDetailsCache when possible
+   * The role version is read before the roles, so it never describes newer roles than the ones returned
    * @param username
    * @return UserDetails object
    * @throws UsernameNotFoundException
    */
+  @Transactional(readOnly = true)
   @Override
-  public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+  public AuthenticatedUser loadUserByUsername(String username) throws UsernameNotFoundException {
+    long roleVersion = roleVersionRegistry.currentVersion(username);
+    CachedUser cachedUser;
+    try {
+      cachedUser = userDetailsCache.get(username, this::loadCachedUser);
+    } catch (UsernameNotFoundException e) {
+      // Unknown usernames do not keep a role version.
+      roleVersionRegistry.forget(username);
+      throw e;
+    }
+    return new AuthenticatedUser(cachedUser.getId(), cachedUser.getUsername(), cachedUser.getPassword(),
+      cachedUser.getAuthorities(), roleVersion);
+  }
+
+  /**
+   * Retrieves User entry with the given username from the DB
+   * and keeps only the data needed for authentication
+   * @param username
+   * @return the data to be cached
+   * @throws UsernameNotFoundException
+   */
+  private CachedUser loadCachedUser(String username) throws UsernameNotFoundException {
     User user = userRepository.findByUsername(username).orElseThrow(
       () -> {
         log.error("Username not found.");
@@ -54,22 +91,37 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
 
     Collection<SimpleGrantedAuthority> authorities = new ArrayList<>();
     user.getRoles().forEach(role -> {
-      authorities.add(new SimpleGrantedAuthority(role.getName()));
+      authorities.add(roleRegistry.getAuthority(role.getName()));
     });
 
-    return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), authorities);
+    return new CachedUser(user.getId(), user.getUsername(), user.getPassword(), authorities);
   }
 
   /**
    * Retrieves a list of all User entries found in the DB
    * @return the list of User entries
    */
+  @Transactional(readOnly = true)
   @Override
   public List<User> getAll() {
     log.info("Fetching all users...");
     return userRepository.findAll();
   }
 
+  /**
+   * Retrieves one page of User entries ordered by id from the DB
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of User entries
+   */
+  @Transactional(readOnly = true)
+  @Override
+  public CursorPage<User> getPage(String after, int size) {
+    log.info("Fetching a page of users...");
+    List<User> entries = after == null ? userRepository.findFirstPage(size + 1) : userRepository.findPageAfter(after, size + 1);
+    return CursorPage.of(entries, size, User::getId);
+  }
+
   /**
    * Retrieves one User entry with the given id from the DB
    * or throws an error if no entry with that id is found.
@@ -77,6 +129,7 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
    * @return the User entry
    * @throws UserNotFoundException
    */
+  @Transactional(readOnly = true)
   @Override
   public User getOneById(String id) throws UserNotFoundException {
     log.info("Fetching user with id {}...", id);
@@ -88,6 +141,57 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
     );
   }
 
+  /**
+   * Builds the projection of the given fields of the User entries
+   * @param fields - the comma separated names of the fields
+   * @return the projection
+   * @throws ProjectionInvalidFieldsException if no field is given or a field does not exist
+   */
+  public Projection getProjection(String fields) throws ProjectionInvalidFieldsException {
+    return nodeProjector.of(User.class, fields);
+  }
+
+  /**
+   * Retrieves only the projected fields of all User entries found in the DB,
+   * the other fields are not read
+   * @param projection - the projection of the fields
+   * @return the list of projected User entries
+   */
+  @Transactional(readOnly = true)
+  public List<Map<String, Object>> getAll(Projection projection) {
+    return nodeProjector.findAll(projection);
+  }
+
+  /**
+   * Retrieves only the projected fields of one page of User entries ordered by id from the DB
+   * @param projection - the projection of the fields
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of projected User entries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<Map<String, Object>> getPage(Projection projection, String after, int size) {
+    return nodeProjector.getPage(projection, after, size);
+  }
+
+  /**
+   * Retrieves only the projected fields of the User entry with the given id from the DB
+   * or throws an error if no entry with that id is found.
+   * @param id - id of the User entry
+   * @param projection - the projection of the fields
+   * @return the projected User entry
+   * @throws UserNotFoundException
+   */
+  @Transactional(readOnly = true)
+  public Map<String, Object> getOneById(String id, Projection projection) throws UserNotFoundException {
+    return nodeProjector.findById(projection, id).orElseThrow(
+      () -> {
+        log.error("User not found.");
+        return new UserNotFoundException("Method getOneById: User not found.");
+      }
+    );
+  }
+
   /**
    * Retrieves one User entry with the given username from the DB
    * or throws an error if no entry with that username is found.
@@ -95,6 +199,7 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
    * @return the User entry
    * @throws UserNotFoundException
    */
+  @Transactional(readOnly = true)
   public User getOneByUsername(String username) throws UserNotFoundException{
     log.info("Fetching user {}...", username);
     return userRepository.findByUsername(username).orElseThrow(
@@ -111,13 +216,30 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
    * @throws RoleNotFoundException
    * @return the list of User entries
    */
+  @Transactional(readOnly = true)
   public List<User> getAllByRole(String roleName) {
     log.info("Fetching all users with role {}...", roleName);
     return userRepository.findAllByRolesContaining(roleName);
   }
 
+  /**
+   * Retrieves one page of User entries who have the Role given by roleName, ordered by id
+   * @param roleName - name of the Role entry
+   * @param after - the id of the last entry of the previous page, null for the first page
+   * @param size - the maximum number of entries
+   * @return the page of User entries
+   */
+  @Transactional(readOnly = true)
+  public CursorPage<User> getPageByRole(String roleName, String after, int size) {
+    log.info("Fetching a page of users with role {}...", roleName);
+    List<User> entries = after == null ? userRepository.findFirstPageByRole(roleName, size + 1)
+      : userRepository.findPageByRoleAfter(roleName, after, size + 1);
+    return CursorPage.of(entries, size, User::getId);
+  }
+
   /**
    * Adds a User entry in the DB based on the received object.
+   * The entry and its roles are written with a single statement, the roles themselves are not saved.
    * @param entry - the User entry.
    * @throws UserInvalidNameException
    * @throws UserInvalidUsernameException
@@ -169,12 +291,39 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
       throw new UserInvalidRolesException("Method add: Roles field can't be null.");
     }
 
-    return userRepository.save(userToSave);
+    // The user and its roles are written with a statement, saving the user would also save the shared roles.
+    List<String> roleIds = new ArrayList<>();
+    for (Role role : userToSave.getRoles()) {
+      if (!roleIds.contains(role.getId())) {
+        roleIds.add(role.getId());
+      }
+    }
+    Optional<User> savedUser;
+    try {
+      savedUser = userRepository.createWithRoles(UUID.randomUUID().toString(), userToSave.getName(),
+        userToSave.getUsername(), userToSave.getPassword(), roleIds);
+    } catch (DataIntegrityViolationException e) {
+      // A concurrent write has created the same username first.
+      log.error("Username is already used.");
+      throw new UserUsernameAlreadyUsedException("Method add: Username is already used.");
+    }
+
+    if (savedUser.isEmpty()) {
+      // Nothing was created: either the username is used or a role has just been deleted.
+      checkUsernameNotUsed(userToSave.getUsername());
+      log.error("Role not found.");
+      throw new RoleNotFoundException("Method add: Role not found.");
+    }
+
+    userDetailsCache.invalidate(savedUser.get().getUsername());
+    return savedUser.get();
   }
 
   /**
    * Adds a User entry in the DB based on the received RegisterForm.
    * Adds ROLE_STUDENT to the list of roles
+   * The entry and its role are written with a single statement, which also checks that the username is not used,
+   * the DB is only read again when the registration is rejected.
    * @param entry - the User entry.
    * @throws UserInvalidNameException
    * @throws UserInvalidUsernameException
@@ -189,108 +338,193 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
     UserInvalidPasswordException,
     RoleNotFoundException {
     log.info("Registering user {}...", entry.getUsername());
-    User userToSave = new User();
 
-    if(entry.getName() != null && !entry.getName().equals("")) {
-      userToSave.setName(entry.getName());
-    } else {
+    if(entry.getName() == null || entry.getName().equals("")) {
       log.error("Name field can't be null.");
       throw new UserInvalidNameException("Method register: Name field can't be null.");
     }
 
-    if(entry.getUsername() != null && !entry.getUsername().equals("") && entry.getUsername().matches("^(?=.{1,64}@)[A-Za-z0-9_!#$%&'*+-=?^_`{|}~\\/]+(\\.[A-Za-z0-9_=?^_`{|}~\\/-]+)*@[^-][A-Za-z0-9-]+(\\.[A-Za-z0-9-]+)*(\\.[A-Za-z]{2,})*$")){
-      if (!userRepository.existsByUsername(entry.getUsername())) {
-        userToSave.setUsername(entry.getUsername());
-      } else {
-        log.error("Username is already used.");
-        throw new UserUsernameAlreadyUsedException("Method register: Username is already used.");
-      }
-    } else {
+    if(entry.getUsername() == null || entry.getUsername().equals("") || !entry.getUsername().matches("^(?=.{1,64}@)[A-Za-z0-9_!#$%&'*+-=?^_`{|}~\\/]+(\\.[A-Za-z0-9_=?^_`{|}~\\/-]+)*@[^-][A-Za-z0-9-]+(\\.[A-Za-z0-9-]+)*(\\.[A-Za-z]{2,})*$")){
       log.error("Invalid username.");
       throw new UserInvalidUsernameException("Method register: Invalid username.");
     }
 
-    if(entry.getPassword() != null && !entry.getPassword().equals("") && entry.getPassword().matches("(?=.*[a-z])(?=.*[A-Z])(?=.*[0-9])(?=.*[!@#$%^&*()_]).{8,}")) {
-      userToSave.setPassword(passwordEncoder.encode(entry.getPassword()));
-    } else {
+    if(entry.getPassword() == null || entry.getPassword().equals("") || !entry.getPassword().matches("(?=.*[a-z])(?=.*[A-Z])(?=.*[0-9])(?=.*[!@#$%^&*()_]).{8,}")) {
+      checkUsernameNotUsed(entry.getUsername());
       log.error("Invalid password.");
       throw new UserInvalidPasswordException("Method register: Invalid password.");
     }
 
-    userToSave.setRoles(new ArrayList<>());
+    Role role = roleRegistry.findByName(DEFAULT_ROLE).orElseThrow(
+      () -> {
+        log.error("Role not found.");
+        return new RoleNotFoundException("Method addRoleToUser: Role not found.");
+      }
+    );
+
+    Optional<User> savedUser;
+    try {
+      savedUser = userRepository.createWithRoles(UUID.randomUUID().toString(), entry.getName(), entry.getUsername(),
+        passwordEncoder.encode(entry.getPassword()), List.of(role.getId()));
+    } catch (DataIntegrityViolationException e) {
+      // A concurrent registration has created the same username first.
+      log.error("Username is already used.");
+      throw new UserUsernameAlreadyUsedException("Method register: Username is already used.");
+    }
+
+    if(savedUser.isEmpty()) {
+      // Nothing was created: either the username is used or the role has just been deleted.
+      checkUsernameNotUsed(entry.getUsername());
+      log.error("Role not found.");
+      throw new RoleNotFoundException("Method addRoleToUser: Role not found.");
+    }
 
-    addRoleToUser(userToSave, DEFAULT_ROLE);
+    userDetailsCache.invalidate(entry.getUsername());
+    return savedUser.get();
+  }
 
-    return userRepository.save(userToSave);
+  /**
+   * Throws an exception if a User entry with the given username already exists.
+   * @param username - the username
+   * @throws UserUsernameAlreadyUsedException
+   */
+  private void checkUsernameNotUsed(String username) throws UserUsernameAlreadyUsedException {
+    if(userRepository.existsByUsername(username)) {
+      log.error("Username is already used.");
+      throw new UserUsernameAlreadyUsedException("Method register: Username is already used.");
+    }
   }
 
   /**
    * Updates the User entry with the given id based on the received object.
    * Throws an exception if no entry with that id was found.
+   * The entry is validated first, its existence and version are checked before the password is encoded,
+   * then it is written with a single statement, which checks them again.
+   * The stored entry is only read when the update is rejected, to report the same error as a full check.
    * @param id - the id of the entry to update
    * @param entry - the User entry.
+   * @param version - the version the entry is expected at, null to update it at any version
    * @throws UserNotFoundException
    * @throws UserInvalidNameException
    * @throws UserUsernameNotAllowedException
    * @throws UserInvalidPasswordException
    * @throws UserInvalidRolesException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    * @return the User object saved in the DB
    */
   @Override
-  public User update(String id, User entry) throws UserNotFoundException,
+  public User update(String id, User entry, Long version) throws UserNotFoundException,
     UserInvalidNameException,
     UserUsernameNotAllowedException,
     UserInvalidPasswordException,
-    UserInvalidRolesException, RoleNotFoundException {
-    User userToUpdate = userRepository.findById(id).orElseThrow(
-      () -> {
+    UserInvalidRolesException, RoleNotFoundException, VersionMismatchException {
+    if(entry.getName() == null || entry.getName().equals("")) {
+      if(!userRepository.existsById(id)) {
         log.error("User not found.");
-        return new UserNotFoundException("Method update: User not found.");
+        throw new UserNotFoundException("Method update: User not found.");
       }
-    );
-
-    log.info("Updating user {}...", userToUpdate.getUsername());
-    if(entry.getName() != null && !entry.getName().equals("")) {
-      userToUpdate.setName(entry.getName());
-    } else {
       log.error("Name field can't be null.");
       throw new UserInvalidNameException("Method update: Name field can't be null.");
     }
 
-    if(entry.getUsername() != null && !entry.getUsername().equals("") && !userToUpdate.getUsername().equals(entry.getUsername())) {
-      log.error("Cannot change username.");
-      throw new UserUsernameNotAllowedException("Method update: Cannot change username.");
-    }
-
-    if(entry.getPassword() != null && !entry.getPassword().equals("") && entry.getPassword().matches("(?=.*[a-z])(?=.*[A-Z])(?=.*[0-9])(?=.*[!@#$%^&*()_]).{8,}")) {
-      userToUpdate.setPassword(passwordEncoder.encode(entry.getPassword()));
-    } else {
+    if(entry.getPassword() == null || entry.getPassword().equals("") || !entry.getPassword().matches("(?=.*[a-z])(?=.*[A-Z])(?=.*[0-9])(?=.*[!@#$%^&*()_]).{8,}")) {
+      checkUserToUpdate(id, entry);
       log.error("Invalid password.");
       throw new UserInvalidPasswordException("Method update: Invalid password.");
     }
 
-    if(entry.getRoles() != null && !entry.getRoles().isEmpty()) {
-      List<Role> rolesToSave = createRoleList(entry.getRoles());
-      userToUpdate.setRoles(rolesToSave);
-    } else {
+    if(entry.getRoles() == null || entry.getRoles().isEmpty()) {
+      checkUserToUpdate(id, entry);
       log.error("Roles field can't be null.");
       throw new UserInvalidRolesException("Method update: Roles field can't be null.");
     }
 
-    return userRepository.save(userToUpdate);
+    List<String> roleIds = new ArrayList<>();
+    try {
+      for (Role role : createRoleList(entry.getRoles())) {
+        if (!roleIds.contains(role.getId())) {
+          roleIds.add(role.getId());
+        }
+      }
+    } catch (RoleNotFoundException e) {
+      checkUserToUpdate(id, entry);
+      throw e;
+    }
+
+    // Encoding the password is slow, so an update which is bound to be rejected is rejected before it.
+    // The statement checks the entry again when it writes it.
+    Optional<Long> storedVersion = userRepository.findVersionById(id);
+    if(storedVersion.isEmpty()) {
+      log.error("User not found.");
+      throw new UserNotFoundException("Method update: User not found.");
+    }
+    if(version != null && !version.equals(storedVersion.get())) {
+      checkUserToUpdate(id, entry);
+      log.error("User has been modified.");
+      throw new VersionMismatchException("Method update: User has been modified.");
+    }
+
+    log.info("Updating user with id {}...", id);
+    Optional<User> updatedUser = userRepository.updateById(id, entry.getUsername(), entry.getName(),
+      passwordEncoder.encode(entry.getPassword()), roleIds, version);
+    if(updatedUser.isEmpty()) {
+      // Nothing matched: either there is no such user, the username would change, a role has been deleted
+      // in the meantime or the version differs.
+      checkUserToUpdate(id, entry);
+      createRoleList(entry.getRoles());
+      if(version != null) {
+        log.error("User has been modified.");
+        throw new VersionMismatchException("Method update: User has been modified.");
+      }
+      log.error("User not found.");
+      throw new UserNotFoundException("Method update: User not found.");
+    }
+
+    userDetailsCache.invalidate(updatedUser.get().getUsername());
+    roleVersionRegistry.bump(updatedUser.get().getUsername());
+    return updatedUser.get();
+  }
+
+  /**
+   * Checks that the User entry with the given id exists and that the received object does not change its username.
+   * @param id - the id of the entry to update
+   * @param entry - the User entry.
+   * @throws UserNotFoundException
+   * @throws UserUsernameNotAllowedException
+   */
+  private void checkUserToUpdate(String id, User entry) throws UserNotFoundException, UserUsernameNotAllowedException {
+    User userToUpdate = userRepository.findById(id).orElseThrow(
+      () -> {
+        log.error("User not found.");
+        return new UserNotFoundException("Method update: User not found.");
+      }
+    );
+
+    if(entry.getUsername() != null && !entry.getUsername().equals("") && !userToUpdate.getUsername().equals(entry.getUsername())) {
+      log.error("Cannot change username.");
+      throw new UserUsernameNotAllowedException("Method update: Cannot change username.");
+    }
   }
 
   /**
-   * Deletes the User entry with the given id or throws an exception if no
-   * entry with that id can be found
+   * Deletes the User entry with the given id, then the Grade entries given to it,
+   * or throws an exception if no entry with that id can be found
    * @param id - id of the User entry
+   * @param version - the version the entry is expected at, null to delete it at any version
    * @throws UserNotFoundException
+   * @throws VersionMismatchException if the entry is no longer at the given version
    */
   @Override
-  public void delete(String id) throws UserNotFoundException {
-    if(userRepository.findById(id).isPresent()) {
-      log.info("Deleting user with id {}...", id);
-      userRepository.deleteById(id);
+  public void delete(String id, Long version) throws UserNotFoundException, VersionMismatchException {
+    log.info("Deleting user with id {}...", id);
+    Optional<String> deletedUsername = userRepository.deleteByIdReturningUsername(id, version);
+    if(deletedUsername.isPresent()) {
+      userDetailsCache.invalidate(deletedUsername.get());
+      roleVersionRegistry.bump(deletedUsername.get());
+      gradeService.deleteByStudentId(id);
+    } else if(version != null && userRepository.existsById(id)) {
+      log.error("User has been modified.");
+      throw new VersionMismatchException("Method delete: User has been modified.");
     } else {
       log.error("User not found in the database.");
       throw new UserNotFoundException("Method delete: User not found.");
@@ -298,49 +532,54 @@ public class UserService implements ServiceInterface<User>, UserDetailsService {
   }
 
   /**
-   * Retrieves one Role entry with the given roleName from the DB
+   * Retrieves one Role entry with the given roleName from the role registry
    * Adds the Role to User entry given by user
    * or throws an error if no entry with that roleName is found.
+   * The role is given with a single statement, at the version the User entry was read at, a concurrent write of the entry
+   * makes it fail with an OptimisticLockingFailureException.
    * @param user - User entry
    * @param roleName - name of the Role entry
    * @throws RoleNotFoundException
    */
   public void addRoleToUser(User user, String roleName) throws RoleNotFoundException {
-    Role role = roleRepository.findByName(roleName).orElseThrow(
+    Role role = roleRegistry.findByName(roleName).orElseThrow(
       () -> {
         log.error("Role not found.");
         return new RoleNotFoundException("Method addRoleToUser: Role not found.");
       }
     );
     log.info("Adding role {} to user {}", role.getName(), user.getName());
+    if (userRepository.addRoleById(user.getId(), role.getId(), user.getVersion()) == 0) {
+      log.error("User changed concurrently.");
+      throw new OptimisticLockingFailureException("Method addRoleToUser: User changed concurrently.");
+    }
     List<Role> newRoles = user.getRoles();
     newRoles.add(role);
     user.setRoles(newRoles);
+    user.setVersion(user.getVersion() == null ? null : user.getVersion() + 1);
 
-    userRepository.save(user);
+    userDetailsCache.invalidate(user.getUsername());
+    roleVersionRegistry.bump(user.getUsername());
   }
   /**
-   * Retrieves a list of Role entries based on the ids of the provided list of roles.
-   * Throws an error when it reaches an id with no corresponding role in the DB.
+   * Retrieves a list of Role entries based on the ids of the provided list of roles,
+   * resolved all at once by the role registry.
+   * Throws an error when one of the ids has no corresponding role.
    * @param roles - list of roles.
    * @return a new list of roles.
    * @throws RoleNotFoundException
    */
   public List<Role> createRoleList(List<Role> roles) throws RoleNotFoundException {
-    ArrayList<Role> rolesToSave = new ArrayList<>();
-
-    for (int i = 0, rolesSize = roles.size(); i < rolesSize; i++) {
-      Role role = roles.get(i);
-      Role roleToSave = roleRepository.findById(role.getId()).orElseThrow(
-        () -> {
-          log.error("Role not found.");
-          return new RoleNotFoundException("Method createRoleList: Role not found.");
-        }
-      );
-      rolesToSave.add(roleToSave);
+    List<String> roleIds = new ArrayList<>(roles.size());
+    for (Role role : roles) {
+      roleIds.add(role.getId());
     }
 
-    return rolesToSave;
+    return roleRegistry.findAllById(roleIds).orElseThrow(
+      () -> {
+        log.error("Role not found.");
+        return new RoleNotFoundException("Method createRoleList: Role not found.");
+      }
+    );
   }
 }
-
@@ -2,37 +2,58 @@ package org.scoalaonline.api.controller;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.DTO.CursorPage;
 import org.scoalaonline.api.exception.grade.GradeInvalidValueException;
 import org.scoalaonline.api.exception.grade.GradeNotFoundException;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Grade;
 import org.scoalaonline.api.service.GradeService;
+import org.scoalaonline.api.service.NodeProjector.Projection;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
@@ -72,7 +93,7 @@ class GradeControllerTest {
   @DisplayName(value = "Test getting all grades.")
   @Test
   void getAllGradesTest() throws Exception{
-    given(gradeService.getAll()).willReturn(gradeList);
+    given(gradeService.getAll(0L)).willReturn(gradeList);
 
     this.mockMvc.perform(get("/grades")
         .accept(MediaType.APPLICATION_JSON))
@@ -81,6 +102,110 @@ class GradeControllerTest {
       .andReturn();
   }
 
+  /**
+   * Arranges the existence of a page of entries in the database.
+   * Performs GET method on "/grades?size=2"
+   * Asserts that returns 200 status, the entries of the page
+   * and the cursor of the next page in the X-Next-Cursor header.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test getting a page of grades.")
+  @Test
+  void getGradesPageTest() throws Exception{
+    given(gradeService.getPage(null, 2))
+      .willReturn(new CursorPage<>(gradeList.subList(0, 2), CursorPage.encode("id1")));
+
+    this.mockMvc.perform(get("/grades")
+        .param("size", "2")
+        .accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isOk())
+      .andExpect(MockMvcResultMatchers.jsonPath("$",hasSize(2)))
+      .andExpect(MockMvcResultMatchers.header().string(Pagination.NEXT_CURSOR_HEADER, CursorPage.encode("id1")))
+      .andReturn();
+  }
+
+  /**
+   * Arranges the existence of entries in the database.
+   * Performs GET method on "/grades" with the fields parameter.
+   * Asserts that returns 200 status and only the projected fields of the entries.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test getting the projected fields of all grades.")
+  @Test
+  void getGradesProjectedTest() throws Exception{
+    given(gradeService.getProjection("value"))
+      .willReturn(null);
+    given(gradeService.getAll((Projection) null))
+      .willReturn(List.of(Map.of("id", "id0", "value", 0)));
+
+    this.mockMvc.perform(get("/grades")
+        .param("fields", "value")
+        .accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isOk())
+      .andExpect(MockMvcResultMatchers.jsonPath("$",hasSize(1)))
+      .andExpect(MockMvcResultMatchers.jsonPath("$[0].value").value(0))
+      .andReturn();
+  }
+
+  /**
+   * Performs GET method on "/grades" with an unknown field.
+   * Asserts that returns 400 status.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test getting unknown fields of all grades.")
+  @Test
+  void getGradesProjectedInvalidFieldsTest() throws Exception{
+    given(gradeService.getProjection("unknown"))
+      .willThrow(new ProjectionInvalidFieldsException("Unknown field unknown."));
+
+    this.mockMvc.perform(get("/grades")
+        .param("fields", "unknown")
+        .accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isBadRequest())
+      .andReturn();
+  }
+
+  /**
+   * Arranges the existence of entries in the database.
+   * Performs GET method on "/grades" accepting application/x-ndjson.
+   * Asserts that returns 200 status and one JSON object per line.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test streaming all grades.")
+  @Test
+  void streamAllGradesTest() throws Exception{
+    doAnswer(invocation -> {
+      OutputStream out = invocation.getArgument(1);
+      out.write("{\"id\":\"id0\",\"value\":0}\n{\"id\":\"id1\",\"value\":1}\n".getBytes(StandardCharsets.UTF_8));
+      return null;
+    }).when(gradeService).streamAll(any(), any(OutputStream.class));
+
+    MvcResult result = this.mockMvc.perform(get("/grades")
+        .accept(MediaType.APPLICATION_NDJSON))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    this.mockMvc.perform(asyncDispatch(result))
+      .andExpect(status().isOk())
+      .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+      .andExpect(content().string("{\"id\":\"id0\",\"value\":0}\n{\"id\":\"id1\",\"value\":1}\n"));
+  }
+
+  /**
+   * Performs GET method on "/grades" with a malformed cursor.
+   * Asserts that returns 400 status.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test getting a page of grades with an invalid cursor.")
+  @Test
+  void getGradesPageInvalidCursorTest() throws Exception{
+    this.mockMvc.perform(get("/grades")
+        .param("cursor", "not a cursor")
+        .accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isBadRequest())
+      .andReturn();
+  }
+
   /**
    * Arranges the existence of a Grade object at a specified id.
    * Creates a JSON entry that will be expected to be received.
@@ -114,6 +239,60 @@ class GradeControllerTest {
       .andReturn().getResponse();
   }
 
+  /**
+   * Arranges the collection of grades to be at version 3.
+   * Performs GET method on "/grades" with the current ETag in If-None-Match.
+   * Asserts that the status is 304, the ETag is sent back
+   * and the entries are not read.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test getting all grades when they are not modified.")
+  @Test
+  void getAllGradesNotModifiedTest() throws Exception {
+    // given
+    given(gradeService.getCollectionVersion()).willReturn(3L);
+
+    // when & then
+    this.mockMvc.perform(get("/grades")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+        .accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isNotModified())
+      .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+      .andExpect(content().string(""));
+    verify(gradeService, never()).getAll(anyLong());
+  }
+
+  /**
+   * Arranges the Grade object at "id0" to be at version 2.
+   * Performs GET method at "grades/id0", once with an outdated ETag in If-None-Match
+   * and once with the current one.
+   * Asserts that the entry is sent with its ETag the first time
+   * and that the status is 304 the second time.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test getting a grade by id with an ETag.")
+  @Test
+  void getGradeByIdNotModifiedTest() throws Exception {
+    // given
+    Grade grade = new Grade("id0", 0);
+    grade.setVersion(2L);
+    given(gradeService.getVersion("id0")).willReturn(Optional.of(2L));
+    given(gradeService.getOneById("id0")).willReturn(grade);
+
+    // when & then
+    this.mockMvc.perform(get("/grades/id0")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"1\"")
+        .accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isOk())
+      .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+    this.mockMvc.perform(get("/grades/id0")
+        .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+        .accept(MediaType.APPLICATION_JSON))
+      .andExpect(status().isNotModified())
+      .andExpect(content().string(""));
+    verify(gradeService, times(1)).getOneById("id0");
+  }
+
   /**
    * Arranges the absence of a Grade object with the given id ("id3").
    * Performs GET method at "grade/id3".
@@ -215,7 +394,8 @@ class GradeControllerTest {
   @Test
   void updateGradeTest() throws Exception {
     // given
-    given(gradeService.getAll()).willReturn(gradeList);
+    given(gradeService.getAll(0L)).willReturn(gradeList);
+    given(gradeService.update(eq("id0"), any(), isNull())).willReturn(gradeList.get(0));
 
     //Json Generator
     List<String> FieldArray = new ArrayList<String>();
@@ -251,9 +431,9 @@ class GradeControllerTest {
     exceptionCases.add(-1);
     for(Object exceptionCase: exceptionCases) {
       // given
-      given(gradeService.getAll())
+      given(gradeService.getAll(0L))
         .willReturn(gradeList);
-      given(gradeService.update("id0",new Grade(null, (int) exceptionCase)))
+      given(gradeService.update("id0",new Grade(null, (int) exceptionCase), null))
         .willThrow(GradeInvalidValueException.class);
 
       //Json Generator
@@ -276,6 +456,35 @@ class GradeControllerTest {
     }
   }
 
+  /**
+   * Arranges the Grade object at "id0" to be at another version than the one in If-Match.
+   * Performs PATCH method at "grades/id0" with If-Match, then with a malformed If-Match.
+   * Asserts that the status is 412 both times.
+   * @throws Exception
+   */
+  @DisplayName(value = "Test updating a grade at an outdated version.")
+  @Test
+  void updateGradeVersionMismatchTest() throws Exception {
+    // given
+    given(gradeService.update("id0", new Grade(null, 4), 3L))
+      .willThrow(VersionMismatchException.class);
+
+    // when & then
+    this.mockMvc.perform(
+        patch("/grades/id0")
+          .header(HttpHeaders.IF_MATCH, "\"3\"")
+          .contentType(MediaType.APPLICATION_JSON)
+          .content("{\"value\": 4}"))
+      .andExpect(status().isPreconditionFailed());
+    this.mockMvc.perform(
+        patch("/grades/id0")
+          .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+          .contentType(MediaType.APPLICATION_JSON)
+          .content("{\"value\": 4}"))
+      .andExpect(status().isPreconditionFailed());
+    verify(gradeService, times(1)).update(any(), any(), any());
+  }
+
   /**
    * Arranges the absence of a Grade object with the given id ("id3").
    * Performs PATCH method at "grade/id3".
@@ -287,7 +496,7 @@ class GradeControllerTest {
   @Test
   void updateGradeByIdNotFoundExceptionTest() throws Exception {
     // given
-    given(gradeService.update("id3",new Grade(null, 4)))
+    given(gradeService.update("id3",new Grade(null, 4), null))
       .willThrow(GradeNotFoundException.class);
 
     //Json Generator
@@ -320,7 +529,7 @@ class GradeControllerTest {
   @Test
   void deleteGradeTest() throws Exception {
     // given
-    given(gradeService.getAll()).willReturn(gradeList);
+    given(gradeService.getAll(0L)).willReturn(gradeList);
 
     // when & then
     this.mockMvc.perform(
@@ -341,7 +550,7 @@ class GradeControllerTest {
   @Test
   void deleteGradeByIdNotFoundExceptionTest() throws Exception {
     // given
-    doThrow(GradeNotFoundException.class).when(gradeService).delete("id3");
+    doThrow(GradeNotFoundException.class).when(gradeService).delete("id3", null);
     // when
     MockHttpServletResponse response = mockMvc.perform(
         delete("/grades/id3")
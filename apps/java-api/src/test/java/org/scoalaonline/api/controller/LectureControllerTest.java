@@ -2,6 +2,9 @@ package org.scoalaonline.api.controller;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
@@ -72,7 +75,7 @@ class LectureControllerTest {
   @DisplayName(value = "Test getting all lectures.")
   @Test
   void getAllLecturesTest() throws Exception{
-    given(lectureService.getAll()).willReturn(lectureList);
+    given(lectureService.getAll(0L)).willReturn(lectureList);
 
     this.mockMvc.perform(get("/lectures")
         .accept(MediaType.APPLICATION_JSON))
@@ -216,7 +219,8 @@ class LectureControllerTest {
   @Test
   void updateLectureTest() throws Exception {
     // given
-    given(lectureService.getAll()).willReturn(lectureList);
+    given(lectureService.getAll(0L)).willReturn(lectureList);
+    given(lectureService.update(eq("id0"), any(), isNull())).willReturn(lectureList.get(0));
 
     //Json Generator
     List<String> FieldArray = new ArrayList<String>();
@@ -252,9 +256,9 @@ class LectureControllerTest {
     exceptionCases.add(null);
     for(Object exceptionCase: exceptionCases) {
       // given
-      given(lectureService.getAll())
+      given(lectureService.getAll(0L))
         .willReturn(lectureList);
-      given(lectureService.update("id0",new Lecture(null, (String) exceptionCase)))
+      given(lectureService.update("id0",new Lecture(null, (String) exceptionCase), null))
         .willThrow(LectureInvalidTitleException.class);
 
       //Json Generator
@@ -288,7 +292,7 @@ class LectureControllerTest {
   @Test
   void updateLectureByIdNotFoundExceptionTest() throws Exception {
     // given
-    given(lectureService.update("id3",new Lecture(null, "Title")))
+    given(lectureService.update("id3",new Lecture(null, "Title"), null))
       .willThrow(LectureNotFoundException.class);
 
     //Json Generator
@@ -321,7 +325,7 @@ class LectureControllerTest {
   @Test
   void deleteLectureTest() throws Exception {
     // given
-    given(lectureService.getAll()).willReturn(lectureList);
+    given(lectureService.getAll(0L)).willReturn(lectureList);
 
     // when & then
     this.mockMvc.perform(
@@ -342,7 +346,7 @@ class LectureControllerTest {
   @Test
   void deleteLectureByIdNotFoundExceptionTest() throws Exception {
     // given
-    doThrow(LectureNotFoundException.class).when(lectureService).delete("id3");
+    doThrow(LectureNotFoundException.class).when(lectureService).delete("id3", null);
     // when
     MockHttpServletResponse response = mockMvc.perform(
         delete("/lectures/id3")
@@ -2,6 +2,9 @@ package org.scoalaonline.api.controller;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
@@ -19,6 +22,7 @@ import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.DTO.LectureMaterialSummary;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialInvalidDocumentException;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialNotFoundException;
 import org.scoalaonline.api.model.LectureMaterial;
@@ -65,19 +69,29 @@ class LectureMaterialControllerTest {
   /**
    * Arranges the existence of entries in the database.
    * Performs GET method on "/lecture-materials"
-   * Asserts that returns 200 status and the
-   * content size is equal to the number of objects in the database.
+   * Asserts that returns 200 status, the
+   * content size is equal to the number of objects in the database
+   * and the entries are sent as summaries, without their documents.
    * @throws Exception
    */
   @DisplayName(value = "Test getting all lecture materials.")
   @Test
   void getAllLectureMaterialsTest() throws Exception{
-    given(lectureMaterialService.getAll()).willReturn(lectureMaterialList);
+    List<LectureMaterialSummary> summaries = new ArrayList<>();
+    for (LectureMaterial lectureMaterial : lectureMaterialList) {
+      lectureMaterial.setDocumentSize((long) lectureMaterial.getDocument().length());
+      lectureMaterial.setExcerpt(lectureMaterial.getDocument().substring(0, 8));
+      summaries.add(LectureMaterialSummary.of(lectureMaterial));
+    }
+    given(lectureMaterialService.getSummaries(0L)).willReturn(summaries);
 
     this.mockMvc.perform(get("/lecture-materials")
       .accept(MediaType.APPLICATION_JSON))
       .andExpect(status().isOk())
       .andExpect(MockMvcResultMatchers.jsonPath("$",hasSize(3)))
+      .andExpect(MockMvcResultMatchers.jsonPath("$[0].documentSize").value(14))
+      .andExpect(MockMvcResultMatchers.jsonPath("$[0].excerpt").value("Document"))
+      .andExpect(MockMvcResultMatchers.jsonPath("$[0].document").doesNotExist())
       .andReturn();
   }
 
@@ -216,7 +230,8 @@ class LectureMaterialControllerTest {
   @Test
   void updateLectureMaterialTest() throws Exception {
     // given
-    given(lectureMaterialService.getAll()).willReturn(lectureMaterialList);
+    given(lectureMaterialService.getAll(0L)).willReturn(lectureMaterialList);
+    given(lectureMaterialService.update(eq("id0"), any(), isNull())).willReturn(lectureMaterialList.get(0));
 
     //Json Generator
     List<String> FieldArray = new ArrayList<String>();
@@ -252,9 +267,9 @@ class LectureMaterialControllerTest {
     exceptionCases.add(null);
     for(Object exceptionCase: exceptionCases) {
       // given
-      given(lectureMaterialService.getAll())
+      given(lectureMaterialService.getAll(0L))
         .willReturn(lectureMaterialList);
-      given(lectureMaterialService.update("id0",new LectureMaterial(null, (String) exceptionCase)))
+      given(lectureMaterialService.update("id0",new LectureMaterial(null, (String) exceptionCase), null))
         .willThrow(LectureMaterialInvalidDocumentException.class);
 
       //Json Generator
@@ -288,7 +303,7 @@ class LectureMaterialControllerTest {
   @Test
   void updateLectureMaterialByIdNotFoundExceptionTest() throws Exception {
     // given
-    given(lectureMaterialService.update("id3",new LectureMaterial(null, "Document")))
+    given(lectureMaterialService.update("id3",new LectureMaterial(null, "Document"), null))
       .willThrow(LectureMaterialNotFoundException.class);
 
     //Json Generator
@@ -321,7 +336,7 @@ class LectureMaterialControllerTest {
   @Test
   void deleteLectureMaterialTest() throws Exception {
     // given
-    given(lectureMaterialService.getAll()).willReturn(lectureMaterialList);
+    given(lectureMaterialService.getAll(0L)).willReturn(lectureMaterialList);
 
     // when & then
     this.mockMvc.perform(
@@ -342,7 +357,7 @@ class LectureMaterialControllerTest {
   @Test
   void deleteLectureMaterialByIdNotFoundExceptionTest() throws Exception {
     // given
-    doThrow(LectureMaterialNotFoundException.class).when(lectureMaterialService).delete("id3");
+    doThrow(LectureMaterialNotFoundException.class).when(lectureMaterialService).delete("id3", null);
     // when
     MockHttpServletResponse response = mockMvc.perform(
       delete("/lecture-materials/id3")
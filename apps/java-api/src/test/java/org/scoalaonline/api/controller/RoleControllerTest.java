@@ -2,6 +2,9 @@ package org.scoalaonline.api.controller;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
@@ -217,6 +220,7 @@ class RoleControllerTest {
   void updateRoleTest() throws Exception {
     // given
     given(roleService.getAll()).willReturn(roleList);
+    given(roleService.update(eq("id0"), any(), isNull())).willReturn(roleList.get(0));
 
     //Json Generator
     List<String> FieldArray = new ArrayList<String>();
@@ -254,7 +258,7 @@ class RoleControllerTest {
       // given
       given(roleService.getAll())
         .willReturn(roleList);
-      given(roleService.update("id0",new Role(null, (String) exceptionCase)))
+      given(roleService.update("id0",new Role(null, (String) exceptionCase), null))
         .willThrow(RoleInvalidNameException.class);
 
       //Json Generator
@@ -288,7 +292,7 @@ class RoleControllerTest {
   @Test
   void updateRoleByIdNotFoundExceptionTest() throws Exception {
     // given
-    given(roleService.update("id3",new Role(null, "Name")))
+    given(roleService.update("id3",new Role(null, "Name"), null))
       .willThrow(RoleNotFoundException.class);
 
     //Json Generator
@@ -342,7 +346,7 @@ class RoleControllerTest {
   @Test
   void deleteRoleByIdNotFoundExceptionTest() throws Exception {
     // given
-    doThrow(RoleNotFoundException.class).when(roleService).delete("id3");
+    doThrow(RoleNotFoundException.class).when(roleService).delete("id3", null);
     // when
     MockHttpServletResponse response = mockMvc.perform(
       delete("/roles/id3")
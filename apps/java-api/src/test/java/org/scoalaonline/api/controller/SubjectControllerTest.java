@@ -28,6 +28,9 @@ import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
@@ -70,7 +73,7 @@ class SubjectControllerTest {
   @DisplayName(value = "Test getting all subjects.")
   @Test
   void getAllSubjectsTest() throws Exception{
-    given(subjectService.getAll()).willReturn(subjectList);
+    given(subjectService.getAll(0L)).willReturn(subjectList);
 
     this.mockMvc.perform(get("/subjects")
         .accept(MediaType.APPLICATION_JSON))
@@ -212,7 +215,8 @@ class SubjectControllerTest {
   @Test
   void updateSubjectTest() throws Exception {
     // given
-    given(subjectService.getAll()).willReturn(subjectList);
+    given(subjectService.getAll(0L)).willReturn(subjectList);
+    given(subjectService.update(eq("id0"), any(), isNull())).willReturn(subjectList.get(0));
 
     //Json Generator
     List<String> FieldArray = new ArrayList<String>();
@@ -248,9 +252,9 @@ class SubjectControllerTest {
     exceptionCases.add(null);
     for(Object exceptionCase: exceptionCases) {
       // given
-      given(subjectService.getAll())
+      given(subjectService.getAll(0L))
         .willReturn(subjectList);
-      given(subjectService.update("id0",new Subject(null, (String) exceptionCase)))
+      given(subjectService.update("id0",new Subject(null, (String) exceptionCase), null))
         .willThrow(SubjectInvalidValueException.class);
 
       //Json Generator
@@ -284,7 +288,7 @@ class SubjectControllerTest {
   @Test
   void updateSubjectByIdNotFoundExceptionTest() throws Exception {
     // given
-    given(subjectService.update("id3",new Subject(null, "value")))
+    given(subjectService.update("id3",new Subject(null, "value"), null))
       .willThrow(SubjectNotFoundException.class);
 
     //Json Generator
@@ -317,7 +321,7 @@ class SubjectControllerTest {
   @Test
   void deleteSubjectTest() throws Exception {
     // given
-    given(subjectService.getAll()).willReturn(subjectList);
+    given(subjectService.getAll(0L)).willReturn(subjectList);
 
     // when & then
     this.mockMvc.perform(
@@ -338,7 +342,7 @@ class SubjectControllerTest {
   @Test
   void deleteSubjectByIdNotFoundExceptionTest() throws Exception {
     // given
-    doThrow(SubjectNotFoundException.class).when(subjectService).delete("id3");
+    doThrow(SubjectNotFoundException.class).when(subjectService).delete("id3", null);
     // when
     MockHttpServletResponse response = mockMvc.perform(
         delete("/subjects/id3")
@@ -0,0 +1,148 @@
+package org.scoalaonline.api.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.scoalaonline.api.repository.LectureRepository;
+import org.scoalaonline.api.repository.SubjectRepository;
+import org.scoalaonline.api.service.AutocompleteIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AutocompleteIntegrationTest {
+
+  @Autowired
+  private LectureRepository lectureRepository;
+  @Autowired
+  private SubjectRepository subjectRepository;
+  @Autowired
+  private AutocompleteIndex autocompleteIndex;
+  @Autowired
+  private MockMvc mockMvc;
+
+  private final List<String> lectureIds = new ArrayList<>();
+  private String subjectId;
+
+  @AfterEach
+  void afterTests(){
+    lectureIds.forEach(id -> {
+      lectureRepository.deleteById(id);
+      autocompleteIndex.remove(AutocompleteIndex.LECTURE, id);
+    });
+    if (subjectId != null) {
+      subjectRepository.deleteById(subjectId);
+      autocompleteIndex.remove(AutocompleteIndex.SUBJECT, subjectId);
+    }
+  }
+
+  /**
+   * Adds a Subject and a Lecture through the endpoints, then updates and deletes the Lecture.
+   * Performs GET at "autocomplete" after every write.
+   * Asserts that the completions follow every write.
+   * @throws Exception
+   */
+  @Test
+  void autocompleteTest() throws Exception {
+    // when
+    subjectId = add("/subjects", "value", "Zoologie");
+    String lectureId = add("/lectures", "title", "Introducere în zoologie");
+
+    // then
+    JSONArray hits = complete("ZOOL");
+    assertThat(hits.length()).isEqualTo(2);
+    assertThat(hits.getJSONObject(0).getString("id")).isEqualTo(lectureId);
+    assertThat(hits.getJSONObject(0).getString("type")).isEqualTo("Lecture");
+    assertThat(hits.getJSONObject(1).getString("id")).isEqualTo(subjectId);
+
+    // when
+    assertThat(mockMvc.perform(patch("/lectures/" + lectureId)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(buildJsonBody(List.of("title"), List.of("Zorile botanicii")).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+
+    // then
+    assertThat(complete("zool").length()).isEqualTo(1);
+    assertThat(complete("zori").getJSONObject(0).getString("text")).isEqualTo("Zorile botanicii");
+
+    // when
+    assertThat(mockMvc.perform(delete("/lectures/" + lectureId).with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+
+    // then
+    assertThat(complete("zori").length()).isEqualTo(0);
+  }
+
+  /**
+   * Adds Lecture entries in bulk through the endpoint.
+   * Performs GET at "autocomplete" with a size.
+   * Asserts that the bulk entries are completed, at most as many as the size.
+   * @throws Exception
+   */
+  @Test
+  void autocompleteBulkTest() throws Exception {
+    // when
+    MockHttpServletResponse response = mockMvc.perform(post("/lectures/bulk")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("[{\"title\": \"Xenon 1\"}, {\"title\": \"Xenon 2\"}, {\"title\": \"Xenon 3\"}]")
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse();
+    JSONArray results = new JSONArray(response.getContentAsString());
+    for (int i = 0; i < results.length(); i++) {
+      lectureIds.add(results.getJSONObject(i).getString("id"));
+    }
+
+    // then
+    MockHttpServletResponse hits = mockMvc.perform(get("/autocomplete").param("q", "xenon").param("size", "2"))
+      .andReturn().getResponse();
+    assertThat(hits.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(new JSONArray(hits.getContentAsString()).length()).isEqualTo(2);
+    assertThat(complete("xenon 3").getJSONObject(0).getString("text")).isEqualTo("Xenon 3");
+    assertThat(mockMvc.perform(get("/autocomplete").param("q", "xenon").param("size", "0"))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+  }
+
+  private String add(String path, String field, String value) throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(post(path)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(buildJsonBody(List.of(field), List.of(value)).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse();
+    assertThat(response.getStatus()).isEqualTo(HttpStatus.CREATED.value());
+    String id = new JSONObject(response.getContentAsString()).getString("id");
+    if (path.equals("/lectures")) {
+      lectureIds.add(id);
+    }
+    return id;
+  }
+
+  private JSONArray complete(String query) throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(get("/autocomplete").param("q", query)
+        .accept(MediaType.APPLICATION_JSON))
+      .andReturn().getResponse();
+    assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+    return new JSONArray(response.getContentAsString());
+  }
+}
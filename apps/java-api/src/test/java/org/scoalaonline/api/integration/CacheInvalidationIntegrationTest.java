@@ -0,0 +1,51 @@
+package org.scoalaonline.api.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.scoalaonline.api.service.Neo4jCacheInvalidationBus;
+import org.scoalaonline.api.service.RemoteInvalidationEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+public class CacheInvalidationIntegrationTest {
+
+  @Autowired
+  private Neo4jClient neo4jClient;
+
+  /**
+   * Arranges two instances exchanging invalidations through the database.
+   * Publishes an invalidation on the first one and lets both exchange.
+   * Asserts that only the second instance receives it.
+   */
+  @Test
+  public void exchangeTest() {
+    // arrange
+    List<RemoteInvalidationEvent> firstReceived = new ArrayList<>();
+    List<RemoteInvalidationEvent> secondReceived = new ArrayList<>();
+    Neo4jCacheInvalidationBus first = new Neo4jCacheInvalidationBus(neo4jClient,
+      event -> firstReceived.add((RemoteInvalidationEvent) event), 1000, 600);
+    Neo4jCacheInvalidationBus second = new Neo4jCacheInvalidationBus(neo4jClient,
+      event -> secondReceived.add((RemoteInvalidationEvent) event), 1000, 600);
+    first.exchange();
+    second.exchange();
+
+    // when
+    first.publish("grades", "VALID_ID");
+    first.exchange();
+    second.exchange();
+
+    // then
+    assertThat(firstReceived).isEmpty();
+    assertThat(secondReceived).extracting(RemoteInvalidationEvent::getCache).containsExactly("grades");
+    assertThat(secondReceived).extracting(RemoteInvalidationEvent::getKey).containsExactly("VALID_ID");
+  }
+}
@@ -2,6 +2,7 @@ package org.scoalaonline.api.integration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
+import static org.scoalaonline.api.util.TestUtils.runWhileUncommitted;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -12,7 +13,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -20,15 +24,25 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.neo4j.driver.Driver;
 import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.GradeAggregate;
+import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.model.User;
+import org.scoalaonline.api.repository.GradeAggregateRepository;
 import org.scoalaonline.api.repository.GradeRepository;
+import org.scoalaonline.api.repository.SubjectRepository;
+import org.scoalaonline.api.repository.UserRepository;
+import org.scoalaonline.api.service.EntityCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.neo4j.repository.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
@@ -43,6 +57,16 @@ public class GradeIntegrationTest {
   @Autowired
   private GradeRepository gradeRepository;
   @Autowired
+  private GradeAggregateRepository gradeAggregateRepository;
+  @Autowired
+  private SubjectRepository subjectRepository;
+  @Autowired
+  private UserRepository userRepository;
+  @Autowired
+  private EntityCache<Grade> gradeCache;
+  @Autowired
+  private Driver driver;
+  @Autowired
   private MockMvc mockMvc;
 
   @AfterEach
@@ -55,6 +79,17 @@ public class GradeIntegrationTest {
     gradeRepository.deleteById("VALID_ID3");
     gradeRepository.deleteById("INVALID_ID1");
     gradeRepository.deleteById("VALID_ID");
+    gradeRepository.findAll().stream()
+      .filter(grade -> "STATS_SUBJECT".equals(grade.getSubjectId()))
+      .forEach(grade -> gradeRepository.deleteById(grade.getId()));
+    gradeAggregateRepository.deleteById("subject:STATS_SUBJECT");
+    gradeAggregateRepository.deleteById("student:STATS_STUDENT");
+    gradeAggregateRepository.deleteById("student:OTHER_STUDENT");
+    subjectRepository.deleteById("STATS_SUBJECT");
+    userRepository.deleteById("STATS_STUDENT");
+    userRepository.deleteById("OTHER_STUDENT");
+    // The entries are written and deleted through the repository, bypassing the cache.
+    gradeCache.invalidateAll();
   }
 
   private static Stream<Arguments> getAllCases() {
@@ -167,7 +202,7 @@ public class GradeIntegrationTest {
 
     // when
     MockHttpServletResponse response = this.mockMvc
-      .perform(get("/grades")).andDo(print())
+      .perform(get("/grades").with(user("ADMIN").roles("ADMIN"))).andDo(print())
       .andExpect(status().isOk()).andReturn().getResponse();
 
     JSONArray parsedGrades = new JSONArray(response.getContentAsString()) ;
@@ -222,7 +257,8 @@ public class GradeIntegrationTest {
     // when
     MockHttpServletResponse response = this.mockMvc
       .perform(get("/grades/" + idParam + "/")
-        .accept(MediaType.APPLICATION_JSON))
+        .accept(MediaType.APPLICATION_JSON)
+        .with(user("ADMIN").roles("ADMIN")))
       .andReturn().getResponse();
 
     // then
@@ -384,4 +420,189 @@ public class GradeIntegrationTest {
     }
   }
 
+  /**
+   * Arranges the existence of a Subject and of a student.
+   * Adds, updates and deletes grades linked to them through the endpoints, one by one and in bulk,
+   * and performs GET at "grades/statistics/..." after every write.
+   * Asserts that the statistics follow every write and that a grade linked to a missing subject is rejected.
+   * @throws Exception
+   */
+  @Test
+  void gradeStatisticsTest() throws Exception {
+    // given
+    subjectRepository.save(new Subject("STATS_SUBJECT", "VALUE"));
+    userRepository.save(new User("STATS_STUDENT", "Name", "stats_student", "password", new ArrayList<>()));
+
+    // when
+    String first = addLinkedGrade(4, "STATS_STUDENT");
+    String second = addLinkedGrade(9, null);
+
+    // then
+    assertStatistics("subjects/STATS_SUBJECT", 2, 6.5, 4, 9);
+    assertStatistics("students/STATS_STUDENT", 1, 4.0, 4, 4);
+
+    // when
+    assertThat(mockMvc.perform(patch("/grades/" + first)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(buildJsonBody(List.of("value"), List.of(10)).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(mockMvc.perform(delete("/grades/" + second).with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+
+    // then
+    assertStatistics("subjects/STATS_SUBJECT", 1, 10.0, 10, 10);
+    assertStatistics("students/STATS_STUDENT", 1, 10.0, 10, 10);
+
+    // when
+    assertThat(mockMvc.perform(post("/grades/bulk")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("[{\"value\": 2, \"subjectId\": \"STATS_SUBJECT\"}, {\"value\": 3, \"subjectId\": \"MISSING\"}]")
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getContentAsString()).contains("Subject not found.");
+
+    // then
+    assertStatistics("subjects/STATS_SUBJECT", 2, 6.0, 2, 10);
+    MockHttpServletResponse invalid = mockMvc.perform(post("/grades")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(buildJsonBody(List.of("value", "subjectId"), List.of(5, "MISSING")).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse();
+    assertThat(invalid.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+    assertThat(invalid.getErrorMessage()).isEqualTo("POST: Grade invalid student or subject.");
+  }
+
+  /**
+   * Arranges the existence of a Subject and of a grade linked to it.
+   * Updates the grade while another transaction has updated it and not committed yet, then does the same with a delete.
+   * Asserts that the second write waits for the first one and that the aggregate of the subject counts every grade once,
+   * with its last value.
+   * @throws Exception
+   */
+  @Test
+  void gradeStatisticsConcurrentWritesTest() throws Exception {
+    // given
+    subjectRepository.save(new Subject("STATS_SUBJECT", "VALUE"));
+    gradeRepository.createWithAggregates("ID1", 4, null, "STATS_SUBJECT");
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("id", "ID1");
+    parameters.put("value", 7);
+    parameters.put("version", null);
+
+    // when
+    Optional<Grade> updated = runWhileUncommitted(driver,
+      GradeRepository.class.getMethod("updateValueById", String.class, int.class, Long.class).getAnnotation(Query.class).value(),
+      parameters, () -> gradeRepository.updateValueById("ID1", 9, null));
+
+    // then
+    assertThat(updated).map(Grade::getVersion).contains(2L);
+    GradeAggregate aggregate = gradeAggregateRepository.findById("subject:STATS_SUBJECT").orElseThrow();
+    assertThat(aggregate.getCount()).isEqualTo(1);
+    assertThat(aggregate.getSum()).isEqualTo(9);
+    assertThat(aggregate.getHistogram().get(9)).isEqualTo(1);
+    assertThat(aggregate.getHistogram().stream().mapToLong(Long::longValue).sum()).isEqualTo(1);
+
+    // when
+    long deleted = runWhileUncommitted(driver,
+      GradeRepository.class.getMethod("deleteByIdReturningCount", String.class, Long.class).getAnnotation(Query.class).value(),
+      parameters, () -> gradeRepository.deleteByIdReturningCount("ID1", null));
+
+    // then
+    assertThat(deleted).isZero();
+    aggregate = gradeAggregateRepository.findById("subject:STATS_SUBJECT").orElseThrow();
+    assertThat(aggregate.getCount()).isZero();
+    assertThat(aggregate.getSum()).isZero();
+    assertThat(aggregate.getHistogram().stream().mapToLong(Long::longValue).sum()).isZero();
+  }
+
+  /**
+   * Arranges the existence of a Subject, of two students and of a grade given to the first one.
+   * Performs GET at "grades/..." as anonymous, as each student and as an admin.
+   * Asserts that a grade and the statistics of a student are only read by that student and by an admin,
+   * and that the list of all grades is only read by an admin.
+   * @throws Exception
+   */
+  @Test
+  void gradeReadAccessTest() throws Exception {
+    // given
+    subjectRepository.save(new Subject("STATS_SUBJECT", "VALUE"));
+    userRepository.save(new User("STATS_STUDENT", "Name", "stats_student", "password", new ArrayList<>()));
+    userRepository.save(new User("OTHER_STUDENT", "Name", "other_student", "password", new ArrayList<>()));
+    String id = addLinkedGrade(4, "STATS_STUDENT");
+
+    // then
+    for (String path : List.of("/grades/" + id, "/grades/statistics/students/STATS_STUDENT")) {
+      assertThat(mockMvc.perform(get(path)).andReturn().getResponse().getStatus())
+        .isEqualTo(HttpStatus.FORBIDDEN.value());
+      assertThat(mockMvc.perform(get(path).with(user("other_student").roles("STUDENT")))
+        .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.FORBIDDEN.value());
+      assertThat(mockMvc.perform(get(path).with(user("stats_student").roles("STUDENT")))
+        .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+      assertThat(mockMvc.perform(get(path).with(user("ADMIN").roles("ADMIN")))
+        .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+    assertThat(mockMvc.perform(get("/grades").with(user("stats_student").roles("STUDENT")))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.FORBIDDEN.value());
+    assertThat(mockMvc.perform(get("/grades/statistics/subjects/STATS_SUBJECT"))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.FORBIDDEN.value());
+  }
+
+  /**
+   * Arranges the existence of a Subject, of two students and of a grade given to each of them in that subject.
+   * Performs DELETE at "users/{id}" for the second student, then at "subjects/{id}" for the subject.
+   * Asserts that the grades of the deleted entries are deleted with them, the aggregates of the deleted entries removed
+   * and the ones of the entries their grades were linked to recomputed.
+   * @throws Exception
+   */
+  @Test
+  void deleteLinkedEntriesDeletesGradesTest() throws Exception {
+    // given
+    subjectRepository.save(new Subject("STATS_SUBJECT", "VALUE"));
+    userRepository.save(new User("STATS_STUDENT", "Name", "stats_student", "password", new ArrayList<>()));
+    userRepository.save(new User("OTHER_STUDENT", "Name", "other_student", "password", new ArrayList<>()));
+    String first = addLinkedGrade(4, "STATS_STUDENT");
+    String second = addLinkedGrade(9, "OTHER_STUDENT");
+
+    // when
+    assertThat(mockMvc.perform(delete("/users/OTHER_STUDENT").with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+
+    // then
+    assertThat(gradeRepository.findById(second)).isEmpty();
+    assertThat(gradeAggregateRepository.findById("student:OTHER_STUDENT")).isEmpty();
+    assertStatistics("subjects/STATS_SUBJECT", 1, 4.0, 4, 4);
+
+    // when
+    assertThat(mockMvc.perform(delete("/subjects/STATS_SUBJECT").with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+
+    // then
+    assertThat(gradeRepository.findById(first)).isEmpty();
+    assertThat(gradeAggregateRepository.findById("subject:STATS_SUBJECT")).isEmpty();
+    assertThat(gradeAggregateRepository.findById("student:STATS_STUDENT").orElseThrow().getCount()).isZero();
+  }
+
+  private String addLinkedGrade(int value, String studentId) throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(post("/grades")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(buildJsonBody(List.of("value", "subjectId", "studentId"), Arrays.asList(value, "STATS_SUBJECT", studentId)).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse();
+    assertThat(response.getStatus()).isEqualTo(HttpStatus.CREATED.value());
+    return new JSONObject(response.getContentAsString()).getString("id");
+  }
+
+  private void assertStatistics(String path, int count, double mean, int min, int max) throws Exception {
+    MockHttpServletResponse response = mockMvc.perform(get("/grades/statistics/" + path)
+        .accept(MediaType.APPLICATION_JSON)
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse();
+    assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+    JSONObject statistics = new JSONObject(response.getContentAsString());
+    assertThat(statistics.getInt("count")).isEqualTo(count);
+    assertThat(statistics.getDouble("mean")).isEqualTo(mean);
+    assertThat(statistics.getInt("min")).isEqualTo(min);
+    assertThat(statistics.getInt("max")).isEqualTo(max);
+    assertThat(statistics.getJSONObject("histogram").getInt(String.valueOf(max))).isGreaterThan(0);
+  }
 }
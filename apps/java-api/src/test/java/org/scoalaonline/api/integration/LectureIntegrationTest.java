@@ -2,7 +2,9 @@ package org.scoalaonline.api.integration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
+import static org.scoalaonline.api.util.TestUtils.runWhileUncommitted;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
@@ -13,6 +15,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -20,20 +23,26 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.neo4j.driver.Driver;
 import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.repository.ClientBookmarks;
 import org.scoalaonline.api.repository.LectureRepository;
+import org.scoalaonline.api.service.EntityCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.neo4j.repository.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -43,10 +52,17 @@ public class LectureIntegrationTest {
   @Autowired
   private LectureRepository lectureRepository;
   @Autowired
+  private EntityCache<Lecture> lectureCache;
+  @Autowired
+  private Driver driver;
+  @Autowired
   private MockMvc mockMvc;
 
+  private final List<String> addedIds = new ArrayList<>();
+
   @AfterEach
   void afterTests(){
+    addedIds.forEach(lectureRepository::deleteById);
     lectureRepository.deleteById("ID1");
     lectureRepository.deleteById("ID2");
     lectureRepository.deleteById("ID3");
@@ -55,6 +71,8 @@ public class LectureIntegrationTest {
     lectureRepository.deleteById("VALID_ID3");
     lectureRepository.deleteById("INVALID_ID1");
     lectureRepository.deleteById("VALID_ID");
+    // The entries are written and deleted through the repository, bypassing the cache.
+    lectureCache.invalidateAll();
   }
 
   private static Stream<Arguments> getAllCases() {
@@ -370,4 +388,58 @@ public class LectureIntegrationTest {
     }
   }
 
+  /**
+   * Arranges the existence of a Lecture at version 0.
+   * Updates it expecting version 0 while another transaction has updated it expecting version 0 and not committed yet.
+   * Asserts that the second update waits for the first one, then finds the entry at another version and changes nothing.
+   * @throws Exception
+   */
+  @Test
+  void updateLectureConcurrentVersionTest() throws Exception {
+    // given
+    lectureRepository.save(new Lecture("ID1", "EXAMPLE_TITLE_1"));
+    String query = LectureRepository.class.getMethod("updateTitleById", String.class, String.class, Long.class)
+      .getAnnotation(Query.class).value();
+
+    // when
+    Optional<Lecture> updated = runWhileUncommitted(driver, query, Map.of("id", "ID1", "title", "FIRST", "version", 0L),
+      () -> lectureRepository.updateTitleById("ID1", "SECOND", 0L));
+
+    // then
+    assertThat(updated).isEmpty();
+    Lecture stored = lectureRepository.findById("ID1").orElseThrow();
+    assertThat(stored.getTitle()).isEqualTo("FIRST");
+    assertThat(stored.getVersion()).isEqualTo(1L);
+  }
+
+  /**
+   * Adds a Lecture through the endpoint, then streams all the Lecture entries with the bookmarks of the response.
+   * Asserts that the bookmarks are sent back and the stream, read from a session waiting for them, has the new entry.
+   * @throws Exception
+   */
+  @Test
+  void streamLecturesWithBookmarksTest() throws Exception {
+    // given
+    MockHttpServletResponse added = mockMvc.perform(post("/lectures")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(buildJsonBody(List.of("title"), List.of("STREAMED_TITLE")).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse();
+    String id = new JSONObject(added.getContentAsString()).getString("id");
+    addedIds.add(id);
+    String bookmarks = added.getHeader(ClientBookmarks.BOOKMARKS_HEADER);
+
+    // when
+    MvcResult result = mockMvc.perform(get("/lectures")
+        .accept(MediaType.APPLICATION_NDJSON)
+        .header(ClientBookmarks.BOOKMARKS_HEADER, bookmarks)
+        .with(user("STUDENT").roles("STUDENT")))
+      .andReturn();
+    MockHttpServletResponse response = mockMvc.perform(asyncDispatch(result)).andReturn().getResponse();
+
+    // then
+    assertThat(bookmarks).isNotBlank();
+    assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(response.getContentAsString()).contains("\"id\":\"" + id + "\"");
+  }
 }
@@ -1,6 +1,7 @@
 package org.scoalaonline.api.integration;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.scoalaonline.api.util.TestUtils.buildJsonBody;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -11,6 +12,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -20,15 +27,19 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.scoalaonline.api.model.LectureMaterial;
 import org.scoalaonline.api.repository.LectureMaterialRepository;
+import org.scoalaonline.api.service.EntityCache;
+import org.scoalaonline.api.service.LectureMaterialDocuments;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
@@ -43,6 +54,10 @@ public class LectureMaterialIntegrationTest {
   @Autowired
   private LectureMaterialRepository lectureMaterialRepository;
   @Autowired
+  private EntityCache<LectureMaterial> lectureMaterialCache;
+  @Autowired
+  private LectureMaterialDocuments lectureMaterialDocuments;
+  @Autowired
   private MockMvc mockMvc;
 
   @AfterEach
@@ -55,8 +70,16 @@ public class LectureMaterialIntegrationTest {
     lectureMaterialRepository.deleteById("VALID_ID3");
     lectureMaterialRepository.deleteById("INVALID_ID1");
     lectureMaterialRepository.deleteById("VALID_ID");
+    // The entries are written and deleted through the repository, bypassing the cache.
+    lectureMaterialCache.invalidateAll();
   } 
   
+  // The documents of the entries written through the repository are stored apart, as the service does.
+  private void saveWithDocuments(List<LectureMaterial> lectureMaterials) {
+    lectureMaterials.forEach(lectureMaterialDocuments::store);
+    lectureMaterialRepository.saveAll(lectureMaterials);
+  }
+
   private static Stream<Arguments> getAllCases() {
 
     // Create a lecture material to add to database
@@ -135,7 +158,7 @@ public class LectureMaterialIntegrationTest {
    * Performs GET method on "/lecture-materials"
    * Asserts that returns 200 status and the
    * content size is equal to the number of objects in the database.
-   * Asserts that the JSON output contains added objects
+   * Asserts that the JSON output contains added objects as summaries, without their documents
    *
    * IMPLEMENTATION DETAILS: after the addition of each list of cases, the function
    * goes through all the entries found in the returned JSON in REVERSE ORDER
@@ -149,7 +172,7 @@ public class LectureMaterialIntegrationTest {
   public void getAllLectureMaterialsTest(ArrayList<LectureMaterial> input) throws Exception {
 
     // arrange
-    lectureMaterialRepository.saveAll(input);
+    saveWithDocuments(input);
 
     // when
     MockHttpServletResponse response = this.mockMvc
@@ -164,7 +187,7 @@ public class LectureMaterialIntegrationTest {
 
       Optional<LectureMaterial> entity = lectureMaterialRepository.findById(lectureMaterial.getId());
       assertThat(entity).isNotNull();
-      assertThat(entity.get().getDocument()).isEqualTo(lectureMaterial.getDocument());
+      assertThat(Files.readString(lectureMaterialDocuments.find(entity.get().getDocumentHash()).getPath())).isEqualTo(lectureMaterial.getDocument());
 
       // TIME COMPLEXITY O(T) << O(N) where N is the number of entries in the database and T is the number
       // of entries added in the testing time, including entries that weren't added by the tests.
@@ -181,7 +204,10 @@ public class LectureMaterialIntegrationTest {
       // It fails if the entry is not added or found
       assertThat(parsedLectureMaterial).isNotNull();
       assertThat(parsedLectureMaterial.get("id")).isEqualTo(lectureMaterial.getId());
-      assertThat(parsedLectureMaterial.get("document")).isEqualTo(lectureMaterial.getDocument());
+      assertThat(parsedLectureMaterial.has("document")).isFalse();
+      assertThat(parsedLectureMaterial.get("documentHash")).isEqualTo(entity.get().getDocumentHash());
+      assertThat(parsedLectureMaterial.getLong("documentSize")).isEqualTo(lectureMaterial.getDocument().length());
+      assertThat(parsedLectureMaterial.get("excerpt")).isEqualTo(lectureMaterial.getDocument());
     }
   }
 
@@ -190,7 +216,7 @@ public class LectureMaterialIntegrationTest {
    * Creates a JSON entry that will be expected to receive.
    * Performs GET method at "lecture-materials/{@param idParam}".
    * Asserts that the status is {@param status} and the object returned has the same
-   * attribute values as the expected one. Otherwise asserts that the {@param errorMessage}
+   * attribute values as the expected one, with the excerpt of its document instead of the document. Otherwise asserts that the {@param errorMessage}
    * is the expected one, and that the body's content is empty.
    * @throws Exception
    * @param input -> List of lecture materials;
@@ -204,7 +230,7 @@ public class LectureMaterialIntegrationTest {
   @MethodSource("getByIdCases")
   void getLectureMaterialByIdTest(ArrayList<LectureMaterial> input, String idParam,
                                   Integer status, String errorMessage, LectureMaterial expectedLectureMaterial) throws Exception {
-    lectureMaterialRepository.saveAll(input);
+    saveWithDocuments(input);
     // when
     MockHttpServletResponse response = this.mockMvc
       .perform(get("/lecture-materials/" + idParam + "/")
@@ -220,7 +246,8 @@ public class LectureMaterialIntegrationTest {
 
       JSONObject parsedLectureMaterial = new JSONObject(response.getContentAsString());
       assertThat(parsedLectureMaterial.get("id")).isEqualTo(expectedLectureMaterial.getId());
-      assertThat(parsedLectureMaterial.get("document")).isEqualTo(expectedLectureMaterial.getDocument());
+      assertThat(parsedLectureMaterial.isNull("document")).isTrue();
+      assertThat(parsedLectureMaterial.get("excerpt")).isEqualTo(expectedLectureMaterial.getDocument());
     } else {
       assertThat(response.getContentAsString()).isEmpty();
     }
@@ -268,7 +295,7 @@ public class LectureMaterialIntegrationTest {
 
       assertThat(response.getContentAsString()).isNotEmpty();
       assertThat(entity.get()).isNotNull();
-      assertThat(entity.get().getDocument()).isEqualTo(input);
+      assertThat(Files.readString(lectureMaterialDocuments.find(entity.get().getDocumentHash()).getPath())).isEqualTo(input);
       id = parsedLectureMaterial.get("id").toString();
     } else {
       assertThat(response.getContentAsString()).isEmpty();
@@ -300,7 +327,7 @@ public class LectureMaterialIntegrationTest {
                                  Integer status, String errorMessage,String role) throws Exception {
 
     // arrange
-    lectureMaterialRepository.save(new LectureMaterial(expectedId, document + ".updateMe"));
+    saveWithDocuments(List.of(new LectureMaterial(expectedId, document + ".updateMe")));
 
     // Json Generator
     List<String> FieldArray = new ArrayList<>();
@@ -328,7 +355,7 @@ public class LectureMaterialIntegrationTest {
 
       assertThat(entity.get()).isNotNull();
       assertThat(entity.get().getId()).isEqualTo(wantedId);
-      assertThat(entity.get().getDocument()).isEqualTo(document);
+      assertThat(Files.readString(lectureMaterialDocuments.find(entity.get().getDocumentHash()).getPath())).isEqualTo(document);
     } else {
         assertThat(response.getContentAsString()).isEmpty();
     }
@@ -352,7 +379,7 @@ public class LectureMaterialIntegrationTest {
   void deleteLectureMaterialByIdNotFoundExceptionTest(String document, String expectedId, String wantedId,
                                                       Integer status, String errorMessage, String role) throws Exception {
 
-    lectureMaterialRepository.save(new LectureMaterial(expectedId, document));
+    saveWithDocuments(List.of(new LectureMaterial(expectedId, document)));
     // when
     MockHttpServletResponse response = mockMvc.perform(
       delete("/lecture-materials/" + wantedId + "/")
@@ -370,4 +397,189 @@ public class LectureMaterialIntegrationTest {
     }
   }
 
+  /**
+   * Arranges the existence of a LectureMaterial entry with a document.
+   * Performs GET at "lecture-materials/VALID_ID/document" for the whole document, a range of it,
+   * a range out of it, with the ETag of the document and for a missing entry.
+   * Asserts the status, the headers and that exactly the requested bytes are sent.
+   * @throws Exception
+   */
+  @Test
+  void getLectureMaterialDocumentTest() throws Exception {
+    // given
+    String document = "0123456789".repeat(100) + "ăîș";
+    saveWithDocuments(List.of(new LectureMaterial("VALID_ID", document)));
+    byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+    String etag = "\"" + lectureMaterialRepository.findDocumentHashById("VALID_ID").get() + "\"";
+
+    // when
+    MockHttpServletResponse whole = mockMvc.perform(get("/lecture-materials/VALID_ID/document")).andReturn().getResponse();
+    MockHttpServletResponse range = mockMvc.perform(get("/lecture-materials/VALID_ID/document")
+      .header(HttpHeaders.RANGE, "bytes=10-19")).andReturn().getResponse();
+    MockHttpServletResponse suffix = mockMvc.perform(get("/lecture-materials/VALID_ID/document")
+      .header(HttpHeaders.RANGE, "bytes=-6")).andReturn().getResponse();
+    MockHttpServletResponse outOfRange = mockMvc.perform(get("/lecture-materials/VALID_ID/document")
+      .header(HttpHeaders.RANGE, "bytes=5000-")).andReturn().getResponse();
+    MockHttpServletResponse staleRange = mockMvc.perform(get("/lecture-materials/VALID_ID/document")
+      .header(HttpHeaders.RANGE, "bytes=10-19").header(HttpHeaders.IF_RANGE, "\"stale\"")).andReturn().getResponse();
+    MockHttpServletResponse notModified = mockMvc.perform(get("/lecture-materials/VALID_ID/document")
+      .header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn().getResponse();
+    MockHttpServletResponse missing = mockMvc.perform(get("/lecture-materials/INVALID_ID1/document")).andReturn().getResponse();
+
+    // then
+    assertThat(whole.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(whole.getContentAsByteArray()).isEqualTo(bytes);
+    assertThat(whole.getContentLengthLong()).isEqualTo(bytes.length);
+    assertThat(whole.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+    assertThat(whole.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+    assertThat(whole.getContentType()).isEqualTo("text/plain;charset=UTF-8");
+
+    assertThat(range.getStatus()).isEqualTo(HttpStatus.PARTIAL_CONTENT.value());
+    assertThat(range.getContentAsString()).isEqualTo("0123456789");
+    assertThat(range.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 10-19/" + bytes.length);
+
+    assertThat(suffix.getStatus()).isEqualTo(HttpStatus.PARTIAL_CONTENT.value());
+    assertThat(new String(suffix.getContentAsByteArray(), StandardCharsets.UTF_8)).isEqualTo("ăîș");
+
+    assertThat(outOfRange.getStatus()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+    assertThat(outOfRange.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */" + bytes.length);
+
+    assertThat(staleRange.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(staleRange.getContentAsByteArray()).isEqualTo(bytes);
+
+    assertThat(notModified.getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+    assertThat(notModified.getContentAsByteArray()).isEmpty();
+
+    assertThat(missing.getStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+    assertThat(missing.getErrorMessage()).isEqualTo("GET: Lecture Material Not Found");
+  }
+
+  /**
+   * Arranges the existence of a LectureMaterial entry with a document and of a stored document without an entry,
+   * both stored before the grace period.
+   * Executes the removeUnreferenced() method of LectureMaterialDocuments.
+   * Asserts that the document without an entry is removed and the document of the entry is kept.
+   * @throws Exception
+   */
+  @Test
+  void removeUnreferencedDocumentsTest() throws Exception {
+    // given
+    saveWithDocuments(List.of(new LectureMaterial("VALID_ID", "Referenced document")));
+    LectureMaterial unreferenced = new LectureMaterial(null, "Unreferenced document");
+    lectureMaterialDocuments.store(unreferenced);
+    String referencedHash = lectureMaterialRepository.findDocumentHashById("VALID_ID").get();
+    FileTime old = FileTime.from(Instant.now().minus(25, ChronoUnit.HOURS));
+    Files.setLastModifiedTime(lectureMaterialDocuments.find(referencedHash).getPath(), old);
+    Files.setLastModifiedTime(lectureMaterialDocuments.find(unreferenced.getDocumentHash()).getPath(), old);
+
+    // when
+    lectureMaterialDocuments.removeUnreferenced();
+
+    // then
+    assertThat(Files.readString(lectureMaterialDocuments.find(referencedHash).getPath())).isEqualTo("Referenced document");
+    assertThatThrownBy(() -> lectureMaterialDocuments.find(unreferenced.getDocumentHash()))
+      .isInstanceOf(IllegalStateException.class);
+  }
+
+  /**
+   * Performs POST at "lecture-materials/uploads", then PATCH with two chunks of a document,
+   * one of them first sent at the wrong offset, then POST at "lecture-materials/uploads/{id}/complete"
+   * with the hash of the document, as an admin.
+   * Asserts that every chunk moves the offset, the misplaced one is rejected with the offset to resume from,
+   * the created entry has the hash and size of the document and the document is sent back whole,
+   * after which the upload no longer exists.
+   * @throws Exception
+   */
+  @Test
+  void uploadLectureMaterialTest() throws Exception {
+    // given
+    String first = "0123456789".repeat(100);
+    String second = "ăîș";
+    byte[] bytes = (first + second).getBytes(StandardCharsets.UTF_8);
+    String hash = sha256(bytes);
+
+    // when
+    MockHttpServletResponse created = mockMvc.perform(post("/lecture-materials/uploads")
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    String uploadId = new JSONObject(created.getContentAsString()).getString("id");
+    MockHttpServletResponse firstChunk = mockMvc.perform(patch("/lecture-materials/uploads/" + uploadId)
+      .header("Upload-Offset", 0).contentType(MediaType.APPLICATION_OCTET_STREAM).content(first.getBytes(StandardCharsets.UTF_8))
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse misplaced = mockMvc.perform(patch("/lecture-materials/uploads/" + uploadId)
+      .header("Upload-Offset", 0).contentType(MediaType.APPLICATION_OCTET_STREAM).content(second.getBytes(StandardCharsets.UTF_8))
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse status = mockMvc.perform(get("/lecture-materials/uploads/" + uploadId)
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse secondChunk = mockMvc.perform(patch("/lecture-materials/uploads/" + uploadId)
+      .header("Upload-Offset", 1000).contentType(MediaType.APPLICATION_OCTET_STREAM).content(second.getBytes(StandardCharsets.UTF_8))
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse completed = mockMvc.perform(post("/lecture-materials/uploads/" + uploadId + "/complete")
+      .param("sha256", hash).with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse completedAgain = mockMvc.perform(post("/lecture-materials/uploads/" + uploadId + "/complete")
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+
+    // then
+    assertThat(created.getStatus()).isEqualTo(HttpStatus.CREATED.value());
+    assertThat(created.getHeader(HttpHeaders.LOCATION)).isEqualTo("/lecture-materials/uploads/" + uploadId);
+    assertThat(firstChunk.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(firstChunk.getHeader("Upload-Offset")).isEqualTo("1000");
+    assertThat(misplaced.getStatus()).isEqualTo(HttpStatus.CONFLICT.value());
+    assertThat(misplaced.getHeader("Upload-Offset")).isEqualTo("1000");
+    assertThat(new JSONObject(status.getContentAsString()).getLong("offset")).isEqualTo(1000);
+    assertThat(secondChunk.getHeader("Upload-Offset")).isEqualTo(String.valueOf(bytes.length));
+
+    assertThat(completed.getStatus()).isEqualTo(HttpStatus.CREATED.value());
+    JSONObject lectureMaterial = new JSONObject(completed.getContentAsString());
+    assertThat(lectureMaterial.getString("documentHash")).isEqualTo(hash);
+    assertThat(lectureMaterial.getLong("documentSize")).isEqualTo(bytes.length);
+    MockHttpServletResponse document = mockMvc.perform(get("/lecture-materials/" + lectureMaterial.getString("id") + "/document"))
+      .andReturn().getResponse();
+    assertThat(document.getContentAsByteArray()).isEqualTo(bytes);
+
+    assertThat(completedAgain.getStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+    assertThat(completedAgain.getErrorMessage()).isEqualTo("POST: Upload Not Found");
+    lectureMaterialRepository.deleteById(lectureMaterial.getString("id"));
+  }
+
+  /**
+   * Performs POST at "lecture-materials/uploads" as a user, then completes an upload with the wrong hash as an admin.
+   * Asserts that the user is not allowed to upload and the wrong hash is rejected, keeping the upload.
+   * @throws Exception
+   */
+  @Test
+  void uploadLectureMaterialInvalidHashTest() throws Exception {
+    // given
+    long count = lectureMaterialRepository.count();
+
+    // when
+    MockHttpServletResponse forbidden = mockMvc.perform(post("/lecture-materials/uploads")
+      .with(user("USER").roles("USER"))).andReturn().getResponse();
+    String uploadId = new JSONObject(mockMvc.perform(post("/lecture-materials/uploads")
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse().getContentAsString()).getString("id");
+    mockMvc.perform(patch("/lecture-materials/uploads/" + uploadId)
+      .header("Upload-Offset", 0).contentType(MediaType.APPLICATION_OCTET_STREAM).content("document".getBytes(StandardCharsets.UTF_8))
+      .with(user("ADMIN").roles("ADMIN")));
+    MockHttpServletResponse invalidHash = mockMvc.perform(post("/lecture-materials/uploads/" + uploadId + "/complete")
+      .param("sha256", "0".repeat(64)).with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse status = mockMvc.perform(get("/lecture-materials/uploads/" + uploadId)
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse deleted = mockMvc.perform(delete("/lecture-materials/uploads/" + uploadId)
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+
+    // then
+    assertThat(forbidden.getStatus()).isEqualTo(HttpStatus.FORBIDDEN.value());
+    assertThat(invalidHash.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+    assertThat(invalidHash.getErrorMessage()).isEqualTo("POST: Upload Invalid Hash");
+    assertThat(status.getHeader("Upload-Offset")).isEqualTo("8");
+    assertThat(deleted.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(lectureMaterialRepository.count()).isEqualTo(count);
+  }
+
+  private static String sha256(byte[] bytes) throws Exception {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
 }
@@ -19,12 +19,15 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.scoalaonline.api.model.Role;
 import org.scoalaonline.api.repository.RoleRepository;
+import org.scoalaonline.api.repository.UserRepository;
+import org.scoalaonline.api.service.RoleRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -42,10 +45,16 @@ public class RoleIntegrationTest {
   @Autowired
   private RoleRepository roleRepository;
   @Autowired
+  private UserRepository userRepository;
+  @Autowired
+  private RoleRegistry roleRegistry;
+  @Autowired
   private MockMvc mockMvc;
 
   @AfterEach
   void afterTests(){
+    userRepository.findByUsername("role_user@example.com").ifPresent(userRepository::delete);
+    userRepository.findByUsername("role_user2@example.com").ifPresent(userRepository::delete);
     roleRepository.deleteById("ID1");
     roleRepository.deleteById("ID2");
     roleRepository.deleteById("ID3");
@@ -387,4 +396,34 @@ public class RoleIntegrationTest {
     }
   }
 
+  /**
+   * Arranges the existence of a Role entry known to the role registry.
+   * Performs POST at "users/" with that role twice, for two different users.
+   * Asserts that both users are created with the role and that the role itself is not written, so its version is unchanged.
+   * @throws Exception
+   */
+  @Test
+  void addUsersWithRoleKeepsRoleVersionTest() throws Exception {
+    // given
+    roleRepository.save(new Role("ID1", "ROLE_1"));
+    roleRegistry.refresh();
+    Long version = roleRepository.findById("ID1").orElseThrow().getVersion();
+
+    for (String username : List.of("role_user@example.com", "role_user2@example.com")) {
+      // when
+      MockHttpServletResponse response = mockMvc.perform(post("/users")
+          .contentType(MediaType.APPLICATION_JSON)
+          .content("{\"name\": \"Name\", \"username\": \"" + username + "\", \"password\": \"Password1!\", " +
+            "\"roles\": [{\"id\": \"ID1\"}]}")
+          .with(user("ADMIN").roles("ADMIN")))
+        .andReturn().getResponse();
+
+      // then
+      assertThat(response.getStatus()).isEqualTo(HttpStatus.CREATED.value());
+      assertThat(userRepository.findByUsername(username).orElseThrow().getRoles())
+        .extracting(Role::getId).containsExactly("ID1");
+      userRepository.findByUsername(username).ifPresent(userRepository::delete);
+    }
+    assertThat(roleRepository.findById("ID1").orElseThrow().getVersion()).isEqualTo(version);
+  }
 }
@@ -0,0 +1,189 @@
+package org.scoalaonline.api.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.scoalaonline.api.controller.Pagination;
+import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.model.LectureMaterial;
+import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.repository.LectureMaterialRepository;
+import org.scoalaonline.api.repository.LectureRepository;
+import org.scoalaonline.api.repository.SubjectRepository;
+import org.scoalaonline.api.service.LectureMaterialDocuments;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SearchIntegrationTest {
+
+  @Autowired
+  private SubjectRepository subjectRepository;
+  @Autowired
+  private LectureRepository lectureRepository;
+  @Autowired
+  private LectureMaterialRepository lectureMaterialRepository;
+  @Autowired
+  private LectureMaterialDocuments lectureMaterialDocuments;
+  @Autowired
+  private MockMvc mockMvc;
+
+  @AfterEach
+  void afterTests(){
+    subjectRepository.deleteById("SEARCH_SUBJECT");
+    lectureRepository.deleteById("SEARCH_LECTURE");
+    lectureMaterialRepository.deleteById("SEARCH_MATERIAL");
+    lectureMaterialRepository.deleteTextsByIds(List.of("SEARCH_MATERIAL"));
+  }
+
+  /**
+   * Arranges the existence of a Subject, a Lecture and a long LectureMaterial sharing a rare word,
+   * past the excerpt of the document.
+   * Performs GET at "search" one page at a time.
+   * Asserts that every entry is found once, with its type and a snippet around the word.
+   * @throws Exception
+   */
+  @Test
+  void searchTest() throws Exception {
+    // given
+    subjectRepository.save(new Subject("SEARCH_SUBJECT", "Xylophonics"));
+    lectureRepository.save(new Lecture("SEARCH_LECTURE", "Introduction to xylophonics"));
+    LectureMaterial lectureMaterial = new LectureMaterial("SEARCH_MATERIAL",
+      "filler ".repeat(100) + "the xylophonics of the material " + "filler ".repeat(200));
+    lectureMaterialDocuments.store(lectureMaterial);
+    lectureMaterialRepository.save(lectureMaterial);
+    lectureMaterialRepository.saveText(lectureMaterial.getId(), lectureMaterialDocuments.text(lectureMaterial.getDocument()));
+
+    // when
+    MockHttpServletResponse first = mockMvc.perform(get("/search").param("q", "XYLOPHONICS").param("size", "2")
+        .accept(MediaType.APPLICATION_JSON))
+      .andReturn().getResponse();
+    String cursor = first.getHeader(Pagination.NEXT_CURSOR_HEADER);
+    MockHttpServletResponse second = mockMvc.perform(get("/search").param("q", "XYLOPHONICS").param("size", "2")
+        .param("cursor", cursor).accept(MediaType.APPLICATION_JSON))
+      .andReturn().getResponse();
+
+    // then
+    assertThat(first.getStatus()).isEqualTo(HttpStatus.OK.value());
+    assertThat(cursor).isNotNull();
+    assertThat(second.getHeader(Pagination.NEXT_CURSOR_HEADER)).isNull();
+    JSONArray hits = new JSONArray(first.getContentAsString());
+    JSONArray rest = new JSONArray(second.getContentAsString());
+    assertThat(hits.length()).isEqualTo(2);
+    assertThat(rest.length()).isEqualTo(1);
+    for (int i = 0; i < rest.length(); i++) {
+      hits.put(rest.get(i));
+    }
+
+    double previousScore = Double.MAX_VALUE;
+    for (int i = 0; i < hits.length(); i++) {
+      JSONObject hit = hits.getJSONObject(i);
+      String snippet = hit.getString("snippet");
+      assertThat(snippet.toLowerCase()).contains("xylophonics");
+      assertThat(hit.getDouble("score")).isLessThanOrEqualTo(previousScore);
+      previousScore = hit.getDouble("score");
+      switch (hit.getString("id")) {
+        case "SEARCH_SUBJECT":
+          assertThat(hit.getString("type")).isEqualTo("Subject");
+          assertThat(snippet).isEqualTo("Xylophonics");
+          break;
+        case "SEARCH_LECTURE":
+          assertThat(hit.getString("type")).isEqualTo("Lecture");
+          break;
+        default:
+          assertThat(hit.getString("id")).isEqualTo("SEARCH_MATERIAL");
+          assertThat(hit.getString("type")).isEqualTo("LectureMaterial");
+          assertThat(snippet).startsWith("...").endsWith("...").hasSizeLessThan(210);
+      }
+    }
+  }
+
+  /**
+   * Adds two LectureMaterial entries through the endpoint, one by one and in bulk, with a rare word past their excerpt,
+   * then updates the first one without the word, one by one, and deletes the second one in bulk.
+   * Asserts that each entry is found by the word after it has been added, and no longer found once it has been changed.
+   * @throws Exception
+   */
+  @Test
+  void searchLectureMaterialWritesTest() throws Exception {
+    // given
+    String document = "filler ".repeat(100) + "the zymurgics of the material";
+    String first = new JSONObject(mockMvc.perform(post("/lecture-materials")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(new JSONObject().put("document", document).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getContentAsString()).getString("id");
+    String second = new JSONArray(mockMvc.perform(post("/lecture-materials/bulk")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(new JSONArray().put(new JSONObject().put("document", document)).toString())
+        .with(user("ADMIN").roles("ADMIN")))
+      .andReturn().getResponse().getContentAsString()).getJSONObject(0).getString("id");
+    try {
+      // then
+      assertThat(searchIds("zymurgics")).containsExactlyInAnyOrder(first, second);
+
+      // when
+      mockMvc.perform(patch("/lecture-materials/" + first)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(new JSONObject().put("document", "filler ".repeat(100)).toString())
+        .with(user("ADMIN").roles("ADMIN")));
+      mockMvc.perform(delete("/lecture-materials/bulk")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(new JSONArray().put(second).toString())
+        .with(user("ADMIN").roles("ADMIN")));
+
+      // then
+      assertThat(searchIds("zymurgics")).isEmpty();
+    } finally {
+      mockMvc.perform(delete("/lecture-materials/" + first).with(user("ADMIN").roles("ADMIN")));
+    }
+  }
+
+  /**
+   * Performs GET at "search" with a blank query and with a malformed cursor.
+   * Asserts that the status is Bad Request.
+   * @throws Exception
+   */
+  @Test
+  void searchInvalidTest() throws Exception {
+    MockHttpServletResponse blank = mockMvc.perform(get("/search").param("q", " ")).andReturn().getResponse();
+    MockHttpServletResponse cursor = mockMvc.perform(get("/search").param("q", "x").param("cursor", "bm90LWEtbnVtYmVy"))
+      .andReturn().getResponse();
+
+    assertThat(blank.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+    assertThat(blank.getErrorMessage()).isEqualTo("GET: Invalid query.");
+    assertThat(cursor.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+    assertThat(cursor.getErrorMessage()).isEqualTo("GET: Invalid cursor.");
+  }
+
+  private List<String> searchIds(String query) throws Exception {
+    JSONArray hits = new JSONArray(mockMvc.perform(get("/search").param("q", query).accept(MediaType.APPLICATION_JSON))
+      .andReturn().getResponse().getContentAsString());
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < hits.length(); i++) {
+      assertThat(hits.getJSONObject(i).getString("type")).isEqualTo("LectureMaterial");
+      ids.add(hits.getJSONObject(i).getString("id"));
+    }
+    return ids;
+  }
+}
@@ -20,12 +20,18 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.model.LectureMaterial;
 import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.repository.LectureMaterialRepository;
+import org.scoalaonline.api.repository.LectureRepository;
 import org.scoalaonline.api.repository.SubjectRepository;
+import org.scoalaonline.api.service.EntityCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -43,6 +49,12 @@ public class SubjectIntegrationTest {
   @Autowired
   private SubjectRepository subjectRepository;
   @Autowired
+  private LectureRepository lectureRepository;
+  @Autowired
+  private LectureMaterialRepository lectureMaterialRepository;
+  @Autowired
+  private EntityCache<Subject> subjectCache;
+  @Autowired
   private MockMvc mockMvc;
 
   @AfterEach
@@ -55,6 +67,11 @@ public class SubjectIntegrationTest {
     subjectRepository.deleteById("VALID_ID3");
     subjectRepository.deleteById("INVALID_ID1");
     subjectRepository.deleteById("VALID_ID");
+    lectureRepository.deleteById("TREE_LECTURE1");
+    lectureRepository.deleteById("TREE_LECTURE2");
+    lectureMaterialRepository.deleteById("TREE_MATERIAL1");
+    // The entries are written and deleted through the repository, bypassing the cache.
+    subjectCache.invalidateAll();
   }
 
   private static Stream<Arguments> getAllCases() {
@@ -95,6 +112,16 @@ public class SubjectIntegrationTest {
     );
   }
 
+  private static Stream<Arguments> getTreeCases() {
+    return Stream.of(
+      Arguments.of("VALID_ID", 0, HttpStatus.OK.value(), null),
+      Arguments.of("VALID_ID", 1, HttpStatus.OK.value(), null),
+      Arguments.of("VALID_ID", 2, HttpStatus.OK.value(), null),
+      Arguments.of("VALID_ID", 3, HttpStatus.BAD_REQUEST.value(), "GET: Invalid depth."),
+      Arguments.of("INVALID_ID1", 2, HttpStatus.NOT_FOUND.value(), "GET: Subject Not Found")
+    );
+  }
+
   private static Stream<Arguments> addCases() {
     return Stream.of(
       Arguments.of("UNAUTHORIZED_VALUE", HttpStatus.FORBIDDEN.value(),"Forbidden","STUDENT"),
@@ -370,4 +397,84 @@ public class SubjectIntegrationTest {
     }
   }
 
+  /**
+   * Arranges the existence of a Subject with two lectures, one of them with a material,
+   * related through the POST endpoints.
+   * Performs GET at "subjects/{@param id}/tree?depth={@param depth}".
+   * Asserts that the status is {@param status} and that the tree goes down exactly to the depth.
+   * Otherwise asserts that the {@param errorMessage} is the expected one.
+   * @throws Exception
+   * @param id -> Id given by request;
+   * @param depth -> Depth given by request;
+   * @param status -> Expected status of GET function;
+   * @param errorMessage -> Expected error message;
+   */
+  @DisplayName(value = "Get 'Subject' tree test")
+  @ParameterizedTest
+  @MethodSource("getTreeCases")
+  void getSubjectTreeTest(String id, Integer depth, Integer status, String errorMessage) throws Exception {
+    // given
+    subjectRepository.save(new Subject("VALID_ID", "VALUE"));
+    lectureRepository.save(new Lecture("TREE_LECTURE1", "TITLE_1"));
+    lectureRepository.save(new Lecture("TREE_LECTURE2", "TITLE_2"));
+    lectureMaterialRepository.save(new LectureMaterial("TREE_MATERIAL1", "DOCUMENT_1"));
+    for (String link : List.of("/subjects/VALID_ID/lectures/TREE_LECTURE1", "/subjects/VALID_ID/lectures/TREE_LECTURE2",
+      "/lectures/TREE_LECTURE1/materials/TREE_MATERIAL1")) {
+      assertThat(mockMvc.perform(post(link).with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse().getStatus())
+        .isEqualTo(HttpStatus.OK.value());
+    }
+
+    // when
+    MockHttpServletResponse response = mockMvc.perform(
+        get("/subjects/" + id + "/tree").param("depth", depth.toString())
+          .accept(MediaType.APPLICATION_JSON))
+      .andReturn().getResponse();
+
+    // then
+    assertThat(response.getStatus()).isEqualTo(status);
+    assertThat(response.getErrorMessage()).isEqualTo(errorMessage);
+    if (errorMessage != null) {
+      return;
+    }
+    JSONObject tree = new JSONObject(response.getContentAsString());
+    assertThat(tree.get("value")).isEqualTo("VALUE");
+    assertThat(tree.has("lectures")).isEqualTo(depth >= 1);
+    if (depth >= 1) {
+      JSONArray lectures = tree.getJSONArray("lectures");
+      assertThat(lectures.length()).isEqualTo(2);
+      for (int i = 0; i < lectures.length(); i++) {
+        JSONObject lecture = lectures.getJSONObject(i);
+        assertThat(lecture.has("materials")).isEqualTo(depth >= 2);
+        if (depth >= 2) {
+          int materials = lecture.get("id").equals("TREE_LECTURE1") ? 1 : 0;
+          assertThat(lecture.getJSONArray("materials").length()).isEqualTo(materials);
+        }
+      }
+    }
+  }
+
+  /**
+   * Arranges the existence of a Subject without lectures.
+   * Performs POST and DELETE at "subjects/VALID_ID/lectures/{lectureId}" with a missing and an unrelated lecture.
+   * Asserts that the status is Not Found.
+   * @throws Exception
+   */
+  @Test
+  void linkLectureNotFoundTest() throws Exception {
+    // given
+    subjectRepository.save(new Subject("VALID_ID", "VALUE"));
+    lectureRepository.save(new Lecture("TREE_LECTURE1", "TITLE_1"));
+
+    // when
+    MockHttpServletResponse added = mockMvc.perform(post("/subjects/VALID_ID/lectures/TREE_LECTURE2")
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+    MockHttpServletResponse removed = mockMvc.perform(delete("/subjects/VALID_ID/lectures/TREE_LECTURE1")
+      .with(user("ADMIN").roles("ADMIN"))).andReturn().getResponse();
+
+    // then
+    assertThat(added.getStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+    assertThat(added.getErrorMessage()).isEqualTo("POST: Lecture Not Found");
+    assertThat(removed.getStatus()).isEqualTo(HttpStatus.NOT_FOUND.value());
+    assertThat(removed.getErrorMessage()).isEqualTo("DELETE: Lecture Not Found");
+  }
 }
@@ -0,0 +1,77 @@
+package org.scoalaonline.api.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Bookmark;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClientBookmarksTest {
+  private final ClientBookmarks underTest = new ClientBookmarks();
+
+  @AfterEach
+  void cleanup() {
+    RequestContextHolder.resetRequestAttributes();
+    SecurityContextHolder.clearContext();
+  }
+
+  /**
+   * Sends an authenticated request with two bookmarks and a blank value in the header.
+   * Asserts that both bookmarks are used and the blank value is ignored.
+   */
+  @Test
+  void getRequestBookmarksTest() {
+    // given
+    sendBookmarks("FB:first, ,FB:second");
+    SecurityContextHolder.getContext().setAuthentication(
+      new UsernamePasswordAuthenticationToken("student", null, AuthorityUtils.createAuthorityList("ROLE_STUDENT")));
+
+    // when
+    Set<Bookmark> bookmarks = underTest.getRequestBookmarks();
+
+    // then
+    assertThat(bookmarks).hasSize(1);
+    assertThat(bookmarks.iterator().next().values()).containsExactlyInAnyOrder("FB:first", "FB:second");
+  }
+
+  /**
+   * Sends bookmarks without being authenticated and as an anonymous client.
+   * Asserts that they are ignored.
+   */
+  @Test
+  void getRequestBookmarksUnauthenticatedTest() {
+    // given
+    sendBookmarks("FB:first");
+
+    // then
+    assertThat(underTest.getRequestBookmarks()).isEmpty();
+    SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken(
+      "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+    assertThat(underTest.getRequestBookmarks()).isEmpty();
+  }
+
+  /**
+   * Asks for the bookmarks outside of a request.
+   * Asserts that there are none.
+   */
+  @Test
+  void getRequestBookmarksOutsideRequestTest() {
+    assertThat(underTest.getRequestBookmarks()).isEmpty();
+  }
+
+  private static void sendBookmarks(String header) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader(ClientBookmarks.BOOKMARKS_HEADER, header);
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, new MockHttpServletResponse()));
+  }
+}
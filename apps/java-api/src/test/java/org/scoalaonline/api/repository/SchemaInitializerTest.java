@@ -0,0 +1,123 @@
+package org.scoalaonline.api.repository;
+
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.model.LectureMaterial;
+import org.scoalaonline.api.model.LectureMaterialText;
+import org.scoalaonline.api.model.Role;
+import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.model.User;
+import org.scoalaonline.api.repository.SchemaInitializer.FullTextIndex;
+import org.scoalaonline.api.repository.SchemaInitializer.PropertyIndex;
+import org.scoalaonline.api.repository.SchemaInitializer.UniqueConstraint;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaInitializerTest {
+
+  /**
+   * Builds a mapping context with all the @Node classes.
+   * Asserts that a constraint is required for every id property
+   * and for the properties marked with @Unique.
+   */
+  @Test
+  void getRequiredConstraintsTest() {
+    // given
+    Neo4jMappingContext mappingContext = new Neo4jMappingContext();
+    mappingContext.setInitialEntitySet(Set.of(Grade.class, Lecture.class, LectureMaterial.class, Role.class, Subject.class, User.class));
+    mappingContext.initialize();
+
+    // when
+    List<UniqueConstraint> constraints = new SchemaInitializer(mappingContext, null).getRequiredConstraints();
+
+    // then
+    assertThat(constraints).containsExactly(
+      new UniqueConstraint("Grade", "id"),
+      new UniqueConstraint("Lecture", "id"),
+      new UniqueConstraint("LectureMaterial", "id"),
+      new UniqueConstraint("Role", "id"),
+      new UniqueConstraint("Role", "name"),
+      new UniqueConstraint("Subject", "id"),
+      new UniqueConstraint("User", "id"),
+      new UniqueConstraint("User", "username"));
+  }
+
+  /**
+   * Builds a mapping context with all the @Node classes.
+   * Asserts that every class has its version in the version property.
+   */
+  @Test
+  void getVersionPropertiesTest() {
+    // given
+    Neo4jMappingContext mappingContext = new Neo4jMappingContext();
+    mappingContext.setInitialEntitySet(Set.of(Grade.class, Lecture.class, LectureMaterial.class, Role.class, Subject.class, User.class));
+    mappingContext.initialize();
+
+    // when
+    Map<String, String> properties = new SchemaInitializer(mappingContext, null).getVersionProperties();
+
+    // then
+    assertThat(properties).containsOnlyKeys("Grade", "Lecture", "LectureMaterial", "Role", "Subject", "User");
+    assertThat(properties.values()).containsOnly("version");
+  }
+
+  /**
+   * Builds a mapping context with all the @Node classes.
+   * Asserts that an index is required for every property marked with @Indexed.
+   */
+  @Test
+  void getRequiredIndexesTest() {
+    // given
+    Neo4jMappingContext mappingContext = new Neo4jMappingContext();
+    mappingContext.setInitialEntitySet(Set.of(Grade.class, Lecture.class, LectureMaterial.class, Role.class, Subject.class, User.class));
+    mappingContext.initialize();
+
+    // when
+    List<PropertyIndex> indexes = new SchemaInitializer(mappingContext, null).getRequiredIndexes();
+
+    // then
+    assertThat(indexes).containsExactly(
+      new PropertyIndex("Grade", "studentId"),
+      new PropertyIndex("Grade", "subjectId"),
+      new PropertyIndex("LectureMaterial", "documentHash"));
+    assertThat(indexes.get(0).toCypher())
+      .isEqualTo("CREATE INDEX grade_studentid_index IF NOT EXISTS FOR (n:`Grade`) ON (n.`studentId`)");
+  }
+
+  /**
+   * Builds the full-text index of the mapped classes.
+   * Asserts that it covers the @Searchable properties of Lecture, LectureMaterialText and Subject.
+   */
+  @Test
+  void getFullTextIndexTest() {
+    // given
+    Neo4jMappingContext mappingContext = new Neo4jMappingContext();
+    mappingContext.setInitialEntitySet(Set.of(Grade.class, Lecture.class, LectureMaterial.class, LectureMaterialText.class,
+      Role.class, Subject.class, User.class));
+    mappingContext.initialize();
+
+    // when
+    Optional<FullTextIndex> index = new SchemaInitializer(mappingContext, null).getFullTextIndex();
+
+    // then
+    assertThat(index).isPresent();
+    assertThat(index.get().toCypher()).isEqualTo("CREATE FULLTEXT INDEX searchable_text IF NOT EXISTS " +
+      "FOR (n:`Lecture`|`LectureMaterialText`|`Subject`) ON EACH [n.`text`, n.`title`, n.`value`]");
+  }
+
+  /**
+   * Asserts that the constraint is created only if it does not exist yet.
+   */
+  @Test
+  void toCypherTest() {
+    assertThat(new UniqueConstraint("User", "username").toCypher())
+      .isEqualTo("CREATE CONSTRAINT user_username_unique IF NOT EXISTS ON (n:`User`) ASSERT n.`username` IS UNIQUE");
+  }
+}
@@ -0,0 +1,76 @@
+package org.scoalaonline.api.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.exception.user.PasswordHashingRejectedException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedPasswordEncoderTest {
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private BoundedPasswordEncoder underTest;
+
+  @AfterEach
+  void tearDown() {
+    underTest.destroy();
+  }
+
+  /**
+   * Encodes a password on the pool and matches it afterwards.
+   * Asserts that the delegate's results are returned and the latency is recorded.
+   */
+  @Test
+  void encodeAndMatchesTest() {
+    underTest = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 1, 1, meterRegistry);
+
+    String encoded = underTest.encode("Password1!");
+
+    assertThat(underTest.matches("Password1!", encoded)).isTrue();
+    assertThat(underTest.matches("Password2!", encoded)).isFalse();
+    assertThat(meterRegistry.get("password.hashing").tag("operation", "matches").timer().count()).isEqualTo(2);
+  }
+
+  /**
+   * Occupies the only worker thread and the only queue slot.
+   * Asserts that a further request is rejected right away with the configured Retry-After.
+   */
+  @Test
+  void saturatedPoolRejectsTest() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    PasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+      @Override
+      public String encode(CharSequence rawPassword) {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.encode(rawPassword);
+      }
+    };
+    underTest = new BoundedPasswordEncoder(blockingEncoder, 1, 1, 7, meterRegistry);
+
+    CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> underTest.encode("first"));
+    CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> underTest.encode("second"));
+    while (meterRegistry.get("password.hashing.queue.depth").gauge().value() < 1) {
+      Thread.sleep(5);
+    }
+
+    assertThatThrownBy(() -> underTest.encode("third"))
+      .isInstanceOf(PasswordHashingRejectedException.class)
+      .satisfies(e -> assertThat(((PasswordHashingRejectedException) e).getRetryAfterSeconds()).isEqualTo(7));
+
+    release.countDown();
+    assertThat(running.get(5, TimeUnit.SECONDS)).isNotEmpty();
+    assertThat(queued.get(5, TimeUnit.SECONDS)).isNotEmpty();
+    assertThat(meterRegistry.get("password.hashing.rejected").counter().count()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,71 @@
+package org.scoalaonline.api.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.repository.RoleRepository;
+import org.scoalaonline.api.service.JWTService;
+import org.scoalaonline.api.service.LocalCacheInvalidationBus;
+import org.scoalaonline.api.service.RoleRegistry;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class VerifiedTokenCacheTest {
+  private JWTService jwtService;
+  private SimpleMeterRegistry meterRegistry;
+  private VerifiedTokenCache underTest;
+
+  @BeforeEach
+  void setup() {
+    jwtService = spy(new JWTService());
+    meterRegistry = new SimpleMeterRegistry();
+    underTest = new VerifiedTokenCache(jwtService, new RoleRegistry(mock(RoleRepository.class), new LocalCacheInvalidationBus()), meterRegistry, 100);
+  }
+
+  /**
+   * Resolves the same access token twice.
+   * Asserts that the token is verified only once and that
+   * both calls return the same Authentication.
+   */
+  @Test
+  void getAuthenticationVerifiesTokenOnceTest() {
+    // given
+    String token = jwtService.getAccessToken("user@mail.com", "userId", "http://localhost/users/login", List.of("ROLE_ADMIN"), 1L);
+
+    // when
+    UsernamePasswordAuthenticationToken first = underTest.getAuthentication(token);
+    UsernamePasswordAuthenticationToken second = underTest.getAuthentication(token);
+
+    // then
+    verify(jwtService, times(1)).decodeJWT(anyString());
+    assertThat(second).isSameAs(first);
+    assertThat(first.getName()).isEqualTo("user@mail.com");
+    assertThat(((TokenPrincipal) first.getPrincipal()).getId()).isEqualTo("userId");
+    assertThat(first.getAuthorities()).containsExactly(new SimpleGrantedAuthority("ROLE_ADMIN"));
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+  }
+
+  /**
+   * Resolves a token with an invalid signature.
+   * Asserts that the verification exception is propagated.
+   */
+  @Test
+  void getAuthenticationInvalidTokenTest() {
+    String token = jwtService.getAccessToken("user@mail.com", "userId", "http://localhost/users/login", List.of("ROLE_ADMIN"), 1L);
+
+    assertThatThrownBy(() -> underTest.getAuthentication(token + "tampered"))
+      .isInstanceOf(JWTVerificationException.class);
+  }
+}
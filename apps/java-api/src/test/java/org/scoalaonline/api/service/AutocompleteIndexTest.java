@@ -0,0 +1,113 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.scoalaonline.api.DTO.AutocompleteHit;
+import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.repository.LectureRepository;
+import org.scoalaonline.api.repository.SubjectRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AutocompleteIndexTest {
+
+  @InjectMocks
+  private AutocompleteIndex underTest;
+
+  @Mock
+  private LectureRepository lectureRepository;
+
+  @Mock
+  private SubjectRepository subjectRepository;
+
+  /**
+   * Indexes titles with several words, diacritics and mixed case.
+   * Asserts that a prefix of any word completes them, ignoring case and diacritics,
+   * every entry once and in the order of the text from the matching word on.
+   */
+  @Test
+  void completeTest() {
+    // given
+    underTest.put(AutocompleteIndex.LECTURE, "l1", "Introducere în Algebră");
+    underTest.put(AutocompleteIndex.LECTURE, "l2", "Algebra liniară");
+    underTest.put(AutocompleteIndex.SUBJECT, "s1", "Algebra");
+
+    // when & then
+    assertThat(underTest.complete("alg", 10)).containsExactly(
+      new AutocompleteHit("Lecture", "l1", "Introducere în Algebră"),
+      new AutocompleteHit("Subject", "s1", "Algebra"),
+      new AutocompleteHit("Lecture", "l2", "Algebra liniară"));
+    assertThat(underTest.complete("IN  ALG", 10)).containsExactly(
+      new AutocompleteHit("Lecture", "l1", "Introducere în Algebră"));
+    assertThat(underTest.complete("alg", 1)).hasSize(1);
+    assertThat(underTest.complete("geometrie", 10)).isEmpty();
+    assertThat(underTest.complete(" ", 10)).isEmpty();
+  }
+
+  /**
+   * Indexes a title, then replaces it and removes another one.
+   * Asserts that only the current titles are completed.
+   */
+  @Test
+  void putAndRemoveTest() {
+    // given
+    underTest.put(AutocompleteIndex.LECTURE, "l1", "Geometrie");
+    underTest.put(AutocompleteIndex.LECTURE, "l2", "Geografie");
+
+    // when
+    underTest.put(AutocompleteIndex.LECTURE, "l1", "Trigonometrie");
+    underTest.remove(AutocompleteIndex.LECTURE, "l2");
+
+    // then
+    assertThat(underTest.complete("ge", 10)).isEmpty();
+    assertThat(underTest.complete("trig", 10)).containsExactly(new AutocompleteHit("Lecture", "l1", "Trigonometrie"));
+  }
+
+  /**
+   * Arranges the DB to have lost one indexed Lecture entry and changed another.
+   * Receives the invalidation of every Lecture entry from another instance.
+   * Asserts that the index matches the DB again and the Subject entries are kept.
+   */
+  @Test
+  void onRemoteInvalidationTest() {
+    // given
+    underTest.put(AutocompleteIndex.LECTURE, "l1", "Fizica");
+    underTest.put(AutocompleteIndex.LECTURE, "l2", "Chimie");
+    underTest.put(AutocompleteIndex.SUBJECT, "s1", "Fizica");
+    when(lectureRepository.findAll()).thenReturn(List.of(new Lecture("l1", "Fizica cuantica")));
+
+    // when
+    underTest.onRemoteInvalidation(new RemoteInvalidationEvent("lectures", null));
+
+    // then
+    assertThat(underTest.complete("chim", 10)).isEmpty();
+    assertThat(underTest.complete("fiz", 10)).containsExactly(
+      new AutocompleteHit("Subject", "s1", "Fizica"),
+      new AutocompleteHit("Lecture", "l1", "Fizica cuantica"));
+  }
+
+  /**
+   * Receives the invalidation of one Subject entry that no longer exists.
+   * Asserts that it is removed from the index.
+   */
+  @Test
+  void onRemoteInvalidationRemovedTest() {
+    // given
+    underTest.put(AutocompleteIndex.SUBJECT, "s1", "Istorie");
+    when(subjectRepository.findAllById(List.of("s1"))).thenReturn(List.<Subject>of());
+
+    // when
+    underTest.onRemoteInvalidation(new RemoteInvalidationEvent("subjects", "s1"));
+
+    // then
+    assertThat(underTest.complete("ist", 10)).isEmpty();
+  }
+}
@@ -0,0 +1,101 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlobStoreTest {
+
+  @TempDir
+  Path root;
+
+  /**
+   * Stores the same content twice, from a text and from a stream.
+   * Asserts that it is named after its SHA-256 hash, stored once and its file has the content as it was written.
+   * @throws IOException
+   */
+  @Test
+  void putTest() throws IOException {
+    // given
+    BlobStore underTest = new BlobStore(root.toString());
+
+    // when
+    BlobStore.Blob first = underTest.put("abc");
+    BlobStore.Blob second = underTest.put(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)));
+
+    // then
+    assertThat(first.getHash()).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    assertThat(first.getSize()).isEqualTo(3);
+    assertThat(second.getPath()).isEqualTo(first.getPath());
+    assertThat(first.getPath()).isEqualTo(root.resolve("ba").resolve(first.getHash()));
+    assertThat(Files.readString(first.getPath())).isEqualTo("abc");
+    assertThat(underTest.find(first.getHash()).map(BlobStore.Blob::getSize)).contains(3L);
+    try (var temporary = Files.list(root.resolve("tmp"))) {
+      assertThat(temporary).isEmpty();
+    }
+  }
+
+  /**
+   * Looks up a hash that is not stored and one that is not a hash.
+   * Asserts that the first is missing and the second is rejected, so no path out of the store is read.
+   * @throws IOException
+   */
+  @Test
+  void findTest() throws IOException {
+    BlobStore underTest = new BlobStore(root.toString());
+
+    assertThat(underTest.find("0".repeat(64))).isEmpty();
+    assertThatThrownBy(() -> underTest.find("../../etc/passwd")).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Stores a referenced content, an unreferenced one and one which is stored again, all before the grace period,
+   * and leaves a temporary file as old.
+   * Asserts that the unreferenced blob and the temporary file are removed, while the content stored again is kept.
+   * @throws IOException
+   */
+  @Test
+  void removeUnreferencedTest() throws IOException {
+    // given
+    BlobStore underTest = new BlobStore(root.toString());
+    BlobStore.Blob referenced = underTest.put("referenced");
+    BlobStore.Blob unreferenced = underTest.put("unreferenced");
+    BlobStore.Blob storedAgain = underTest.put("stored again");
+    Path temporary = Files.createFile(root.resolve("tmp").resolve("blob-left.tmp"));
+    FileTime old = FileTime.from(Instant.now().minus(25, ChronoUnit.HOURS));
+    for (Path file : List.of(referenced.getPath(), unreferenced.getPath(), storedAgain.getPath(), temporary)) {
+      Files.setLastModifiedTime(file, old);
+    }
+    underTest.put("stored again");
+    List<String> lookedUp = new ArrayList<>();
+
+    // when
+    long removed = underTest.removeUnreferenced(Duration.ofHours(24), hashes -> {
+      lookedUp.addAll(hashes);
+      return Set.of(referenced.getHash());
+    });
+
+    // then
+    assertThat(removed).isEqualTo(1);
+    assertThat(lookedUp).containsExactlyInAnyOrder(referenced.getHash(), unreferenced.getHash());
+    assertThat(underTest.find(referenced.getHash())).isPresent();
+    assertThat(underTest.find(unreferenced.getHash())).isEmpty();
+    assertThat(underTest.find(storedAgain.getHash())).isPresent();
+    assertThat(temporary).doesNotExist();
+  }
+}
@@ -0,0 +1,129 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.BulkItemResult.Status;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
+import org.scoalaonline.api.exception.grade.GradeInvalidValueException;
+import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
+import org.springframework.data.neo4j.core.Neo4jClient;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkWriterTest {
+  private Neo4jClient neo4jClient;
+  private CollectionVersionRepository collectionVersionRepository;
+  private PlatformTransactionManager transactionManager;
+  private BulkWriter underTest;
+
+  @BeforeEach
+  void setup() {
+    Neo4jMappingContext mappingContext = new Neo4jMappingContext();
+    mappingContext.setInitialEntitySet(Set.of(Grade.class));
+    mappingContext.initialize();
+    neo4jClient = mock(Neo4jClient.class, RETURNS_DEEP_STUBS);
+    collectionVersionRepository = mock(CollectionVersionRepository.class);
+    transactionManager = mock(PlatformTransactionManager.class);
+    underTest = new BulkWriter(neo4jClient, mappingContext, collectionVersionRepository, transactionManager, 2, 5);
+  }
+
+  /**
+   * Creates five grades, one of them invalid, with a batch size of two.
+   * Asserts that the invalid grade is reported and skipped,
+   * that the valid ones get ids and are written in two batches, each in a transaction of the transaction manager
+   * which also increases the version of the collection.
+   */
+  @Test
+  void createTest() throws BulkTooLargeException {
+    // given
+    List<Grade> grades = List.of(new Grade(null, 1), new Grade(null, 20), new Grade(null, 2), new Grade(null, 3), new Grade(null, 4));
+
+    // when
+    List<BulkItemResult> results = underTest.create(Grade.class, grades, this::validate,
+      grade -> Map.of("value", grade.getValue()));
+
+    // then
+    verify(neo4jClient, times(2)).query("UNWIND $rows AS row CREATE (n:`Grade`) SET n = row");
+    verify(transactionManager, times(2)).getTransaction(any());
+    verify(transactionManager, times(2)).commit(any());
+    verify(collectionVersionRepository, times(2)).incrementVersion("Grade");
+    assertThat(results).extracting(BulkItemResult::getStatus)
+      .containsExactly(Status.CREATED, Status.INVALID, Status.CREATED, Status.CREATED, Status.CREATED);
+    assertThat(results.get(0).getId()).isNotNull();
+    assertThat(results.get(1).getError()).isEqualTo("Value field has to be an integer between 0 and 13.");
+  }
+
+  /**
+   * Updates two grades, only one of them existing.
+   * Asserts that the grade not matched by the statement is reported as not found.
+   */
+  @Test
+  void updateNotFoundTest() throws BulkTooLargeException {
+    // given
+    when(neo4jClient.query(anyString()).bind(any()).to("rows").fetchAs(String.class).all())
+      .thenReturn(List.of("id0"));
+
+    // when
+    List<BulkItemResult> results = underTest.update(Grade.class, List.of(new Grade("id0", 1), new Grade("id1", 2)),
+      Grade::getId, this::validate, grade -> Map.of("value", grade.getValue()));
+
+    // then
+    assertThat(results).extracting(BulkItemResult::getStatus).containsExactly(Status.UPDATED, Status.NOT_FOUND);
+    verify(collectionVersionRepository).incrementVersion("Grade");
+  }
+
+  /**
+   * Deletes two grades which do not exist.
+   * Asserts that they are reported as not found and the version of the collection is not increased.
+   */
+  @Test
+  void deleteNotFoundTest() throws BulkTooLargeException {
+    // given
+    when(neo4jClient.query(anyString()).bind(any()).to("ids").fetchAs(String.class).all())
+      .thenReturn(List.of());
+
+    // when
+    List<BulkItemResult> results = underTest.delete(Grade.class, List.of("id0", "id1"));
+
+    // then
+    assertThat(results).extracting(BulkItemResult::getStatus).containsExactly(Status.NOT_FOUND, Status.NOT_FOUND);
+    verify(collectionVersionRepository, never()).incrementVersion(anyString());
+  }
+
+  /**
+   * Deletes more ids than allowed.
+   * Asserts that the request is rejected before reaching the DB.
+   */
+  @Test
+  void deleteTooLargeTest() {
+    List<String> ids = Arrays.asList("id0", "id1", "id2", "id3", "id4", "id5");
+
+    assertThatThrownBy(() -> underTest.delete(Grade.class, ids))
+      .isInstanceOf(BulkTooLargeException.class);
+    verify(neo4jClient, never()).query(anyString());
+  }
+
+  private void validate(Grade grade) throws GradeInvalidValueException {
+    if (grade.getValue() < 0 || grade.getValue() > 13) {
+      throw new GradeInvalidValueException("Value field has to be an integer between 0 and 13.");
+    }
+  }
+}
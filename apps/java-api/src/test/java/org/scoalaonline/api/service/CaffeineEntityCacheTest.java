@@ -0,0 +1,85 @@
+package org.scoalaonline.api.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.model.Subject;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaffeineEntityCacheTest {
+  private SimpleMeterRegistry meterRegistry;
+  private CaffeineEntityCache<Subject> underTest;
+
+  @BeforeEach
+  void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    underTest = new CaffeineEntityCache<>("subjects", 100, Duration.ofMinutes(1), meterRegistry, new LocalCacheInvalidationBus());
+  }
+
+  /**
+   * Loads the list of all entries twice, invalidates one entry and loads the list again.
+   * Asserts that the list is loaded once before the invalidation and once after it,
+   * and that the hit ratio is published.
+   */
+  @Test
+  void getAllTest() {
+    // given
+    AtomicInteger loads = new AtomicInteger();
+
+    // when
+    underTest.getAll(1, () -> { loads.incrementAndGet(); return List.of(new Subject("id", "Math")); });
+    underTest.getAll(1, () -> { loads.incrementAndGet(); return List.of(); });
+    underTest.invalidate("id");
+    List<Subject> subjects = underTest.getAll(1, () -> { loads.incrementAndGet(); return List.of(); });
+
+    // then
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(subjects).isEmpty();
+    assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", "subjects.all").gauge().value())
+      .isEqualTo(1.0 / 3.0);
+  }
+
+  /**
+   * Loads the list of all entries at a version, then at an older and at a newer version.
+   * Asserts that the list is kept for older versions and loaded again for the newer one.
+   */
+  @Test
+  void getAllNewerVersionTest() {
+    // given
+    AtomicInteger loads = new AtomicInteger();
+
+    // when
+    underTest.getAll(2, () -> { loads.incrementAndGet(); return List.of(new Subject("id", "Math")); });
+    List<Subject> older = underTest.getAll(1, () -> { loads.incrementAndGet(); return List.of(); });
+    List<Subject> newer = underTest.getAll(3, () -> { loads.incrementAndGet(); return List.of(); });
+
+    // then
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(older).hasSize(1);
+    assertThat(newer).isEmpty();
+  }
+
+  /**
+   * Looks up a missing entry twice.
+   * Asserts that missing entries are not cached.
+   */
+  @Test
+  void getByIdMissingTest() {
+    // given
+    AtomicInteger loads = new AtomicInteger();
+
+    // when
+    underTest.getById("id", id -> { loads.incrementAndGet(); return Optional.empty(); });
+    Optional<Subject> subject = underTest.getById("id", id -> { loads.incrementAndGet(); return Optional.empty(); });
+
+    // then
+    assertThat(subject).isEmpty();
+    assertThat(loads.get()).isEqualTo(2);
+  }
+}
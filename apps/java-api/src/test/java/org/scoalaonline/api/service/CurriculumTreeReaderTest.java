@@ -0,0 +1,33 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CurriculumTreeReaderTest {
+
+  /**
+   * Builds the projection of a Subject for every depth.
+   * Asserts that only the levels down to the depth are projected, each nested in its parent.
+   */
+  @Test
+  void projectionTest() {
+    assertThat(CurriculumTreeReader.projection(0)).isEqualTo("s {.id, .value, .version}");
+    assertThat(CurriculumTreeReader.projection(1)).isEqualTo(
+      "s {.id, .value, .version, lectures: [(s)-[:HAS_LECTURE]->(l:Lecture) | l {.id, .title, .version}]}");
+    assertThat(CurriculumTreeReader.projection(2)).isEqualTo(
+      "s {.id, .value, .version, lectures: [(s)-[:HAS_LECTURE]->(l:Lecture) | l {.id, .title, .version, " +
+        "materials: [(l)-[:HAS_MATERIAL]->(m:LectureMaterial) | m {.id, .documentHash, .documentSize, .excerpt, .version}]}]}");
+  }
+
+  /**
+   * Builds the projection of a Subject for a depth out of range.
+   * Asserts that IllegalArgumentException is thrown.
+   */
+  @Test
+  void projectionInvalidDepthTest() {
+    assertThatThrownBy(() -> CurriculumTreeReader.projection(CurriculumTreeReader.MAX_DEPTH + 1))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -1,18 +1,30 @@
 package org.scoalaonline.api.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.DTO.GradeStatistics;
+import org.scoalaonline.api.exception.grade.GradeInvalidLinkException;
 import org.scoalaonline.api.exception.grade.GradeInvalidValueException;
 import org.scoalaonline.api.exception.grade.GradeNotFoundException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.GradeAggregate;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
+import org.scoalaonline.api.repository.GradeAggregateRepository;
 import org.scoalaonline.api.repository.GradeRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +44,18 @@ class GradeServiceTest {
   @Mock
   private GradeRepository gradeRepository;
 
+  @Mock
+  private CollectionVersionRepository collectionVersionRepository;
+
+  @Spy
+  private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+  @Mock
+  private GradeAggregateRepository gradeAggregateRepository;
+
+  @Spy
+  private EntityCache<Grade> gradeCache = new CaffeineEntityCache<>("grades", 100, Duration.ofMinutes(1), new SimpleMeterRegistry(), new LocalCacheInvalidationBus());
+
   /**
    * Executes the getAll() method from GradeService class.
    * Asserts that it correctly called the findAll() method
@@ -46,6 +70,27 @@ class GradeServiceTest {
     verify(gradeRepository).findAll();
   }
 
+  /**
+   * Arranges the existence of one more entry than the page size after the given id.
+   * Executes the getPage( @param, @param ) method from GradeService class.
+   * Asserts that it asked the repository for one extra entry,
+   * returned a full page and a cursor pointing at its last entry.
+   */
+  @Test
+  void getPageTest() {
+    // given
+    when(gradeRepository.findPageAfter("id", 3))
+      .thenReturn(List.of(new Grade("id0", 0), new Grade("id1", 1), new Grade("id2", 2)));
+
+    // when
+    CursorPage<Grade> page = underTestService.getPage("id", 2);
+
+    // then
+    assertThat(page.getItems().size()).isEqualTo(2);
+    assertThat(page.getNextCursor()).isEqualTo(CursorPage.encode("id1"));
+    assertThat(CursorPage.decode(page.getNextCursor())).isEqualTo("id1");
+  }
+
   /**
    * Arranges the existence of a custom Grade object in database.
    * Executes the getOneById( @param ) method from GradeService class.
@@ -64,6 +109,33 @@ class GradeServiceTest {
     Assertions.assertEquals(0, grade.getValue());
   }
 
+  /**
+   * Arranges the existence of a custom Grade object in database.
+   * Executes the getOneById( @param ) method from GradeService class twice, updates the entry
+   * and executes it once more.
+   * Asserts that the second lookup is served from the cache
+   * and that the update invalidates the cached entry.
+   * @throws Exception
+   */
+  @Test
+  void getOneByIdCachedTest() throws Exception {
+    // given
+    when(gradeRepository.findById("id"))
+      .thenReturn(Optional.of(new Grade("id", 5)));
+    when(gradeRepository.updateValueById("id", 7, null))
+      .thenReturn(Optional.of(new Grade("id", 7)));
+
+    // when
+    underTestService.getOneById("id");
+    underTestService.getOneById("id");
+    underTestService.update("id", new Grade("id", 7), null);
+    underTestService.getOneById("id");
+
+    // then
+    verify(gradeRepository, times(2)).findById("id");
+    verify(gradeCache).invalidate("id");
+  }
+
   /**
    * Arranges the absence of any Grade object in database.
    * Executes the getOneById( @param ) method from GradeService class.
@@ -77,7 +149,7 @@ class GradeServiceTest {
       .thenReturn(Optional.empty());
 
     //then
-    assertThatThrownBy(() -> underTestService.getOneById(anyString()))
+    assertThatThrownBy(() -> underTestService.getOneById("id"))
       .isInstanceOf(GradeNotFoundException.class)
       .hasMessageContaining("Method getOneById: Grade not found.");
   }
@@ -86,26 +158,92 @@ class GradeServiceTest {
    * Arranges the creation of a custom Grade object.
    * Executes the add( Grade @param) method
    * from GradeService class.
-   * Asserts that a Grade object has been added to the database
+   * Asserts that a Grade object has been added to the database, together with its aggregates,
    * and it has the same attribute values as the one created previously.
    * @throws GradeInvalidValueException
+   * @throws GradeInvalidLinkException
    */
   @Test
-  void addTest() throws GradeInvalidValueException {
+  void addTest() throws GradeInvalidValueException, GradeInvalidLinkException {
     // given
-    Grade grade = new Grade("string_id", 0);
+    Grade grade = new Grade("string_id", 0, "studentId", "subjectId");
 
     // when
-    underTestService.add(grade);
+    when(gradeRepository.createWithAggregates(anyString(), anyInt(), any(), any()))
+      .thenAnswer(invocation -> Optional.of(new Grade(invocation.getArgument(0), invocation.getArgument(1),
+        invocation.getArgument(2), invocation.getArgument(3))));
+    Grade saved = underTestService.add(grade);
 
     // then
-    ArgumentCaptor<Grade> gradeArgumentCaptor =
-      ArgumentCaptor.forClass(Grade.class);
+    verify(gradeRepository).createWithAggregates(saved.getId(), 0, "studentId", "subjectId");
+    verify(gradeRepository, never()).save(any());
+    assertThat(saved.getValue()).isEqualTo(grade.getValue());
+    assertThat(saved.getId()).isNotEqualTo(grade.getId());
+  }
+
+  /**
+   * Arranges the absence of the student the Grade is linked to.
+   * Executes the add( Grade @param ) method from GradeService class.
+   * Asserts that it throws GradeInvalidLinkException and that the cache is left untouched.
+   */
+  @Test
+  void addGradeInvalidLinkExceptionTest() {
+    // given
+    when(gradeRepository.createWithAggregates(anyString(), eq(5), eq("missing"), isNull()))
+      .thenReturn(Optional.empty());
+
+    // when & then
+    assertThatThrownBy(() -> underTestService.add(new Grade(null, 5, "missing", null)))
+      .isInstanceOf(GradeInvalidLinkException.class)
+      .hasMessageContaining("Method add: Student or Subject not found.");
+    verify(collectionVersionRepository, never()).incrementVersion(any());
+    verify(gradeCache, never()).invalidate(any());
+  }
+
+  /**
+   * Arranges an aggregate of a subject with grades 4, 4 and 9.
+   * Executes the getSubjectStatistics( @param ) method from GradeService class.
+   * Asserts that the count, mean, lowest and highest value and histogram are derived from the aggregate.
+   */
+  @Test
+  void getSubjectStatisticsTest() {
+    // given
+    List<Long> histogram = new ArrayList<>(Collections.nCopies(14, 0L));
+    histogram.set(4, 2L);
+    histogram.set(9, 1L);
+    when(gradeAggregateRepository.findById("subject:id"))
+      .thenReturn(Optional.of(new GradeAggregate("subject:id", 3, 17, histogram)));
 
-    verify(gradeRepository).save(gradeArgumentCaptor.capture());
+    // when
+    GradeStatistics statistics = underTestService.getSubjectStatistics("id");
 
-    Grade capturedGrade = gradeArgumentCaptor.getValue();
-    assertThat(capturedGrade.getValue()).isEqualTo(grade.getValue());
+    // then
+    assertThat(statistics.getCount()).isEqualTo(3);
+    assertThat(statistics.getMean()).isEqualTo(17 / 3.0);
+    assertThat(statistics.getMin()).isEqualTo(4);
+    assertThat(statistics.getMax()).isEqualTo(9);
+    assertThat(statistics.getHistogram().get(4)).isEqualTo(2L);
+    assertThat(statistics.getHistogram().size()).isEqualTo(14);
+  }
+
+  /**
+   * Arranges the absence of an aggregate for a student.
+   * Executes the getStudentStatistics( @param ) method from GradeService class.
+   * Asserts that the count is 0 and there is no mean, lowest or highest value.
+   */
+  @Test
+  void getStudentStatisticsWithoutGradesTest() {
+    // given
+    when(gradeAggregateRepository.findById("student:id")).thenReturn(Optional.empty());
+
+    // when
+    GradeStatistics statistics = underTestService.getStudentStatistics("id");
+
+    // then
+    assertThat(statistics.getCount()).isEqualTo(0);
+    assertThat(statistics.getMean()).isNull();
+    assertThat(statistics.getMin()).isNull();
+    assertThat(statistics.getMax()).isNull();
   }
 
   /**
@@ -135,45 +273,36 @@ class GradeServiceTest {
         .isInstanceOf(GradeInvalidValueException.class)
         .hasMessageContaining("Method add: Value field has to be an integer between 0 and 13.");
 
-      verify(gradeRepository, never()).save(any());
+      verify(gradeRepository, never()).createWithAggregates(any(), anyInt(), any(), any());
     }
   }
 
   /**
-   * Arranges the creation of two Grade objects:
-   * 1. The object already present in the database.
-   * 2. The object that will update the former.
-   * Arranges the existence of the first object in the database.
+   * Arranges the creation of a Grade object we will update with
+   * and the update of the entry with the given id in the database.
    * Executes the update( @param ,Grade @param ) method
    * from GradeService class.
-   * Asserts that a Grade object has been saved to the database
-   * and that it has the same attribute values as the one we want to update with.
+   * Asserts that the value has been set with a single statement
+   * and that the entry has not been read or saved as a whole.
    * @throws GradeNotFoundException
    * @throws GradeInvalidValueException
    */
   @Test
-  void updateTest() throws GradeNotFoundException, GradeInvalidValueException {
+  void updateTest() throws GradeNotFoundException, GradeInvalidValueException, VersionMismatchException {
     // given
-    Grade grade = new Grade("id",0);
-    Grade updatedGrade = new Grade(anyString(), 1);
+    Grade updatedGrade = new Grade("id", 1);
 
     // when
-    when(gradeRepository.findById(grade.getId()))
-      .thenReturn(Optional.of(grade));
+    when(gradeRepository.updateValueById("id", updatedGrade.getValue(), null))
+      .thenReturn(Optional.of(updatedGrade));
 
     // then
-    underTestService.update(grade.getId(), updatedGrade);
-
-    ArgumentCaptor<Grade> gradeArgumentCaptor =
-      ArgumentCaptor.forClass(Grade.class);
-
-    verify(gradeRepository).save(gradeArgumentCaptor.capture());
-
-    Grade capturedGrade = gradeArgumentCaptor.getValue();
-    assertThat(capturedGrade.getValue()).isEqualTo(grade.getValue());
-
-    verify(gradeRepository).findById(grade.getId());
+    Grade result = underTestService.update("id", updatedGrade, null);
 
+    assertThat(result.getValue()).isEqualTo(updatedGrade.getValue());
+    verify(gradeRepository).updateValueById("id", updatedGrade.getValue(), null);
+    verify(gradeRepository, never()).findById(any());
+    verify(gradeRepository, never()).save(any());
   }
 
   /**
@@ -187,33 +316,59 @@ class GradeServiceTest {
   @Test
   void updateGradeNotFoundExceptionTest() {
     // given
-    Grade grade = new Grade("ID",0);
+    Grade grade = new Grade("ID", 0);
 
     // when
     // Grade Not Found Exception
-    when(gradeRepository.findById(anyString()))
+    when(gradeRepository.updateValueById("ID", grade.getValue(), null))
       .thenReturn(Optional.empty());
 
     // then
-    assertThatThrownBy(() -> underTestService.update(anyString(), grade))
+    assertThatThrownBy(() -> underTestService.update("ID", grade, null))
       .isInstanceOf(GradeNotFoundException.class)
       .hasMessageContaining("Method update: Grade not found.");
 
     verify(gradeRepository, never()).save(any());
   }
+
+  /**
+   * Arranges the existence of a Grade entry that is no longer at the expected version.
+   * Executes the update( @param , Grade @param , @param ) method
+   * from GradeService class.
+   * Asserts that the VersionMismatchException exception
+   * is thrown and that the cache is left untouched.
+   */
+  @Test
+  void updateGradeVersionMismatchTest() {
+    // given
+    Grade grade = new Grade("ID", 5);
+    when(gradeRepository.updateValueById("ID", grade.getValue(), 1L))
+      .thenReturn(Optional.empty());
+    when(gradeRepository.existsById("ID"))
+      .thenReturn(true);
+
+    // then
+    assertThatThrownBy(() -> underTestService.update("ID", grade, 1L))
+      .isInstanceOf(VersionMismatchException.class)
+      .hasMessageContaining("Method update: Grade has been modified.");
+
+    verify(collectionVersionRepository, never()).incrementVersion(any());
+    verify(gradeCache, never()).invalidate(any());
+  }
+
   /**
    * Arranges the creation of a Grade object we will try to
    * update with and makes sure the object has invalid attribute values.
    * Executes the update( @param , Grade @param ) method
    * from GradeService class.
    * Asserts that the GradeInvalidValueException exception
-   * is thrown with the related messages.
+   * is thrown with the related messages and that nothing has been written.
    */
   @Test
   void updateGradeInvalidDataExceptionTest() {
     // when
-    when(gradeRepository.findById(anyString()))
-      .thenReturn(Optional.of(new Grade("id",0)));
+    when(gradeRepository.existsById("id"))
+      .thenReturn(true);
 
     List<Object> exceptionCases = new ArrayList<Object>();
     exceptionCases.add(-1);
@@ -223,35 +378,58 @@ class GradeServiceTest {
       Grade grade = new Grade("id", (Integer) exceptionCase);
 
       // when & then
-      assertThatThrownBy(() -> underTestService.update("id",grade))
+      assertThatThrownBy(() -> underTestService.update("id",grade, null))
         .isInstanceOf(GradeInvalidValueException.class)
         .hasMessageContaining("Method update: Value field has to be an integer between 0 and 13.");
 
+      verify(gradeRepository, never()).updateValueById(anyString(), anyInt(), any());
       verify(gradeRepository, never()).save(any());
     }
   }
 
   /**
-   * Arranges the creation of a Grade object and
-   * makes sure of its existence in the database.
-   * Executes the delete( @param ) method from GradeService class.
-   * Asserts that the deleteById( @param ) method from repository has been
-   * executed successfully.
-   * @throws GradeNotFoundException
+   * Arranges the creation of a Grade object with invalid attribute values
+   * and makes sure the database has no entries to update.
+   * Executes the update( @param , Grade @param ) method
+   * from GradeService class.
+   * Asserts that the GradeNotFoundException exception takes precedence
+   * over the invalid attribute values.
    */
   @Test
-  void delete() throws GradeNotFoundException {
+  void updateGradeInvalidDataNotFoundExceptionTest() {
     // given
-    Grade grade = new Grade("id",0);
+    Grade grade = new Grade("ID", -1);
 
     // when
-    when(gradeRepository.findById(grade.getId()))
-      .thenReturn(Optional.of(grade));
+    when(gradeRepository.existsById("ID"))
+      .thenReturn(false);
 
     // then
-    underTestService.delete(grade.getId());
+    assertThatThrownBy(() -> underTestService.update("ID", grade, null))
+      .isInstanceOf(GradeNotFoundException.class)
+      .hasMessageContaining("Method update: Grade not found.");
 
-    verify(gradeRepository).deleteById(grade.getId());
+    verify(gradeRepository, never()).updateValueById(anyString(), anyInt(), any());
+  }
+
+  /**
+   * Arranges the existence of a Grade entry with the given id in the database.
+   * Executes the delete( @param ) method from GradeService class.
+   * Asserts that the entry has been deleted with a single statement
+   * and that it has not been read first.
+   * @throws GradeNotFoundException
+   */
+  @Test
+  void delete() throws GradeNotFoundException, VersionMismatchException {
+    // when
+    when(gradeRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(1L);
+
+    // then
+    underTestService.delete("id", null);
+
+    verify(gradeRepository).deleteByIdReturningCount("id", null);
+    verify(gradeRepository, never()).findById(any());
   }
 
   /**
@@ -264,14 +442,12 @@ class GradeServiceTest {
   void deleteException() {
 
     // when
-    when(gradeRepository.findById(anyString()))
-      .thenReturn(Optional.empty());
+    when(gradeRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(0L);
 
     // then
-    assertThatThrownBy(() -> underTestService.delete(anyString()))
+    assertThatThrownBy(() -> underTestService.delete("id", null))
       .isInstanceOf(GradeNotFoundException.class)
       .hasMessageContaining("Method delete: Grade not found.");
-
-    verify(gradeRepository, never()).delete(any());
   }
 }
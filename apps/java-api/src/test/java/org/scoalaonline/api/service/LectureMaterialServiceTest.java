@@ -1,17 +1,31 @@
 package org.scoalaonline.api.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.DTO.LectureMaterialSummary;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialInvalidDocumentException;
 import org.scoalaonline.api.exception.lectureMaterial.LectureMaterialNotFoundException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.LectureMaterial;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
 import org.scoalaonline.api.repository.LectureMaterialRepository;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -20,6 +34,9 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.never;
 
@@ -32,6 +49,21 @@ class LectureMaterialServiceTest {
   @Mock
   private LectureMaterialRepository lectureMaterialRepository;
 
+  @Mock
+  private CollectionVersionRepository collectionVersionRepository;
+
+  @Spy
+  private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+  @Mock
+  private UploadStore uploadStore;
+
+  @Spy
+  private LectureMaterialDocuments lectureMaterialDocuments = new LectureMaterialDocuments(newBlobStore(), null, 10, 20, 24);
+
+  @Spy
+  private EntityCache<LectureMaterial> lectureMaterialCache = new CaffeineEntityCache<>("lectureMaterials", 100, Duration.ofMinutes(1), new SimpleMeterRegistry(), new LocalCacheInvalidationBus());
+
   /**
    * Executes the getAll() method from LectureMaterialService class.
    * Asserts that it correctly called the findAll() method
@@ -46,10 +78,59 @@ class LectureMaterialServiceTest {
     verify(lectureMaterialRepository).findAll();
   }
 
+  /**
+   * Arranges the existence of an entry with a stored document in the database.
+   * Executes the getSummaries( @param ) and getSummaryPage( @param, @param ) methods from LectureMaterialService class.
+   * Asserts that the summaries have the hash, size and excerpt of the document
+   * and that the document was not read from the BlobStore.
+   */
+  @Test
+  void getSummariesTest() {
+    // given
+    LectureMaterial lectureMaterial = new LectureMaterial("id0", "Some_Document.pdf");
+    lectureMaterialDocuments.store(lectureMaterial);
+    lectureMaterial.setDocument(null);
+    lectureMaterial.setVersion(4L);
+    when(lectureMaterialRepository.findAll()).thenReturn(List.of(lectureMaterial));
+    when(lectureMaterialRepository.findFirstPage(2)).thenReturn(List.of(lectureMaterial));
+
+    // when
+    List<LectureMaterialSummary> summaries = underTestService.getSummaries(0L);
+    CursorPage<LectureMaterialSummary> page = underTestService.getSummaryPage(null, 1);
+
+    // then
+    LectureMaterialSummary expected = new LectureMaterialSummary("id0", lectureMaterial.getDocumentHash(), 17L, "Some_Docum", 4L);
+    assertThat(summaries).isEqualTo(List.of(expected));
+    assertThat(page.getItems()).isEqualTo(List.of(expected));
+    assertThat(page.getNextCursor()).isNull();
+    verify(lectureMaterialDocuments, never()).find(any());
+  }
+
+  /**
+   * Arranges the existence of one more entry than the page size after the given id.
+   * Executes the getPage( @param, @param ) method from LectureMaterialService class.
+   * Asserts that it asked the repository for one extra entry,
+   * returned a full page and a cursor pointing at its last entry.
+   */
+  @Test
+  void getPageTest() {
+    // given
+    when(lectureMaterialRepository.findPageAfter("id", 3))
+      .thenReturn(List.of(new LectureMaterial("id0", "Document0.pdf"), new LectureMaterial("id1", "Document1.pdf"), new LectureMaterial("id2", "Document2.pdf")));
+
+    // when
+    CursorPage<LectureMaterial> page = underTestService.getPage("id", 2);
+
+    // then
+    assertThat(page.getItems().size()).isEqualTo(2);
+    assertThat(page.getNextCursor()).isEqualTo(CursorPage.encode("id1"));
+    assertThat(CursorPage.decode(page.getNextCursor())).isEqualTo("id1");
+  }
+
   /**
    * Arranges the existence of a custom LectureMaterial object in database.
    * Executes the getOneById( @param ) method from LectureMaterialService class.
-   * Asserts that it finds the same object arranged in the former step.
+   * Asserts that it finds the same object arranged in the former step, without reading its document.
    * @throws LectureMaterialNotFoundException
    */
   @Test
@@ -61,7 +142,8 @@ class LectureMaterialServiceTest {
     // then
     LectureMaterial lectureMaterial = underTestService.getOneById("id");
 
-    Assertions.assertEquals("Document.pdf", lectureMaterial.getDocument());
+    Assertions.assertEquals("id", lectureMaterial.getId());
+    verify(lectureMaterialDocuments, never()).find(any());
   }
 
   /**
@@ -77,7 +159,7 @@ class LectureMaterialServiceTest {
       .thenReturn(Optional.empty());
 
     //then
-    assertThatThrownBy(() -> underTestService.getOneById(anyString()))
+    assertThatThrownBy(() -> underTestService.getOneById("id"))
       .isInstanceOf(LectureMaterialNotFoundException.class)
       .hasMessageContaining("Method getOneById: Lecture Material not found");
   }
@@ -87,7 +169,7 @@ class LectureMaterialServiceTest {
    * Executes the add( LectureMaterial @param) method
    * from LectureMaterialService class.
    * Asserts that a LectureMaterial object has been added to the database
-   * and it has the same attribute values as the one created previously.
+   * and it has the same attribute values as the one created previously, with the searched text of its document.
    * @throws LectureMaterialInvalidDocumentException
    */
   @Test
@@ -96,6 +178,7 @@ class LectureMaterialServiceTest {
     LectureMaterial lectureMaterial = new LectureMaterial("string_id", "Some_Document.pdf");
 
     // when
+    when(lectureMaterialRepository.save(any(LectureMaterial.class))).thenAnswer(invocation -> invocation.getArgument(0));
     underTestService.add(lectureMaterial);
 
     // then
@@ -106,6 +189,65 @@ class LectureMaterialServiceTest {
 
     LectureMaterial capturedLectureMaterial = lectureMaterialArgumentCaptor.getValue();
     assertThat(capturedLectureMaterial.getDocument()).isEqualTo(lectureMaterial.getDocument());
+    assertThat(capturedLectureMaterial.getDocumentSize()).isEqualTo(17L);
+    assertThat(capturedLectureMaterial.getExcerpt()).isEqualTo("Some_Docum");
+    assertThat(lectureMaterialDocuments.find(capturedLectureMaterial.getDocumentHash()).getSize()).isEqualTo(17L);
+    verify(lectureMaterialRepository).saveText(capturedLectureMaterial.getId(), "Some_Document.pdf");
+  }
+
+  /**
+   * Arranges a completed upload of a document.
+   * Executes the addUpload( String @param, String @param ) method from LectureMaterialService class.
+   * Asserts that the upload was completed with the hash sent by the client, once the document was read,
+   * and the entry saved with the hash, size and excerpt of the document, but not the document itself,
+   * and with the searched text of the document.
+   * @throws Exception
+   */
+  @Test
+  void addUploadTest() throws Exception {
+    // given
+    BlobStore.Blob document = newBlobStore().put("Some_Uploaded_Document.pdf");
+    given(uploadStore.complete(eq("upload_id"), eq(document.getHash()), any())).willAnswer(checked(document));
+    when(lectureMaterialRepository.save(any(LectureMaterial.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // when
+    LectureMaterial saved = underTestService.addUpload("upload_id", document.getHash());
+
+    // then
+    verify(lectureMaterialRepository).save(saved);
+    verify(collectionVersionRepository).incrementVersion("LectureMaterial");
+    assertThat(saved.getDocument()).isNull();
+    assertThat(saved.getDocumentHash()).isEqualTo(document.getHash());
+    assertThat(saved.getDocumentSize()).isEqualTo(26L);
+    assertThat(saved.getExcerpt()).isEqualTo("Some_Uploa");
+    verify(lectureMaterialRepository).saveText(saved.getId(), "Some_Uploaded_Docume");
+  }
+
+  /**
+   * Arranges completed uploads of an empty document and of a document which is not UTF-8 text.
+   * Executes the addUpload( String @param, String @param ) method from LectureMaterialService class.
+   * Asserts that the check of the uploads throws LectureMaterialInvalidDocumentException, so they are not stored,
+   * and nothing was saved in the database.
+   * @throws Exception
+   */
+  @Test
+  void addUploadInvalidDocumentExceptionTest() throws Exception {
+    // given
+    BlobStore blobStore = newBlobStore();
+    BlobStore.Blob empty = blobStore.put("");
+    BlobStore.Blob binary = blobStore.put(new ByteArrayInputStream(new byte[] {'a', (byte) 0xff, 'b'}));
+    given(uploadStore.complete(eq("empty"), isNull(), any())).willAnswer(checked(empty));
+    given(uploadStore.complete(eq("binary"), isNull(), any())).willAnswer(checked(binary));
+
+    // then
+    assertThatThrownBy(() -> underTestService.addUpload("empty", null))
+      .isInstanceOf(LectureMaterialInvalidDocumentException.class)
+      .hasMessageContaining("Document field can't be null");
+    assertThatThrownBy(() -> underTestService.addUpload("binary", null))
+      .isInstanceOf(LectureMaterialInvalidDocumentException.class)
+      .hasMessageContaining("not UTF-8 text");
+    verify(lectureMaterialRepository, never()).save(any());
+    verify(lectureMaterialRepository, never()).saveText(any(), any());
   }
 
   /**
@@ -140,40 +282,31 @@ class LectureMaterialServiceTest {
   }
 
   /**
-   * Arranges the creation of two LectureMaterial objects:
-   * 1. The object already present in the database.
-   * 2. The object that will update the former.
-   * Arranges the existence of the first object in the database.
+   * Arranges the creation of a LectureMaterial object we will update with
+   * and the update of the entry with the given id in the database.
    * Executes the update( @param ,LectureMaterial @param ) method
    * from LectureMaterialService class.
-   * Asserts that a LectureMaterial object has been saved to the database
-   * and that it has the same attribute values as the one we want to update with.
+   * Asserts that the document has been stored and its hash, size and excerpt
+   * set with a single statement, and that the entry has not been read or saved as a whole.
    * @throws LectureMaterialNotFoundException
    * @throws LectureMaterialInvalidDocumentException
    */
   @Test
-  void updateTest() throws LectureMaterialNotFoundException, LectureMaterialInvalidDocumentException {
+  void updateTest() throws LectureMaterialNotFoundException, LectureMaterialInvalidDocumentException, VersionMismatchException {
     // given
-    LectureMaterial lectureMaterial = new LectureMaterial("id","Document.pdf");
-    LectureMaterial updatedLectureMaterial = new LectureMaterial(anyString(), "Document.docs");
+    LectureMaterial updatedLectureMaterial = new LectureMaterial("id", "Document.docx");
 
     // when
-    when(lectureMaterialRepository.findById(lectureMaterial.getId()))
-      .thenReturn(Optional.of(lectureMaterial));
+    when(lectureMaterialRepository.updateDocumentById(eq("id"), anyString(), eq(13L), eq("Document.d"), eq("Document.docx"), isNull()))
+      .thenReturn(Optional.of(new LectureMaterial("id")));
 
     // then
-    underTestService.update(lectureMaterial.getId(), updatedLectureMaterial);
-
-    ArgumentCaptor<LectureMaterial> lectureMaterialArgumentCaptor =
-      ArgumentCaptor.forClass(LectureMaterial.class);
-
-    verify(lectureMaterialRepository).save(lectureMaterialArgumentCaptor.capture());
-
-    LectureMaterial capturedLectureMaterial = lectureMaterialArgumentCaptor.getValue();
-    assertThat(capturedLectureMaterial.getDocument()).isEqualTo(lectureMaterial.getDocument());
-
-    verify(lectureMaterialRepository).findById(lectureMaterial.getId());
+    LectureMaterial result = underTestService.update("id", updatedLectureMaterial, null);
 
+    assertThat(result.getDocument()).isEqualTo(updatedLectureMaterial.getDocument());
+    verify(lectureMaterialRepository).updateDocumentById(eq("id"), anyString(), eq(13L), eq("Document.d"), eq("Document.docx"), isNull());
+    verify(lectureMaterialRepository, never()).findById(any());
+    verify(lectureMaterialRepository, never()).save(any());
   }
 
   /**
@@ -187,33 +320,34 @@ class LectureMaterialServiceTest {
   @Test
   void updateLectureMaterialNotFoundExceptionTest() {
     // given
-    LectureMaterial lectureMaterial = new LectureMaterial("ID","Document.pdf");
+    LectureMaterial lectureMaterial = new LectureMaterial("ID", "Document.pdf");
 
     // when
-    // Lecture Material Not Found Exception
-    when(lectureMaterialRepository.findById(anyString()))
+    // LectureMaterial Not Found Exception
+    when(lectureMaterialRepository.updateDocumentById(eq("ID"), anyString(), eq(12L), eq("Document.p"), eq("Document.pdf"), isNull()))
       .thenReturn(Optional.empty());
 
     // then
-    assertThatThrownBy(() -> underTestService.update(anyString(), lectureMaterial))
+    assertThatThrownBy(() -> underTestService.update("ID", lectureMaterial, null))
       .isInstanceOf(LectureMaterialNotFoundException.class)
       .hasMessageContaining("Method update: Lecture Material not found");
 
     verify(lectureMaterialRepository, never()).save(any());
   }
+
   /**
    * Arranges the creation of a LectureMaterial object we will try to
    * update with and makes sure the object has invalid attribute values.
    * Executes the update( @param , LectureMaterial @param ) method
    * from LectureMaterialService class.
    * Asserts that the LectureMaterialInvalidDocumentException exception
-   * is thrown with the related messages.
+   * is thrown with the related messages and that nothing has been written.
    */
   @Test
   void updateLectureMaterialInvalidDataExceptionTest() {
     // when
-    when(lectureMaterialRepository.findById(anyString()))
-      .thenReturn(Optional.of(new LectureMaterial("id","Document.pdf")));
+    when(lectureMaterialRepository.existsById("id"))
+      .thenReturn(true);
 
     List<Object> exceptionCases = new ArrayList<Object>();
     exceptionCases.add("");
@@ -223,35 +357,58 @@ class LectureMaterialServiceTest {
       LectureMaterial lectureMaterial = new LectureMaterial("id", (String) exceptionCase);
 
       // when & then
-      assertThatThrownBy(() -> underTestService.update("id",lectureMaterial))
+      assertThatThrownBy(() -> underTestService.update("id",lectureMaterial, null))
         .isInstanceOf(LectureMaterialInvalidDocumentException.class)
         .hasMessageContaining("Method update: Document Field Can't Be Null");
 
+      verify(lectureMaterialRepository, never()).updateDocumentById(anyString(), anyString(), any(), any(), any(), any());
       verify(lectureMaterialRepository, never()).save(any());
     }
   }
 
   /**
-   * Arranges the creation of a LectureMaterial object and
-   * makes sure of its existence in the database.
-   * Executes the delete( @param ) method from LectureMaterialService class.
-   * Asserts that the deleteById( @param ) method from repository has been
-   * executed successfully.
-   * @throws LectureMaterialNotFoundException
+   * Arranges the creation of a LectureMaterial object with invalid attribute values
+   * and makes sure the database has no entries to update.
+   * Executes the update( @param , LectureMaterial @param ) method
+   * from LectureMaterialService class.
+   * Asserts that the LectureMaterialNotFoundException exception takes precedence
+   * over the invalid attribute values.
    */
   @Test
-  void delete() throws LectureMaterialNotFoundException {
+  void updateLectureMaterialInvalidDataNotFoundExceptionTest() {
     // given
-    LectureMaterial lectureMaterial = new LectureMaterial("id","Document.pdf");
+    LectureMaterial lectureMaterial = new LectureMaterial("ID", "");
 
     // when
-    when(lectureMaterialRepository.findById(lectureMaterial.getId()))
-      .thenReturn(Optional.of(lectureMaterial));
+    when(lectureMaterialRepository.existsById("ID"))
+      .thenReturn(false);
 
     // then
-    underTestService.delete(lectureMaterial.getId());
+    assertThatThrownBy(() -> underTestService.update("ID", lectureMaterial, null))
+      .isInstanceOf(LectureMaterialNotFoundException.class)
+      .hasMessageContaining("Method update: Lecture Material not found");
 
-    verify(lectureMaterialRepository).deleteById(lectureMaterial.getId());
+    verify(lectureMaterialRepository, never()).updateDocumentById(anyString(), anyString(), any(), any(), any(), any());
+  }
+
+  /**
+   * Arranges the existence of a LectureMaterial entry with the given id in the database.
+   * Executes the delete( @param ) method from LectureMaterialService class.
+   * Asserts that the entry has been deleted with a single statement
+   * and that it has not been read first.
+   * @throws LectureMaterialNotFoundException
+   */
+  @Test
+  void delete() throws LectureMaterialNotFoundException, VersionMismatchException {
+    // when
+    when(lectureMaterialRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(1L);
+
+    // then
+    underTestService.delete("id", null);
+
+    verify(lectureMaterialRepository).deleteByIdReturningCount("id", null);
+    verify(lectureMaterialRepository, never()).findById(any());
   }
 
   /**
@@ -264,14 +421,30 @@ class LectureMaterialServiceTest {
   void deleteException() {
 
     // when
-    when(lectureMaterialRepository.findById(anyString()))
-      .thenReturn(Optional.empty());
+    when(lectureMaterialRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(0L);
 
     // then
-    assertThatThrownBy(() -> underTestService.delete(anyString()))
+    assertThatThrownBy(() -> underTestService.delete("id", null))
       .isInstanceOf(LectureMaterialNotFoundException.class)
       .hasMessageContaining("Method delete: Lecture Material Not Found");
+  }
 
-    verify(lectureMaterialRepository, never()).delete(any());
+  private static BlobStore newBlobStore() {
+    try {
+      return new BlobStore(Files.createTempDirectory("blobs").toString());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Completes an upload with the given blob, once the check passed to the upload store has read it.
+   */
+  private static Answer<BlobStore.Blob> checked(BlobStore.Blob blob) {
+    return invocation -> {
+      invocation.<UploadStore.Check<?>>getArgument(2).check(blob.getPath());
+      return blob;
+    };
   }
 }
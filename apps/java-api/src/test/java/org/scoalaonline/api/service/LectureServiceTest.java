@@ -1,17 +1,25 @@
 package org.scoalaonline.api.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.scoalaonline.api.DTO.CursorPage;
 import org.scoalaonline.api.exception.lecture.LectureInvalidTitleException;
 import org.scoalaonline.api.exception.lecture.LectureNotFoundException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
 import org.scoalaonline.api.repository.LectureRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -32,6 +40,18 @@ class LectureServiceTest {
   @Mock
   private LectureRepository lectureRepository;
 
+  @Mock
+  private CollectionVersionRepository collectionVersionRepository;
+
+  @Spy
+  private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+  @Mock
+  private AutocompleteIndex autocompleteIndex;
+
+  @Spy
+  private EntityCache<Lecture> lectureCache = new CaffeineEntityCache<>("lectures", 100, Duration.ofMinutes(1), new SimpleMeterRegistry(), new LocalCacheInvalidationBus());
+
   /**
    * Executes the getAll() method from LectureService class.
    * Asserts that it correctly called the findAll() method
@@ -46,6 +66,27 @@ class LectureServiceTest {
     verify(lectureRepository).findAll();
   }
 
+  /**
+   * Arranges the existence of one more entry than the page size after the given id.
+   * Executes the getPage( @param, @param ) method from LectureService class.
+   * Asserts that it asked the repository for one extra entry,
+   * returned a full page and a cursor pointing at its last entry.
+   */
+  @Test
+  void getPageTest() {
+    // given
+    when(lectureRepository.findPageAfter("id", 3))
+      .thenReturn(List.of(new Lecture("id0", "Title0"), new Lecture("id1", "Title1"), new Lecture("id2", "Title2")));
+
+    // when
+    CursorPage<Lecture> page = underTestService.getPage("id", 2);
+
+    // then
+    assertThat(page.getItems().size()).isEqualTo(2);
+    assertThat(page.getNextCursor()).isEqualTo(CursorPage.encode("id1"));
+    assertThat(CursorPage.decode(page.getNextCursor())).isEqualTo("id1");
+  }
+
   /**
    * Arranges the existence of a custom Lecture object in database.
    * Executes the getOneById( @param ) method from LectureService class.
@@ -77,7 +118,7 @@ class LectureServiceTest {
       .thenReturn(Optional.empty());
 
     //then
-    assertThatThrownBy(() -> underTestService.getOneById(anyString()))
+    assertThatThrownBy(() -> underTestService.getOneById("id"))
       .isInstanceOf(LectureNotFoundException.class)
       .hasMessageContaining("Method getOneById: Lecture not found.");
   }
@@ -96,6 +137,7 @@ class LectureServiceTest {
     Lecture lecture = new Lecture("string_id", "Some_Title");
 
     // when
+    when(lectureRepository.save(any(Lecture.class))).thenAnswer(invocation -> invocation.getArgument(0));
     underTestService.add(lecture);
 
     // then
@@ -106,6 +148,7 @@ class LectureServiceTest {
 
     Lecture capturedLecture = lectureArgumentCaptor.getValue();
     assertThat(capturedLecture.getTitle()).isEqualTo(lecture.getTitle());
+    verify(autocompleteIndex).put(AutocompleteIndex.LECTURE, capturedLecture.getId(), "Some_Title");
   }
 
   /**
@@ -140,40 +183,31 @@ class LectureServiceTest {
   }
 
   /**
-   * Arranges the creation of two Lecture objects:
-   * 1. The object already present in the database.
-   * 2. The object that will update the former.
-   * Arranges the existence of the first object in the database.
+   * Arranges the creation of a Lecture object we will update with
+   * and the update of the entry with the given id in the database.
    * Executes the update( @param ,Lecture @param ) method
    * from LectureService class.
-   * Asserts that a Lecture object has been saved to the database
-   * and that it has the same attribute values as the one we want to update with.
+   * Asserts that the title has been set with a single statement
+   * and that the entry has not been read or saved as a whole.
    * @throws LectureNotFoundException
    * @throws LectureInvalidTitleException
    */
   @Test
-  void updateTest() throws LectureNotFoundException, LectureInvalidTitleException {
+  void updateTest() throws LectureNotFoundException, LectureInvalidTitleException, VersionMismatchException {
     // given
-    Lecture lecture = new Lecture("id","Title");
-    Lecture updatedLecture = new Lecture(anyString(), "Title.docs");
+    Lecture updatedLecture = new Lecture("id", "New Title");
 
     // when
-    when(lectureRepository.findById(lecture.getId()))
-      .thenReturn(Optional.of(lecture));
+    when(lectureRepository.updateTitleById("id", updatedLecture.getTitle(), null))
+      .thenReturn(Optional.of(updatedLecture));
 
     // then
-    underTestService.update(lecture.getId(), updatedLecture);
-
-    ArgumentCaptor<Lecture> lectureArgumentCaptor =
-      ArgumentCaptor.forClass(Lecture.class);
-
-    verify(lectureRepository).save(lectureArgumentCaptor.capture());
-
-    Lecture capturedLecture = lectureArgumentCaptor.getValue();
-    assertThat(capturedLecture.getTitle()).isEqualTo(lecture.getTitle());
-
-    verify(lectureRepository).findById(lecture.getId());
+    Lecture result = underTestService.update("id", updatedLecture, null);
 
+    assertThat(result.getTitle()).isEqualTo(updatedLecture.getTitle());
+    verify(lectureRepository).updateTitleById("id", updatedLecture.getTitle(), null);
+    verify(lectureRepository, never()).findById(any());
+    verify(lectureRepository, never()).save(any());
   }
 
   /**
@@ -187,33 +221,34 @@ class LectureServiceTest {
   @Test
   void updateLectureNotFoundExceptionTest() {
     // given
-    Lecture lecture = new Lecture("ID","Title");
+    Lecture lecture = new Lecture("ID", "Title");
 
     // when
     // Lecture Not Found Exception
-    when(lectureRepository.findById(anyString()))
+    when(lectureRepository.updateTitleById("ID", lecture.getTitle(), null))
       .thenReturn(Optional.empty());
 
     // then
-    assertThatThrownBy(() -> underTestService.update(anyString(), lecture))
+    assertThatThrownBy(() -> underTestService.update("ID", lecture, null))
       .isInstanceOf(LectureNotFoundException.class)
       .hasMessageContaining("Method update: Lecture not found.");
 
     verify(lectureRepository, never()).save(any());
   }
+
   /**
    * Arranges the creation of a Lecture object we will try to
    * update with and makes sure the object has invalid attribute values.
    * Executes the update( @param , Lecture @param ) method
    * from LectureService class.
    * Asserts that the LectureInvalidTitleException exception
-   * is thrown with the related messages.
+   * is thrown with the related messages and that nothing has been written.
    */
   @Test
   void updateLectureInvalidTitleExceptionTest() {
     // when
-    when(lectureRepository.findById(anyString()))
-      .thenReturn(Optional.of(new Lecture("id","Title")));
+    when(lectureRepository.existsById("id"))
+      .thenReturn(true);
 
     List<Object> exceptionCases = new ArrayList<Object>();
     exceptionCases.add("");
@@ -223,55 +258,79 @@ class LectureServiceTest {
       Lecture lecture = new Lecture("id", (String) exceptionCase);
 
       // when & then
-      assertThatThrownBy(() -> underTestService.update("id",lecture))
+      assertThatThrownBy(() -> underTestService.update("id",lecture, null))
         .isInstanceOf(LectureInvalidTitleException.class)
         .hasMessageContaining("Method update: Title field can't be invalid.");
 
+      verify(lectureRepository, never()).updateTitleById(anyString(), anyString(), any());
       verify(lectureRepository, never()).save(any());
     }
   }
 
   /**
-   * Arranges the creation of a Lecture object and
-   * makes sure of its existence in the database.
-   * Executes the delete( @param ) method from LectureService class.
-   * Asserts that the deleteById( @param ) method from repository has been
-   * executed successfully.
-   * @throws LectureNotFoundException
+   * Arranges the creation of a Lecture object with invalid attribute values
+   * and makes sure the database has no entries to update.
+   * Executes the update( @param , Lecture @param ) method
+   * from LectureService class.
+   * Asserts that the LectureNotFoundException exception takes precedence
+   * over the invalid attribute values.
    */
   @Test
-  void delete() throws LectureNotFoundException {
+  void updateLectureInvalidTitleNotFoundExceptionTest() {
     // given
-    Lecture lecture = new Lecture("id","Title");
+    Lecture lecture = new Lecture("ID", "");
 
     // when
-    when(lectureRepository.findById(lecture.getId()))
-      .thenReturn(Optional.of(lecture));
+    when(lectureRepository.existsById("ID"))
+      .thenReturn(false);
 
     // then
-    underTestService.delete(lecture.getId());
+    assertThatThrownBy(() -> underTestService.update("ID", lecture, null))
+      .isInstanceOf(LectureNotFoundException.class)
+      .hasMessageContaining("Method update: Lecture not found.");
 
-    verify(lectureRepository).deleteById(lecture.getId());
+    verify(lectureRepository, never()).updateTitleById(anyString(), anyString(), any());
+  }
+
+  /**
+   * Arranges the existence of a Lecture entry with the given id in the database.
+   * Executes the delete( @param ) method from LectureService class.
+   * Asserts that the entry has been deleted with a single statement, in a transaction which also increases
+   * the version of the collection, and that it has not been read first.
+   * @throws LectureNotFoundException
+   */
+  @Test
+  void delete() throws LectureNotFoundException, VersionMismatchException {
+    // when
+    when(lectureRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(1L);
+
+    // then
+    underTestService.delete("id", null);
+
+    verify(lectureRepository).deleteByIdReturningCount("id", null);
+    verify(lectureRepository, never()).findById(any());
+    verify(transactionTemplate).execute(any());
+    verify(collectionVersionRepository).incrementVersion("Lecture");
   }
 
   /**
    * Arranges the absence of any Lecture object in database.
    * Executes the delete( @param ) method from LectureService class.
    * Asserts that it throws the LectureNotFoundException exception
-   * and the related message.
+   * and the related message, without increasing the version of the collection.
    */
   @Test
   void deleteException() {
 
     // when
-    when(lectureRepository.findById(anyString()))
-      .thenReturn(Optional.empty());
+    when(lectureRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(0L);
 
     // then
-    assertThatThrownBy(() -> underTestService.delete(anyString()))
+    assertThatThrownBy(() -> underTestService.delete("id", null))
       .isInstanceOf(LectureNotFoundException.class)
-      .hasMessageContaining("Method delete: Lecture not found");
-
-    verify(lectureRepository, never()).delete(any());
+      .hasMessageContaining("Method delete: Lecture not found.");
+    verify(collectionVersionRepository, never()).incrementVersion(any());
   }
 }
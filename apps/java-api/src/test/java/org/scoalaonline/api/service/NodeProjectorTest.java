@@ -0,0 +1,52 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.exception.projection.ProjectionInvalidFieldsException;
+import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.Role;
+import org.scoalaonline.api.model.User;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NodeProjectorTest {
+  private NodeProjector underTest;
+
+  @BeforeEach
+  void setup() {
+    Neo4jMappingContext mappingContext = new Neo4jMappingContext();
+    mappingContext.setInitialEntitySet(Set.of(Grade.class, Role.class, User.class));
+    mappingContext.initialize();
+    underTest = new NodeProjector(null, mappingContext);
+  }
+
+  /**
+   * Builds the projection of a property and a relationship of the User class.
+   * Asserts that only the id and the requested fields are projected.
+   * @throws ProjectionInvalidFieldsException
+   */
+  @Test
+  void ofTest() throws ProjectionInvalidFieldsException {
+    NodeProjector.Projection projection = underTest.of(User.class, "name, roles,id");
+
+    assertThat(projection.getExpression()).isEqualTo(
+      "n {`id`: n.`id`, `name`: n.`name`, `roles`: [(n)-[:`HAS_ROLE`]->(t:`Role`) | t {.*}]}");
+  }
+
+  /**
+   * Builds the projection of missing and unknown fields.
+   * Asserts that ProjectionInvalidFieldsException is thrown.
+   */
+  @Test
+  void ofInvalidFieldsTest() {
+    assertThatThrownBy(() -> underTest.of(Grade.class, " , "))
+      .isInstanceOf(ProjectionInvalidFieldsException.class);
+    assertThatThrownBy(() -> underTest.of(Grade.class, "value,password"))
+      .isInstanceOf(ProjectionInvalidFieldsException.class)
+      .hasMessageContaining("password");
+  }
+}
@@ -0,0 +1,75 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.model.Role;
+import org.scoalaonline.api.repository.RoleRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoleRegistryTest {
+  private RoleRepository roleRepository;
+  private RoleRegistry underTest;
+
+  @BeforeEach
+  void setup() {
+    roleRepository = mock(RoleRepository.class);
+    when(roleRepository.findAll())
+      .thenReturn(List.of(new Role("role-admin", "ROLE_ADMIN"), new Role("role-student", "ROLE_STUDENT")));
+    underTest = new RoleRegistry(roleRepository, new LocalCacheInvalidationBus());
+    underTest.initialize();
+  }
+
+  /**
+   * Resolves a list of role ids and a role name after the roles have been loaded.
+   * Asserts that the same Role and authority instances are returned every time
+   * and that the DB is read only once.
+   */
+  @Test
+  void findAllByIdTest() {
+    Optional<List<Role>> first = underTest.findAllById(List.of("role-student", "role-admin"));
+    Optional<List<Role>> second = underTest.findAllById(List.of("role-admin"));
+
+    assertThat(first).isPresent();
+    assertThat(first.get()).extracting(Role::getName).containsExactly("ROLE_STUDENT", "ROLE_ADMIN");
+    assertThat(second.get().get(0)).isSameAs(first.get().get(1));
+    assertThat(underTest.findByName("ROLE_ADMIN").get()).isSameAs(first.get().get(1));
+    assertThat(underTest.getAuthority("ROLE_ADMIN")).isSameAs(underTest.getAuthority("ROLE_ADMIN"));
+    verify(roleRepository, times(1)).findAll();
+  }
+
+  /**
+   * Resolves a list of role ids containing an unknown id and an unknown role name.
+   * Asserts that nothing is returned and that the roles are not reloaded.
+   */
+  @Test
+  void findAllByIdUnknownRoleTest() {
+    assertThat(underTest.findAllById(List.of("role-admin", "unknown"))).isEmpty();
+    assertThat(underTest.findByName("ROLE_UNKNOWN")).isEmpty();
+
+    verify(roleRepository, times(1)).findAll();
+  }
+
+  /**
+   * Adds a role to the DB, then reloads the roles as the Role write paths do.
+   * Asserts that the role is only found once the roles have been reloaded.
+   */
+  @Test
+  void reloadTest() {
+    when(roleRepository.findAll())
+      .thenReturn(List.of(new Role("role-admin", "ROLE_ADMIN"), new Role("role-teacher", "ROLE_TEACHER")));
+
+    assertThat(underTest.findById("role-teacher")).isEmpty();
+    underTest.reload();
+
+    assertThat(underTest.findById("role-teacher")).map(Role::getName).contains("ROLE_TEACHER");
+    verify(roleRepository, times(2)).findAll();
+  }
+}
@@ -7,8 +7,10 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.scoalaonline.api.DTO.CursorPage;
 import org.scoalaonline.api.exception.role.RoleInvalidNameException;
 import org.scoalaonline.api.exception.role.RoleNotFoundException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Role;
 import org.scoalaonline.api.repository.RoleRepository;
 
@@ -32,6 +34,15 @@ class RoleServiceTest {
   @Mock
   private RoleRepository roleRepository;
 
+  @Mock
+  private UserDetailsCache userDetailsCache;
+
+  @Mock
+  private RoleVersionRegistry roleVersionRegistry;
+
+  @Mock
+  private RoleRegistry roleRegistry;
+
   /**
    * Executes the getAll() method from RoleService class.
    * Asserts that it correctly called the findAll() method
@@ -46,6 +57,27 @@ class RoleServiceTest {
     verify(roleRepository).findAll();
   }
 
+  /**
+   * Arranges the existence of one more entry than the page size after the given id.
+   * Executes the getPage( @param, @param ) method from RoleService class.
+   * Asserts that it asked the repository for one extra entry,
+   * returned a full page and a cursor pointing at its last entry.
+   */
+  @Test
+  void getPageTest() {
+    // given
+    when(roleRepository.findPageAfter("id", 3))
+      .thenReturn(List.of(new Role("id0", "ROLE_0"), new Role("id1", "ROLE_1"), new Role("id2", "ROLE_2")));
+
+    // when
+    CursorPage<Role> page = underTestService.getPage("id", 2);
+
+    // then
+    assertThat(page.getItems().size()).isEqualTo(2);
+    assertThat(page.getNextCursor()).isEqualTo(CursorPage.encode("id1"));
+    assertThat(CursorPage.decode(page.getNextCursor())).isEqualTo("id1");
+  }
+
   /**
    * Arranges the existence of a custom Role object in database.
    * Executes the getOneById( @param ) method from RoleService class.
@@ -106,6 +138,8 @@ class RoleServiceTest {
 
     Role capturedRole = roleArgumentCaptor.getValue();
     assertThat(capturedRole.getName()).isEqualTo(role.getName());
+
+    verify(roleRegistry).reload();
   }
 
   /**
@@ -140,40 +174,34 @@ class RoleServiceTest {
   }
 
   /**
-   * Arranges the creation of two Role objects:
-   * 1. The object already present in the database.
-   * 2. The object that will update the former.
-   * Arranges the existence of the first object in the database.
+   * Arranges the creation of a Role object we will update with
+   * and the update of the entry with the given id in the database.
    * Executes the update( @param ,Role @param ) method
    * from RoleService class.
-   * Asserts that a Role object has been saved to the database
-   * and that it has the same attribute values as the one we want to update with.
+   * Asserts that the name has been set with a single statement
+   * and that the entry has not been read or saved as a whole.
    * @throws RoleNotFoundException
    * @throws RoleInvalidNameException
    */
   @Test
-  void updateTest() throws RoleNotFoundException, RoleInvalidNameException {
+  void updateTest() throws RoleNotFoundException, RoleInvalidNameException, VersionMismatchException {
     // given
-    Role role = new Role("id","Name.pdf");
-    Role updatedRole = new Role(anyString(), "Name.docs");
+    Role updatedRole = new Role("id", "Name.docs");
 
     // when
-    when(roleRepository.findById(role.getId()))
-      .thenReturn(Optional.of(role));
+    when(roleRepository.updateNameById("id", updatedRole.getName(), null))
+      .thenReturn(Optional.of(updatedRole));
 
     // then
-    underTestService.update(role.getId(), updatedRole);
-
-    ArgumentCaptor<Role> roleArgumentCaptor =
-      ArgumentCaptor.forClass(Role.class);
-
-    verify(roleRepository).save(roleArgumentCaptor.capture());
-
-    Role capturedRole = roleArgumentCaptor.getValue();
-    assertThat(capturedRole.getName()).isEqualTo(role.getName());
-
-    verify(roleRepository).findById(role.getId());
+    Role result = underTestService.update("id", updatedRole, null);
 
+    assertThat(result.getName()).isEqualTo(updatedRole.getName());
+    verify(roleRepository).updateNameById("id", updatedRole.getName(), null);
+    verify(roleRepository, never()).findById(any());
+    verify(roleRepository, never()).save(any());
+    verify(roleRegistry).reload();
+    verify(userDetailsCache).invalidateAll();
+    verify(roleVersionRegistry).bumpAll();
   }
 
   /**
@@ -187,33 +215,35 @@ class RoleServiceTest {
   @Test
   void updateRoleNotFoundExceptionTest() {
     // given
-    Role role = new Role("ID","Name.pdf");
+    Role role = new Role("ID", "Name.pdf");
 
     // when
     // Role Not Found Exception
-    when(roleRepository.findById(anyString()))
+    when(roleRepository.updateNameById("ID", role.getName(), null))
       .thenReturn(Optional.empty());
 
     // then
-    assertThatThrownBy(() -> underTestService.update(anyString(), role))
+    assertThatThrownBy(() -> underTestService.update("ID", role, null))
       .isInstanceOf(RoleNotFoundException.class)
       .hasMessageContaining("Method update: Role not found");
 
     verify(roleRepository, never()).save(any());
+    verify(userDetailsCache, never()).invalidateAll();
   }
+
   /**
    * Arranges the creation of a Role object we will try to
    * update with and makes sure the object has invalid attribute values.
    * Executes the update( @param , Role @param ) method
    * from RoleService class.
    * Asserts that the RoleInvalidNameException exception
-   * is thrown with the related messages.
+   * is thrown with the related messages and that nothing has been written.
    */
   @Test
   void updateRoleInvalidDataExceptionTest() {
     // when
-    when(roleRepository.findById(anyString()))
-      .thenReturn(Optional.of(new Role("id","Name.pdf")));
+    when(roleRepository.existsById("id"))
+      .thenReturn(true);
 
     List<Object> exceptionCases = new ArrayList<Object>();
     exceptionCases.add("");
@@ -223,35 +253,62 @@ class RoleServiceTest {
       Role role = new Role("id", (String) exceptionCase);
 
       // when & then
-      assertThatThrownBy(() -> underTestService.update("id",role))
+      assertThatThrownBy(() -> underTestService.update("id",role, null))
         .isInstanceOf(RoleInvalidNameException.class)
         .hasMessageContaining("Method update: Name field can't be null.");
 
+      verify(roleRepository, never()).updateNameById(anyString(), anyString(), any());
       verify(roleRepository, never()).save(any());
+      verify(userDetailsCache, never()).invalidateAll();
     }
   }
 
   /**
-   * Arranges the creation of a Role object and
-   * makes sure of its existence in the database.
-   * Executes the delete( @param ) method from RoleService class.
-   * Asserts that the deleteById( @param ) method from repository has been
-   * executed successfully.
-   * @throws RoleNotFoundException
+   * Arranges the creation of a Role object with invalid attribute values
+   * and makes sure the database has no entries to update.
+   * Executes the update( @param , Role @param ) method
+   * from RoleService class.
+   * Asserts that the RoleNotFoundException exception takes precedence
+   * over the invalid attribute values.
    */
   @Test
-  void delete() throws RoleNotFoundException {
+  void updateRoleInvalidDataNotFoundExceptionTest() {
     // given
-    Role role = new Role("id","Name.pdf");
+    Role role = new Role("ID", "");
 
     // when
-    when(roleRepository.findById(role.getId()))
-      .thenReturn(Optional.of(role));
+    when(roleRepository.existsById("ID"))
+      .thenReturn(false);
 
     // then
-    underTestService.delete(role.getId());
+    assertThatThrownBy(() -> underTestService.update("ID", role, null))
+      .isInstanceOf(RoleNotFoundException.class)
+      .hasMessageContaining("Method update: Role not found");
 
-    verify(roleRepository).deleteById(role.getId());
+    verify(roleRepository, never()).updateNameById(anyString(), anyString(), any());
+  }
+
+  /**
+   * Arranges the existence of a Role entry with the given id in the database.
+   * Executes the delete( @param ) method from RoleService class.
+   * Asserts that the entry has been deleted with a single statement
+   * and that it has not been read first.
+   * @throws RoleNotFoundException
+   */
+  @Test
+  void delete() throws RoleNotFoundException, VersionMismatchException {
+    // when
+    when(roleRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(1L);
+
+    // then
+    underTestService.delete("id", null);
+
+    verify(roleRepository).deleteByIdReturningCount("id", null);
+    verify(roleRepository, never()).findById(any());
+    verify(roleRegistry).reload();
+    verify(userDetailsCache).invalidateAll();
+    verify(roleVersionRegistry).bumpAll();
   }
 
   /**
@@ -264,14 +321,13 @@ class RoleServiceTest {
   void deleteException() {
 
     // when
-    when(roleRepository.findById(anyString()))
-      .thenReturn(Optional.empty());
+    when(roleRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(0L);
 
     // then
-    assertThatThrownBy(() -> underTestService.delete(anyString()))
+    assertThatThrownBy(() -> underTestService.delete("id", null))
       .isInstanceOf(RoleNotFoundException.class)
       .hasMessageContaining("Method delete: Role not found.");
-
-    verify(roleRepository, never()).delete(any());
+    verify(userDetailsCache, never()).invalidateAll();
   }
 }
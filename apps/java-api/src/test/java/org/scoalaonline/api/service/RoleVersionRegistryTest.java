@@ -0,0 +1,74 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoleVersionRegistryTest {
+  private final RoleVersionRegistry underTest = new RoleVersionRegistry(new LocalCacheInvalidationBus(), 100);
+
+  /**
+   * Reads the role version of a user twice.
+   * Asserts that it stays current until the roles of the user are bumped.
+   */
+  @Test
+  void bumpTest() {
+    long version = underTest.currentVersion("user@mail.com");
+
+    assertThat(underTest.currentVersion("user@mail.com")).isEqualTo(version);
+    assertThat(underTest.isCurrent("user@mail.com", version)).isTrue();
+
+    underTest.bump("user@mail.com");
+
+    assertThat(underTest.isCurrent("user@mail.com", version)).isFalse();
+    assertThat(underTest.currentVersion("user@mail.com")).isGreaterThan(version);
+  }
+
+  /**
+   * Bumps the roles of every user.
+   * Asserts that no previously issued version is current anymore
+   * and that new versions differ from the old ones.
+   */
+  @Test
+  void bumpAllTest() {
+    long first = underTest.currentVersion("first@mail.com");
+    long second = underTest.currentVersion("second@mail.com");
+
+    underTest.bumpAll();
+
+    assertThat(underTest.isCurrent("first@mail.com", first)).isFalse();
+    assertThat(underTest.isCurrent("second@mail.com", second)).isFalse();
+    assertThat(underTest.currentVersion("first@mail.com")).isNotIn(first, second);
+  }
+
+  /**
+   * Receives the invalidation of the roles of a user from another instance.
+   * Asserts that the version of that user is no longer current
+   * and that the versions of the other users are left untouched.
+   */
+  @Test
+  void remoteInvalidationTest() {
+    long first = underTest.currentVersion("first@mail.com");
+    long second = underTest.currentVersion("second@mail.com");
+
+    underTest.onRemoteInvalidation(new RemoteInvalidationEvent("roleVersions", "first@mail.com"));
+    underTest.onRemoteInvalidation(new RemoteInvalidationEvent("users", "second@mail.com"));
+
+    assertThat(underTest.isCurrent("first@mail.com", first)).isFalse();
+    assertThat(underTest.isCurrent("second@mail.com", second)).isTrue();
+  }
+
+  /**
+   * Reads the role version of a username which does not belong to any user, then forgets it.
+   * Asserts that the version is no longer current and a new one is assigned on the next read.
+   */
+  @Test
+  void forgetTest() {
+    long version = underTest.currentVersion("unknown@mail.com");
+
+    underTest.forget("unknown@mail.com");
+
+    assertThat(underTest.isCurrent("unknown@mail.com", version)).isFalse();
+    assertThat(underTest.currentVersion("unknown@mail.com")).isGreaterThan(version);
+  }
+}
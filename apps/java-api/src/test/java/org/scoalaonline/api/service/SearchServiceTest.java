@@ -0,0 +1,71 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.scoalaonline.api.exception.search.SearchInvalidQueryException;
+import org.scoalaonline.api.model.Grade;
+import org.scoalaonline.api.model.Lecture;
+import org.scoalaonline.api.model.LectureMaterial;
+import org.scoalaonline.api.model.LectureMaterialText;
+import org.scoalaonline.api.model.Subject;
+import org.springframework.data.neo4j.core.mapping.Neo4jMappingContext;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchServiceTest {
+
+  /**
+   * Splits a query with repeated terms, mixed case and extra whitespace.
+   * Asserts that every distinct term is kept once, in lower case.
+   */
+  @Test
+  void getTermsTest() {
+    assertThat(SearchService.getTerms("  Graph  theory\tgraph ")).containsExactly("graph", "theory");
+    assertThat(SearchService.getTerms(" ")).isEmpty();
+  }
+
+  /**
+   * Escapes terms with Lucene query syntax.
+   * Asserts that every special character is escaped and the other characters are kept.
+   */
+  @Test
+  void escapeTest() {
+    assertThat(SearchService.escape("c++")).isEqualTo("c\\+\\+");
+    assertThat(SearchService.escape("title:\"x*\"")).isEqualTo("title\\:\\\"x\\*\\\"");
+    assertThat(SearchService.escape("algebră")).isEqualTo("algebră");
+  }
+
+  /**
+   * Builds the searchable properties of the mapped classes and the types of their hits.
+   * Asserts that only the classes with a @Searchable property are mapped to it,
+   * and that the hits of the text of a LectureMaterial document are LectureMaterial hits.
+   */
+  @Test
+  void getSearchablePropertiesTest() {
+    // given
+    Neo4jMappingContext mappingContext = new Neo4jMappingContext();
+    mappingContext.setInitialEntitySet(Set.of(Grade.class, Lecture.class, LectureMaterial.class, LectureMaterialText.class, Subject.class));
+    mappingContext.initialize();
+
+    // when
+    Map<String, String> properties = SearchService.getSearchableProperties(mappingContext);
+    Map<String, String> types = SearchService.getSearchableTypes(mappingContext);
+
+    // then
+    assertThat(properties).isEqualTo(Map.of("Lecture", "title", "LectureMaterialText", "text", "Subject", "value"));
+    assertThat(types).isEqualTo(Map.of("Lecture", "Lecture", "LectureMaterialText", "LectureMaterial", "Subject", "Subject"));
+  }
+
+  /**
+   * Searches with a blank query.
+   * Asserts that SearchInvalidQueryException is thrown without querying the DB.
+   */
+  @Test
+  void searchBlankQueryTest() {
+    SearchService underTest = new SearchService(null, new Neo4jMappingContext(), 200);
+    assertThatThrownBy(() -> underTest.search("  ", 0, 10)).isInstanceOf(SearchInvalidQueryException.class);
+  }
+}
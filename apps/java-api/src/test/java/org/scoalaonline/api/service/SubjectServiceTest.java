@@ -1,17 +1,29 @@
 package org.scoalaonline.api.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.scoalaonline.api.DTO.BulkItemResult;
+import org.scoalaonline.api.DTO.CursorPage;
+import org.scoalaonline.api.exception.bulk.BulkTooLargeException;
+import org.scoalaonline.api.exception.lecture.LectureNotFoundException;
+import org.scoalaonline.api.exception.subject.SubjectInvalidDepthException;
 import org.scoalaonline.api.exception.subject.SubjectInvalidValueException;
 import org.scoalaonline.api.exception.subject.SubjectNotFoundException;
+import org.scoalaonline.api.exception.version.VersionMismatchException;
 import org.scoalaonline.api.model.Subject;
+import org.scoalaonline.api.repository.CollectionVersionRepository;
 import org.scoalaonline.api.repository.SubjectRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -32,6 +44,27 @@ class SubjectServiceTest {
   @Mock
   private SubjectRepository subjectRepository;
 
+  @Mock
+  private CollectionVersionRepository collectionVersionRepository;
+
+  @Spy
+  private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
+  @Mock
+  private AutocompleteIndex autocompleteIndex;
+
+  @Mock
+  private CurriculumTreeReader curriculumTreeReader;
+
+  @Mock
+  private GradeService gradeService;
+
+  @Mock
+  private BulkWriter bulkWriter;
+
+  @Spy
+  private EntityCache<Subject> subjectCache = new CaffeineEntityCache<>("subjects", 100, Duration.ofMinutes(1), new SimpleMeterRegistry(), new LocalCacheInvalidationBus());
+
   /**
    * Executes the getAll() method from SubjectService class.
    * Asserts that it correctly called the findAll() method
@@ -46,6 +79,27 @@ class SubjectServiceTest {
     verify(subjectRepository).findAll();
   }
 
+  /**
+   * Arranges the existence of one more entry than the page size after the given id.
+   * Executes the getPage( @param, @param ) method from SubjectService class.
+   * Asserts that it asked the repository for one extra entry,
+   * returned a full page and a cursor pointing at its last entry.
+   */
+  @Test
+  void getPageTest() {
+    // given
+    when(subjectRepository.findPageAfter("id", 3))
+      .thenReturn(List.of(new Subject("id0", "Value0"), new Subject("id1", "Value1"), new Subject("id2", "Value2")));
+
+    // when
+    CursorPage<Subject> page = underTestService.getPage("id", 2);
+
+    // then
+    assertThat(page.getItems().size()).isEqualTo(2);
+    assertThat(page.getNextCursor()).isEqualTo(CursorPage.encode("id1"));
+    assertThat(CursorPage.decode(page.getNextCursor())).isEqualTo("id1");
+  }
+
   /**
    * Arranges the existence of a custom Subject object in database.
    * Executes the getOneById( @param ) method from SubjectService class.
@@ -77,7 +131,7 @@ class SubjectServiceTest {
       .thenReturn(Optional.empty());
 
     //then
-    assertThatThrownBy(() -> underTestService.getOneById(anyString()))
+    assertThatThrownBy(() -> underTestService.getOneById("id"))
       .isInstanceOf(SubjectNotFoundException.class)
       .hasMessageContaining("Method getOneById: Subject not found");
   }
@@ -96,6 +150,7 @@ class SubjectServiceTest {
     Subject subject = new Subject("string_id", "Some_Value");
 
     // when
+    when(subjectRepository.save(any(Subject.class))).thenAnswer(invocation -> invocation.getArgument(0));
     underTestService.add(subject);
 
     // then
@@ -106,6 +161,7 @@ class SubjectServiceTest {
 
     Subject capturedSubject = subjectArgumentCaptor.getValue();
     assertThat(capturedSubject.getValue()).isEqualTo(subject.getValue());
+    verify(autocompleteIndex).put(AutocompleteIndex.SUBJECT, capturedSubject.getId(), "Some_Value");
   }
 
   /**
@@ -140,40 +196,31 @@ class SubjectServiceTest {
   }
 
   /**
-   * Arranges the creation of two Subject objects:
-   * 1. The object already present in the database.
-   * 2. The object that will update the former.
-   * Arranges the existence of the first object in the database.
+   * Arranges the creation of a Subject object we will update with
+   * and the update of the entry with the given id in the database.
    * Executes the update( @param ,Subject @param ) method
    * from SubjectService class.
-   * Asserts that a Subject object has been saved to the database
-   * and that it has the same attribute values as the one we want to update with.
+   * Asserts that the value has been set with a single statement
+   * and that the entry has not been read or saved as a whole.
    * @throws SubjectNotFoundException
    * @throws SubjectInvalidValueException
    */
   @Test
-  void updateTest() throws SubjectNotFoundException, SubjectInvalidValueException {
+  void updateTest() throws SubjectNotFoundException, SubjectInvalidValueException, VersionMismatchException {
     // given
-    Subject subject = new Subject("id","Value");
-    Subject updatedSubject = new Subject(anyString(), "Value2");
+    Subject updatedSubject = new Subject("id", "New Value");
 
     // when
-    when(subjectRepository.findById(subject.getId()))
-      .thenReturn(Optional.of(subject));
+    when(subjectRepository.updateValueById("id", updatedSubject.getValue(), null))
+      .thenReturn(Optional.of(updatedSubject));
 
     // then
-    underTestService.update(subject.getId(), updatedSubject);
-
-    ArgumentCaptor<Subject> subjectArgumentCaptor =
-      ArgumentCaptor.forClass(Subject.class);
-
-    verify(subjectRepository).save(subjectArgumentCaptor.capture());
-
-    Subject capturedSubject = subjectArgumentCaptor.getValue();
-    assertThat(capturedSubject.getValue()).isEqualTo(subject.getValue());
-
-    verify(subjectRepository).findById(subject.getId());
+    Subject result = underTestService.update("id", updatedSubject, null);
 
+    assertThat(result.getValue()).isEqualTo(updatedSubject.getValue());
+    verify(subjectRepository).updateValueById("id", updatedSubject.getValue(), null);
+    verify(subjectRepository, never()).findById(any());
+    verify(subjectRepository, never()).save(any());
   }
 
   /**
@@ -187,33 +234,34 @@ class SubjectServiceTest {
   @Test
   void updateSubjectNotFoundExceptionTest() {
     // given
-    Subject subject = new Subject("ID","Value");
+    Subject subject = new Subject("ID", "Value");
 
     // when
     // Subject Not Found Exception
-    when(subjectRepository.findById(anyString()))
+    when(subjectRepository.updateValueById("ID", subject.getValue(), null))
       .thenReturn(Optional.empty());
 
     // then
-    assertThatThrownBy(() -> underTestService.update(anyString(), subject))
+    assertThatThrownBy(() -> underTestService.update("ID", subject, null))
       .isInstanceOf(SubjectNotFoundException.class)
       .hasMessageContaining("Method update: Subject not found");
 
     verify(subjectRepository, never()).save(any());
   }
+
   /**
    * Arranges the creation of a Subject object we will try to
    * update with and makes sure the object has invalid attribute values.
    * Executes the update( @param , Subject @param ) method
    * from SubjectService class.
    * Asserts that the SubjectInvalidValueException exception
-   * is thrown with the related messages.
+   * is thrown with the related messages and that nothing has been written.
    */
   @Test
   void updateSubjectInvalidDataExceptionTest() {
     // when
-    when(subjectRepository.findById(anyString()))
-      .thenReturn(Optional.of(new Subject("id","Value")));
+    when(subjectRepository.existsById("id"))
+      .thenReturn(true);
 
     List<Object> exceptionCases = new ArrayList<Object>();
     exceptionCases.add("");
@@ -223,35 +271,59 @@ class SubjectServiceTest {
       Subject subject = new Subject("id", (String) exceptionCase);
 
       // when & then
-      assertThatThrownBy(() -> underTestService.update("id",subject))
+      assertThatThrownBy(() -> underTestService.update("id",subject, null))
         .isInstanceOf(SubjectInvalidValueException.class)
         .hasMessageContaining("Method update: Value field can't be invalid");
 
+      verify(subjectRepository, never()).updateValueById(anyString(), anyString(), any());
       verify(subjectRepository, never()).save(any());
     }
   }
 
   /**
-   * Arranges the creation of a Subject object and
-   * makes sure of its existence in the database.
-   * Executes the DELETE( @param ) method from SubjectService class.
-   * Asserts that the deleteById( @param ) method from repository has been
-   * executed successfully.
-   * @throws SubjectNotFoundException
+   * Arranges the creation of a Subject object with invalid attribute values
+   * and makes sure the database has no entries to update.
+   * Executes the update( @param , Subject @param ) method
+   * from SubjectService class.
+   * Asserts that the SubjectNotFoundException exception takes precedence
+   * over the invalid attribute values.
    */
   @Test
-  void deleteTest() throws SubjectNotFoundException {
+  void updateSubjectInvalidDataNotFoundExceptionTest() {
     // given
-    Subject subject = new Subject("id","Value");
+    Subject subject = new Subject("ID", "");
+
+    // when
+    when(subjectRepository.existsById("ID"))
+      .thenReturn(false);
+
+    // then
+    assertThatThrownBy(() -> underTestService.update("ID", subject, null))
+      .isInstanceOf(SubjectNotFoundException.class)
+      .hasMessageContaining("Method update: Subject not found");
+
+    verify(subjectRepository, never()).updateValueById(anyString(), anyString(), any());
+  }
 
+  /**
+   * Arranges the existence of a Subject entry with the given id in the database.
+   * Executes the delete( @param ) method from SubjectService class.
+   * Asserts that the entry has been deleted with a single statement, followed by its grades,
+   * and that it has not been read first.
+   * @throws SubjectNotFoundException
+   */
+  @Test
+  void deleteTest() throws SubjectNotFoundException, VersionMismatchException {
     // when
-    when(subjectRepository.findById(subject.getId()))
-      .thenReturn(Optional.of(subject));
+    when(subjectRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(1L);
 
     // then
-    underTestService.delete(subject.getId());
+    underTestService.delete("id", null);
 
-    verify(subjectRepository).deleteById(subject.getId());
+    verify(subjectRepository).deleteByIdReturningCount("id", null);
+    verify(gradeService).deleteBySubjectId("id");
+    verify(subjectRepository, never()).findById(any());
   }
 
   /**
@@ -264,14 +336,83 @@ class SubjectServiceTest {
   void deleteSubjectNotFoundExceptionTest() {
 
     // when
-    when(subjectRepository.findById(anyString()))
-      .thenReturn(Optional.empty());
+    when(subjectRepository.deleteByIdReturningCount("id", null))
+      .thenReturn(0L);
 
     // then
-    assertThatThrownBy(() -> underTestService.delete(anyString()))
+    assertThatThrownBy(() -> underTestService.delete("id", null))
       .isInstanceOf(SubjectNotFoundException.class)
       .hasMessageContaining("Method delete: Subject not Found");
+    verify(gradeService, never()).deleteBySubjectId(any());
+  }
+  /**
+   * Arranges a bulk delete in which one id has been deleted and another one was not found.
+   * Executes the deleteAll( @param ) method from SubjectService class.
+   * Asserts that only the Grade entries given in the deleted Subject are deleted.
+   * @throws BulkTooLargeException
+   */
+  @Test
+  void deleteAllTest() throws BulkTooLargeException {
+    // given
+    List<BulkItemResult> results = List.of(
+      new BulkItemResult(0, "deleted", BulkItemResult.Status.DELETED, null),
+      new BulkItemResult(1, "missing", BulkItemResult.Status.NOT_FOUND, "Subject not found"));
+    when(bulkWriter.delete(Subject.class, List.of("deleted", "missing"))).thenReturn(results);
+
+    // when
+    underTestService.deleteAll(List.of("deleted", "missing"));
+
+    // then
+    verify(gradeService).deleteBySubjectId("deleted");
+    verify(gradeService, never()).deleteBySubjectId("missing");
+  }
+
 
-    verify(subjectRepository, never()).delete(any());
+  /**
+   * Executes the getTree( @param, @param ) method from SubjectService class with depths out of range.
+   * Asserts that it throws the SubjectInvalidDepthException exception without reading the tree.
+   */
+  @Test
+  void getTreeInvalidDepthTest() {
+    assertThatThrownBy(() -> underTestService.getTree("id", -1))
+      .isInstanceOf(SubjectInvalidDepthException.class);
+    assertThatThrownBy(() -> underTestService.getTree("id", CurriculumTreeReader.MAX_DEPTH + 1))
+      .isInstanceOf(SubjectInvalidDepthException.class);
+
+    verify(curriculumTreeReader, never()).findSubjectTree(any(), anyInt());
+  }
+
+  /**
+   * Arranges the existence of the Subject entry but not of the Lecture entry.
+   * Executes the addLecture( @param, @param ) method from SubjectService class.
+   * Asserts that it throws the LectureNotFoundException exception and the related message.
+   */
+  @Test
+  void addLectureNotFoundExceptionTest() {
+    // given
+    when(subjectRepository.addLectureById("id", "lectureId")).thenReturn(0L);
+    when(subjectRepository.existsById("id")).thenReturn(true);
+
+    // then
+    assertThatThrownBy(() -> underTestService.addLecture("id", "lectureId"))
+      .isInstanceOf(LectureNotFoundException.class)
+      .hasMessageContaining("Method addLecture: Lecture not found");
+  }
+
+  /**
+   * Arranges the absence of the Subject entry.
+   * Executes the removeLecture( @param, @param ) method from SubjectService class.
+   * Asserts that it throws the SubjectNotFoundException exception and the related message.
+   */
+  @Test
+  void removeLectureSubjectNotFoundExceptionTest() {
+    // given
+    when(subjectRepository.removeLectureById("id", "lectureId")).thenReturn(0L);
+    when(subjectRepository.existsById("id")).thenReturn(false);
+
+    // then
+    assertThatThrownBy(() -> underTestService.removeLecture("id", "lectureId"))
+      .isInstanceOf(SubjectNotFoundException.class)
+      .hasMessageContaining("Method removeLecture: Subject not found");
   }
 }
@@ -0,0 +1,152 @@
+package org.scoalaonline.api.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.scoalaonline.api.exception.upload.UploadInvalidHashException;
+import org.scoalaonline.api.exception.upload.UploadInvalidOffsetException;
+import org.scoalaonline.api.exception.upload.UploadNotFoundException;
+import org.scoalaonline.api.exception.upload.UploadTooLargeException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadStoreTest {
+  // SHA-256 of "abcdef".
+  private static final String HASH = "bef57ec7f53a6d40beb640a780a639c83bc29ac8a9816f1fc6c5c6dcd93c4721";
+
+  @TempDir
+  Path root;
+
+  /**
+   * Uploads a content in two chunks.
+   * Asserts that every chunk moves the offset and the completed upload is a blob with the hash of the whole content,
+   * after which the upload no longer exists.
+   * @throws Exception
+   */
+  @Test
+  void completeTest() throws Exception {
+    // given
+    BlobStore blobStore = new BlobStore(root.toString());
+    UploadStore underTest = new UploadStore(blobStore, 100, 24);
+    String id = underTest.create();
+
+    // when
+    long first = underTest.append(id, 0, chunk("abc"));
+    long second = underTest.append(id, 3, chunk("def"));
+    BlobStore.Blob blob = underTest.complete(id, HASH.toUpperCase(), file -> { });
+
+    // then
+    assertThat(first).isEqualTo(3);
+    assertThat(second).isEqualTo(6);
+    assertThat(blob.getHash()).isEqualTo(HASH);
+    assertThat(blob.getSize()).isEqualTo(6);
+    assertThat(Files.readString(blob.getPath())).isEqualTo("abcdef");
+    assertThatThrownBy(() -> underTest.getOffset(id)).isInstanceOf(UploadNotFoundException.class);
+  }
+
+  /**
+   * Sends a chunk at the wrong offset, then resumes the upload from another store, as after a restart.
+   * Asserts that the chunk is rejected with the offset of the upload and the hash is computed again from the file.
+   * @throws Exception
+   */
+  @Test
+  void resumeTest() throws Exception {
+    // given
+    BlobStore blobStore = new BlobStore(root.toString());
+    UploadStore underTest = new UploadStore(blobStore, 100, 24);
+    String id = underTest.create();
+    underTest.append(id, 0, chunk("abc"));
+
+    // when
+    UploadStore restarted = new UploadStore(blobStore, 100, 24);
+
+    // then
+    assertThatThrownBy(() -> restarted.append(id, 0, chunk("abc")))
+      .isInstanceOf(UploadInvalidOffsetException.class)
+      .extracting(e -> ((UploadInvalidOffsetException) e).getOffset()).isEqualTo(3L);
+    assertThat(restarted.getOffset(id)).isEqualTo(3);
+    assertThat(restarted.append(id, 3, chunk("def"))).isEqualTo(6);
+    assertThat(restarted.complete(id, HASH, file -> { }).getHash()).isEqualTo(HASH);
+  }
+
+  /**
+   * Sends a chunk which makes the upload exceed the maximum size, then completes it with a wrong hash.
+   * Asserts that the chunk is discarded, the wrong hash rejected and the upload kept with its previous content.
+   * @throws Exception
+   */
+  @Test
+  void tooLargeAndInvalidHashTest() throws Exception {
+    // given
+    UploadStore underTest = new UploadStore(new BlobStore(root.toString()), 6, 24);
+    String id = underTest.create();
+    underTest.append(id, 0, chunk("abc"));
+
+    // then
+    assertThatThrownBy(() -> underTest.append(id, 3, chunk("defg"))).isInstanceOf(UploadTooLargeException.class);
+    assertThat(underTest.getOffset(id)).isEqualTo(3);
+    assertThatThrownBy(() -> underTest.complete(id, HASH, file -> { })).isInstanceOf(UploadInvalidHashException.class);
+    assertThat(underTest.append(id, 3, chunk("def"))).isEqualTo(6);
+    assertThat(underTest.complete(id, HASH, file -> { }).getSize()).isEqualTo(6);
+  }
+
+  /**
+   * Completes an upload whose content is rejected by the check, then completes it again.
+   * Asserts that the rejected content is not stored and the upload is kept until its content is accepted.
+   * @throws Exception
+   */
+  @Test
+  void rejectedTest() throws Exception {
+    // given
+    BlobStore blobStore = new BlobStore(root.toString());
+    UploadStore underTest = new UploadStore(blobStore, 100, 24);
+    String id = underTest.create();
+    underTest.append(id, 0, chunk("abcdef"));
+
+    // then
+    assertThatThrownBy(() -> underTest.complete(id, HASH, file -> {
+      throw new IllegalStateException("Rejected " + Files.readString(file));
+    })).isInstanceOf(IllegalStateException.class).hasMessage("Rejected abcdef");
+    assertThat(blobStore.find(HASH)).isEmpty();
+    assertThat(underTest.getOffset(id)).isEqualTo(6);
+    assertThat(underTest.complete(id, HASH, file -> { }).getHash()).isEqualTo(HASH);
+    assertThat(blobStore.find(HASH)).isPresent();
+  }
+
+  /**
+   * Cancels an upload, leaves another one unfinished past the expiry and looks up an id which is not an upload id.
+   * Asserts that the first two are removed and the last one is not found, so no path out of the store is used.
+   * @throws Exception
+   */
+  @Test
+  void deleteTest() throws Exception {
+    // given
+    UploadStore underTest = new UploadStore(new BlobStore(root.toString()), 100, 24);
+    String cancelled = underTest.create();
+    String expired = underTest.create();
+    Files.setLastModifiedTime(root.resolve("uploads").resolve(expired + ".part"),
+      FileTime.from(Instant.now().minus(25, ChronoUnit.HOURS)));
+
+    // when
+    underTest.delete(cancelled);
+    underTest.removeExpired();
+
+    // then
+    assertThatThrownBy(() -> underTest.getOffset(cancelled)).isInstanceOf(UploadNotFoundException.class);
+    assertThatThrownBy(() -> underTest.getOffset(expired)).isInstanceOf(UploadNotFoundException.class);
+    assertThatThrownBy(() -> underTest.delete(cancelled)).isInstanceOf(UploadNotFoundException.class);
+    assertThatThrownBy(() -> underTest.append("../../tmp", 0, chunk("abc"))).isInstanceOf(UploadNotFoundException.class);
+  }
+
+  private static InputStream chunk(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
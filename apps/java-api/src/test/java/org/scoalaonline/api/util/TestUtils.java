@@ -3,9 +3,21 @@ package org.scoalaonline.api.util;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.Transaction;
+
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class TestUtils {
   //static methods
@@ -44,4 +56,23 @@ public class TestUtils {
 
     return jsonObjectWriter;
   }
+
+  /* UTIL Method for racing a write against a transaction which has run the same write and not committed yet.
+  * Runs the query in a transaction, calls the concurrent write from another thread,
+  * asserts that it waits for the transaction, then commits the transaction and returns what the concurrent write returned.
+  * */
+  public static <T> T runWhileUncommitted(Driver driver, String query, Map<String, Object> parameters,
+                                          Callable<T> concurrent) throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (Session session = driver.session(); Transaction transaction = session.beginTransaction()) {
+      transaction.run(query, parameters).consume();
+      Future<T> future = executor.submit(concurrent);
+      Thread.sleep(500);
+      assertThat(future).isNotDone();
+      transaction.commit();
+      return future.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }